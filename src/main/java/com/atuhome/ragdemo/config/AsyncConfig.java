@@ -20,4 +20,75 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Generaciones con el LLM de los lotes de preguntas. El tamaño fijo limita la concurrencia
+     * contra Ollama aunque lleguen varios lotes a la vez, y la cola admite dos lotes completos:
+     * por encima, el lote se rechaza en lugar de acumular horas de trabajo.
+     */
+    @Bean(name = "batchGenerationExecutor")
+    public TaskExecutor batchGenerationExecutor(RagProperties ragProperties) {
+        int concurrency = Math.max(1, ragProperties.getBatch().getGenerationConcurrency());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(2 * Math.max(1, ragProperties.getBatch().getMaxQuestions()));
+        executor.setThreadNamePrefix("batch-llm-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Llamadas de los rerankers de las preguntas interactivas; los lotes rerankean en su propio hilo.
+     * Sin cola y sin ejecutar en el hilo llamante: con los 4 hilos ocupados la petición se rechaza
+     * al instante y RerankingStage conserva el orden de la búsqueda, en lugar de esperar en cola el
+     * presupuesto entero detrás de llamadas lentas.
+     */
+    @Bean(name = "rerankExecutor")
+    public TaskExecutor rerankExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("rerank-");
+        executor.initialize();
+        return executor;
+    }
+
+    /*
+     * Etapas del pipeline de ingesta (IngestionPipeline), cada una con su propio tamaño para que
+     * la extracción o los embeddings no compitan con el resto de tareas de taskExecutor. La cola
+     * admite todo el backlog: el límite lo aplica la admisión de la carga, no el rechazo de una
+     * etapa a mitad de documento.
+     */
+
+    @Bean(name = "ingestExtractExecutor")
+    public ThreadPoolTaskExecutor ingestExtractExecutor(RagProperties ragProperties) {
+        return ingestionStage("ingest-extract-", ragProperties.getIngestion().getExtractThreads(), ragProperties);
+    }
+
+    @Bean(name = "ingestChunkExecutor")
+    public ThreadPoolTaskExecutor ingestChunkExecutor(RagProperties ragProperties) {
+        return ingestionStage("ingest-chunk-", ragProperties.getIngestion().getChunkThreads(), ragProperties);
+    }
+
+    @Bean(name = "ingestEmbedExecutor")
+    public ThreadPoolTaskExecutor ingestEmbedExecutor(RagProperties ragProperties) {
+        return ingestionStage("ingest-embed-", ragProperties.getIngestion().getEmbedThreads(), ragProperties);
+    }
+
+    @Bean(name = "ingestPersistExecutor")
+    public ThreadPoolTaskExecutor ingestPersistExecutor(RagProperties ragProperties) {
+        return ingestionStage("ingest-persist-", ragProperties.getIngestion().getPersistThreads(), ragProperties);
+    }
+
+    private ThreadPoolTaskExecutor ingestionStage(String threadNamePrefix, int threads, RagProperties ragProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setQueueCapacity(Math.max(1, ragProperties.getIngestion().getMaxBacklog()));
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+}
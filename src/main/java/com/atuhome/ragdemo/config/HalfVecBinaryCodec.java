@@ -0,0 +1,90 @@
+package com.atuhome.ragdemo.config;
+
+/**
+ * Formato binario de {@code halfvec} de pgvector ({@code halfvec_send}): la misma cabecera que
+ * {@link PgVectorBinaryCodec} y cada componente como float16 IEEE 754 en orden de red, con la
+ * mitad de bytes por dimensión.
+ *
+ * La conversión usa {@link Float#floatToFloat16} (redondeo al par más cercano), el mismo que aplica
+ * pgvector al convertir {@code vector} en {@code halfvec}, de modo que un vector redondeado en la JVM
+ * coincide con el que queda almacenado.
+ */
+public final class HalfVecBinaryCodec {
+
+    public static final int HEADER_BYTES = PgVectorBinaryCodec.HEADER_BYTES;
+
+    private HalfVecBinaryCodec() {
+    }
+
+    public static int encodedSize(int dimension) {
+        return HEADER_BYTES + dimension * Short.BYTES;
+    }
+
+    public static byte[] encode(float[] vector) {
+        if (vector.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Dimensión " + vector.length + " fuera del rango de pgvector");
+        }
+        byte[] bytes = new byte[encodedSize(vector.length)];
+        bytes[0] = (byte) (vector.length >>> 8);
+        bytes[1] = (byte) vector.length;
+        int position = HEADER_BYTES;
+        for (float value : vector) {
+            short half = Float.floatToFloat16(value);
+            bytes[position++] = (byte) (half >>> 8);
+            bytes[position++] = (byte) half;
+        }
+        return bytes;
+    }
+
+    public static float[] decode(byte[] bytes) {
+        float[] vector = new float[dimensionOf(bytes)];
+        decodeInto(bytes, vector, 0);
+        return vector;
+    }
+
+    /**
+     * Decodifica directamente en un buffer ya reservado, p. ej. una fila de una matriz de carga.
+     *
+     * @return Dimensión del vector decodificado
+     */
+    public static int decodeInto(byte[] bytes, float[] target, int offset) {
+        int dimension = dimensionOf(bytes);
+        int position = HEADER_BYTES;
+        for (int i = 0; i < dimension; i++) {
+            short half = (short) (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF));
+            target[offset + i] = Float.float16ToFloat(half);
+            position += Short.BYTES;
+        }
+        return dimension;
+    }
+
+    public static int dimensionOf(byte[] bytes) {
+        if (!isHalfVec(bytes)) {
+            throw new IllegalArgumentException("Vector halfvec binario de " + bytes.length + " bytes no válido");
+        }
+        return ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+    }
+
+    /**
+     * Distingue un {@code halfvec_send} de un {@code vector_send} por la longitud: con la misma
+     * cabecera, solo coinciden para el vector vacío.
+     */
+    public static boolean isHalfVec(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES) {
+            return false;
+        }
+        int dimension = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        return bytes.length == encodedSize(dimension);
+    }
+
+    /**
+     * Redondea cada componente a la precisión de {@code halfvec}, para que lo que se guarda en
+     * memoria al indexar sea exactamente lo que se leerá después de la base.
+     */
+    public static float[] roundInPlace(float[] vector) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = Float.float16ToFloat(Float.floatToFloat16(vector[i]));
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,67 @@
+package com.atuhome.ragdemo.config;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Formato binario de pgvector ({@code vector_send}/{@code vector_recv}): dimensión como int16,
+ * un int16 reservado a cero y los componentes como float4, todo en orden de red (big-endian).
+ *
+ * Decodificar es copiar bytes con intercambio de orden, sin pasar por texto ni
+ * {@code Float.parseFloat} por componente, que es lo que domina las cargas masivas de embeddings.
+ */
+public final class PgVectorBinaryCodec {
+
+    public static final int HEADER_BYTES = 2 * Short.BYTES;
+
+    private PgVectorBinaryCodec() {
+    }
+
+    public static int encodedSize(int dimension) {
+        return HEADER_BYTES + dimension * Float.BYTES;
+    }
+
+    public static byte[] encode(float[] vector) {
+        if (vector.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Dimensión " + vector.length + " fuera del rango de pgvector");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(vector.length)).order(ByteOrder.BIG_ENDIAN);
+        buffer.putShort((short) vector.length).putShort((short) 0);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] bytes) {
+        float[] vector = new float[dimensionOf(bytes)];
+        decodeInto(bytes, vector, 0);
+        return vector;
+    }
+
+    /**
+     * Decodifica directamente en un buffer ya reservado, p. ej. una fila de una matriz de carga.
+     *
+     * @return Dimensión del vector decodificado
+     */
+    public static int decodeInto(byte[] bytes, float[] target, int offset) {
+        int dimension = dimensionOf(bytes);
+        FloatBuffer floats = ByteBuffer.wrap(bytes, HEADER_BYTES, dimension * Float.BYTES)
+                .slice()
+                .order(ByteOrder.BIG_ENDIAN)
+                .asFloatBuffer();
+        floats.get(target, offset, dimension);
+        return dimension;
+    }
+
+    public static int dimensionOf(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("Vector binario truncado: " + bytes.length + " bytes");
+        }
+        int dimension = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        if (bytes.length != encodedSize(dimension)) {
+            throw new IllegalArgumentException("Vector binario de " + bytes.length + " bytes no corresponde a "
+                    + dimension + " dimensiones");
+        }
+        return dimension;
+    }
+}
@@ -9,8 +9,22 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
+/**
+ * Tipo Hibernate para columnas {@code vector} o {@code halfvec} de pgvector. Las lecturas y escrituras
+ * de entidades viajan en binario: la columna debe declararse con
+ * {@code @ColumnTransformer(read = READ_EXPRESSION, write = WRITE_EXPRESSION)}.
+ */
 public class PostgreSQLVectorType implements UserType<float[]> {
 
+    // Cada tipo viaja en su propio formato binario: halfvec en float16 (la mitad de bytes) y vector en float4.
+    // El cast de la rama que no aplica se resuelve igualmente al planificar, por eso ambas compilan con
+    // cualquiera de los dos tipos de columna (ver EmbeddingStorage).
+    // Hibernate cualifica los identificadores de CAST(... AS tipo), por eso se usa ::
+    public static final String READ_EXPRESSION = "CASE WHEN pg_typeof(embedding) = 'halfvec'::regtype"
+            + " THEN halfvec_send(embedding::halfvec) ELSE vector_send(embedding::vector) END";
+    // real[] tiene cast de asignación tanto a vector como a halfvec
+    public static final String WRITE_EXPRESSION = "CAST(? AS real[])";
+
     @Override
     public int getSqlType() {
         return Types.OTHER;
@@ -42,13 +56,57 @@ public class PostgreSQLVectorType implements UserType<float[]> {
         return result;
     }
 
+    /**
+     * Con {@link #READ_EXPRESSION} la columna llega como {@code bytea} en el formato binario de pgvector;
+     * el literal de texto se sigue aceptando para columnas leídas sin la expresión.
+     */
     @Override
     public float[] nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner) throws SQLException {
-        String value = rs.getString(position);
+        Object value = rs.getObject(position);
         if (value == null || rs.wasNull()) {
             return null;
         }
+        if (value instanceof byte[] bytes) {
+            return HalfVecBinaryCodec.isHalfVec(bytes)
+                    ? HalfVecBinaryCodec.decode(bytes)
+                    : PgVectorBinaryCodec.decode(bytes);
+        }
         
+        return fromVectorLiteral(value.toString());
+    }
+
+    /**
+     * El driver envía un {@code float[]} como {@code float4[]} en binario y el servidor lo convierte
+     * al tipo de la columna al asignarlo, sin formatear ni parsear texto.
+     */
+    @Override
+    public void nullSafeSet(PreparedStatement st, float[] value, int index, SharedSessionContractImplementor session) throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.OTHER);
+        } else {
+            st.setObject(index, value);
+        }
+    }
+
+    /**
+     * Convierte un embedding al literal textual de pgvector ({@code [1.0,2.0,3.0]}),
+     * apto para usarse con {@code CAST(:param AS vector)} en consultas nativas.
+     */
+    public static String toVectorLiteral(float[] value) {
+        StringBuilder sb = new StringBuilder(value.length * 12);
+        sb.append("[");
+        for (int i = 0; i < value.length; i++) {
+            if (i > 0) sb.append(",");
+            sb.append(value[i]);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+     * Interpreta el literal textual de pgvector ({@code [1.0,2.0,3.0]}).
+     */
+    public static float[] fromVectorLiteral(String value) {
         // Parse PostgreSQL vector format: [1.0,2.0,3.0]
         value = value.trim();
         if (value.startsWith("[") && value.endsWith("]")) {
@@ -67,23 +125,6 @@ public class PostgreSQLVectorType implements UserType<float[]> {
         return result;
     }
 
-    @Override
-    public void nullSafeSet(PreparedStatement st, float[] value, int index, SharedSessionContractImplementor session) throws SQLException {
-        if (value == null) {
-            st.setNull(index, Types.OTHER);
-        } else {
-            // Convert to PostgreSQL vector format
-            StringBuilder sb = new StringBuilder();
-            sb.append("[");
-            for (int i = 0; i < value.length; i++) {
-                if (i > 0) sb.append(",");
-                sb.append(value[i]);
-            }
-            sb.append("]");
-            st.setObject(index, sb.toString(), Types.OTHER);
-        }
-    }
-
     @Override
     public float[] deepCopy(float[] value) {
         if (value == null) return null;
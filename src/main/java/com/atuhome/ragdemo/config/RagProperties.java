@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "app.rag")
@@ -12,6 +14,11 @@ public class RagProperties {
     private Chunk chunk = new Chunk();
     private Search search = new Search();
     private Embedding embedding = new Embedding();
+    private AnswerCache answerCache = new AnswerCache();
+    private Batch batch = new Batch();
+    private Rerank rerank = new Rerank();
+    private Stats stats = new Stats();
+    private Ingestion ingestion = new Ingestion();
 
     @Data
     public static class Chunk {
@@ -21,13 +28,121 @@ public class RagProperties {
 
     @Data
     public static class Search {
+        // Motor de búsqueda vectorial: pgvector (índice HNSW en PostgreSQL), memory (almacén residente exacto)
+        // hnsw (índice HNSW en la JVM) o ivf (listas invertidas sobre centroides k-means)
+        private String engine = "pgvector";
         private double similarityThreshold = 0.7;
         private int maxResults = 5;
+        // ef_search por defecto para consultas HNSW, en pgvector o en la JVM (candidatos evaluados por el índice)
+        private int efSearch = 40;
+        // Núcleo de similitud para los recorridos en la JVM: auto, simd (Vector API) o scalar
+        private String kernel = "auto";
+        // Usar producto interno (<#>) en pgvector; activar cuando no queden embeddings sin normalizar
+        private boolean innerProduct = false;
+        // Hilos del pool de búsqueda paralela en la JVM; 0 = núcleos disponibles
+        private int parallelism = 0;
+        // Filas por partición del recorrido exhaustivo; corpus menores se recorren en el hilo llamante
+        private int partitionSize = 16384;
+        // Copia cuantizada del almacén en memoria que se recorre primero: none, int8 o binary (1 bit por dimensión)
+        private String quantization = "none";
+        // Candidatos por resultado que la pasada cuantizada entrega al rescoring exacto
+        private int oversampling = 4;
+        // Vecinos por nodo y candidatos de construcción del índice HNSW en la JVM
+        private int hnswM = 16;
+        private int hnswEfConstruction = 200;
+        // Índice IVF: listas (0 = raíz del número de vectores), listas sondeadas por consulta,
+        // iteraciones de k-means y crecimiento relativo del corpus que dispara el reentrenamiento
+        private int ivfLists = 0;
+        private int ivfNprobe = 8;
+        private int ivfTrainingIterations = 10;
+        private double ivfRetrainGrowth = 0.5;
+        // Búsqueda léxica fusionada con la vectorial por RRF: none, bm25 (índice invertido en la JVM)
+        // o postgres (tsvector con índice GIN, consultado en paralelo con la búsqueda vectorial)
+        private String lexicalEngine = "none";
+        // Constante k de Reciprocal Rank Fusion y candidatos por resultado que aporta cada ranking
+        private int rrfK = 60;
+        private int hybridOversampling = 4;
+        // Candidatos por resultado que pgvector lee del índice HNSW en búsquedas filtradas por
+        // organización, sector o etiquetas, antes de descartar los de otros documentos
+        private int filterOversampling = 4;
+        // Diversificación MMR del contexto: se recuperan maxResults * mmr-candidates chunks y se eligen
+        // maxResults equilibrando relevancia (lambda = 1) y no redundancia (lambda = 0)
+        private boolean mmrEnabled = false;
+        private double mmrLambda = 0.7;
+        private int mmrCandidates = 3;
     }
 
     @Data
     public static class Embedding {
         private int dimension = 384;
         private int batchSize = 10;
+        // Caché de embeddings de consulta (clave: modelo + texto normalizado)
+        private boolean queryCacheEnabled = true;
+        private long queryCacheMaxBytes = 16 * 1024 * 1024;
+        private Duration queryCacheTtl = Duration.ofMinutes(10);
+        // Tipo de la columna embedding: vector (float4) o halfvec (float16, la mitad de tabla e índice).
+        // Cambiarlo requiere migrar las filas existentes (POST /api/index/storage/migrate)
+        private String storage = "vector";
+        // Filas por lote del cursor con el que se cargan los embeddings en los índices en la JVM
+        private int loadFetchSize = 2000;
+    }
+
+    @Data
+    public static class AnswerCache {
+        // Caché semántica de respuestas para paráfrasis de preguntas ya respondidas. Desactivada
+        // por defecto: preguntas que solo difieren en un artículo o una dosis superan el umbral
+        private boolean enabled = false;
+        // Similitud coseno mínima entre preguntas para reutilizar la respuesta
+        private double similarityThreshold = 0.95;
+        private int maxEntries = 1000;
+        private Duration ttl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Batch {
+        // Preguntas máximas por llamada a /api/qa/ask/batch: la llamada es síncrona y sus
+        // generaciones deben caber en el timeout de una petición
+        private int maxQuestions = 100;
+        // Textos por llamada al modelo de embeddings
+        private int embeddingBatchSize = 256;
+        // Generaciones simultáneas con el LLM, compartidas por todos los lotes en curso
+        private int generationConcurrency = 4;
+    }
+
+    @Data
+    public static class Rerank {
+        // Reordenación de los candidatos antes de construir el contexto: none, lexical (solapamiento de
+        // términos con la pregunta) u ollama (el LLM puntúa la relevancia de cada pasaje)
+        private String engine = "none";
+        // Candidatos por resultado que se recuperan para que el reranker elija
+        private int candidates = 3;
+        // Presupuesto por consulta; si se agota se conserva el orden de la búsqueda vectorial
+        private Duration timeout = Duration.ofMillis(1500);
+        // Peso del solapamiento léxico frente a la similitud vectorial en el reranker lexical
+        private double lexicalWeight = 0.3;
+        // Modelo del reranker ollama; vacío = modelo de chat activo
+        private String model = "";
+        // Caracteres de cada pasaje que se envían al reranker ollama
+        private int maxPassageChars = 600;
+    }
+
+    @Data
+    public static class Stats {
+        // Cada cuánto se comparan los contadores del corpus con la tabla (ver CorpusStatistics)
+        private Duration reconcileInterval = Duration.ofMinutes(10);
+        // Reintento de la carga inicial de los contadores si falló al arrancar
+        private Duration retryInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Ingestion {
+        // Hilos de cada etapa del pipeline de ingesta (ver IngestionPipeline)
+        private int extractThreads = 2;
+        private int chunkThreads = 2;
+        // Limita la concurrencia contra el modelo de embeddings
+        private int embedThreads = 2;
+        private int persistThreads = 2;
+        // Documentos admitidos sin terminar; por encima la carga responde 429
+        private int maxBacklog = 50;
     }
-}
\ No newline at end of file
+}
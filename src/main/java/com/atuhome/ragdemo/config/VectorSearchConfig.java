@@ -0,0 +1,68 @@
+package com.atuhome.ragdemo.config;
+
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class VectorSearchConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorSearchConfig.class);
+
+    @Bean
+    public SimilarityKernel similarityKernel(RagProperties ragProperties) {
+        SimilarityKernel kernel = SimilarityKernels.create(ragProperties.getSearch().getKernel());
+        log.info("Núcleo de similitud activo: {}", kernel.name());
+        return kernel;
+    }
+
+    /**
+     * Pool dedicado a los recorridos exhaustivos particionados, separado del common pool
+     * para que la búsqueda no compita con streams paralelos ni con el executor de ingesta.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool vectorSearchPool(RagProperties ragProperties) {
+        int configured = ragProperties.getSearch().getParallelism();
+        int parallelism = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("vector-search-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        log.info("Pool de búsqueda vectorial: {} hilos, particiones de {} filas",
+                parallelism, ragProperties.getSearch().getPartitionSize());
+        return new ForkJoinPool(parallelism, threadFactory, null, false);
+    }
+
+    /**
+     * Executor para las consultas léxicas en PostgreSQL que se solapan con la búsqueda vectorial.
+     * Son llamadas bloqueantes a JDBC, así que no van al ForkJoinPool; si se satura, la consulta
+     * se ejecuta en el hilo llamante en lugar de encolarse indefinidamente.
+     */
+    @Bean(name = "lexicalSearchExecutor")
+    public TaskExecutor lexicalSearchExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("lexical-search-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -3,6 +3,7 @@ package com.atuhome.ragdemo.controller;
 import com.atuhome.ragdemo.model.dto.response.DocumentResponse;
 import com.atuhome.ragdemo.model.enums.DocumentStatus;
 import com.atuhome.ragdemo.service.document.DocumentService;
+import com.atuhome.ragdemo.service.document.IngestionPipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -32,6 +33,7 @@ public class DocumentController {
 
     private static final Logger log = LoggerFactory.getLogger(DocumentController.class);
     private final DocumentService documentService;
+    private final IngestionPipeline ingestionPipeline;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(
@@ -43,15 +45,24 @@ public class DocumentController {
         description = "Documento cargado exitosamente",
         content = @Content(schema = @Schema(implementation = DocumentResponse.class))
     )
-    @ApiResponse(responseCode = "400", description = "Archivo inválido o error de validación")
+    @ApiResponse(responseCode = "400", description = "Archivo inválido, error de validación o sin organizationId ni shared=true")
+    @ApiResponse(responseCode = "429", description = "La ingesta tiene el backlog lleno; reintentar más tarde")
     @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     public ResponseEntity<DocumentResponse> uploadDocument(
             @Parameter(description = "Archivo PDF a cargar", required = true)
-            @RequestParam("file") MultipartFile file) {
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Organización propietaria; obligatoria salvo con shared=true")
+            @RequestParam(required = false) String organizationId,
+            @Parameter(description = "Documento común, visible para todas las organizaciones; excluyente con organizationId")
+            @RequestParam(defaultValue = "false") boolean shared,
+            @Parameter(description = "Sector del documento", example = "legal")
+            @RequestParam(required = false) String sector,
+            @Parameter(description = "Etiquetas del documento para filtrar búsquedas")
+            @RequestParam(required = false) List<String> tags) {
         
         log.info("Recibida solicitud de carga de documento: {}", file.getOriginalFilename());
         
-        DocumentResponse response = documentService.uploadDocument(file);
+        DocumentResponse response = documentService.uploadDocument(file, organizationId, shared, sector, tags);
         return ResponseEntity.ok(response);
     }
 
@@ -135,10 +146,12 @@ public class DocumentController {
     @PostMapping("/{id}/reprocess")
     @Operation(
         summary = "Reprocesar documento",
-        description = "Marca un documento para ser reprocesado"
+        description = "Borra los chunks del documento y lo vuelve a enviar al pipeline de ingesta"
     )
     @ApiResponse(responseCode = "200", description = "Documento marcado para reprocesamiento")
     @ApiResponse(responseCode = "404", description = "Documento no encontrado")
+    @ApiResponse(responseCode = "409", description = "El documento ya se está procesando")
+    @ApiResponse(responseCode = "429", description = "La ingesta tiene el backlog lleno; reintentar más tarde")
     public ResponseEntity<String> reprocessDocument(
             @Parameter(description = "ID del documento a reprocesar")
             @PathVariable UUID id) {
@@ -149,6 +162,16 @@ public class DocumentController {
         return ResponseEntity.ok("Documento marcado para reprocesamiento");
     }
 
+    @GetMapping("/ingestion")
+    @Operation(
+        summary = "Estado del pipeline de ingesta",
+        description = "Documentos en curso frente al límite de backlog, cargas rechazadas y, por etapa "
+                + "(extract, chunk, embed, persist), hilos, tareas activas, encoladas y completadas"
+    )
+    public ResponseEntity<IngestionPipeline.IngestionStatus> getIngestionStatus() {
+        return ResponseEntity.ok(ingestionPipeline.getStatus());
+    }
+
     @GetMapping("/stats")
     @Operation(
         summary = "Obtener estadísticas de documentos",
@@ -0,0 +1,186 @@
+package com.atuhome.ragdemo.controller;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.exception.ResourceNotFoundException;
+import com.atuhome.ragdemo.service.search.EmbeddingNormalizationJob;
+import com.atuhome.ragdemo.service.search.EmbeddingStorage;
+import com.atuhome.ragdemo.service.search.EmbeddingStorageMigrationJob;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader;
+import com.atuhome.ragdemo.service.search.InMemoryVectorStore;
+import com.atuhome.ragdemo.service.search.RecallReport;
+import com.atuhome.ragdemo.service.search.VectorCodecBenchmark;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.ivf.IvfTrainingJob;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/index")
+@RequiredArgsConstructor
+@Tag(name = "Index Management", description = "APIs para mantenimiento de los índices vectoriales")
+public class IndexController {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexController.class);
+
+    private final EmbeddingNormalizationJob normalizationJob;
+    private final InMemoryVectorStore inMemoryVectorStore;
+    private final List<VectorIndex> vectorIndexes;
+    private final IvfTrainingJob ivfTrainingJob;
+    private final Optional<VectorCodecBenchmark> codecBenchmark;
+    private final EmbeddingStorage embeddingStorage;
+    private final EmbeddingStorageMigrationJob storageMigrationJob;
+    private final EmbeddingStreamLoader embeddingLoader;
+    private final RagProperties ragProperties;
+
+    @PostMapping("/normalize")
+    @Operation(
+        summary = "Normalizar embeddings existentes",
+        description = "Lanza en segundo plano la migración que convierte los embeddings almacenados en vectores unitarios"
+    )
+    public ResponseEntity<EmbeddingNormalizationJob.JobStatus> normalizeEmbeddings() {
+        log.info("Solicitada normalización de embeddings existentes");
+        
+        normalizationJob.run();
+        return ResponseEntity.accepted().body(normalizationJob.getStatus());
+    }
+
+    @GetMapping("/normalize")
+    @Operation(
+        summary = "Estado de la normalización",
+        description = "Progreso de la migración y número de embeddings pendientes de normalizar"
+    )
+    public ResponseEntity<EmbeddingNormalizationJob.JobStatus> getNormalizationStatus() {
+        return ResponseEntity.ok(normalizationJob.getStatus());
+    }
+
+    @PostMapping("/storage/migrate")
+    @Operation(
+        summary = "Migrar el tipo de almacenamiento de los embeddings",
+        description = "Lanza en segundo plano la conversión de la columna embedding entre vector (float4) y halfvec (float16) y recrea los índices HNSW"
+    )
+    public ResponseEntity<EmbeddingStorageMigrationJob.JobStatus> migrateEmbeddingStorage(
+            @Parameter(description = "Tipo destino: vector o halfvec (por defecto app.rag.embedding.storage)")
+            @RequestParam(required = false) String target) {
+        
+        EmbeddingStorage.StorageType storageType = target == null
+                ? embeddingStorage.getConfigured()
+                : EmbeddingStorage.StorageType.fromName(target);
+        log.info("Solicitada migración de embeddings a {}", storageType.getSqlType());
+        
+        if (!storageMigrationJob.start(storageType)) {
+            log.warn("La migración de embeddings ya está en curso");
+        }
+        return ResponseEntity.accepted().body(storageMigrationJob.getStatus());
+    }
+
+    @GetMapping("/storage")
+    @Operation(
+        summary = "Estado del almacenamiento de embeddings",
+        description = "Tipo actual y configurado de la columna embedding y progreso de la última migración"
+    )
+    public ResponseEntity<EmbeddingStorageMigrationJob.JobStatus> getEmbeddingStorageStatus() {
+        return ResponseEntity.ok(storageMigrationJob.getStatus());
+    }
+
+    @PostMapping("/quantization/evaluate")
+    @Operation(
+        summary = "Evaluar recall de la cuantización",
+        description = "Compara el top-k de la búsqueda cuantizada (antes y después del rescoring) con el recorrido exacto en float"
+    )
+    public ResponseEntity<RecallReport> evaluateQuantization(
+            @Parameter(description = "Número de consultas sintéticas") @RequestParam(defaultValue = "100") int queries,
+            @Parameter(description = "Tamaño del top-k comparado") @RequestParam(defaultValue = "10") int k) {
+        
+        RecallReport report = inMemoryVectorStore.evaluateQuantizationRecall(queries, k);
+        log.info("Evaluación de cuantización: {}", report);
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/codec/benchmark")
+    @Operation(
+        summary = "Medir el códec de embeddings",
+        description = "Coste por fila de codificar y decodificar embeddings con el literal de texto de pgvector frente al formato binario. "
+            + "Solo disponible con el perfil benchmark"
+    )
+    public ResponseEntity<VectorCodecBenchmark.CodecBenchmarkReport> benchmarkCodec(
+            @Parameter(description = "Número de vectores sintéticos, como máximo " + VectorCodecBenchmark.MAX_ROWS)
+            @RequestParam(defaultValue = "10000") int rows) {
+        
+        VectorCodecBenchmark benchmark = codecBenchmark.orElseThrow(() -> new ResourceNotFoundException(
+                "El benchmark del códec requiere el perfil benchmark"));
+        VectorCodecBenchmark.CodecBenchmarkReport report = benchmark.run(rows);
+        log.info("Benchmark del códec de embeddings: {}", report);
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/load/benchmark")
+    @Operation(
+        summary = "Medir la carga de embeddings",
+        description = "Recorre todos los embeddings con el cursor que usan los índices en la JVM, sin indexarlos, y devuelve filas por segundo"
+    )
+    public ResponseEntity<EmbeddingStreamLoader.LoadReport> benchmarkEmbeddingLoad() {
+        EmbeddingStreamLoader.LoadReport report = embeddingLoader.load(ragProperties.getEmbedding().getDimension(), batch -> { });
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/rebuild")
+    @Operation(
+        summary = "Reconstruir índice vectorial",
+        description = "Reconstruye desde la base de datos el índice en la JVM configurado en app.rag.search.engine"
+    )
+    public ResponseEntity<Map<String, Object>> rebuildIndex() {
+        VectorIndex vectorIndex = vectorIndexes.stream()
+                .filter(VectorIndex::isEnabled)
+                .findFirst()
+                .orElseThrow(() -> new ConflictException("El motor configurado no usa un índice en la JVM"));
+        
+        log.info("Reconstruyendo índice vectorial '{}'", vectorIndex.name());
+        long start = System.currentTimeMillis();
+        vectorIndex.rebuild();
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("engine", vectorIndex.name());
+        result.put("size", vectorIndex.size());
+        result.put("elapsed_ms", System.currentTimeMillis() - start);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/ivf/train")
+    @Operation(
+        summary = "Entrenar índice IVF",
+        description = "Lanza en segundo plano el entrenamiento de centroides y la reasignación de las listas invertidas"
+    )
+    public ResponseEntity<IvfTrainingJob.JobStatus> trainIvfIndex() {
+        log.info("Solicitado entrenamiento del índice IVF");
+        
+        if (!ivfTrainingJob.start()) {
+            log.warn("El entrenamiento del índice IVF ya está en curso");
+        }
+        return ResponseEntity.accepted().body(ivfTrainingJob.getStatus());
+    }
+
+    @GetMapping("/ivf")
+    @Operation(
+        summary = "Estado del índice IVF",
+        description = "Fase e iteración del entrenamiento, número de listas y vectores indexados"
+    )
+    public ResponseEntity<IvfTrainingJob.JobStatus> getIvfStatus() {
+        return ResponseEntity.ok(ivfTrainingJob.getStatus());
+    }
+}
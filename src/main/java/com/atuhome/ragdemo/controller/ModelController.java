@@ -46,4 +46,18 @@ public class ModelController {
     public ResponseEntity<ModelInfoResponse> changeModel(@RequestBody ModelChangeRequest request) {
         return ResponseEntity.ok(modelManagementService.changeModel(request.getModelName()));
     }
+    
+    @GetMapping("/embedding/current")
+    @Operation(summary = "Obtener modelo de embeddings actual", 
+               description = "Obtiene el modelo de embeddings usado para documentos y consultas")
+    public ResponseEntity<ModelInfoResponse> getCurrentEmbeddingModel() {
+        return ResponseEntity.ok(modelManagementService.getCurrentEmbeddingModelInfo());
+    }
+    
+    @PostMapping("/embedding/change")
+    @Operation(summary = "Cambiar modelo de embeddings", 
+               description = "Cambia el modelo de embeddings e invalida la caché de embeddings de consulta. Con chunks embebidos requiere reindex=true, que reprocesa todos los documentos")
+    public ResponseEntity<ModelInfoResponse> changeEmbeddingModel(@RequestBody ModelChangeRequest request) {
+        return ResponseEntity.ok(modelManagementService.changeEmbeddingModel(request.getModelName(), request.isReindex()));
+    }
 }
\ No newline at end of file
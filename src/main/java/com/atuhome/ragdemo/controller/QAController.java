@@ -1,8 +1,12 @@
 package com.atuhome.ragdemo.controller;
 
+import com.atuhome.ragdemo.model.dto.request.BatchQuestionRequest;
 import com.atuhome.ragdemo.model.dto.request.QuestionRequest;
 import com.atuhome.ragdemo.model.dto.response.AnswerResponse;
+import com.atuhome.ragdemo.model.dto.response.BatchAnswerResponse;
+import com.atuhome.ragdemo.service.rag.BatchQuestionService;
 import com.atuhome.ragdemo.service.rag.RagService;
+import com.atuhome.ragdemo.service.search.SearchFilter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,7 +21,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/qa")
@@ -28,6 +34,7 @@ public class QAController {
     private static final Logger log = LoggerFactory.getLogger(QAController.class);
 
     private final RagService ragService;
+    private final BatchQuestionService batchQuestionService;
 
     @PostMapping("/ask")
     @Operation(
@@ -79,13 +86,74 @@ public class QAController {
             @RequestParam(defaultValue = "0.7") double similarityThreshold,
             
             @Parameter(description = "Número máximo de resultados", example = "5")
-            @RequestParam(defaultValue = "5") int maxResults) {
+            @RequestParam(defaultValue = "5") int maxResults,
+            
+            @Parameter(description = "Candidatos evaluados por el índice HNSW (hnsw.ef_search)", example = "100")
+            @RequestParam(required = false) Integer efSearch,
+            
+            @Parameter(description = "Limitar la búsqueda a estos documentos")
+            @RequestParam(required = false) List<UUID> documentIds,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos de esta organización y a los comunes")
+            @RequestParam(required = false) String organizationId,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos de este sector", example = "legal")
+            @RequestParam(required = false) String sector,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos con alguna de estas etiquetas")
+            @RequestParam(required = false) List<String> tags) {
         
-        log.info("Recibida pregunta avanzada: {} (threshold: {}, maxResults: {})", 
-                request.getQuestion(), similarityThreshold, maxResults);
+        log.info("Recibida pregunta avanzada: {} (threshold: {}, maxResults: {}, efSearch: {}, documentos: {}, " +
+                "organización: {}, sector: {}, etiquetas: {})", request.getQuestion(), similarityThreshold, maxResults,
+                efSearch, documentIds, organizationId, sector, tags);
         
         AnswerResponse response = ragService.processQuestionWithCustomParams(
-                request.getQuestion(), similarityThreshold, maxResults);
+                request.getQuestion(), similarityThreshold, maxResults, efSearch,
+                searchFilter(documentIds, organizationId, sector, tags));
+        
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/ask/batch")
+    @Operation(
+        summary = "Procesar lote de preguntas",
+        description = "Responde muchas preguntas en una sola llamada: los embeddings y la recuperación se calculan " +
+                      "para todo el lote y la generación se ejecuta con concurrencia acotada"
+    )
+    @ApiResponse(responseCode = "200", description = "Lote procesado; las preguntas que fallen llevan una respuesta de error")
+    @ApiResponse(responseCode = "400", description = "Lote vacío, demasiado grande o con preguntas inválidas")
+    public ResponseEntity<BatchAnswerResponse> askQuestionBatch(
+            @Parameter(description = "Preguntas a procesar", required = true)
+            @Valid @RequestBody BatchQuestionRequest request,
+            
+            @Parameter(description = "Umbral de similitud mínimo", example = "0.7")
+            @RequestParam(defaultValue = "0.7") double similarityThreshold,
+            
+            @Parameter(description = "Número máximo de resultados por pregunta", example = "5")
+            @RequestParam(defaultValue = "5") int maxResults,
+            
+            @Parameter(description = "Candidatos evaluados por el índice HNSW (hnsw.ef_search)", example = "100")
+            @RequestParam(required = false) Integer efSearch,
+            
+            @Parameter(description = "Limitar la búsqueda a estos documentos")
+            @RequestParam(required = false) List<UUID> documentIds,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos de esta organización y a los comunes")
+            @RequestParam(required = false) String organizationId,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos de este sector", example = "legal")
+            @RequestParam(required = false) String sector,
+            
+            @Parameter(description = "Limitar la búsqueda a los documentos con alguna de estas etiquetas")
+            @RequestParam(required = false) List<String> tags) {
+        
+        log.info("Recibido lote de {} preguntas (threshold: {}, maxResults: {}, efSearch: {}, documentos: {}, " +
+                "organización: {}, sector: {}, etiquetas: {})", request.getQuestions().size(), similarityThreshold,
+                maxResults, efSearch, documentIds, organizationId, sector, tags);
+        
+        BatchAnswerResponse response = batchQuestionService.processQuestions(
+                request.getQuestions(), similarityThreshold, maxResults, efSearch,
+                searchFilter(documentIds, organizationId, sector, tags));
         
         return ResponseEntity.ok(response);
     }
@@ -139,6 +207,14 @@ public class QAController {
         return ResponseEntity.ok(stats);
     }
 
+    private static SearchFilter searchFilter(List<UUID> documentIds, String organizationId, String sector,
+                                             List<String> tags) {
+        return SearchFilter.forDocuments(documentIds)
+                .withOrganization(organizationId)
+                .withSector(sector)
+                .withTags(tags);
+    }
+
     public static class SystemStatus {
         private final boolean ready;
         private final Long indexedChunks;
@@ -201,4 +277,4 @@ public class QAController {
             }
         }
     }
-}
\ No newline at end of file
+}
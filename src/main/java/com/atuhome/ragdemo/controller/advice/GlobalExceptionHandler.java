@@ -1,6 +1,9 @@
 package com.atuhome.ragdemo.controller.advice;
 
+import com.atuhome.ragdemo.exception.BatchQueueFullException;
+import com.atuhome.ragdemo.exception.ConflictException;
 import com.atuhome.ragdemo.exception.DocumentProcessingException;
+import com.atuhome.ragdemo.exception.IngestionBacklogFullException;
 import com.atuhome.ragdemo.exception.RagException;
 import com.atuhome.ragdemo.exception.ResourceNotFoundException;
 import org.slf4j.Logger;
@@ -52,6 +55,35 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    @ExceptionHandler(IngestionBacklogFullException.class)
+    public ResponseEntity<ErrorResponse> handleIngestionBacklogFull(IngestionBacklogFullException e) {
+        log.warn("Carga rechazada por backlog de ingesta: {}", e.getMessage());
+        
+        ErrorResponse error = ErrorResponse.builder()
+                .error("INGESTION_BACKLOG_FULL")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .details("Documentos en curso: " + e.getBacklog())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
+    }
+
+    @ExceptionHandler(BatchQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleBatchQueueFull(BatchQueueFullException e) {
+        log.warn("Lote de preguntas rechazado: {}", e.getMessage());
+        
+        ErrorResponse error = ErrorResponse.builder()
+                .error("BATCH_QUEUE_FULL")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
+    }
+
     @ExceptionHandler(RagException.class)
     public ResponseEntity<ErrorResponse> handleRagException(RagException e) {
         log.error("Error en sistema RAG: {}", e.getMessage(), e);
@@ -120,6 +152,20 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(ConflictException e) {
+        log.warn("Operación no disponible en el estado actual: {}", e.getMessage());
+        
+        ErrorResponse error = ErrorResponse.builder()
+                .error("CONFLICT")
+                .message(e.getMessage())
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception e) {
         log.error("Error interno no manejado: {}", e.getMessage(), e);
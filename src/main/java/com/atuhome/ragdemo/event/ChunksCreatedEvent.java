@@ -0,0 +1,20 @@
+package com.atuhome.ragdemo.event;
+
+import java.util.UUID;
+
+/**
+ * Evento publicado cuando se guardan los chunks de un documento, antes de tener embeddings.
+ */
+public class ChunksCreatedEvent {
+
+    private final UUID documentId;
+    private final int chunkCount;
+
+    public ChunksCreatedEvent(UUID documentId, int chunkCount) {
+        this.documentId = documentId;
+        this.chunkCount = chunkCount;
+    }
+
+    public UUID getDocumentId() { return documentId; }
+    public int getChunkCount() { return chunkCount; }
+}
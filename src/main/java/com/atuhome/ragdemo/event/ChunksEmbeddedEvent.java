@@ -0,0 +1,20 @@
+package com.atuhome.ragdemo.event;
+
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+
+import java.util.List;
+
+/**
+ * Evento publicado cuando un conjunto de chunks recibe sus embeddings.
+ * Los índices en memoria lo consumen tras el commit para mantenerse al día sin recargar la tabla.
+ */
+public class ChunksEmbeddedEvent {
+
+    private final List<DocumentChunk> chunks;
+
+    public ChunksEmbeddedEvent(List<DocumentChunk> chunks) {
+        this.chunks = List.copyOf(chunks);
+    }
+
+    public List<DocumentChunk> getChunks() { return chunks; }
+}
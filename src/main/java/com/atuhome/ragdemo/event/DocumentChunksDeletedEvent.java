@@ -0,0 +1,17 @@
+package com.atuhome.ragdemo.event;
+
+import java.util.UUID;
+
+/**
+ * Evento publicado cuando se eliminan los chunks de un documento (borrado o reprocesamiento).
+ */
+public class DocumentChunksDeletedEvent {
+
+    private final UUID documentId;
+
+    public DocumentChunksDeletedEvent(UUID documentId) {
+        this.documentId = documentId;
+    }
+
+    public UUID getDocumentId() { return documentId; }
+}
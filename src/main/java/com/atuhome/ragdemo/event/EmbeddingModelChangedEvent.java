@@ -0,0 +1,19 @@
+package com.atuhome.ragdemo.event;
+
+/**
+ * Evento publicado cuando cambia el modelo de embeddings activo.
+ * Los embeddings calculados con el modelo anterior dejan de ser comparables con los nuevos.
+ */
+public class EmbeddingModelChangedEvent {
+
+    private final String previousModel;
+    private final String currentModel;
+
+    public EmbeddingModelChangedEvent(String previousModel, String currentModel) {
+        this.previousModel = previousModel;
+        this.currentModel = currentModel;
+    }
+
+    public String getPreviousModel() { return previousModel; }
+    public String getCurrentModel() { return currentModel; }
+}
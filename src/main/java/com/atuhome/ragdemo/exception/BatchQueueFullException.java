@@ -0,0 +1,11 @@
+package com.atuhome.ragdemo.exception;
+
+/**
+ * La cola de generaciones de los lotes de preguntas no admite otro lote. Se responde con 429.
+ */
+public class BatchQueueFullException extends RuntimeException {
+
+    public BatchQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.atuhome.ragdemo.exception;
+
+/**
+ * La operación choca con el estado actual del recurso (un trabajo ya en curso, un tipo ya aplicado,
+ * una funcionalidad no activa en la configuración). Se responde con 409.
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
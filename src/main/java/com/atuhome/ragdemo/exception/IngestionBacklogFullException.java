@@ -0,0 +1,18 @@
+package com.atuhome.ragdemo.exception;
+
+/**
+ * La ingesta tiene tantos documentos en curso como admite {@code app.rag.ingestion.max-backlog}.
+ */
+public class IngestionBacklogFullException extends RuntimeException {
+
+    private final int backlog;
+
+    public IngestionBacklogFullException(String message, int backlog) {
+        super(message);
+        this.backlog = backlog;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+}
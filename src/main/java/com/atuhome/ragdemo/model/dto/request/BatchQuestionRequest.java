@@ -0,0 +1,22 @@
+package com.atuhome.ragdemo.model.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchQuestionRequest {
+    
+    @NotEmpty(message = "El lote debe contener al menos una pregunta")
+    private List<@NotBlank(message = "La pregunta no puede estar vacía")
+                 @Size(min = 5, max = 1000, message = "La pregunta debe tener entre 5 y 1000 caracteres") String> questions;
+}
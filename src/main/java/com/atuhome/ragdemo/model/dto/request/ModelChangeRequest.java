@@ -11,4 +11,7 @@ public class ModelChangeRequest {
     @NotBlank(message = "El nombre del modelo es requerido")
     @Schema(description = "Nombre del modelo a utilizar", example = "llama3.2:latest")
     private String modelName;
+    
+    @Schema(description = "Solo para el modelo de embeddings: elimina los chunks y reprocesa todos los documentos con el modelo nuevo. Obligatorio si hay chunks embebidos", example = "false")
+    private boolean reindex;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.atuhome.ragdemo.model.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchAnswerResponse {
+    
+    private List<AnswerResponse> answers;
+    private Integer totalQuestions;
+    private Long retrievalTimeMs;
+    private Long totalTimeMs;
+}
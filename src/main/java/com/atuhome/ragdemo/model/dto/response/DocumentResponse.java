@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,6 +26,9 @@ public class DocumentResponse {
     private LocalDateTime processingCompletedAt;
     private String errorMessage;
     private Map<String, Object> metadata;
+    private String organizationId;
+    private String sector;
+    private List<String> tags;
     private Integer chunksCount;
     private String message;
 }
\ No newline at end of file
@@ -52,6 +52,17 @@ public class Document {
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> metadata;
     
+    // Etiquetas de la ingesta, heredadas por los chunks y usadas en los filtros de búsqueda
+    @Column(length = 100)
+    private String organizationId;
+    
+    @Column(length = 50)
+    private String sector;
+    
+    @Type(JsonBinaryType.class)
+    @Column(columnDefinition = "jsonb")
+    private List<String> tags;
+    
     @OneToMany(mappedBy = "document", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<DocumentChunk> chunks;
     
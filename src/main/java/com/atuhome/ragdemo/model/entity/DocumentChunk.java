@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnTransformer;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.Type;
@@ -40,9 +41,16 @@ public class DocumentChunk {
     private String content;
     
     @Type(PostgreSQLVectorType.class)
+    // halfvec(1024) tras migrar con EmbeddingStorageMigrationJob (app.rag.embedding.storage=halfvec)
+    @ColumnTransformer(read = PostgreSQLVectorType.READ_EXPRESSION, write = PostgreSQLVectorType.WRITE_EXPRESSION)
     @Column(columnDefinition = "vector(1024)")
     private float[] embedding;
     
+    // true cuando el embedding se guardó con norma L2 = 1
+    @Builder.Default
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean normalized = false;
+    
     private Integer charStart;
     private Integer charEnd;
     private Integer pageNumber;
@@ -6,31 +6,420 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, UUID> {
     
+    /**
+     * Filtro por metadatos del documento {@code d} que comparten las búsquedas filtradas. Cada
+     * parámetro nulo desactiva su condición; los documentos sin organización son comunes a todas.
+     * {@code :tags} es un literal de array de texto (ver {@link #toTextArrayLiteral}) y basta con
+     * que el documento tenga una de las etiquetas.
+     */
+    String DOCUMENT_FILTER = """
+              AND (CAST(:organizationId AS varchar) IS NULL
+                   OR d.organization_id = CAST(:organizationId AS varchar)
+                   OR d.organization_id IS NULL)
+              AND (CAST(:sector AS varchar) IS NULL OR d.sector = CAST(:sector AS varchar))
+              AND (CAST(:tags AS text[]) IS NULL
+                   OR EXISTS (SELECT 1 FROM jsonb_array_elements_text(d.tags) AS tag(value)
+                              WHERE tag.value = ANY (CAST(:tags AS text[]))))
+        """;
+    
+    /**
+     * Literal de array de PostgreSQL ({@code {"a","b"}}) para {@code CAST(:tags AS text[])}, con
+     * comillas y barras escapadas; {@code null} sin etiquetas.
+     */
+    static String toTextArrayLiteral(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        StringBuilder literal = new StringBuilder("{");
+        // Orden estable: el mismo filtro produce siempre el mismo literal
+        for (String value : values.stream().sorted().toList()) {
+            if (literal.length() > 1) {
+                literal.append(',');
+            }
+            literal.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return literal.append('}').toString();
+    }
+    
     List<DocumentChunk> findByDocumentIdOrderByChunkIndex(UUID documentId);
     
     long countByDocumentId(UUID documentId);
     
+    /**
+     * Filas de resultado para chunks ya seleccionados por un motor en la JVM o por la fusión
+     * híbrida: solo las columnas que devuelve la API, con el nombre del documento y la similitud
+     * coseno real con la consulta calculada en la base, sin hidratar embeddings ni metadata.
+     * Mismas columnas que {@link #findNearestChunks}; el orden lo decide el llamante.
+     */
+    @Query(value = """
+        SELECT c.id, c.document_id, c.chunk_index, c.content,
+               c.char_start, c.char_end, c.page_number,
+               1 - (CAST(c.embedding AS vector) <=> CAST(:queryEmbedding AS vector)) AS similarity, d.filename
+        FROM document_chunks c
+        JOIN documents d ON d.id = c.document_id
+        WHERE c.id IN (:ids)
+          AND c.embedding IS NOT NULL
+        """, nativeQuery = true)
+    List<Object[]> findSearchRowsByIdIn(@Param("ids") Collection<UUID> ids,
+                                        @Param("queryEmbedding") String queryEmbedding);
+    
+    /**
+     * Embeddings de un conjunto acotado de chunks en el formato binario de pgvector, sin hidratar entidades.
+     * El CAST deja la consulta válida con la columna en {@code vector} o en {@code halfvec}.
+     *
+     * Columnas: id, embedding (bytea, ver {@link com.atuhome.ragdemo.config.PgVectorBinaryCodec})
+     */
+    @Query(value = """
+        SELECT c.id, vector_send(CAST(c.embedding AS vector))
+        FROM document_chunks c
+        WHERE c.id IN (:ids)
+          AND c.embedding IS NOT NULL
+        """, nativeQuery = true)
+    List<Object[]> findEmbeddingsByIdIn(@Param("ids") Collection<UUID> ids);
+    
+    /**
+     * Texto de los chunks indexables sin cargar embeddings, para construir el índice léxico.
+     *
+     * Columnas: id, document_id, content
+     */
+    @Query("SELECT c.id, c.document.id, c.content FROM DocumentChunk c WHERE c.embedding IS NOT NULL")
+    List<Object[]> findAllChunkTextsWithEmbeddings();
+    
+    /**
+     * Búsqueda top-k por distancia coseno resuelta en PostgreSQL. El ORDER BY sobre
+     * {@code embedding <=> query} con LIMIT permite que el planificador use el índice
+     * HNSW {@code idx_chunks_embedding}; el umbral se aplica sobre los k vecinos ya
+     * seleccionados para no forzar un recorrido secuencial de la tabla.
+     *
+     * Columnas: id, document_id, chunk_index, content, char_start, char_end, page_number, similarity, filename.
+     * El nombre del documento viaja en la misma fila para no resolver cada resultado con otra consulta.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               1 - nearest.distance AS similarity, d.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number,
+                   c.embedding <=> CAST(:queryEmbedding AS vector) AS distance
+            FROM document_chunks c
+            WHERE c.embedding IS NOT NULL
+            ORDER BY c.embedding <=> CAST(:queryEmbedding AS vector)
+            LIMIT :maxResults
+        ) nearest
+        JOIN documents d ON d.id = nearest.document_id
+        WHERE nearest.distance <= :maxDistance
+        ORDER BY nearest.distance
+        """, nativeQuery = true)
+    List<Object[]> findNearestChunks(@Param("queryEmbedding") String queryEmbedding,
+                                     @Param("maxDistance") double maxDistance,
+                                     @Param("maxResults") int maxResults);
+    
+    /**
+     * Variante por producto interno ({@code <#>} devuelve el producto negado) para embeddings
+     * unitarios; usa el índice {@code idx_chunks_embedding_ip}. Mismas columnas que
+     * {@link #findNearestChunks}.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               -nearest.negative_inner_product AS similarity, d.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number,
+                   c.embedding <#> CAST(:queryEmbedding AS vector) AS negative_inner_product
+            FROM document_chunks c
+            WHERE c.embedding IS NOT NULL
+            ORDER BY c.embedding <#> CAST(:queryEmbedding AS vector)
+            LIMIT :maxResults
+        ) nearest
+        JOIN documents d ON d.id = nearest.document_id
+        WHERE -nearest.negative_inner_product >= :threshold
+        ORDER BY nearest.negative_inner_product
+        """, nativeQuery = true)
+    List<Object[]> findNearestChunksByInnerProduct(@Param("queryEmbedding") String queryEmbedding,
+                                                   @Param("threshold") double threshold,
+                                                   @Param("maxResults") int maxResults);
+    
+    /**
+     * {@link #findNearestChunks} para la columna almacenada como {@code halfvec}: la consulta se
+     * convierte al mismo tipo para que el planificador pueda usar el índice {@code halfvec_cosine_ops}.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               1 - nearest.distance AS similarity, d.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number,
+                   c.embedding <=> CAST(:queryEmbedding AS halfvec) AS distance
+            FROM document_chunks c
+            WHERE c.embedding IS NOT NULL
+            ORDER BY c.embedding <=> CAST(:queryEmbedding AS halfvec)
+            LIMIT :maxResults
+        ) nearest
+        JOIN documents d ON d.id = nearest.document_id
+        WHERE nearest.distance <= :maxDistance
+        ORDER BY nearest.distance
+        """, nativeQuery = true)
+    List<Object[]> findNearestHalfChunks(@Param("queryEmbedding") String queryEmbedding,
+                                         @Param("maxDistance") double maxDistance,
+                                         @Param("maxResults") int maxResults);
+    
+    /**
+     * {@link #findNearestChunksByInnerProduct} para la columna almacenada como {@code halfvec}.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               -nearest.negative_inner_product AS similarity, d.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number,
+                   c.embedding <#> CAST(:queryEmbedding AS halfvec) AS negative_inner_product
+            FROM document_chunks c
+            WHERE c.embedding IS NOT NULL
+            ORDER BY c.embedding <#> CAST(:queryEmbedding AS halfvec)
+            LIMIT :maxResults
+        ) nearest
+        JOIN documents d ON d.id = nearest.document_id
+        WHERE -nearest.negative_inner_product >= :threshold
+        ORDER BY nearest.negative_inner_product
+        """, nativeQuery = true)
+    List<Object[]> findNearestHalfChunksByInnerProduct(@Param("queryEmbedding") String queryEmbedding,
+                                                       @Param("threshold") double threshold,
+                                                       @Param("maxResults") int maxResults);
+    
+    /**
+     * Top-k exacto limitado a una lista explícita de documentos (como mucho
+     * {@link com.atuhome.ragdemo.service.search.SearchFilter#MAX_DOCUMENT_IDS}), con los filtros por
+     * metadatos de {@link #DOCUMENT_FILTER}. El CTE materializado obliga a resolver primero la lista con
+     * {@code idx_chunks_document_id} y ordenar solo esos chunks; sin él, el planificador podría recorrer
+     * el índice HNSW global y descartar después casi todos los vecinos. Mismas columnas que {@link #findNearestChunks}.
+     */
+    @Query(value = """
+        WITH scoped AS MATERIALIZED (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number, d.filename,
+                   CAST(c.embedding AS vector) <=> CAST(:queryEmbedding AS vector) AS distance
+            FROM document_chunks c
+            JOIN documents d ON d.id = c.document_id
+            WHERE c.document_id IN (:documentIds)
+              AND c.embedding IS NOT NULL
+        """ + DOCUMENT_FILTER + """
+        )
+        SELECT scoped.id, scoped.document_id, scoped.chunk_index, scoped.content,
+               scoped.char_start, scoped.char_end, scoped.page_number,
+               1 - scoped.distance AS similarity, scoped.filename
+        FROM scoped
+        WHERE scoped.distance <= :maxDistance
+        ORDER BY scoped.distance
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findNearestChunksInDocuments(@Param("queryEmbedding") String queryEmbedding,
+                                                @Param("documentIds") Collection<UUID> documentIds,
+                                                @Param("organizationId") String organizationId,
+                                                @Param("sector") String sector,
+                                                @Param("tags") String tags,
+                                                @Param("maxDistance") double maxDistance,
+                                                @Param("maxResults") int maxResults);
+    
+    /**
+     * Top-k filtrado por organización, sector o etiquetas sobre el índice HNSW: el JOIN con
+     * {@code documents} se evalúa sobre los vecinos que va entregando el índice, sin listar los
+     * documentos de la organización. Con {@code hnsw.iterative_scan} (pgvector >= 0.8) el índice sigue
+     * entregando vecinos hasta reunir {@code :candidates} filas que cumplan el filtro (o agotar
+     * {@code hnsw.max_scan_tuples}); sin él, los {@code :candidates} vecinos se filtran después y un
+     * filtro muy selectivo puede devolver menos de k. El orden final se rehace fuera del índice porque
+     * el recorrido iterativo en modo {@code relaxed_order} puede entregarlos desordenados.
+     * Mismas columnas que {@link #findNearestChunks}.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               1 - nearest.distance AS similarity, nearest.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number, d.filename,
+                   c.embedding <=> CAST(:queryEmbedding AS vector) AS distance
+            FROM document_chunks c
+            JOIN documents d ON d.id = c.document_id
+            WHERE c.embedding IS NOT NULL
+        """ + DOCUMENT_FILTER + """
+            ORDER BY c.embedding <=> CAST(:queryEmbedding AS vector)
+            LIMIT :candidates
+        ) nearest
+        WHERE nearest.distance <= :maxDistance
+        ORDER BY nearest.distance
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findNearestChunksMatching(@Param("queryEmbedding") String queryEmbedding,
+                                             @Param("organizationId") String organizationId,
+                                             @Param("sector") String sector,
+                                             @Param("tags") String tags,
+                                             @Param("maxDistance") double maxDistance,
+                                             @Param("candidates") int candidates,
+                                             @Param("maxResults") int maxResults);
+    
+    /**
+     * {@link #findNearestChunksMatching} para la columna almacenada como {@code halfvec}.
+     */
+    @Query(value = """
+        SELECT nearest.id, nearest.document_id, nearest.chunk_index, nearest.content,
+               nearest.char_start, nearest.char_end, nearest.page_number,
+               1 - nearest.distance AS similarity, nearest.filename
+        FROM (
+            SELECT c.id, c.document_id, c.chunk_index, c.content,
+                   c.char_start, c.char_end, c.page_number, d.filename,
+                   c.embedding <=> CAST(:queryEmbedding AS halfvec) AS distance
+            FROM document_chunks c
+            JOIN documents d ON d.id = c.document_id
+            WHERE c.embedding IS NOT NULL
+        """ + DOCUMENT_FILTER + """
+            ORDER BY c.embedding <=> CAST(:queryEmbedding AS halfvec)
+            LIMIT :candidates
+        ) nearest
+        WHERE nearest.distance <= :maxDistance
+        ORDER BY nearest.distance
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findNearestHalfChunksMatching(@Param("queryEmbedding") String queryEmbedding,
+                                                 @Param("organizationId") String organizationId,
+                                                 @Param("sector") String sector,
+                                                 @Param("tags") String tags,
+                                                 @Param("maxDistance") double maxDistance,
+                                                 @Param("candidates") int candidates,
+                                                 @Param("maxResults") int maxResults);
+    
+    /**
+     * Búsqueda léxica sobre la columna generada {@code content_tsv} (configuración {@code spanish})
+     * con su índice GIN. Los términos de la consulta se combinan con OR para que una pregunta en
+     * lenguaje natural no exija que el chunk contenga todas sus palabras; {@code ts_rank_cd}
+     * premia a los chunks que contienen más términos y más próximos entre sí.
+     *
+     * Columnas: id, rank
+     */
+    @Query(value = """
+        SELECT c.id, ts_rank_cd(c.content_tsv, q.query) AS rank
+        FROM document_chunks c,
+             to_tsquery('spanish', replace(plainto_tsquery('spanish', :query)::text, '&', '|')) AS q(query)
+        WHERE c.content_tsv @@ q.query
+          AND c.embedding IS NOT NULL
+        ORDER BY rank DESC
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findTopChunksByFullText(@Param("query") String query,
+                                           @Param("maxResults") int maxResults);
+    
+    /**
+     * Variante de {@link #findTopChunksByFullText} limitada a una lista explícita de documentos,
+     * con los filtros por metadatos de {@link #DOCUMENT_FILTER}.
+     */
+    @Query(value = """
+        SELECT c.id, ts_rank_cd(c.content_tsv, q.query) AS rank
+        FROM document_chunks c
+        JOIN documents d ON d.id = c.document_id
+        CROSS JOIN to_tsquery('spanish', replace(plainto_tsquery('spanish', :query)::text, '&', '|')) AS q(query)
+        WHERE c.content_tsv @@ q.query
+          AND c.embedding IS NOT NULL
+          AND c.document_id IN (:documentIds)
+        """ + DOCUMENT_FILTER + """
+        ORDER BY rank DESC
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findTopChunksByFullTextInDocuments(@Param("query") String query,
+                                                      @Param("documentIds") Collection<UUID> documentIds,
+                                                      @Param("organizationId") String organizationId,
+                                                      @Param("sector") String sector,
+                                                      @Param("tags") String tags,
+                                                      @Param("maxResults") int maxResults);
+    
+    /**
+     * Variante de {@link #findTopChunksByFullText} filtrada por organización, sector o etiquetas:
+     * el GIN selecciona los chunks que contienen los términos y el JOIN descarta los de otros documentos.
+     */
     @Query(value = """
-        SELECT c FROM DocumentChunk c 
-        WHERE c.embedding IS NOT NULL
-        ORDER BY c.id
-        """)
-    List<DocumentChunk> findAllWithEmbeddings();
+        SELECT c.id, ts_rank_cd(c.content_tsv, q.query) AS rank
+        FROM document_chunks c
+        JOIN documents d ON d.id = c.document_id
+        CROSS JOIN to_tsquery('spanish', replace(plainto_tsquery('spanish', :query)::text, '&', '|')) AS q(query)
+        WHERE c.content_tsv @@ q.query
+          AND c.embedding IS NOT NULL
+        """ + DOCUMENT_FILTER + """
+        ORDER BY rank DESC
+        LIMIT :maxResults
+        """, nativeQuery = true)
+    List<Object[]> findTopChunksByFullTextMatching(@Param("query") String query,
+                                                   @Param("organizationId") String organizationId,
+                                                   @Param("sector") String sector,
+                                                   @Param("tags") String tags,
+                                                   @Param("maxResults") int maxResults);
+    
+    /**
+     * Ajusta {@code hnsw.ef_search} solo para la transacción actual (equivalente a SET LOCAL).
+     */
+    @Query(value = "SELECT set_config('hnsw.ef_search', :efSearch, true)", nativeQuery = true)
+    String setHnswEfSearch(@Param("efSearch") String efSearch);
+    
+    /**
+     * Activa {@code hnsw.iterative_scan} (pgvector >= 0.8) solo para la transacción actual.
+     */
+    @Query(value = "SELECT set_config('hnsw.iterative_scan', :mode, true)", nativeQuery = true)
+    String setHnswIterativeScan(@Param("mode") String mode);
+    
+    /**
+     * Versión instalada de la extensión pgvector, o {@code null} si no lo está.
+     */
+    @Query(value = "SELECT extversion FROM pg_extension WHERE extname = 'vector'", nativeQuery = true)
+    String findVectorExtensionVersion();
     
+    /**
+     * Normaliza en PostgreSQL (pgvector >= 0.7) un lote de embeddings almacenados sin normalizar.
+     *
+     * @return filas actualizadas; 0 cuando ya no quedan pendientes
+     */
+    @Transactional
     @Modifying
-    @Query(value = "UPDATE document_chunks SET embedding = :embedding::vector WHERE id = :id", nativeQuery = true)
-    void updateEmbedding(@Param("id") UUID id, @Param("embedding") String embedding);
+    @Query(value = """
+        UPDATE document_chunks
+        SET embedding = l2_normalize(embedding), normalized = true
+        WHERE id IN (
+            SELECT id FROM document_chunks
+            WHERE normalized = false AND embedding IS NOT NULL
+            LIMIT :batchSize
+        )
+        """, nativeQuery = true)
+    int normalizeEmbeddingsBatch(@Param("batchSize") int batchSize);
+    
+    @Query("SELECT COUNT(c) FROM DocumentChunk c WHERE c.normalized = false AND c.embedding IS NOT NULL")
+    long countUnnormalizedEmbeddings();
     
     @Query("SELECT COUNT(c) FROM DocumentChunk c WHERE c.embedding IS NULL")
     long countChunksWithoutEmbedding();
     
+    /**
+     * Chunks totales y con embedding por documento, para reconciliar los contadores de
+     * {@link com.atuhome.ragdemo.service.search.CorpusStatistics}. {@code COUNT(embedding)} solo
+     * comprueba nulos, sin leer los vectores.
+     *
+     * Columnas: document_id, chunks, embedded
+     */
+    @Query(value = """
+        SELECT c.document_id, COUNT(*), COUNT(c.embedding)
+        FROM document_chunks c
+        GROUP BY c.document_id
+        """, nativeQuery = true)
+    List<Object[]> countChunksByDocument();
+    
     @Query("SELECT c FROM DocumentChunk c WHERE c.embedding IS NULL ORDER BY c.createdAt")
     List<DocumentChunk> findChunksWithoutEmbedding();
     
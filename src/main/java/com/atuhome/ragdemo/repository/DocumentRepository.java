@@ -22,7 +22,10 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
     
     Optional<Document> findByFilename(String filename);
     
-    Optional<Document> findByContentHash(String contentHash);
+    /**
+     * Duplicado dentro de una organización; con {@code organizationId} nulo, entre los documentos comunes.
+     */
+    Optional<Document> findByOrganizationIdAndContentHash(String organizationId, String contentHash);
     
     @Query("SELECT d FROM Document d WHERE d.status = :status AND d.processingStartedAt IS NULL")
     List<Document> findPendingDocuments(@Param("status") DocumentStatus status);
@@ -1,10 +1,20 @@
 package com.atuhome.ragdemo.service.ai;
 
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.EmbeddingModelChangedEvent;
+import com.atuhome.ragdemo.exception.ConflictException;
 import com.atuhome.ragdemo.model.dto.response.ModelInfoResponse;
+import com.atuhome.ragdemo.service.document.DocumentService;
+import com.atuhome.ragdemo.service.document.IngestionPipeline;
+import com.atuhome.ragdemo.service.search.CorpusStatistics;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -23,6 +33,26 @@ public class ModelManagementService {
     @Lazy
     private DynamicChatService dynamicChatService;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private EmbeddingModel embeddingModel;
+    
+    @Autowired
+    private RagProperties ragProperties;
+    
+    @Autowired
+    private CorpusStatistics corpusStatistics;
+    
+    @Autowired
+    @Lazy
+    private DocumentService documentService;
+    
+    @Autowired
+    @Lazy
+    private IngestionPipeline ingestionPipeline;
+    
     @Value("${spring.ai.ollama.base-url}")
     private String ollamaBaseUrl;
     
@@ -30,7 +60,7 @@ public class ModelManagementService {
     private String defaultChatModel;
     
     @Value("${spring.ai.ollama.embedding.options.model}")
-    private String currentEmbeddingModel;
+    private volatile String currentEmbeddingModel;
     
     private String currentChatModel;
     
@@ -114,6 +144,73 @@ public class ModelManagementService {
         }
     }
     
+    public ModelInfoResponse getCurrentEmbeddingModelInfo() {
+        return ModelInfoResponse.builder()
+                .name(currentEmbeddingModel)
+                .active(true)
+                .build();
+    }
+    
+    /**
+     * Cambia el modelo de embeddings para esta sesión. Los embeddings ya almacenados pertenecen al
+     * espacio del modelo anterior aunque tengan la misma dimensión, así que con chunks embebidos el
+     * cambio solo se acepta pidiendo {@code reindex}, que elimina los chunks y reprocesa todos los
+     * documentos con el modelo nuevo. Se rechaza un modelo cuya dimensión no coincide con la de la
+     * columna y los índices de embeddings.
+     *
+     * @throws ConflictException si hay chunks embebidos sin pedir {@code reindex} o documentos en ingesta
+     */
+    public ModelInfoResponse changeEmbeddingModel(String modelName, boolean reindex) {
+        ModelInfoResponse targetModel = getAvailableModels().stream()
+                .filter(m -> m.getName().equals(modelName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Modelo no encontrado: " + modelName));
+        
+        String previousModel = currentEmbeddingModel;
+        if (modelName.equals(previousModel)) {
+            targetModel.setActive(true);
+            return targetModel;
+        }
+        
+        // Sin contadores cargados no se sabe si hay chunks: se trata como si los hubiera
+        if (!reindex && (!corpusStatistics.isInitialized() || corpusStatistics.getEmbeddedChunks() > 0)) {
+            throw new ConflictException("Hay chunks embebidos con el modelo " + previousModel
+                    + "; cambie el modelo con reindex=true para reprocesar todos los documentos");
+        }
+        // Un documento en ingesta puede haber calculado ya sus embeddings con el modelo anterior
+        int inFlight = ingestionPipeline.getStatus().getBacklog();
+        if (inFlight > 0) {
+            throw new ConflictException("Hay " + inFlight + " documentos en ingesta; reintente cuando terminen");
+        }
+        
+        int expected = ragProperties.getEmbedding().getDimension();
+        int actual = probeDimension(modelName);
+        if (actual != expected) {
+            throw new IllegalArgumentException("El modelo " + modelName + " genera embeddings de dimensión "
+                    + actual + " y la columna de embeddings es de dimensión " + expected);
+        }
+        
+        this.currentEmbeddingModel = modelName;
+        targetModel.setActive(true);
+        eventPublisher.publishEvent(new EmbeddingModelChangedEvent(previousModel, modelName));
+        
+        if (reindex) {
+            int reindexed = documentService.reindexAll();
+            log.info("Modelo de embeddings cambiado de {} a {}: {} documentos en reprocesamiento",
+                    previousModel, modelName, reindexed);
+        } else {
+            log.info("Modelo de embeddings cambiado de {} a {} sin chunks embebidos", previousModel, modelName);
+        }
+        return targetModel;
+    }
+    
+    private int probeDimension(String modelName) {
+        OllamaOptions options = OllamaOptions.builder().model(modelName).build();
+        float[] probe = embeddingModel.call(new EmbeddingRequest(List.of("dimension"), options))
+                .getResult().getOutput();
+        return probe.length;
+    }
+    
     private String formatSize(Long bytes) {
         if (bytes == null) return "Unknown";
         
@@ -151,4 +248,8 @@ public class ModelManagementService {
     public String getCurrentChatModel() {
         return currentChatModel;
     }
+    
+    public String getCurrentEmbeddingModel() {
+        return currentEmbeddingModel;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.atuhome.ragdemo.service.ai;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.EmbeddingModelChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Caché LRU de embeddings de consulta con límite en bytes y TTL.
+ *
+ * La clave combina el modelo de embeddings y el texto normalizado (NFC, minúsculas, espacios
+ * colapsados), de modo que variaciones triviales de la misma pregunta comparten entrada y un
+ * cambio de modelo nunca sirve vectores del anterior. Expone aciertos, fallos, expulsiones,
+ * entradas y bytes en Micrometer bajo {@code rag.embedding.query.cache.*}.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Cabeceras de objetos, nodo del mapa y campos de la entrada (estimación conservadora)
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private final RagProperties ragProperties;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    // Protegidos por this; orden de acceso para expulsar el menos usado
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+
+    public QueryEmbeddingCache(RagProperties ragProperties, MeterRegistry meterRegistry) {
+        this.ragProperties = ragProperties;
+        this.hits = Counter.builder("rag.embedding.query.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("rag.embedding.query.cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("rag.embedding.query.cache.evictions").register(meterRegistry);
+        Gauge.builder("rag.embedding.query.cache.entries", this, QueryEmbeddingCache::size).register(meterRegistry);
+        Gauge.builder("rag.embedding.query.cache.bytes", this, QueryEmbeddingCache::usedBytes).register(meterRegistry);
+    }
+
+    /**
+     * Devuelve el embedding cacheado o lo calcula con {@code loader}. El cálculo se hace fuera del
+     * lock; dos fallos simultáneos de la misma pregunta pueden llamar al modelo dos veces.
+     *
+     * @return Copia del embedding, que el llamante puede modificar
+     */
+    public float[] get(String model, String text, Function<String, float[]> loader) {
+        if (!ragProperties.getEmbedding().isQueryCacheEnabled()) {
+            return loader.apply(text);
+        }
+        float[] cached = getIfPresent(model, text);
+        if (cached != null) {
+            return cached;
+        }
+        float[] embedding = loader.apply(text);
+        put(model, text, embedding);
+        return embedding;
+    }
+
+    /**
+     * Embedding cacheado (copia) o {@code null}; cuenta como acierto o fallo.
+     */
+    public float[] getIfPresent(String model, String text) {
+        RagProperties.Embedding config = ragProperties.getEmbedding();
+        if (!config.isQueryCacheEnabled()) {
+            return null;
+        }
+        String key = key(model, text);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createdAtNanos <= config.getQueryCacheTtl().toNanos()) {
+                    hits.increment();
+                    return entry.embedding.clone();
+                }
+                remove(key, entry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String model, String text, float[] embedding) {
+        RagProperties.Embedding config = ragProperties.getEmbedding();
+        if (!config.isQueryCacheEnabled()) {
+            return;
+        }
+        String key = key(model, text);
+        put(key, new Entry(embedding.clone(), System.nanoTime(), bytesOf(key, embedding)), config.getQueryCacheMaxBytes());
+    }
+
+    @EventListener
+    public void onEmbeddingModelChanged(EmbeddingModelChangedEvent event) {
+        int invalidated = invalidateAll();
+        log.info("Modelo de embeddings cambiado de {} a {}: {} embeddings de consulta invalidados",
+                event.getPreviousModel(), event.getCurrentModel(), invalidated);
+    }
+
+    public synchronized int invalidateAll() {
+        int count = entries.size();
+        entries.clear();
+        usedBytes = 0;
+        return count;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static String key(String model, String text) {
+        return model + '\u0000' + normalize(text);
+    }
+
+    private synchronized void put(String key, Entry entry, long maxBytes) {
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        usedBytes += entry.bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        usedBytes -= entry.bytes;
+    }
+
+    private static long bytesOf(String key, float[] embedding) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + (long) Float.BYTES * embedding.length;
+    }
+
+    private static final class Entry {
+        final float[] embedding;
+        final long createdAtNanos;
+        final long bytes;
+
+        Entry(float[] embedding, long createdAtNanos, long bytes) {
+            this.embedding = embedding;
+            this.createdAtNanos = createdAtNanos;
+            this.bytes = bytes;
+        }
+    }
+}
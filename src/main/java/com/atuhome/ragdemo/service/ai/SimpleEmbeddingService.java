@@ -4,13 +4,13 @@ import com.atuhome.ragdemo.config.RagProperties;
 import com.atuhome.ragdemo.exception.RagException;
 import com.atuhome.ragdemo.model.entity.DocumentChunk;
 import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.EmbeddingStorage;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
@@ -23,6 +23,7 @@ public class SimpleEmbeddingService {
 
     private final DocumentChunkRepository chunkRepository;
     private final RagProperties ragProperties;
+    private final EmbeddingStorage embeddingStorage;
     private final Random random = new Random();
 
     public float[] generateEmbedding(String text) {
@@ -61,15 +62,17 @@ public class SimpleEmbeddingService {
         
         for (DocumentChunk chunk : chunks) {
             try {
-                float[] embedding = generateEmbedding(chunk.getContent());
-                String embeddingString = Arrays.toString(embedding);
-                chunkRepository.updateEmbedding(chunk.getId(), embeddingString);
+                chunk.setEmbedding(embeddingStorage.forStorage(generateEmbedding(chunk.getContent())));
+                // generateEmbedding ya devuelve vectores unitarios
+                chunk.setNormalized(true);
                 log.debug("Embedding simulado actualizado para chunk {}", chunk.getId());
             } catch (Exception e) {
                 log.error("Error generando embedding para chunk {}", chunk.getId(), e);
                 throw new RagException("Error generando embedding", e);
             }
         }
+        // Se escriben por la entidad para que viajen en binario
+        chunkRepository.saveAll(chunks);
         
         log.info("Embeddings simulados generados y almacenados exitosamente");
     }
@@ -1,33 +1,31 @@
 package com.atuhome.ragdemo.service.document;
 
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
 import com.atuhome.ragdemo.exception.DocumentProcessingException;
+import com.atuhome.ragdemo.exception.IngestionBacklogFullException;
 import com.atuhome.ragdemo.exception.ResourceNotFoundException;
 import com.atuhome.ragdemo.model.dto.response.DocumentResponse;
 import com.atuhome.ragdemo.model.entity.Document;
-import com.atuhome.ragdemo.model.entity.DocumentChunk;
 import com.atuhome.ragdemo.model.enums.DocumentStatus;
 import com.atuhome.ragdemo.repository.DocumentRepository;
 import com.atuhome.ragdemo.repository.DocumentChunkRepository;
-import com.atuhome.ragdemo.service.ai.OllamaEmbeddingService;
-import com.atuhome.ragdemo.service.processing.DocumentChunker;
-import com.atuhome.ragdemo.service.processing.SimplePdfTextExtractor;
 import com.atuhome.ragdemo.service.processing.DocumentTextExtractor;
+import com.atuhome.ragdemo.service.search.DocumentTagIndex;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -38,14 +36,33 @@ public class DocumentService {
     private final DocumentRepository documentRepository;
     private final DocumentChunkRepository chunkRepository;
     private final FileStorageService fileStorageService;
-    private final SimplePdfTextExtractor pdfTextExtractor;
     private final DocumentTextExtractor documentTextExtractor;
-    private final DocumentChunker documentChunker;
-    private final OllamaEmbeddingService embeddingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IngestionPipeline ingestionPipeline;
 
+    /**
+     * Carga un documento con las etiquetas que heredarán sus chunks y que permiten acotar la búsqueda.
+     *
+     * @param organizationId Organización propietaria
+     * @param shared Documento común a todas las organizaciones; excluyente con {@code organizationId}
+     * @param sector Sector del documento (legal, medical, ...)
+     * @param tags Etiquetas libres del documento
+     * @throws IllegalArgumentException si no se indica organización ni {@code shared}, o ambos
+     */
     @Transactional
-    public DocumentResponse uploadDocument(MultipartFile file) {
-        log.info("Iniciando carga de documento: {}", file.getOriginalFilename());
+    public DocumentResponse uploadDocument(MultipartFile file, String organizationId, boolean shared,
+                                           String sector, List<String> tags) {
+        log.info("Iniciando carga de documento: {} (organización: {}, común: {}, sector: {}, etiquetas: {})",
+                file.getOriginalFilename(), organizationId, shared, sector, tags);
+        
+        // Un documento sin organización lo ve cualquier organización: debe pedirse explícitamente
+        String owner = DocumentTagIndex.normalizeValue(organizationId);
+        if (owner == null && !shared) {
+            throw new IllegalArgumentException("Indique organizationId o shared=true para un documento común a todas las organizaciones");
+        }
+        if (owner != null && shared) {
+            throw new IllegalArgumentException("Un documento común (shared=true) no puede tener organizationId");
+        }
         
         try {
             // Validar archivo (soporte para PDF, TXT, MD)
@@ -53,128 +70,58 @@ public class DocumentService {
                 throw new DocumentProcessingException("El archivo no es válido o no se puede procesar");
             }
             
-            // Calcular hash para detectar duplicados
+            // Calcular hash para detectar duplicados dentro de la misma organización (o entre los comunes)
             String contentHash = fileStorageService.calculateFileHash(file);
-            Optional<Document> existingDoc = documentRepository.findByContentHash(contentHash);
+            Optional<Document> existingDoc = documentRepository.findByOrganizationIdAndContentHash(owner, contentHash);
             
             if (existingDoc.isPresent()) {
                 log.warn("Documento duplicado detectado: {}", file.getOriginalFilename());
                 return mapToResponse(existingDoc.get(), "Documento ya existe en el sistema");
             }
             
-            // Almacenar archivo
-            String storedFilename = fileStorageService.storeFile(file);
+            // Reservar hueco en la ingesta antes de almacenar nada (429 si está saturada)
+            ingestionPipeline.admit();
             
-            // Crear entidad Document
-            Document document = Document.builder()
-                    .filename(file.getOriginalFilename())
-                    .filePath(storedFilename)
-                    .fileSize(file.getSize())
-                    .contentHash(contentHash)
-                    .uploadDate(LocalDateTime.now())
-                    .status(DocumentStatus.PENDING)
-                    .build();
-            
-            document = documentRepository.save(document);
-            
-            // Procesar de forma asíncrona
-            processDocumentAsync(document, file);
+            Document document;
+            try {
+                // Almacenar archivo
+                String storedFilename = fileStorageService.storeFile(file);
+                
+                // Crear entidad Document
+                document = Document.builder()
+                        .filename(file.getOriginalFilename())
+                        .filePath(storedFilename)
+                        .fileSize(file.getSize())
+                        .contentHash(contentHash)
+                        .uploadDate(LocalDateTime.now())
+                        .status(DocumentStatus.PENDING)
+                        .organizationId(owner)
+                        .sector(DocumentTagIndex.normalizeValue(sector))
+                        .tags(DocumentTagIndex.normalizeTags(tags))
+                        .build();
+                
+                document = documentRepository.save(document);
+                
+                // Procesar en el pipeline de ingesta tras el commit
+                ingestionPipeline.submitAfterCommit(document.getId());
+            } catch (RuntimeException e) {
+                ingestionPipeline.release();
+                throw e;
+            }
             
             log.info("Documento cargado exitosamente: {} (ID: {})", 
                     file.getOriginalFilename(), document.getId());
             
             return mapToResponse(document, "Documento cargado exitosamente");
             
+        } catch (IngestionBacklogFullException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error cargando documento: {}", file.getOriginalFilename(), e);
             throw new DocumentProcessingException("Error al cargar el documento", e);
         }
     }
 
-    @Async("taskExecutor")
-    public void processDocumentAsync(Document document, MultipartFile file) {
-        try {
-            processDocument(document, file);
-        } catch (Exception e) {
-            log.error("Error en procesamiento asíncrono del documento {}", document.getId(), e);
-            markDocumentAsFailed(document.getId(), e.getMessage());
-        }
-    }
-
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void processDocument(Document document, MultipartFile file) {
-        log.info("Iniciando procesamiento del documento: {}", document.getId());
-        
-        // Refrescar el documento desde la base de datos para evitar conflictos
-        Document freshDocument = documentRepository.findById(document.getId())
-            .orElseThrow(() -> new ResourceNotFoundException("Documento no encontrado: " + document.getId()));
-        
-        try {
-            // Actualizar estado a PROCESSING
-            freshDocument.setStatus(DocumentStatus.PROCESSING);
-            freshDocument.setProcessingStartedAt(LocalDateTime.now());
-            documentRepository.save(freshDocument);
-            
-            // Extraer texto
-            log.debug("Extrayendo texto del documento {}", freshDocument.getId());
-            SimplePdfTextExtractor.ExtractedText extractedText = documentTextExtractor.extractText(file);
-            
-            // Actualizar metadatos del documento
-            freshDocument.setMetadata(extractedText.getMetadata());
-            documentRepository.save(freshDocument);
-            
-            // Dividir en chunks
-            log.debug("Dividiendo documento {} en chunks", freshDocument.getId());
-            List<DocumentChunker.Chunk> chunks = documentChunker.chunkDocument(extractedText.getContent());
-            
-            // Guardar chunks
-            log.debug("Guardando {} chunks para documento {}", chunks.size(), freshDocument.getId());
-            List<DocumentChunk> documentChunks = chunks.stream()
-                    .map(chunk -> DocumentChunk.builder()
-                            .document(freshDocument)
-                            .chunkIndex(chunk.getIndex())
-                            .content(chunk.getContent())
-                            .charStart(chunk.getCharStart())
-                            .charEnd(chunk.getCharEnd())
-                            .metadata(chunk.getMetadata())
-                            .build())
-                    .toList();
-            
-            chunkRepository.saveAll(documentChunks);
-            
-            // Generar embeddings
-            log.debug("Generando embeddings para documento {}", freshDocument.getId());
-            embeddingService.generateAndStoreEmbeddings(documentChunks);
-            
-            // Marcar como completado
-            freshDocument.setStatus(DocumentStatus.COMPLETED);
-            freshDocument.setProcessingCompletedAt(LocalDateTime.now());
-            documentRepository.save(freshDocument);
-            
-            log.info("Procesamiento completado para documento: {} ({} chunks)", 
-                    freshDocument.getId(), chunks.size());
-            
-        } catch (Exception e) {
-            log.error("Error procesando documento {}", freshDocument.getId(), e);
-            markDocumentAsFailed(freshDocument.getId(), e.getMessage());
-            throw new DocumentProcessingException("Error en el procesamiento del documento", e);
-        }
-    }
-
-    @Transactional
-    public void markDocumentAsFailed(UUID documentId, String errorMessage) {
-        Optional<Document> optionalDoc = documentRepository.findById(documentId);
-        if (optionalDoc.isPresent()) {
-            Document document = optionalDoc.get();
-            document.setStatus(DocumentStatus.FAILED);
-            document.setErrorMessage(errorMessage);
-            document.setProcessingCompletedAt(LocalDateTime.now());
-            documentRepository.save(document);
-            
-            log.warn("Documento marcado como fallido: {} - Error: {}", documentId, errorMessage);
-        }
-    }
-
     public List<DocumentResponse> getAllDocuments() {
         return documentRepository.findAll().stream()
                 .map(doc -> mapToResponse(doc, null))
@@ -211,6 +158,7 @@ public class DocumentService {
         
         // Eliminar de la base de datos (chunks se eliminan automáticamente por CASCADE)
         documentRepository.delete(document);
+        eventPublisher.publishEvent(new DocumentChunksDeletedEvent(id));
         
         log.info("Documento eliminado: {}", id);
     }
@@ -224,17 +172,59 @@ public class DocumentService {
             throw new DocumentProcessingException("No se puede reprocesar: archivo no encontrado");
         }
         
-        // Eliminar chunks existentes sin cargar embeddings
-        chunkRepository.deleteByDocumentId(id);
+        // Reserva atómica antes de borrar nada: un segundo reprocesamiento recibe 409
+        ingestionPipeline.claim(id);
+        try {
+            // Eliminar chunks existentes sin cargar embeddings
+            chunkRepository.deleteByDocumentId(id);
+            eventPublisher.publishEvent(new DocumentChunksDeletedEvent(id));
+            
+            // Resetear estado
+            document.setStatus(DocumentStatus.PENDING);
+            document.setProcessingStartedAt(null);
+            document.setProcessingCompletedAt(null);
+            document.setErrorMessage(null);
+            documentRepository.save(document);
+            
+            ingestionPipeline.submitAfterCommit(id);
+        } catch (RuntimeException e) {
+            ingestionPipeline.release(id);
+            throw e;
+        }
         
-        // Resetear estado
-        document.setStatus(DocumentStatus.PENDING);
-        document.setProcessingStartedAt(null);
-        document.setProcessingCompletedAt(null);
-        document.setErrorMessage(null);
-        documentRepository.save(document);
+        log.info("Documento enviado a reprocesamiento: {}", id);
+    }
+
+    /**
+     * Vuelve a procesar todos los documentos, p. ej. tras cambiar el modelo de embeddings. Los
+     * chunks se eliminan en esta transacción, para que ninguna consulta compare embeddings de dos
+     * modelos, y los documentos se procesan a medida que haya hueco en el backlog.
+     *
+     * @return Documentos enviados a reprocesar
+     */
+    @Transactional
+    public int reindexAll() {
+        List<UUID> documentIds = new ArrayList<>();
+        for (Document document : documentRepository.findAll()) {
+            chunkRepository.deleteByDocumentId(document.getId());
+            eventPublisher.publishEvent(new DocumentChunksDeletedEvent(document.getId()));
+            
+            document.setProcessingStartedAt(null);
+            document.setProcessingCompletedAt(null);
+            if (document.getFilePath() == null) {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setErrorMessage("No se puede reprocesar: archivo no encontrado");
+            } else {
+                document.setStatus(DocumentStatus.PENDING);
+                document.setErrorMessage(null);
+                documentIds.add(document.getId());
+            }
+            documentRepository.save(document);
+        }
         
-        log.info("Documento marcado para reprocesamiento: {}", id);
+        ingestionPipeline.enqueueAfterCommit(documentIds);
+        log.info("{} documentos enviados a reprocesamiento", documentIds.size());
+        return documentIds.size();
     }
 
     public long getDocumentCount() {
@@ -258,6 +248,9 @@ public class DocumentService {
                 .processingCompletedAt(document.getProcessingCompletedAt())
                 .errorMessage(document.getErrorMessage())
                 .metadata(document.getMetadata())
+                .organizationId(document.getOrganizationId())
+                .sector(document.getSector())
+                .tags(document.getTags())
                 .chunksCount((int) chunksCount)
                 .message(message)
                 .build();
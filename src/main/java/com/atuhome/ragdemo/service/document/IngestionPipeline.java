@@ -0,0 +1,453 @@
+package com.atuhome.ragdemo.service.document;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksCreatedEvent;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.exception.IngestionBacklogFullException;
+import com.atuhome.ragdemo.exception.ResourceNotFoundException;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.model.enums.DocumentStatus;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.repository.DocumentRepository;
+import com.atuhome.ragdemo.service.ai.OllamaEmbeddingService;
+import com.atuhome.ragdemo.service.processing.DocumentChunker;
+import com.atuhome.ragdemo.service.processing.DocumentTextExtractor;
+import com.atuhome.ragdemo.service.processing.SimplePdfTextExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline de ingesta de documentos en etapas: extracción → chunking → embeddings → persistencia,
+ * cada una con su propio executor (ver AsyncConfig) para dimensionar por separado el parseo, el
+ * troceado, las llamadas al modelo de embeddings y la escritura en la base.
+ *
+ * La carga solo almacena el archivo y admite el documento; el procesamiento empieza tras el commit
+ * y lee el archivo almacenado. Como mucho hay {@code app.rag.ingestion.max-backlog} documentos
+ * admitidos sin terminar; por encima la carga se rechaza (429) en lugar de acumular trabajo.
+ * Metadatos, chunks con embedding y estado final se escriben en una sola transacción al final, así
+ * que un fallo en cualquier etapa deja el documento en FAILED sin chunks a medias.
+ *
+ * Los documentos que un reinicio dejó en PENDING o PROCESSING se vuelven a encolar al arrancar,
+ * a medida que haya hueco en el backlog.
+ */
+@Component
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final DocumentRepository documentRepository;
+    private final DocumentChunkRepository chunkRepository;
+    private final FileStorageService fileStorageService;
+    private final DocumentTextExtractor documentTextExtractor;
+    private final DocumentChunker documentChunker;
+    private final OllamaEmbeddingService embeddingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final RagProperties ragProperties;
+    private final Map<String, ThreadPoolTaskExecutor> stages = new LinkedHashMap<>();
+    private final Map<String, Timer> stageDurations = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<UUID> processing = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedDeque<UUID> interrupted = new ConcurrentLinkedDeque<>();
+    private final Counter rejected;
+
+    public IngestionPipeline(DocumentRepository documentRepository, DocumentChunkRepository chunkRepository,
+                             FileStorageService fileStorageService, DocumentTextExtractor documentTextExtractor,
+                             DocumentChunker documentChunker, OllamaEmbeddingService embeddingService,
+                             ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                             RagProperties ragProperties,
+                             @Qualifier("ingestExtractExecutor") ThreadPoolTaskExecutor extractExecutor,
+                             @Qualifier("ingestChunkExecutor") ThreadPoolTaskExecutor chunkExecutor,
+                             @Qualifier("ingestEmbedExecutor") ThreadPoolTaskExecutor embedExecutor,
+                             @Qualifier("ingestPersistExecutor") ThreadPoolTaskExecutor persistExecutor,
+                             MeterRegistry meterRegistry) {
+        this.documentRepository = documentRepository;
+        this.chunkRepository = chunkRepository;
+        this.fileStorageService = fileStorageService;
+        this.documentTextExtractor = documentTextExtractor;
+        this.documentChunker = documentChunker;
+        this.embeddingService = embeddingService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ragProperties = ragProperties;
+        stages.put("extract", extractExecutor);
+        stages.put("chunk", chunkExecutor);
+        stages.put("embed", embedExecutor);
+        stages.put("persist", persistExecutor);
+
+        stages.forEach((stage, executor) -> {
+            Gauge.builder("rag.ingestion.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                    .tag("stage", stage).register(meterRegistry);
+            Gauge.builder("rag.ingestion.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .tag("stage", stage).register(meterRegistry);
+            stageDurations.put(stage, Timer.builder("rag.ingestion.stage.duration").tag("stage", stage).register(meterRegistry));
+        });
+        Gauge.builder("rag.ingestion.backlog", inFlight, AtomicInteger::get).register(meterRegistry);
+        this.rejected = Counter.builder("rag.ingestion.rejected").register(meterRegistry);
+    }
+
+    /**
+     * Reserva un hueco en el backlog para un documento. Se llama antes de almacenar nada, para
+     * que una carga rechazada no deje archivos ni filas.
+     *
+     * @throws IngestionBacklogFullException si ya hay {@code max-backlog} documentos en curso
+     */
+    public void admit() {
+        if (!tryAdmit()) {
+            rejected.increment();
+            int current = inFlight.get();
+            throw new IngestionBacklogFullException(
+                    "La ingesta tiene " + current + " documentos pendientes; reintente más tarde", current);
+        }
+    }
+
+    private boolean tryAdmit() {
+        int limit = maxBacklog();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libera un hueco del backlog: al terminar un documento o si su admisión no llega a enviarse.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Reserva un documento ya almacenado para volver a procesarlo, antes de tocar sus chunks. La
+     * reserva es atómica: de dos peticiones simultáneas solo una la obtiene, y se mantiene hasta
+     * que el documento sale del pipeline o se llama a {@link #release(UUID)}.
+     *
+     * @throws ConflictException si el documento ya está reservado o en alguna etapa
+     * @throws IngestionBacklogFullException si ya hay {@code max-backlog} documentos en curso
+     */
+    public void claim(UUID documentId) {
+        if (!processing.add(documentId)) {
+            throw new ConflictException("El documento " + documentId + " ya se está procesando");
+        }
+        try {
+            admit();
+        } catch (RuntimeException e) {
+            processing.remove(documentId);
+            throw e;
+        }
+    }
+
+    /**
+     * Deshace {@link #claim(UUID)} cuando el documento no llega a enviarse.
+     */
+    public void release(UUID documentId) {
+        processing.remove(documentId);
+        release();
+    }
+
+    /**
+     * Vuelve a encolar los documentos que un reinicio dejó a medias. Sus etapas no dejaron chunks
+     * (la persistencia es una sola transacción), así que basta con procesarlos de nuevo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        for (DocumentStatus status : List.of(DocumentStatus.PROCESSING, DocumentStatus.PENDING)) {
+            documentRepository.findByStatusOrderByUploadDateDesc(status)
+                    .forEach(document -> interrupted.add(document.getId()));
+        }
+        if (!interrupted.isEmpty()) {
+            log.info("Reanudando la ingesta de {} documentos interrumpidos", interrupted.size());
+        }
+        resumeNext();
+    }
+
+    /**
+     * Encola documentos ya almacenados para procesarlos de nuevo cuando se confirme la transacción
+     * en curso. Se envían a medida que haya hueco en el backlog, igual que los interrumpidos.
+     */
+    public void enqueueAfterCommit(Collection<UUID> documentIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            interrupted.addAll(documentIds);
+            resumeNext();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                interrupted.addAll(documentIds);
+                resumeNext();
+            }
+        });
+    }
+
+    /**
+     * Envía documentos interrumpidos mientras quede hueco en el backlog; el resto espera a que
+     * termine otro documento.
+     */
+    private void resumeNext() {
+        UUID documentId;
+        while ((documentId = interrupted.poll()) != null) {
+            if (!processing.add(documentId)) {
+                // Ya lo reenvió una carga o un reprocesamiento
+                continue;
+            }
+            if (!tryAdmit()) {
+                processing.remove(documentId);
+                interrupted.addFirst(documentId);
+                return;
+            }
+            submit(documentId);
+        }
+    }
+
+    /**
+     * Si el documento está en alguna etapa del pipeline.
+     */
+    public boolean isProcessing(UUID documentId) {
+        return processing.contains(documentId);
+    }
+
+    /**
+     * Procesa un documento ya admitido cuando se confirme la transacción en curso, para que las
+     * etapas vean la fila del documento; si la transacción se deshace, libera el hueco. Sin
+     * transacción activa empieza de inmediato.
+     */
+    public void submitAfterCommit(UUID documentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(documentId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    submit(documentId);
+                } else {
+                    release(documentId);
+                }
+            }
+        });
+    }
+
+    CompletableFuture<Void> submit(UUID documentId) {
+        processing.add(documentId);
+        try {
+            return CompletableFuture
+                    .supplyAsync(() -> stageDurations.get("extract").record(() -> extract(documentId)), stages.get("extract"))
+                    .thenApplyAsync(extracted -> stageDurations.get("chunk").record(() -> chunk(extracted)), stages.get("chunk"))
+                    .thenApplyAsync(chunked -> stageDurations.get("embed").record(() -> embed(chunked)), stages.get("embed"))
+                    .thenAcceptAsync(embedded -> stageDurations.get("persist").record(() -> persist(embedded)), stages.get("persist"))
+                    .whenComplete((ignored, error) -> {
+                        processing.remove(documentId);
+                        release();
+                        if (error != null) {
+                            fail(documentId, error instanceof CompletionException ? error.getCause() : error);
+                        }
+                        resumeNext();
+                    });
+        } catch (RuntimeException e) {
+            // Rechazo de la primera etapa: las colas admiten el backlog entero, así que no debería ocurrir
+            processing.remove(documentId);
+            release();
+            fail(documentId, e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Extracted extract(UUID documentId) {
+        Document document = transactionTemplate.execute(status -> {
+            Document fresh = documentRepository.findById(documentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Documento no encontrado: " + documentId));
+            fresh.setStatus(DocumentStatus.PROCESSING);
+            fresh.setProcessingStartedAt(LocalDateTime.now());
+            return documentRepository.save(fresh);
+        });
+        log.info("Iniciando procesamiento del documento: {}", documentId);
+
+        FileSystemResource storedFile = new FileSystemResource(fileStorageService.getFilePath(document.getFilePath()));
+        SimplePdfTextExtractor.ExtractedText text = documentTextExtractor.extractText(
+                document.getFilename(), document.getFileSize(), storedFile);
+        return new Extracted(documentId, text);
+    }
+
+    private Chunked chunk(Extracted extracted) {
+        log.debug("Dividiendo documento {} en chunks", extracted.documentId());
+        List<DocumentChunker.Chunk> chunks = documentChunker.chunkDocument(extracted.text().getContent());
+        return new Chunked(extracted.documentId(), extracted.text().getMetadata(), chunks);
+    }
+
+    private Embedded embed(Chunked chunked) {
+        log.debug("Generando embeddings de {} chunks del documento {}", chunked.chunks().size(), chunked.documentId());
+        List<float[]> embeddings = embeddingService.embedForStorage(
+                chunked.chunks().stream().map(DocumentChunker.Chunk::getContent).toList());
+        return new Embedded(chunked, embeddings);
+    }
+
+    private void persist(Embedded embedded) {
+        UUID documentId = embedded.chunked().documentId();
+        List<DocumentChunker.Chunk> chunks = embedded.chunked().chunks();
+        transactionTemplate.executeWithoutResult(status -> {
+            Document document = documentRepository.findById(documentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Documento eliminado durante la ingesta: " + documentId));
+
+            // Un documento reanudado al arrancar puede haberse procesado también por otra vía
+            if (chunkRepository.countByDocumentId(documentId) > 0) {
+                chunkRepository.deleteByDocumentId(documentId);
+                eventPublisher.publishEvent(new DocumentChunksDeletedEvent(documentId));
+            }
+
+            List<DocumentChunk> documentChunks = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                DocumentChunker.Chunk chunk = chunks.get(i);
+                documentChunks.add(DocumentChunk.builder()
+                        .document(document)
+                        .chunkIndex(chunk.getIndex())
+                        .content(chunk.getContent())
+                        .charStart(chunk.getCharStart())
+                        .charEnd(chunk.getCharEnd())
+                        .metadata(withDocumentTags(chunk.getMetadata(), document))
+                        .embedding(embedded.embeddings().get(i))
+                        .normalized(true)
+                        .build());
+            }
+            chunkRepository.saveAll(documentChunks);
+            // Los índices en memoria y los contadores se actualizan tras el commit
+            eventPublisher.publishEvent(new ChunksCreatedEvent(documentId, documentChunks.size()));
+            eventPublisher.publishEvent(new ChunksEmbeddedEvent(documentChunks));
+
+            document.setMetadata(embedded.chunked().metadata());
+            document.setStatus(DocumentStatus.COMPLETED);
+            document.setProcessingCompletedAt(LocalDateTime.now());
+            documentRepository.save(document);
+        });
+        log.info("Procesamiento completado para documento: {} ({} chunks)", documentId, chunks.size());
+    }
+
+    private void fail(UUID documentId, Throwable error) {
+        log.error("Error procesando documento {}", documentId, error);
+        try {
+            transactionTemplate.executeWithoutResult(status -> documentRepository.findById(documentId).ifPresent(document -> {
+                document.setStatus(DocumentStatus.FAILED);
+                document.setErrorMessage(error.getMessage());
+                document.setProcessingCompletedAt(LocalDateTime.now());
+                documentRepository.save(document);
+                log.warn("Documento marcado como fallido: {} - Error: {}", documentId, error.getMessage());
+            }));
+        } catch (RuntimeException e) {
+            log.error("No se pudo marcar como fallido el documento {}", documentId, e);
+        }
+    }
+
+    /**
+     * Copia en los metadatos del chunk las etiquetas de su documento.
+     */
+    private static Map<String, Object> withDocumentTags(Map<String, Object> chunkMetadata, Document document) {
+        Map<String, Object> metadata = chunkMetadata != null ? new HashMap<>(chunkMetadata) : new HashMap<>();
+        if (document.getOrganizationId() != null) {
+            metadata.put("organizationId", document.getOrganizationId());
+        }
+        if (document.getSector() != null) {
+            metadata.put("sector", document.getSector());
+        }
+        if (document.getTags() != null && !document.getTags().isEmpty()) {
+            metadata.put("tags", document.getTags());
+        }
+        return metadata;
+    }
+
+    private int maxBacklog() {
+        return Math.max(1, ragProperties.getIngestion().getMaxBacklog());
+    }
+
+    public IngestionStatus getStatus() {
+        List<StageStatus> stageStatuses = new ArrayList<>();
+        stages.forEach((stage, executor) -> stageStatuses.add(new StageStatus(stage, executor.getMaxPoolSize(),
+                executor.getActiveCount(), executor.getThreadPoolExecutor().getQueue().size(),
+                executor.getThreadPoolExecutor().getCompletedTaskCount())));
+        return new IngestionStatus(inFlight.get(), maxBacklog(), (long) rejected.count(), stageStatuses);
+    }
+
+    private record Extracted(UUID documentId, SimplePdfTextExtractor.ExtractedText text) {}
+
+    private record Chunked(UUID documentId, Map<String, Object> metadata, List<DocumentChunker.Chunk> chunks) {}
+
+    private record Embedded(Chunked chunked, List<float[]> embeddings) {}
+
+    public static class IngestionStatus {
+        private final int backlog;
+        private final int maxBacklog;
+        private final long rejected;
+        private final List<StageStatus> stages;
+
+        public IngestionStatus(int backlog, int maxBacklog, long rejected, List<StageStatus> stages) {
+            this.backlog = backlog;
+            this.maxBacklog = maxBacklog;
+            this.rejected = rejected;
+            this.stages = stages;
+        }
+
+        public int getBacklog() { return backlog; }
+        public int getMaxBacklog() { return maxBacklog; }
+        public long getRejected() { return rejected; }
+        public List<StageStatus> getStages() { return stages; }
+    }
+
+    public static class StageStatus {
+        private final String stage;
+        private final int threads;
+        private final int active;
+        private final int queued;
+        private final long completed;
+
+        public StageStatus(String stage, int threads, int active, int queued, long completed) {
+            this.stage = stage;
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.completed = completed;
+        }
+
+        public String getStage() { return stage; }
+        public int getThreads() { return threads; }
+        public int getActive() { return active; }
+        public int getQueued() { return queued; }
+        public long getCompleted() { return completed; }
+    }
+}
@@ -4,6 +4,7 @@ import com.atuhome.ragdemo.exception.DocumentProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,6 +25,18 @@ public class DocumentTextExtractor {
 
     public SimplePdfTextExtractor.ExtractedText extractText(MultipartFile file) {
         String filename = file.getOriginalFilename();
+        if (filename != null && getFileExtension(filename).equalsIgnoreCase("pdf") && !pdfExtractor.validatePdf(file)) {
+            throw new DocumentProcessingException("El archivo PDF no es válido o no se puede procesar");
+        }
+        return extractText(filename, file.getSize(), file);
+    }
+
+    /**
+     * Extrae el texto de un origen cualquiera según la extensión de {@code filename}. La ingesta lo
+     * usa con el archivo almacenado, porque el {@link MultipartFile} deja de existir al terminar la
+     * petición de carga.
+     */
+    public SimplePdfTextExtractor.ExtractedText extractText(String filename, long size, InputStreamSource source) {
         if (filename == null) {
             throw new DocumentProcessingException("Nombre de archivo no válido");
         }
@@ -32,11 +45,11 @@ public class DocumentTextExtractor {
         
         switch (extension) {
             case "pdf":
-                return extractPdfText(file);
+                return pdfExtractor.extractText(filename, size, source);
             case "txt":
-                return extractPlainText(file);
+                return extractPlainText(filename, size, source);
             case "md":
-                return extractMarkdownText(file);
+                return extractMarkdownText(filename, size, source);
             default:
                 throw new DocumentProcessingException(
                     "Tipo de archivo no soportado: " + extension + 
@@ -82,18 +95,11 @@ public class DocumentTextExtractor {
         return filename.substring(lastDotIndex + 1);
     }
 
-    private SimplePdfTextExtractor.ExtractedText extractPdfText(MultipartFile file) {
-        if (!pdfExtractor.validatePdf(file)) {
-            throw new DocumentProcessingException("El archivo PDF no es válido o no se puede procesar");
-        }
-        return pdfExtractor.extractText(file);
-    }
-
-    private SimplePdfTextExtractor.ExtractedText extractPlainText(MultipartFile file) {
-        log.info("Extrayendo texto de archivo TXT: {}", file.getOriginalFilename());
+    private SimplePdfTextExtractor.ExtractedText extractPlainText(String filename, long size, InputStreamSource source) {
+        log.info("Extrayendo texto de archivo TXT: {}", filename);
         
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
             
             StringBuilder content = new StringBuilder();
             String line;
@@ -104,8 +110,8 @@ public class DocumentTextExtractor {
             String extractedText = content.toString();
             
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("filename", file.getOriginalFilename());
-            metadata.put("size", file.getSize());
+            metadata.put("filename", filename);
+            metadata.put("size", size);
             metadata.put("format", "txt");
             metadata.put("encoding", "UTF-8");
             
@@ -120,16 +126,16 @@ public class DocumentTextExtractor {
             return result;
             
         } catch (IOException e) {
-            log.error("Error extrayendo texto del archivo TXT: {}", file.getOriginalFilename(), e);
+            log.error("Error extrayendo texto del archivo TXT: {}", filename, e);
             throw new DocumentProcessingException("Error procesando archivo TXT: " + e.getMessage(), e);
         }
     }
 
-    private SimplePdfTextExtractor.ExtractedText extractMarkdownText(MultipartFile file) {
-        log.info("Extrayendo texto de archivo Markdown: {}", file.getOriginalFilename());
+    private SimplePdfTextExtractor.ExtractedText extractMarkdownText(String filename, long size, InputStreamSource source) {
+        log.info("Extrayendo texto de archivo Markdown: {}", filename);
         
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
             
             StringBuilder content = new StringBuilder();
             String line;
@@ -140,8 +146,8 @@ public class DocumentTextExtractor {
             String extractedText = content.toString();
             
             Map<String, Object> metadata = new HashMap<>();
-            metadata.put("filename", file.getOriginalFilename());
-            metadata.put("size", file.getSize());
+            metadata.put("filename", filename);
+            metadata.put("size", size);
             metadata.put("format", "markdown");
             metadata.put("encoding", "UTF-8");
             
@@ -156,7 +162,7 @@ public class DocumentTextExtractor {
             return result;
             
         } catch (IOException e) {
-            log.error("Error extrayendo texto del archivo Markdown: {}", file.getOriginalFilename(), e);
+            log.error("Error extrayendo texto del archivo Markdown: {}", filename, e);
             throw new DocumentProcessingException("Error procesando archivo Markdown: " + e.getMessage(), e);
         }
     }
@@ -6,6 +6,7 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,9 +21,16 @@ public class SimplePdfTextExtractor {
     private static final Logger log = LoggerFactory.getLogger(SimplePdfTextExtractor.class);
 
     public ExtractedText extractText(MultipartFile file) {
-        log.info("Extrayendo texto de PDF: {}", file.getOriginalFilename());
+        return extractText(file.getOriginalFilename(), file.getSize(), file);
+    }
+
+    /**
+     * Extrae el texto de cualquier origen, p. ej. el archivo ya almacenado que procesa la ingesta.
+     */
+    public ExtractedText extractText(String filename, long size, InputStreamSource source) {
+        log.info("Extrayendo texto de PDF: {}", filename);
         
-        try (InputStream inputStream = file.getInputStream()) {
+        try (InputStream inputStream = source.getInputStream()) {
             PDDocument document = Loader.loadPDF(inputStream.readAllBytes());
             
             PDFTextStripper textStripper = new PDFTextStripper();
@@ -32,8 +40,8 @@ public class SimplePdfTextExtractor {
                 int pageCount = document.getNumberOfPages();
                 
                 Map<String, Object> metadata = new HashMap<>();
-                metadata.put("filename", file.getOriginalFilename());
-                metadata.put("size", file.getSize());
+                metadata.put("filename", filename);
+                metadata.put("size", size);
                 metadata.put("simulated", false);
                 metadata.put("pages", pageCount);
                 
@@ -54,7 +62,7 @@ public class SimplePdfTextExtractor {
             }
             
         } catch (IOException e) {
-            log.error("Error extrayendo texto del PDF: {}", file.getOriginalFilename(), e);
+            log.error("Error extrayendo texto del PDF: {}", filename, e);
             throw new DocumentProcessingException("Error procesando PDF: " + e.getMessage(), e);
         }
     }
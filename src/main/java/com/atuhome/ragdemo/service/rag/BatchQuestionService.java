@@ -0,0 +1,119 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.BatchQueueFullException;
+import com.atuhome.ragdemo.exception.RagException;
+import com.atuhome.ragdemo.model.dto.response.AnswerResponse;
+import com.atuhome.ragdemo.model.dto.response.BatchAnswerResponse;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Procesamiento de lotes de preguntas (evaluaciones nocturnas, regeneración de FAQs).
+ *
+ * La recuperación se amortiza para todo el lote: una llamada al modelo de embeddings por
+ * {@code app.rag.batch.embedding-batch-size} preguntas y, con un motor exhaustivo en la JVM,
+ * un único recorrido del corpus. La generación, que domina el tiempo, se reparte en
+ * {@code batchGenerationExecutor} con concurrencia y cola acotadas; el reranking se hace en el
+ * mismo hilo, sin competir por {@code rerankExecutor} con las preguntas interactivas. Si el lote
+ * falla o el hilo de la petición se interrumpe, se cancelan las generaciones que no empezaron.
+ */
+@Service
+public class BatchQuestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchQuestionService.class);
+
+    private final SemanticSearchService semanticSearchService;
+    private final RagService ragService;
+    private final RagProperties ragProperties;
+    private final TaskExecutor batchGenerationExecutor;
+
+    public BatchQuestionService(SemanticSearchService semanticSearchService, RagService ragService,
+                                RagProperties ragProperties,
+                                @Qualifier("batchGenerationExecutor") TaskExecutor batchGenerationExecutor) {
+        this.semanticSearchService = semanticSearchService;
+        this.ragService = ragService;
+        this.ragProperties = ragProperties;
+        this.batchGenerationExecutor = batchGenerationExecutor;
+    }
+
+    public BatchAnswerResponse processQuestions(List<String> questions, double similarityThreshold, int maxResults,
+                                                Integer efSearch, SearchFilter filter) {
+        int maxQuestions = ragProperties.getBatch().getMaxQuestions();
+        if (questions.size() > maxQuestions) {
+            throw new IllegalArgumentException("El lote tiene " + questions.size()
+                    + " preguntas; el máximo es " + maxQuestions);
+        }
+
+        log.info("Procesando lote de {} preguntas (threshold: {}, max: {}, ef_search: {}, filtro: {})",
+                questions.size(), similarityThreshold, maxResults, efSearch, filter);
+        long startTime = System.currentTimeMillis();
+
+        int effectiveEfSearch = efSearch != null ? efSearch : ragProperties.getSearch().getEfSearch();
+        List<List<SearchResult>> searchResults = semanticSearchService.findSimilarChunksBatch(questions,
+                similarityThreshold, ragService.contextCandidatePoolSize(maxResults), effectiveEfSearch, filter);
+        long retrievalTime = System.currentTimeMillis() - startTime;
+        log.info("Recuperación del lote completada en {}ms", retrievalTime);
+
+        List<CompletableFuture<AnswerResponse>> answers = new ArrayList<>(questions.size());
+        List<AnswerResponse> responses = new ArrayList<>(questions.size());
+        try {
+            for (int i = 0; i < questions.size(); i++) {
+                String question = questions.get(i);
+                List<SearchResult> candidates = searchResults.get(i);
+                answers.add(CompletableFuture.supplyAsync(
+                        () -> ragService.answerFromResults(question,
+                                ragService.selectContextChunksInCallerThread(question, candidates, maxResults), startTime),
+                        batchGenerationExecutor));
+            }
+
+            // answerFromResults no propaga excepciones: cada fallo se convierte en una respuesta de error
+            for (CompletableFuture<AnswerResponse> answer : answers) {
+                responses.add(answer.get());
+            }
+        } catch (RejectedExecutionException e) {
+            cancel(answers);
+            throw new BatchQueueFullException("Hay demasiadas preguntas de otros lotes en cola; reintente más tarde");
+        } catch (InterruptedException e) {
+            cancel(answers);
+            Thread.currentThread().interrupt();
+            throw new RagException("Lote de preguntas interrumpido", e);
+        } catch (ExecutionException e) {
+            cancel(answers);
+            throw new RagException("Error procesando el lote de preguntas", e.getCause());
+        }
+        long totalTime = System.currentTimeMillis() - startTime;
+        log.info("Lote de {} preguntas procesado en {}ms", questions.size(), totalTime);
+
+        return BatchAnswerResponse.builder()
+                .answers(responses)
+                .totalQuestions(questions.size())
+                .retrievalTimeMs(retrievalTime)
+                .totalTimeMs(totalTime)
+                .build();
+    }
+
+    /**
+     * Las generaciones en cola no llegan a ejecutarse; las que ya están en curso terminan y se descartan.
+     */
+    private static void cancel(List<CompletableFuture<AnswerResponse>> answers) {
+        int cancelled = 0;
+        for (CompletableFuture<AnswerResponse> answer : answers) {
+            if (answer.cancel(false)) {
+                cancelled++;
+            }
+        }
+        log.warn("Lote de preguntas abortado: {} generaciones canceladas", cancelled);
+    }
+}
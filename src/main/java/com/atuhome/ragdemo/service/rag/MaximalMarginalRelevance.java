@@ -0,0 +1,158 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Diversificación por Maximal Marginal Relevance entre la búsqueda y la construcción del contexto.
+ *
+ * De un conjunto ampliado de candidatos elige uno a uno el que maximiza
+ * {@code lambda * sim(consulta, d) - (1 - lambda) * max sim(d, elegidos)}, de modo que los chunks
+ * que solapan con otro ya elegido (el chunker solapa 200 caracteres) ceden su sitio a información
+ * nueva y el contexto cabe en menos resultados.
+ */
+@Component
+@RequiredArgsConstructor
+public class MaximalMarginalRelevance {
+
+    private static final Logger log = LoggerFactory.getLogger(MaximalMarginalRelevance.class);
+
+    private final DocumentChunkRepository chunkRepository;
+    private final List<VectorIndex> vectorIndexes;
+    private final SimilarityKernel similarityKernel;
+    private final RagProperties ragProperties;
+
+    public boolean isEnabled() {
+        return ragProperties.getSearch().isMmrEnabled();
+    }
+
+    /**
+     * Candidatos a recuperar para poder elegir {@code maxResults} diversos.
+     */
+    public int candidatePoolSize(int maxResults) {
+        return isEnabled() ? maxResults * Math.max(1, ragProperties.getSearch().getMmrCandidates()) : maxResults;
+    }
+
+    /**
+     * Elige hasta {@code maxResults} candidatos diversos, en orden de selección. Los embeddings de los
+     * candidatos salen del índice en la JVM activo; solo los que este no retiene (motor pgvector o
+     * cuantización int8) se leen de la base.
+     *
+     * La relevancia de cada candidato es su posición en la lista recibida, que con reranking activo
+     * es el orden del reranker y no el de la búsqueda vectorial. Para que {@code lambda} conserve su
+     * escala, la posición {@code i} recibe la {@code i}-ésima mayor similitud de los candidatos; sin
+     * reranking coincide con la similitud de cada uno.
+     */
+    public List<SearchResult> select(List<SearchResult> candidates, int maxResults) {
+        if (!isEnabled() || candidates.size() <= 1) {
+            return candidates.size() > maxResults ? List.copyOf(candidates.subList(0, maxResults)) : candidates;
+        }
+
+        float[][] vectors = loadUnitVectors(candidates);
+        double lambda = ragProperties.getSearch().getMmrLambda();
+
+        int count = candidates.size();
+        double[] relevance = relevanceByRank(candidates);
+        boolean[] chosen = new boolean[count];
+        // Máxima similitud de cada candidato con los ya elegidos
+        float[] redundancy = new float[count];
+        Arrays.fill(redundancy, Float.NEGATIVE_INFINITY);
+
+        List<SearchResult> selected = new ArrayList<>(Math.min(maxResults, count));
+        while (selected.size() < maxResults && selected.size() < count) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (chosen[i]) {
+                    continue;
+                }
+                double penalty = redundancy[i] == Float.NEGATIVE_INFINITY ? 0.0 : redundancy[i];
+                double score = lambda * relevance[i] - (1.0 - lambda) * penalty;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+
+            chosen[best] = true;
+            selected.add(candidates.get(best));
+            if (vectors[best] == null) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!chosen[i] && vectors[i] != null) {
+                    redundancy[i] = Math.max(redundancy[i], similarityKernel.dot(vectors[i], vectors[best]));
+                }
+            }
+        }
+
+        log.debug("MMR (lambda {}): {} candidatos -> {} seleccionados", lambda, count, selected.size());
+        return selected;
+    }
+
+    private static double[] relevanceByRank(List<SearchResult> candidates) {
+        double[] relevance = new double[candidates.size()];
+        for (int i = 0; i < relevance.length; i++) {
+            relevance[i] = candidates.get(i).getSimilarity();
+        }
+        Arrays.sort(relevance);
+        // Descendente: la primera posición recibe la mayor similitud
+        for (int i = 0, j = relevance.length - 1; i < j; i++, j--) {
+            double swap = relevance[i];
+            relevance[i] = relevance[j];
+            relevance[j] = swap;
+        }
+        return relevance;
+    }
+
+    private float[][] loadUnitVectors(List<SearchResult> candidates) {
+        Map<UUID, UUID> documentByChunk = new LinkedHashMap<>();
+        for (SearchResult candidate : candidates) {
+            documentByChunk.put(candidate.getChunkId(), candidate.getDocumentId());
+        }
+
+        Map<UUID, float[]> vectorsById = new HashMap<>();
+        VectorIndex vectorIndex = activeVectorIndex();
+        if (vectorIndex != null) {
+            vectorsById.putAll(vectorIndex.unitVectors(documentByChunk));
+        }
+        List<UUID> missing = documentByChunk.keySet().stream().filter(id -> !vectorsById.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (Object[] row : chunkRepository.findEmbeddingsByIdIn(missing)) {
+                vectorsById.put((UUID) row[0], VectorNormalizer.normalizeInPlace(PgVectorBinaryCodec.decode((byte[]) row[1])));
+            }
+        }
+
+        float[][] vectors = new float[candidates.size()][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = vectorsById.get(candidates.get(i).getChunkId());
+        }
+        return vectors;
+    }
+
+    private VectorIndex activeVectorIndex() {
+        for (VectorIndex vectorIndex : vectorIndexes) {
+            if (vectorIndex.isEnabled() && vectorIndex.isReady()) {
+                return vectorIndex;
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.atuhome.ragdemo.service.rag;
 
+import com.atuhome.ragdemo.config.RagProperties;
 import com.atuhome.ragdemo.exception.RagException;
 import com.atuhome.ragdemo.model.dto.response.AnswerResponse;
 import com.atuhome.ragdemo.model.dto.response.SearchResult;
@@ -10,6 +11,10 @@ import com.atuhome.ragdemo.service.ai.AntiHallucinationFactory;
 import com.atuhome.ragdemo.service.config.SectorConfigurationService;
 import com.atuhome.ragdemo.service.ai.DynamicChatService;
 import com.atuhome.ragdemo.service.ai.ModelManagementService;
+import com.atuhome.ragdemo.service.rag.rerank.RerankingStage;
+import com.atuhome.ragdemo.service.search.CorpusStatistics;
+import com.atuhome.ragdemo.service.search.CorpusVersion;
+import com.atuhome.ragdemo.service.search.SearchFilter;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +26,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +41,12 @@ public class RagService {
     private final DynamicChatService dynamicChatService;
     private final ModelManagementService modelManagementService;
     private final QAHistoryRepository qaHistoryRepository;
+    private final RagProperties ragProperties;
+    private final SemanticAnswerCache answerCache;
+    private final CorpusVersion corpusVersion;
+    private final CorpusStatistics corpusStatistics;
+    private final MaximalMarginalRelevance maximalMarginalRelevance;
+    private final RerankingStage rerankingStage;
 
     @Transactional
     public AnswerResponse processQuestion(String question) {
@@ -56,23 +68,46 @@ public class RagService {
             
             log.debug("Usando sector: {} con servicio: {}", effectiveSector, antiHallucinationService.getClass().getSimpleName());
             
-            // 2. Verificar que hay documentos indexados
-            if (!semanticSearchService.hasIndexedDocuments()) {
+            // 2. Verificar que hay documentos indexados (contador en memoria, sin COUNT por pregunta)
+            if (!corpusStatistics.hasIndexedChunks()) {
                 return createNoDocumentsResponse(question, startTime, effectiveSector);
             }
             
-            // 3. Búsqueda semántica con parámetros configurables
+            // 3. Reutilizar la respuesta de una paráfrasis reciente si el corpus no ha cambiado
+            long corpusVersionAtSearch = corpusVersion.current();
+            String cacheScope = answerCacheScope(effectiveSector, sectorConfig, organizationId);
+            String chatModel = modelManagementService.getCurrentChatModel();
+            String embeddingModel = modelManagementService.getCurrentEmbeddingModel();
+            float[] questionEmbedding = null;
+            if (answerCache.isEnabled()) {
+                questionEmbedding = semanticSearchService.embedQuery(question);
+                Optional<AnswerResponse> cached = answerCache.find(questionEmbedding, cacheScope, chatModel, embeddingModel);
+                if (cached.isPresent()) {
+                    return createCachedResponse(question, cached.get(), startTime, effectiveSector);
+                }
+            }
+            
+            // 4. Búsqueda semántica con parámetros configurables, limitada a los documentos de la organización
+            SearchFilter tenantFilter = SearchFilter.none().withOrganization(organizationId);
             List<SearchResult> searchResults;
             if (sectorConfig != null) {
                 // Usar parámetros específicos de la configuración de sector
-                searchResults = semanticSearchService.findSimilarChunks(
+                searchResults = retrieveContextChunks(
                     question, 
                     sectorConfig.getSettings().getSimilarityThreshold(),
-                    sectorConfig.getSettings().getMaxResults()
+                    sectorConfig.getSettings().getMaxResults(),
+                    ragProperties.getSearch().getEfSearch(),
+                    tenantFilter
                 );
             } else {
                 // Usar parámetros por defecto
-                searchResults = semanticSearchService.findSimilarChunks(question);
+                searchResults = retrieveContextChunks(
+                    question,
+                    ragProperties.getSearch().getSimilarityThreshold(),
+                    ragProperties.getSearch().getMaxResults(),
+                    ragProperties.getSearch().getEfSearch(),
+                    tenantFilter
+                );
             }
             
             if (searchResults.isEmpty()) {
@@ -81,40 +116,47 @@ public class RagService {
             
             log.debug("Encontrados {} chunks relevantes para sector: {}", searchResults.size(), effectiveSector);
             
-            // 4. Construir contexto
+            // 5. Construir contexto
             String context = contextBuilderService.buildContext(searchResults);
             
-            // 5. Crear prompt especializado usando el servicio del sector
+            // 6. Crear prompt especializado usando el servicio del sector
             String prompt = antiHallucinationService.createPrompt(question, context);
             
-            // 6. Generar respuesta con LLM
+            // 7. Generar respuesta con LLM
             String answer = generateAnswer(prompt);
             
-            // 7. Validar respuesta con el servicio especializado
+            // 8. Validar respuesta con el servicio especializado
             boolean strictValidation = sectorConfig != null ? 
                 sectorConfig.getSettings().isStrictValidation() : true;
                 
+            boolean validated = true;
             if (strictValidation && !antiHallucinationService.validateResponse(answer)) {
                 log.warn("Respuesta falló validación del sector {}, usando respuesta de fallback", effectiveSector);
                 answer = antiHallucinationService.createFallbackResponse(question);
+                validated = false;
             }
             
-            // 8. Calcular tiempo de respuesta
+            // 9. Calcular tiempo de respuesta
             long responseTime = System.currentTimeMillis() - startTime;
             
-            // 9. Crear respuesta con información del sector
+            // 10. Crear respuesta con información del sector
             AnswerResponse response = AnswerResponse.builder()
                     .question(question)
                     .answer(answer)
                     .sources(searchResults)
                     .responseTimeMs(responseTime)
                     .timestamp(LocalDateTime.now())
-                    .modelUsed(modelManagementService.getCurrentChatModel())
+                    .modelUsed(chatModel)
                     .build();
             
-            // 10. Guardar en historial con información del sector
+            // 11. Guardar en historial con información del sector
             saveToHistory(response, context, effectiveSector);
             
+            // Las respuestas de fallback no se cachean: pueden deberse a un fallo puntual del LLM
+            if (questionEmbedding != null && validated) {
+                answerCache.put(questionEmbedding, cacheScope, chatModel, embeddingModel, corpusVersionAtSearch, response);
+            }
+            
             log.info("Pregunta procesada exitosamente en {}ms", responseTime);
             return response;
             
@@ -129,28 +171,100 @@ public class RagService {
     public AnswerResponse processQuestionWithCustomParams(String question, 
                                                          double similarityThreshold, 
                                                          int maxResults) {
-        log.info("Procesando pregunta con parámetros personalizados: {} (threshold: {}, max: {})", 
-                question, similarityThreshold, maxResults);
+        return processQuestionWithCustomParams(question, similarityThreshold, maxResults, null);
+    }
+
+    public AnswerResponse processQuestionWithCustomParams(String question, 
+                                                         double similarityThreshold, 
+                                                         int maxResults,
+                                                         Integer efSearch) {
+        return processQuestionWithCustomParams(question, similarityThreshold, maxResults, efSearch, SearchFilter.none());
+    }
+
+    public AnswerResponse processQuestionWithCustomParams(String question, 
+                                                         double similarityThreshold, 
+                                                         int maxResults,
+                                                         Integer efSearch,
+                                                         SearchFilter filter) {
+        log.info("Procesando pregunta con parámetros personalizados: {} (threshold: {}, max: {}, ef_search: {}, filtro: {})", 
+                question, similarityThreshold, maxResults, efSearch, filter);
         
         long startTime = System.currentTimeMillis();
         
         try {
-            // Búsqueda con parámetros personalizados
-            List<SearchResult> searchResults = semanticSearchService.findSimilarChunks(
-                question, similarityThreshold, maxResults);
+            // Búsqueda con parámetros personalizados; el filtro se aplica dentro del motor
+            int effectiveEfSearch = efSearch != null ? efSearch : ragProperties.getSearch().getEfSearch();
+            List<SearchResult> searchResults = retrieveContextChunks(
+                question, similarityThreshold, maxResults, effectiveEfSearch, filter);
+            
+            return answerFromResults(question, searchResults, startTime);
             
+        } catch (Exception e) {
+            log.error("Error procesando pregunta con parámetros personalizados", e);
+            long responseTime = System.currentTimeMillis() - startTime;
+            return createErrorResponse(question, e.getMessage(), responseTime);
+        }
+    }
+
+    /**
+     * Recupera los chunks para el contexto. Con reranking o MMR activos se pide un conjunto ampliado
+     * de candidatos: el reranker los reordena y MMR elige {@code maxResults} sin redundancia entre ellos.
+     */
+    private List<SearchResult> retrieveContextChunks(String question, double threshold, int maxResults,
+                                                     int efSearch, SearchFilter filter) {
+        List<SearchResult> candidates = semanticSearchService.findSimilarChunks(
+                question, threshold, contextCandidatePoolSize(maxResults), efSearch, filter);
+        return selectContextChunks(question, candidates, maxResults);
+    }
+
+    /**
+     * Reranking y diversificación de candidatos ya recuperados; compartido con los lotes de preguntas.
+     * MMR toma como relevancia el orden que deja el reranker.
+     */
+    public List<SearchResult> selectContextChunks(String question, List<SearchResult> candidates, int maxResults) {
+        List<SearchResult> reranked = rerankingStage.rerank(question, candidates,
+                maximalMarginalRelevance.candidatePoolSize(maxResults));
+        return maximalMarginalRelevance.select(reranked, maxResults);
+    }
+
+    /**
+     * Como {@link #selectContextChunks}, para los lotes: el reranker se ejecuta en el hilo del lote.
+     */
+    public List<SearchResult> selectContextChunksInCallerThread(String question, List<SearchResult> candidates,
+                                                                int maxResults) {
+        List<SearchResult> reranked = rerankingStage.rerankInCallerThread(question, candidates,
+                maximalMarginalRelevance.candidatePoolSize(maxResults));
+        return maximalMarginalRelevance.select(reranked, maxResults);
+    }
+
+    /**
+     * Candidatos a recuperar por pregunta para que reranking y MMR elijan {@code maxResults}.
+     */
+    public int contextCandidatePoolSize(int maxResults) {
+        return rerankingStage.candidatePoolSize(maximalMarginalRelevance.candidatePoolSize(maxResults));
+    }
+
+    /**
+     * Genera y valida la respuesta a partir de chunks ya recuperados, con el sector por defecto.
+     * Lo comparten la pregunta con parámetros personalizados y el procesamiento por lotes.
+     *
+     * @param startTime Instante en que empezó a procesarse la pregunta, para el tiempo de respuesta
+     */
+    public AnswerResponse answerFromResults(String question, List<SearchResult> searchResults, long startTime) {
+        try {
             if (searchResults.isEmpty()) {
                 return createNoResultsResponse(question, startTime);
             }
             
-            // Continuar con el procesamiento normal  
             String context = contextBuilderService.buildContext(searchResults);
             String prompt = "INSTRUCCIONES: Analiza la información proporcionada y responde directamente la pregunta.\n\n" +
                           "INFORMACIÓN DE DOCUMENTOS:\n" + context + "\n\n" +
                           "PREGUNTA: " + question + "\n\n" +
                           "ANÁLISIS Y RESPUESTA DIRECTA:";
             String answer = generateAnswer(prompt);
-            
+
+            AntiHallucinationService antiHallucinationService =
+                antiHallucinationFactory.getService(sectorConfigurationService.getDefaultSector());
             if (!antiHallucinationService.validateResponse(answer)) {
                 answer = antiHallucinationService.createFallbackResponse(question);
             }
@@ -171,12 +285,42 @@ public class RagService {
             return response;
             
         } catch (Exception e) {
-            log.error("Error procesando pregunta con parámetros personalizados", e);
+            log.error("Error generando respuesta para: {}", question, e);
             long responseTime = System.currentTimeMillis() - startTime;
             return createErrorResponse(question, e.getMessage(), responseTime);
         }
     }
 
+    private String answerCacheScope(String sector, SectorConfigurationService.SectorConfiguration sectorConfig,
+                                    String organizationId) {
+        // Cada organización ve otros documentos: sus respuestas no se comparten
+        String scope = organizationId == null || organizationId.isBlank() ? sector : sector + "@" + organizationId.trim();
+        if (sectorConfig == null) {
+            return scope;
+        }
+        // Los parámetros de búsqueda de la sesión cambian el contexto y, por tanto, la respuesta
+        return scope + "|" + sectorConfig.getSettings().getSimilarityThreshold()
+                + "|" + sectorConfig.getSettings().getMaxResults()
+                + "|" + sectorConfig.getSettings().isStrictValidation();
+    }
+
+    private AnswerResponse createCachedResponse(String question, AnswerResponse cached, long startTime, String sector) {
+        long responseTime = System.currentTimeMillis() - startTime;
+        
+        AnswerResponse response = AnswerResponse.builder()
+                .question(question)
+                .answer(cached.getAnswer())
+                .sources(cached.getSources())
+                .responseTimeMs(responseTime)
+                .timestamp(LocalDateTime.now())
+                .modelUsed(cached.getModelUsed())
+                .build();
+        
+        saveToHistory(response, null, sector);
+        log.info("Pregunta respondida desde caché semántica en {}ms", responseTime);
+        return response;
+    }
+
     private String generateAnswer(String prompt) {
         try {
             log.debug("Generando respuesta con LLM");
@@ -280,8 +424,9 @@ public class RagService {
 
     public boolean isSystemReady() {
         try {
-            return semanticSearchService.hasIndexedDocuments() && 
-                   semanticSearchService.getPendingEmbeddingsCount() == 0;
+            return corpusStatistics.isInitialized() &&
+                   corpusStatistics.hasIndexedChunks() && 
+                   corpusStatistics.getPendingEmbeddings() == 0;
         } catch (Exception e) {
             log.error("Error verificando estado del sistema", e);
             return false;
@@ -292,8 +437,11 @@ public class RagService {
         Map<String, Object> stats = new HashMap<>();
         
         try {
-            stats.put("indexed_chunks", semanticSearchService.getIndexedChunksCount());
-            stats.put("pending_embeddings", semanticSearchService.getPendingEmbeddingsCount());
+            stats.put("indexed_chunks", corpusStatistics.getTotalChunks());
+            stats.put("embedded_chunks", corpusStatistics.getEmbeddedChunks());
+            stats.put("pending_embeddings", corpusStatistics.getPendingEmbeddings());
+            stats.put("statistics_reconciled_at", corpusStatistics.getReconciledAt());
+            stats.put("statistics_ready", corpusStatistics.isInitialized());
             stats.put("total_questions", qaHistoryRepository.count());
             stats.put("average_response_time", qaHistoryRepository.getAverageResponseTime());
             stats.put("system_ready", isSystemReady());
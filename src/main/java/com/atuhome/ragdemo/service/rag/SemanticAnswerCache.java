@@ -0,0 +1,152 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.AnswerResponse;
+import com.atuhome.ragdemo.service.search.CorpusVersion;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Caché semántica de respuestas: sirve la respuesta de una pregunta anterior cuando la nueva
+ * es una paráfrasis cercana (similitud coseno entre embeddings unitarios por encima del umbral).
+ *
+ * Una entrada solo es reutilizable si coincide el ámbito (sector y parámetros de búsqueda),
+ * los modelos de chat y embeddings, y la {@link CorpusVersion} no ha cambiado desde que se
+ * generó la respuesta. La búsqueda es lineal sobre un número acotado de entradas, lo que
+ * cuesta microsegundos frente a los segundos de una generación con el LLM.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final RagProperties ragProperties;
+    private final CorpusVersion corpusVersion;
+    private final SimilarityKernel similarityKernel;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Protegida por this; las entradas más recientes van al final
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    public SemanticAnswerCache(RagProperties ragProperties, CorpusVersion corpusVersion,
+                               SimilarityKernel similarityKernel, MeterRegistry meterRegistry) {
+        this.ragProperties = ragProperties;
+        this.corpusVersion = corpusVersion;
+        this.similarityKernel = similarityKernel;
+        this.hits = Counter.builder("rag.answer.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("rag.answer.cache.misses").register(meterRegistry);
+        Gauge.builder("rag.answer.cache.entries", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return ragProperties.getAnswerCache().isEnabled();
+    }
+
+    /**
+     * Busca la respuesta cacheada más similar a la pregunta.
+     *
+     * @param questionEmbedding Embedding unitario de la pregunta
+     * @param scope Sector y parámetros de búsqueda con los que se generaría la respuesta
+     */
+    public Optional<AnswerResponse> find(float[] questionEmbedding, String scope, String chatModel, String embeddingModel) {
+        RagProperties.AnswerCache config = ragProperties.getAnswerCache();
+        long version = corpusVersion.current();
+        long now = System.nanoTime();
+        long ttlNanos = config.getTtl().toNanos();
+
+        Entry best = null;
+        float bestScore = (float) config.getSimilarityThreshold();
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.corpusVersion != version || now - entry.createdAtNanos > ttlNanos) {
+                    iterator.remove();
+                    continue;
+                }
+                if (!entry.matches(scope, chatModel, embeddingModel)
+                        || entry.embedding.length != questionEmbedding.length) {
+                    continue;
+                }
+                float score = similarityKernel.dot(questionEmbedding, entry.embedding);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+        }
+
+        if (best == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        log.debug("Respuesta servida desde caché semántica (similitud {}) para: {}", bestScore, best.response.getQuestion());
+        return Optional.of(best.response);
+    }
+
+    /**
+     * Guarda una respuesta generada contra la versión del corpus con la que se buscó su contexto.
+     */
+    public void put(float[] questionEmbedding, String scope, String chatModel, String embeddingModel,
+                    long corpusVersionAtSearch, AnswerResponse response) {
+        if (corpusVersionAtSearch != corpusVersion.current()) {
+            // El índice cambió durante la generación; la respuesta ya nace obsoleta
+            return;
+        }
+        int maxEntries = ragProperties.getAnswerCache().getMaxEntries();
+        synchronized (this) {
+            entries.addLast(new Entry(questionEmbedding.clone(), scope, chatModel, embeddingModel,
+                    corpusVersionAtSearch, System.nanoTime(), response));
+            while (entries.size() > maxEntries) {
+                entries.removeFirst();
+            }
+        }
+    }
+
+    public synchronized int invalidateAll() {
+        int count = entries.size();
+        entries.clear();
+        return count;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final float[] embedding;
+        final String scope;
+        final String chatModel;
+        final String embeddingModel;
+        final long corpusVersion;
+        final long createdAtNanos;
+        final AnswerResponse response;
+
+        Entry(float[] embedding, String scope, String chatModel, String embeddingModel,
+              long corpusVersion, long createdAtNanos, AnswerResponse response) {
+            this.embedding = embedding;
+            this.scope = scope;
+            this.chatModel = chatModel;
+            this.embeddingModel = embeddingModel;
+            this.corpusVersion = corpusVersion;
+            this.createdAtNanos = createdAtNanos;
+            this.response = response;
+        }
+
+        boolean matches(String scope, String chatModel, String embeddingModel) {
+            return this.scope.equals(scope) && this.chatModel.equals(chatModel)
+                    && this.embeddingModel.equals(embeddingModel);
+        }
+    }
+}
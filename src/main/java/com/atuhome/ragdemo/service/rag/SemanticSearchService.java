@@ -1,20 +1,33 @@
 package com.atuhome.ragdemo.service.rag;
 
+import com.atuhome.ragdemo.config.PostgreSQLVectorType;
 import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.RagException;
 import com.atuhome.ragdemo.model.dto.response.SearchResult;
-import com.atuhome.ragdemo.model.entity.Document;
 import com.atuhome.ragdemo.repository.DocumentChunkRepository;
-import com.atuhome.ragdemo.repository.DocumentRepository;
 import com.atuhome.ragdemo.service.ai.OllamaEmbeddingService;
+import com.atuhome.ragdemo.service.search.DocumentTagIndex;
+import com.atuhome.ragdemo.service.search.PgVectorSearchEngine;
+import com.atuhome.ragdemo.service.search.ReciprocalRankFusion;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.lexical.LexicalIndex;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,10 +36,20 @@ public class SemanticSearchService {
     private static final Logger log = LoggerFactory.getLogger(SemanticSearchService.class);
 
     private final DocumentChunkRepository chunkRepository;
-    private final DocumentRepository documentRepository;
     private final OllamaEmbeddingService embeddingService;
+    private final PgVectorSearchEngine pgVectorSearchEngine;
+    private final List<VectorIndex> vectorIndexes;
+    private final List<LexicalIndex> lexicalIndexes;
+    private final DocumentTagIndex documentTagIndex;
     private final RagProperties ragProperties;
 
+    /**
+     * Embedding unitario de la consulta, el mismo que usa la búsqueda (cacheado por modelo y texto).
+     */
+    public float[] embedQuery(String query) {
+        return embeddingService.generateEmbedding(query);
+    }
+
     public List<SearchResult> findSimilarChunks(String query) {
         double threshold = ragProperties.getSearch().getSimilarityThreshold();
         int maxResults = ragProperties.getSearch().getMaxResults();
@@ -35,31 +58,91 @@ public class SemanticSearchService {
     }
 
     public List<SearchResult> findSimilarChunks(String query, double threshold, int maxResults) {
-        log.debug("Buscando chunks similares para query: '{}' (threshold: {}, max: {})", 
-                 query, threshold, maxResults);
+        return findSimilarChunks(query, threshold, maxResults, ragProperties.getSearch().getEfSearch());
+    }
+
+    public List<SearchResult> findSimilarChunks(String query, double threshold, int maxResults, int efSearch) {
+        return findSimilarChunks(query, threshold, maxResults, efSearch, SearchFilter.none());
+    }
+
+    public List<SearchResult> findSimilarChunks(String query, double threshold, int maxResults, int efSearch,
+                                                SearchFilter filter) {
+        log.debug("Buscando chunks similares para query: '{}' (threshold: {}, max: {}, ef_search: {}, filtro: {})", 
+                 query, threshold, maxResults, efSearch, filter);
         
         try {
-            // Usar el método del OllamaEmbeddingService que ya maneja la búsqueda completa
-            return embeddingService.findSimilarChunks(query, maxResults, threshold).stream()
-                    .map(chunk -> SearchResult.builder()
-                            .chunkId(chunk.getId())
-                            .documentId(chunk.getDocument().getId())
-                            .documentName(chunk.getDocument().getFilename())
-                            .chunkIndex(chunk.getChunkIndex())
-                            .content(chunk.getContent())
-                            .pageNumber(chunk.getPageNumber())
-                            .charStart(chunk.getCharStart())
-                            .charEnd(chunk.getCharEnd())
-                            .similarity(0.8) // El OllamaEmbeddingService debería retornar esto
-                            .build())
+            // Organización, sector y etiquetas se traducen a documentos para los motores en la JVM;
+            // pgvector y el índice de texto completo los aplican en SQL
+            filter = documentTagIndex.resolve(filter);
+            float[] queryEmbedding = embeddingService.generateEmbedding(query);
+            
+            LexicalIndex lexicalIndex = activeLexicalIndex();
+            if (lexicalIndex != null) {
+                return findHybrid(query, queryEmbedding, lexicalIndex, threshold, maxResults, efSearch, filter);
+            }
+            
+            VectorIndex vectorIndex = activeVectorIndex();
+            if (vectorIndex != null) {
+                return toSearchResults(vectorIndex.search(queryEmbedding, maxResults, threshold, efSearch, filter),
+                        queryEmbedding);
+            }
+            
+            // Sin índice en la JVM listo, el top-k se resuelve en PostgreSQL usando el índice HNSW
+            return pgVectorSearchEngine.findNearest(queryEmbedding, threshold, maxResults, efSearch, filter).stream()
+                    .map(row -> mapToSearchResult(row, ((Number) row[7]).doubleValue()))
                     .toList();
             
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            // Un fallo no es lo mismo que no encontrar nada: la pregunta no debe responderse como sin resultados
             log.error("Error en búsqueda semántica para query: '{}'", query, e);
-            return Collections.emptyList();
+            throw new RagException("Error en la búsqueda semántica", e);
         }
     }
 
+    /**
+     * Recuperación para un lote de consultas: un solo paso por el modelo de embeddings y, con un
+     * motor exhaustivo en la JVM, un solo recorrido del corpus. Con búsqueda híbrida o pgvector
+     * cada consulta se resuelve por separado reutilizando su embedding.
+     *
+     * @return Un resultado por consulta, en el mismo orden
+     * @throws RagException si falla la búsqueda de alguna consulta
+     */
+    public List<List<SearchResult>> findSimilarChunksBatch(List<String> queries, double threshold, int maxResults,
+                                                           int efSearch, SearchFilter filter) {
+        log.debug("Buscando chunks similares para lote de {} consultas (threshold: {}, max: {}, ef_search: {}, filtro: {})",
+                queries.size(), threshold, maxResults, efSearch, filter);
+        
+        filter = documentTagIndex.resolve(filter);
+        List<float[]> queryEmbeddings = embeddingService.generateEmbeddings(queries);
+        
+        LexicalIndex lexicalIndex = activeLexicalIndex();
+        VectorIndex vectorIndex = activeVectorIndex();
+        if (lexicalIndex == null && vectorIndex != null) {
+            List<List<ScoredChunk>> rankings = vectorIndex.searchBatch(queryEmbeddings, maxResults, threshold, efSearch, filter);
+            List<List<SearchResult>> results = new ArrayList<>(rankings.size());
+            for (int i = 0; i < rankings.size(); i++) {
+                results.add(toSearchResults(rankings.get(i), queryEmbeddings.get(i)));
+            }
+            return results;
+        }
+        
+        List<List<SearchResult>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            try {
+                float[] queryEmbedding = queryEmbeddings.get(i);
+                results.add(lexicalIndex != null
+                        ? findHybrid(queries.get(i), queryEmbedding, lexicalIndex, threshold, maxResults, efSearch, filter)
+                        : pgVectorSearchEngine.findNearest(queryEmbedding, threshold, maxResults, efSearch, filter).stream()
+                                .map(row -> mapToSearchResult(row, ((Number) row[7]).doubleValue()))
+                                .toList());
+            } catch (RuntimeException e) {
+                log.error("Error en búsqueda semántica para query del lote: '{}'", queries.get(i), e);
+                throw new RagException("Error en la búsqueda semántica del lote", e);
+            }
+        }
+        return results;
+    }
+
     public List<SearchResult> findSimilarChunksInDocument(String query, UUID documentId) {
         double threshold = ragProperties.getSearch().getSimilarityThreshold();
         int maxResults = ragProperties.getSearch().getMaxResults();
@@ -69,77 +152,133 @@ public class SemanticSearchService {
 
     public List<SearchResult> findSimilarChunksInDocument(String query, UUID documentId, 
                                                          double threshold, int maxResults) {
-        log.debug("Buscando chunks similares en documento {} para query: '{}'", documentId, query);
+        return findSimilarChunksInDocuments(query, List.of(documentId), threshold, maxResults);
+    }
+
+    public List<SearchResult> findSimilarChunksInDocuments(String query, Collection<UUID> documentIds, 
+                                                          double threshold, int maxResults) {
+        log.debug("Buscando chunks similares en documentos {} para query: '{}'", documentIds, query);
+        
+        // El filtro se aplica dentro del motor: el top-k se calcula solo sobre los chunks de esos documentos
+        return findSimilarChunks(query, threshold, maxResults, ragProperties.getSearch().getEfSearch(),
+                SearchFilter.forDocuments(documentIds));
+    }
+
+    /**
+     * Recuperación híbrida: los rankings vectorial y léxico se piden ampliados y se fusionan por RRF.
+     * El umbral de similitud solo filtra el ranking vectorial; los aciertos léxicos entran aunque su
+     * coseno sea bajo, que es precisamente el caso de las referencias literales.
+     */
+    private List<SearchResult> findHybrid(String query, float[] queryEmbedding, LexicalIndex lexicalIndex,
+                                          double threshold, int maxResults, int efSearch, SearchFilter filter) {
+        int candidates = maxResults * Math.max(1, ragProperties.getSearch().getHybridOversampling());
         
+        // La consulta léxica se lanza primero para que, si va a la base de datos, corra mientras se resuelve la vectorial
+        CompletableFuture<List<ScoredChunk>> lexicalSearch = lexicalIndex.searchAsync(query, candidates, filter);
+        List<ScoredChunk> vectorRanking = findVectorCandidates(queryEmbedding, threshold, candidates, efSearch, filter);
+        List<ScoredChunk> lexicalRanking;
         try {
-            // Usar el método del OllamaEmbeddingService y filtrar por documento
-            return embeddingService.findSimilarChunks(query, maxResults, threshold).stream()
-                    .filter(chunk -> documentId.equals(chunk.getDocument().getId()))
-                    .map(chunk -> SearchResult.builder()
-                            .chunkId(chunk.getId())
-                            .documentId(chunk.getDocument().getId())
-                            .documentName(chunk.getDocument().getFilename())
-                            .chunkIndex(chunk.getChunkIndex())
-                            .content(chunk.getContent())
-                            .pageNumber(chunk.getPageNumber())
-                            .charStart(chunk.getCharStart())
-                            .charEnd(chunk.getCharEnd())
-                            .similarity(0.8)
-                            .build())
-                    .toList();
-            
-        } catch (Exception e) {
-            log.error("Error buscando en documento {} para query: '{}'", documentId, query, e);
-            return Collections.emptyList();
+            lexicalRanking = lexicalSearch.join();
+        } catch (CompletionException e) {
+            log.warn("Búsqueda léxica ({}) fallida; se usa solo el ranking vectorial", lexicalIndex.name(), e.getCause());
+            lexicalRanking = List.of();
         }
+        
+        List<ScoredChunk> fused = ReciprocalRankFusion.fuse(List.of(vectorRanking, lexicalRanking),
+                ragProperties.getSearch().getRrfK(), maxResults);
+        
+        log.debug("Búsqueda híbrida ({}): {} candidatos vectoriales, {} léxicos, {} fusionados",
+                lexicalIndex.name(), vectorRanking.size(), lexicalRanking.size(), fused.size());
+        
+        Map<UUID, Double> vectorScores = vectorRanking.stream()
+                .collect(Collectors.toMap(ScoredChunk::getChunkId, ScoredChunk::getScore, (a, b) -> a));
+        return toSearchResults(fused, vectorScores, queryEmbedding);
     }
 
-    private SearchResult mapToSearchResult(Object[] row) {
-        try {
-            UUID chunkId = (UUID) row[0];
-            UUID documentId = (UUID) row[1];
-            Integer chunkIndex = (Integer) row[2];
-            String content = (String) row[3];
-            // row[4] es el embedding - lo omitimos
-            Integer charStart = (Integer) row[5];
-            Integer charEnd = (Integer) row[6];
-            Integer pageNumber = (Integer) row[7];
-            // row[8] es metadata - podríamos usarlo si fuera necesario
-            // row[9] es created_at - lo omitimos
-            Double similarity = ((Number) row[10]).doubleValue();
-            
-            // Obtener nombre del documento
-            String documentName = documentRepository.findById(documentId)
-                    .map(Document::getFilename)
-                    .orElse("Documento no encontrado");
-            
-            return SearchResult.builder()
-                    .chunkId(chunkId)
-                    .documentId(documentId)
-                    .documentName(documentName)
-                    .chunkIndex(chunkIndex)
-                    .content(content)
-                    .similarity(similarity)
-                    .pageNumber(pageNumber)
-                    .charStart(charStart)
-                    .charEnd(charEnd)
-                    .build();
-                    
-        } catch (Exception e) {
-            log.error("Error mapeando resultado de búsqueda", e);
-            return null;
+    private List<ScoredChunk> findVectorCandidates(float[] queryEmbedding, double threshold, int maxResults,
+                                                   int efSearch, SearchFilter filter) {
+        VectorIndex vectorIndex = activeVectorIndex();
+        if (vectorIndex != null) {
+            return vectorIndex.search(queryEmbedding, maxResults, threshold, efSearch, filter);
         }
+        return pgVectorSearchEngine.findNearest(queryEmbedding, threshold, maxResults, efSearch, filter).stream()
+                .map(row -> new ScoredChunk((UUID) row[0], ((Number) row[7]).doubleValue()))
+                .toList();
     }
 
-    public boolean hasIndexedDocuments() {
-        return chunkRepository.count() > 0;
+    /**
+     * Motor léxico configurado y ya cargado, o {@code null} para búsqueda solo vectorial.
+     */
+    private LexicalIndex activeLexicalIndex() {
+        for (LexicalIndex lexicalIndex : lexicalIndexes) {
+            if (lexicalIndex.isEnabled() && lexicalIndex.isReady()) {
+                return lexicalIndex;
+            }
+        }
+        return null;
     }
 
-    public long getIndexedChunksCount() {
-        return chunkRepository.count();
+    /**
+     * Índice en la JVM configurado como motor y ya cargado, o {@code null} para usar pgvector.
+     */
+    private VectorIndex activeVectorIndex() {
+        for (VectorIndex vectorIndex : vectorIndexes) {
+            if (vectorIndex.isEnabled() && vectorIndex.isReady()) {
+                return vectorIndex;
+            }
+        }
+        return null;
+    }
+
+    private List<SearchResult> toSearchResults(List<ScoredChunk> scoredChunks, float[] queryEmbedding) {
+        Map<UUID, Double> scores = scoredChunks.stream()
+                .collect(Collectors.toMap(ScoredChunk::getChunkId, ScoredChunk::getScore, (a, b) -> a));
+        return toSearchResults(scoredChunks, scores, queryEmbedding);
+    }
+
+    /**
+     * Resultados en el orden recibido, resueltos con una sola consulta de proyección (sin hidratar
+     * entidades, embeddings ni metadata). La similitud informada es siempre el coseno con la
+     * consulta: la del motor vectorial si el chunk salió de él y, si solo lo aportó el ranking
+     * léxico, la calculada por PostgreSQL en la misma consulta.
+     */
+    private List<SearchResult> toSearchResults(List<ScoredChunk> ranked, Map<UUID, Double> vectorScores,
+                                               float[] queryEmbedding) {
+        if (ranked.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<UUID> chunkIds = ranked.stream().map(ScoredChunk::getChunkId).toList();
+        Map<UUID, Object[]> rowsById = chunkRepository.findSearchRowsByIdIn(chunkIds,
+                        PostgreSQLVectorType.toVectorLiteral(queryEmbedding)).stream()
+                .collect(Collectors.toMap(row -> (UUID) row[0], Function.identity()));
+        
+        // Mantener el orden del motor; los chunks borrados entre tanto se descartan
+        List<SearchResult> results = new ArrayList<>(ranked.size());
+        for (ScoredChunk scored : ranked) {
+            Object[] row = rowsById.get(scored.getChunkId());
+            if (row != null) {
+                Double similarity = vectorScores.get(scored.getChunkId());
+                results.add(mapToSearchResult(row, similarity != null ? similarity : ((Number) row[7]).doubleValue()));
+            }
+        }
+        return results;
     }
 
-    public long getPendingEmbeddingsCount() {
-        return chunkRepository.countChunksWithoutEmbedding();
+    /**
+     * Convierte una fila con las columnas de {@link DocumentChunkRepository#findNearestChunks}.
+     */
+    private SearchResult mapToSearchResult(Object[] row, double similarity) {
+        return SearchResult.builder()
+                .chunkId((UUID) row[0])
+                .documentId((UUID) row[1])
+                .chunkIndex((Integer) row[2])
+                .content((String) row[3])
+                .charStart((Integer) row[4])
+                .charEnd((Integer) row[5])
+                .pageNumber((Integer) row[6])
+                .similarity(similarity)
+                .documentName((String) row[8])
+                .build();
     }
 }
\ No newline at end of file
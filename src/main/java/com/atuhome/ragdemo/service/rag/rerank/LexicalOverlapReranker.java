@@ -0,0 +1,57 @@
+package com.atuhome.ragdemo.service.rag.rerank;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import com.atuhome.ragdemo.service.search.lexical.SpanishTextAnalyzer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reranker ligero: combina la similitud vectorial con la fracción de términos de la pregunta
+ * que aparecen en el chunk, analizados igual que en el índice BM25. Sube los chunks que citan
+ * literalmente lo que se pregunta ("artículo 23", siglas) sin ninguna llamada externa.
+ */
+@Component
+@RequiredArgsConstructor
+public class LexicalOverlapReranker implements Reranker {
+
+    public static final String NAME = "lexical";
+
+    private final RagProperties ragProperties;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<SearchResult> rerank(String question, List<SearchResult> candidates) {
+        Set<String> questionTerms = new HashSet<>(SpanishTextAnalyzer.analyze(question));
+        if (questionTerms.isEmpty()) {
+            return candidates;
+        }
+        double weight = ragProperties.getRerank().getLexicalWeight();
+
+        List<ScoredResult> scored = new ArrayList<>(candidates.size());
+        for (SearchResult candidate : candidates) {
+            Set<String> chunkTerms = new HashSet<>(SpanishTextAnalyzer.analyze(candidate.getContent()));
+            long matched = questionTerms.stream().filter(chunkTerms::contains).count();
+            double overlap = (double) matched / questionTerms.size();
+            double similarity = candidate.getSimilarity() != null ? candidate.getSimilarity() : 0.0;
+            scored.add(new ScoredResult(candidate, (1.0 - weight) * similarity + weight * overlap));
+        }
+
+        // Orden estable: a igual puntuación se conserva el de la búsqueda
+        scored.sort(Comparator.comparingDouble(ScoredResult::score).reversed());
+        return scored.stream().map(ScoredResult::result).toList();
+    }
+
+    private record ScoredResult(SearchResult result, double score) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.atuhome.ragdemo.service.rag.rerank;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import com.atuhome.ragdemo.service.ai.ModelManagementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaConnectionDetails;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reranker que pide al LLM de Ollama una puntuación de relevancia de 0 a 10 para cada pasaje.
+ * Todos los candidatos van en un único prompt para pagar una sola llamada por pregunta; los
+ * pasajes sin puntuación legible quedan detrás de los puntuados, en el orden de la búsqueda.
+ *
+ * Usa su propio cliente de Ollama con timeout de lectura igual a {@code app.rag.rerank.timeout}:
+ * cancelar el future en RerankingStage no corta la petición HTTP, y sin este límite las llamadas
+ * que superan el presupuesto seguirían ocupando los hilos de {@code rerankExecutor}.
+ */
+@Component
+public class OllamaScoringReranker implements Reranker {
+
+    private static final Logger log = LoggerFactory.getLogger(OllamaScoringReranker.class);
+
+    public static final String NAME = "ollama";
+
+    // Líneas "3: 7" o "[3] = 7.5"
+    private static final Pattern SCORE_LINE = Pattern.compile("\\[?(\\d{1,4})]?\\s*[:=\\-]\\s*(\\d+(?:\\.\\d+)?)");
+
+    private final ChatModel chatModel;
+    private final ModelManagementService modelManagementService;
+    private final RagProperties ragProperties;
+
+    @Autowired
+    public OllamaScoringReranker(OllamaConnectionDetails connectionDetails, ModelManagementService modelManagementService,
+                                 RagProperties ragProperties) {
+        this(createChatModel(connectionDetails.getBaseUrl(), ragProperties.getRerank().getTimeout()),
+                modelManagementService, ragProperties);
+    }
+
+    OllamaScoringReranker(ChatModel chatModel, ModelManagementService modelManagementService, RagProperties ragProperties) {
+        this.chatModel = chatModel;
+        this.modelManagementService = modelManagementService;
+        this.ragProperties = ragProperties;
+    }
+
+    private static ChatModel createChatModel(String baseUrl, Duration timeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        OllamaApi ollamaApi = OllamaApi.builder()
+                .baseUrl(baseUrl)
+                .restClientBuilder(RestClient.builder().requestFactory(requestFactory))
+                .build();
+        return OllamaChatModel.builder().ollamaApi(ollamaApi).build();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<SearchResult> rerank(String question, List<SearchResult> candidates) {
+        ChatResponse response = chatModel.call(new Prompt(createPrompt(question, candidates),
+                OllamaOptions.builder().model(resolveModel()).temperature(0.0).build()));
+        String content = response != null && response.getResult() != null
+                ? response.getResult().getOutput().getText() : null;
+
+        double[] scores = parseScores(content, candidates.size());
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        // Orden estable: a igual puntuación (o sin ella) se conserva el de la búsqueda
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        log.debug("Rerank ollama: {} de {} pasajes puntuados", Arrays.stream(scores).filter(s -> s >= 0).count(),
+                candidates.size());
+        return order.stream().map(candidates::get).toList();
+    }
+
+    private String createPrompt(String question, List<SearchResult> candidates) {
+        int maxChars = ragProperties.getRerank().getMaxPassageChars();
+        StringBuilder prompt = new StringBuilder()
+                .append("Puntúa de 0 a 10 cuánto ayuda cada pasaje a responder la pregunta.\n")
+                .append("Responde solo con una línea por pasaje con el formato <número>: <puntuación>.\n\n")
+                .append("Pregunta: ").append(question).append("\n\n");
+        for (int i = 0; i < candidates.size(); i++) {
+            String content = candidates.get(i).getContent();
+            if (content.length() > maxChars) {
+                content = content.substring(0, maxChars);
+            }
+            prompt.append('[').append(i + 1).append("] ").append(content.replace('\n', ' ')).append("\n\n");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Puntuación de cada pasaje por posición; -1 para los que el modelo no puntuó.
+     */
+    static double[] parseScores(String content, int candidates) {
+        double[] scores = new double[candidates];
+        Arrays.fill(scores, -1.0);
+        if (content == null) {
+            return scores;
+        }
+        Matcher matcher = SCORE_LINE.matcher(content);
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1)) - 1;
+            if (index >= 0 && index < candidates && scores[index] < 0) {
+                scores[index] = Double.parseDouble(matcher.group(2));
+            }
+        }
+        return scores;
+    }
+
+    private String resolveModel() {
+        String model = ragProperties.getRerank().getModel();
+        return model == null || model.isBlank() ? modelManagementService.getCurrentChatModel() : model;
+    }
+}
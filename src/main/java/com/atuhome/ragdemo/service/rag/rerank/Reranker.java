@@ -0,0 +1,30 @@
+package com.atuhome.ragdemo.service.rag.rerank;
+
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+
+import java.util.List;
+
+/**
+ * Reordenación de los candidatos recuperados antes de construir el contexto, seleccionable con
+ * {@code app.rag.rerank.engine}. Permite recuperar más candidatos con una búsqueda barata y
+ * delegar la precisión en un criterio más caro que solo se aplica a esos pocos.
+ *
+ * {@link RerankingStage} ejecuta el reranker activo con un presupuesto de tiempo por consulta;
+ * las implementaciones no necesitan controlarlo.
+ */
+public interface Reranker {
+
+    /**
+     * Nombre del reranker tal como se configura en {@code app.rag.rerank.engine}.
+     */
+    String name();
+
+    /**
+     * Reordena los candidatos de más a menos relevante para la pregunta.
+     *
+     * @param question Pregunta del usuario
+     * @param candidates Candidatos en el orden de la búsqueda
+     * @return Los mismos candidatos en el nuevo orden
+     */
+    List<SearchResult> rerank(String question, List<SearchResult> candidates);
+}
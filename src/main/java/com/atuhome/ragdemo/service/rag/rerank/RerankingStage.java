@@ -0,0 +1,131 @@
+package com.atuhome.ragdemo.service.rag.rerank;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Etapa de reranking entre la búsqueda y la construcción del contexto. Ejecuta el {@link Reranker}
+ * configurado en {@code rerankExecutor} y espera como mucho {@code app.rag.rerank.timeout}; si se
+ * agota el presupuesto, el reranker falla o el executor está saturado, se usa el orden de la
+ * búsqueda, de modo que el reranking nunca empeora la latencia más allá del presupuesto.
+ */
+@Component
+public class RerankingStage {
+
+    private static final Logger log = LoggerFactory.getLogger(RerankingStage.class);
+
+    private final List<Reranker> rerankers;
+    private final RagProperties ragProperties;
+    private final TaskExecutor rerankExecutor;
+    private final Timer duration;
+    private final Counter fallbacks;
+
+    public RerankingStage(List<Reranker> rerankers, RagProperties ragProperties,
+                          @Qualifier("rerankExecutor") TaskExecutor rerankExecutor, MeterRegistry meterRegistry) {
+        this.rerankers = rerankers;
+        this.ragProperties = ragProperties;
+        this.rerankExecutor = rerankExecutor;
+        this.duration = Timer.builder("rag.rerank.duration").register(meterRegistry);
+        this.fallbacks = Counter.builder("rag.rerank.fallbacks").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return activeReranker() != null;
+    }
+
+    /**
+     * Candidatos a recuperar para que el reranker elija {@code maxResults}.
+     */
+    public int candidatePoolSize(int maxResults) {
+        return isEnabled() ? maxResults * Math.max(1, ragProperties.getRerank().getCandidates()) : maxResults;
+    }
+
+    /**
+     * Reranking en el hilo llamante, para trabajo que ya corre en un executor acotado (lotes de
+     * preguntas): no ocupa los hilos de {@code rerankExecutor} que usan las preguntas interactivas.
+     * La duración la limita el timeout de lectura del cliente del reranker; si falla, se usa el
+     * orden de la búsqueda.
+     */
+    public List<SearchResult> rerankInCallerThread(String question, List<SearchResult> candidates, int maxResults) {
+        Reranker reranker = activeReranker();
+        if (reranker == null || candidates.size() <= 1) {
+            return limit(candidates, maxResults);
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<SearchResult> reranked = reranker.rerank(question, candidates);
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return limit(reranked, maxResults);
+        } catch (RuntimeException e) {
+            log.warn("Error en rerank {}: {}", reranker.name(), e.getMessage());
+            fallbacks.increment();
+            return limit(candidates, maxResults);
+        }
+    }
+
+    /**
+     * Reordena los candidatos y devuelve los {@code maxResults} primeros.
+     */
+    public List<SearchResult> rerank(String question, List<SearchResult> candidates, int maxResults) {
+        Reranker reranker = activeReranker();
+        if (reranker == null || candidates.size() <= 1) {
+            return limit(candidates, maxResults);
+        }
+
+        long budgetMs = ragProperties.getRerank().getTimeout().toMillis();
+        long start = System.nanoTime();
+        CompletableFuture<List<SearchResult>> future = null;
+        try {
+            future = CompletableFuture.supplyAsync(() -> reranker.rerank(question, candidates), rerankExecutor);
+            List<SearchResult> reranked = future.get(budgetMs, TimeUnit.MILLISECONDS);
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Rerank {}: {} candidatos en {}ms", reranker.name(), candidates.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return limit(reranked, maxResults);
+        } catch (TimeoutException e) {
+            // La llamada HTTP no se interrumpe aquí: la corta el timeout de lectura del cliente del
+            // reranker y su resultado se descarta
+            future.cancel(true);
+            log.warn("Rerank {} superó el presupuesto de {}ms; se conserva el orden de la búsqueda",
+                    reranker.name(), budgetMs);
+        } catch (RejectedExecutionException e) {
+            log.warn("Executor de rerank saturado; se conserva el orden de la búsqueda");
+        } catch (ExecutionException e) {
+            log.warn("Error en rerank {}: {}", reranker.name(), e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fallbacks.increment();
+        return limit(candidates, maxResults);
+    }
+
+    private Reranker activeReranker() {
+        String engine = ragProperties.getRerank().getEngine();
+        for (Reranker reranker : rerankers) {
+            if (reranker.name().equalsIgnoreCase(engine)) {
+                return reranker;
+            }
+        }
+        return null;
+    }
+
+    private static List<SearchResult> limit(List<SearchResult> results, int maxResults) {
+        return results.size() > maxResults ? List.copyOf(results.subList(0, maxResults)) : results;
+    }
+}
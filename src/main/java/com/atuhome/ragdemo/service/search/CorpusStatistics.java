@@ -0,0 +1,249 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.event.ChunksCreatedEvent;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Contadores del corpus (chunks totales y con embedding) mantenidos en memoria con los eventos de
+ * alta, embedding y borrado de chunks, para que cada pregunta no lance un {@code COUNT(*)} sobre
+ * {@code document_chunks}.
+ *
+ * Se guardan por documento porque el borrado solo informa del documento. Cada
+ * {@code app.rag.stats.reconcile-interval} se recalculan desde la tabla para corregir lo que no
+ * pase por eventos (p. ej. SQL manual); los documentos que cambian mientras se consulta conservan
+ * el valor de los eventos, que es más reciente que el de la consulta.
+ *
+ * Las lecturas nunca consultan la tabla: si la carga inicial falla se reintenta en segundo plano
+ * cada {@code app.rag.stats.retry-interval} y mientras tanto se sirven los valores de los eventos,
+ * con {@link #isInitialized()} a {@code false}.
+ */
+@Component
+public class CorpusStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(CorpusStatistics.class);
+
+    private final DocumentChunkRepository chunkRepository;
+    private final Object lock = new Object();
+
+    // Protegidos por lock
+    private final Map<UUID, DocumentCounts> byDocument = new HashMap<>();
+    private Set<UUID> touchedWhileReconciling;
+
+    // Se escriben con lock y se leen sin él
+    private volatile long totalChunks;
+    private volatile long embeddedChunks;
+    private volatile boolean initialized;
+    private volatile LocalDateTime reconciledAt;
+
+    public CorpusStatistics(DocumentChunkRepository chunkRepository) {
+        this.chunkRepository = chunkRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron cargar los contadores del corpus; se reintentará en segundo plano: {}",
+                    e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.rag.stats.retry-interval:30s}",
+               fixedDelayString = "${app.rag.stats.retry-interval:30s}")
+    public void retryUntilInitialized() {
+        if (!initialized) {
+            reconcilePeriodically();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.rag.stats.reconcile-interval:10m}",
+               fixedDelayString = "${app.rag.stats.reconcile-interval:10m}")
+    public void reconcilePeriodically() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron reconciliar los contadores del corpus: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula los contadores desde la tabla.
+     */
+    public synchronized void reconcile() {
+        synchronized (lock) {
+            touchedWhileReconciling = new HashSet<>();
+        }
+
+        List<Object[]> rows;
+        try {
+            rows = chunkRepository.countChunksByDocument();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                touchedWhileReconciling = null;
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            long previousTotal = totalChunks;
+            long previousEmbedded = embeddedChunks;
+
+            Map<UUID, DocumentCounts> counted = new HashMap<>();
+            for (Object[] row : rows) {
+                counted.put((UUID) row[0],
+                        new DocumentCounts(((Number) row[1]).longValue(), ((Number) row[2]).longValue()));
+            }
+            for (UUID documentId : touchedWhileReconciling) {
+                DocumentCounts live = byDocument.get(documentId);
+                if (live == null) {
+                    counted.remove(documentId);
+                } else {
+                    counted.put(documentId, live);
+                }
+            }
+            touchedWhileReconciling = null;
+
+            byDocument.clear();
+            byDocument.putAll(counted);
+            recomputeTotals();
+            reconciledAt = LocalDateTime.now();
+
+            if (initialized && (previousTotal != totalChunks || previousEmbedded != embeddedChunks)) {
+                log.info("Contadores del corpus corregidos: {} -> {} chunks, {} -> {} con embedding",
+                        previousTotal, totalChunks, previousEmbedded, embeddedChunks);
+            } else if (!initialized) {
+                log.info("Contadores del corpus cargados: {} chunks en {} documentos, {} con embedding",
+                        totalChunks, byDocument.size(), embeddedChunks);
+            }
+            initialized = true;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksCreated(ChunksCreatedEvent event) {
+        synchronized (lock) {
+            touch(event.getDocumentId()).total += event.getChunkCount();
+            totalChunks += event.getChunkCount();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        Map<UUID, Integer> embeddedByDocument = new HashMap<>();
+        event.getChunks().forEach(chunk -> embeddedByDocument.merge(chunk.getDocument().getId(), 1, Integer::sum));
+
+        synchronized (lock) {
+            embeddedByDocument.forEach((documentId, embedded) -> {
+                DocumentCounts counts = touch(documentId);
+                long previousTotal = counts.total;
+                counts.embedded += embedded;
+                // Chunks creados por una vía que no publica ChunksCreatedEvent
+                counts.total = Math.max(counts.total, counts.embedded);
+                embeddedChunks += embedded;
+                totalChunks += counts.total - previousTotal;
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        synchronized (lock) {
+            if (touchedWhileReconciling != null) {
+                touchedWhileReconciling.add(event.getDocumentId());
+            }
+            DocumentCounts removed = byDocument.remove(event.getDocumentId());
+            if (removed != null) {
+                totalChunks -= removed.total;
+                embeddedChunks -= removed.embedded;
+            }
+        }
+    }
+
+    /**
+     * Si los contadores ya se cargaron desde la tabla; antes solo reflejan los eventos recibidos.
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Sin contadores cargados se asume que hay chunks, para que sea la búsqueda la que decida.
+     */
+    public boolean hasIndexedChunks() {
+        return !initialized || totalChunks > 0;
+    }
+
+    public long getTotalChunks() {
+        return totalChunks;
+    }
+
+    public long getEmbeddedChunks() {
+        return embeddedChunks;
+    }
+
+    public long getPendingEmbeddings() {
+        return Math.max(0, totalChunks - embeddedChunks);
+    }
+
+    public int getDocumentCount() {
+        synchronized (lock) {
+            return byDocument.size();
+        }
+    }
+
+    public LocalDateTime getReconciledAt() {
+        return reconciledAt;
+    }
+
+    /**
+     * Debe llamarse con lock adquirido.
+     */
+    private DocumentCounts touch(UUID documentId) {
+        if (touchedWhileReconciling != null) {
+            touchedWhileReconciling.add(documentId);
+        }
+        return byDocument.computeIfAbsent(documentId, id -> new DocumentCounts(0, 0));
+    }
+
+    /**
+     * Debe llamarse con lock adquirido.
+     */
+    private void recomputeTotals() {
+        long total = 0;
+        long embedded = 0;
+        for (DocumentCounts counts : byDocument.values()) {
+            total += counts.total;
+            embedded += counts.embedded;
+        }
+        totalChunks = total;
+        embeddedChunks = embedded;
+    }
+
+    private static final class DocumentCounts {
+        private long total;
+        private long embedded;
+
+        private DocumentCounts(long total, long embedded) {
+            this.total = total;
+            this.embedded = embedded;
+        }
+    }
+}
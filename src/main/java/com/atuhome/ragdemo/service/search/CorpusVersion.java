@@ -0,0 +1,40 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.event.EmbeddingModelChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión monótona del corpus indexado. Avanza con cada alta o baja de chunks y con cada cambio
+ * de modelo de embeddings, de modo que los resultados derivados (p. ej. respuestas cacheadas)
+ * pueden comprobar con una comparación si siguen siendo válidos.
+ */
+@Component
+public class CorpusVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onEmbeddingModelChanged(EmbeddingModelChangedEvent event) {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,335 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.repository.DocumentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitsets por valor de organización, sector y etiqueta sobre los ordinales de los documentos.
+ *
+ * Las etiquetas se asignan al documento en la ingesta y todos sus chunks las heredan, así que
+ * un filtro por metadatos se resuelve con unas pocas operaciones AND/OR entre bitsets a un
+ * conjunto de documentos, y los motores solo puntúan las filas de esos documentos (todos
+ * acotan ya el recorrido por documento). Los documentos sin organización son comunes a todas.
+ */
+@Component
+public class DocumentTagIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentTagIndex.class);
+
+    private final DocumentRepository documentRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protegidos por lock
+    private final List<UUID> documentIds = new ArrayList<>();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet withoutOrganization = new BitSet();
+    private final Map<String, BitSet> byOrganization = new HashMap<>();
+    private final Map<String, BitSet> bySector = new HashMap<>();
+    private final Map<String, BitSet> byTag = new HashMap<>();
+    private boolean loading;
+    // Documentos registrados y eventos de borrado recibidos durante la recarga, en orden
+    private final List<Object> eventsDuringReload = new ArrayList<>();
+
+    public DocumentTagIndex(DocumentRepository documentRepository) {
+        this.documentRepository = documentRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    /**
+     * Reconstruye los bitsets desde {@code documents} con ordinales compactos. Solo se llama al arrancar:
+     * un documento borrado deja su ordinal libre (un bit a cero por bitset) hasta el siguiente reinicio.
+     * Los eventos que llegan mientras se lee la tabla se guardan y se reaplican en orden sobre el
+     * resultado, porque la lectura puede no haberlos visto.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            eventsDuringReload.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Document> documents;
+        int replayed;
+        try {
+            documents = documentRepository.findAll();
+
+            lock.writeLock().lock();
+            try {
+                documentIds.clear();
+                ordinals.clear();
+                live.clear();
+                withoutOrganization.clear();
+                byOrganization.clear();
+                bySector.clear();
+                byTag.clear();
+                documents.forEach(this::register);
+                replayed = eventsDuringReload.size();
+                eventsDuringReload.forEach(this::replay);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                eventsDuringReload.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        log.info("Índice de etiquetas cargado: {} documentos, {} organizaciones, {} sectores, {} etiquetas, "
+                        + "{} eventos reaplicados",
+                documents.size(), byOrganization.size(), bySector.size(), byTag.size(), replayed);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        Set<UUID> embeddedDocuments = new HashSet<>();
+        event.getChunks().forEach(chunk -> embeddedDocuments.add(chunk.getDocument().getId()));
+
+        for (UUID documentId : embeddedDocuments) {
+            if (!needsRegistration(documentId)) {
+                continue;
+            }
+            // Las etiquetas se leen de la tabla: el documento del evento puede ser un proxy sin sesión
+            documentRepository.findById(documentId).ifPresent(document -> {
+                lock.writeLock().lock();
+                try {
+                    if (loading) {
+                        eventsDuringReload.add(document);
+                    }
+                    register(document);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                eventsDuringReload.add(event);
+            }
+            unregister(event.getDocumentId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Convierte las restricciones por metadatos del filtro en una restricción por documentos para
+     * los motores en la JVM, intersecada con la lista explícita si la hay. Los filtros sin metadatos
+     * o ya resueltos se devuelven tal cual.
+     */
+    public SearchFilter resolve(SearchFilter filter) {
+        if (filter.isResolved()) {
+            return filter;
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet matching = (BitSet) live.clone();
+            if (filter.getOrganizationId() != null) {
+                BitSet organization = copyOf(byOrganization.get(filter.getOrganizationId()));
+                organization.or(withoutOrganization);
+                matching.and(organization);
+            }
+            if (filter.getSector() != null) {
+                matching.and(copyOf(bySector.get(filter.getSector())));
+            }
+            if (filter.getTags() != null) {
+                BitSet anyTag = new BitSet();
+                for (String tag : filter.getTags()) {
+                    BitSet tagged = byTag.get(tag);
+                    if (tagged != null) {
+                        anyTag.or(tagged);
+                    }
+                }
+                matching.and(anyTag);
+            }
+
+            Set<UUID> allowed = new LinkedHashSet<>();
+            if (filter.hasRequestedDocuments()) {
+                for (UUID documentId : filter.getRequestedDocumentIds()) {
+                    Integer ordinal = ordinals.get(documentId);
+                    if (ordinal != null && matching.get(ordinal)) {
+                        allowed.add(documentId);
+                    }
+                }
+            } else {
+                for (int ordinal = matching.nextSetBit(0); ordinal >= 0; ordinal = matching.nextSetBit(ordinal + 1)) {
+                    allowed.add(documentIds.get(ordinal));
+                }
+            }
+
+            log.debug("Filtro {} resuelto a {} documentos", filter, allowed.size());
+            return filter.resolvedTo(allowed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Organización o sector sin espacios; {@code null} si no hay valor.
+     */
+    public static String normalizeValue(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Las etiquetas no distinguen mayúsculas: "Contratos" y "contratos" son la misma.
+     */
+    public static String normalizeTag(String tag) {
+        String value = normalizeValue(tag);
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Etiquetas normalizadas, sin vacías ni repetidas, en el orden recibido.
+     */
+    public static List<String> normalizeTags(Collection<String> tags) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                String value = normalizeTag(tag);
+                if (value != null) {
+                    normalized.add(value);
+                }
+            }
+        }
+        return List.copyOf(normalized);
+    }
+
+    /**
+     * Durante la recarga se registran también los documentos ya vivos, para reaplicarlos sobre la lectura nueva.
+     */
+    private boolean needsRegistration(UUID documentId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(documentId);
+            return loading || ordinal == null || !live.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Debe llamarse con el lock de escritura adquirido.
+     */
+    private void replay(Object event) {
+        if (event instanceof Document document) {
+            register(document);
+        } else if (event instanceof DocumentChunksDeletedEvent deleted) {
+            unregister(deleted.getDocumentId());
+        }
+    }
+
+    /**
+     * Debe llamarse con el lock de escritura adquirido.
+     */
+    private void unregister(UUID documentId) {
+        Integer ordinal = ordinals.get(documentId);
+        if (ordinal != null) {
+            clearOrdinal(ordinal);
+        }
+    }
+
+    /**
+     * Debe llamarse con el lock de escritura adquirido.
+     */
+    private void register(Document document) {
+        Integer existing = ordinals.get(document.getId());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            clearOrdinal(ordinal);
+        } else {
+            ordinal = documentIds.size();
+            documentIds.add(document.getId());
+            ordinals.put(document.getId(), ordinal);
+        }
+
+        live.set(ordinal);
+        String organization = normalizeValue(document.getOrganizationId());
+        if (organization == null) {
+            withoutOrganization.set(ordinal);
+        } else {
+            byOrganization.computeIfAbsent(organization, key -> new BitSet()).set(ordinal);
+        }
+        String sector = normalizeValue(document.getSector());
+        if (sector != null) {
+            bySector.computeIfAbsent(sector, key -> new BitSet()).set(ordinal);
+        }
+        if (document.getTags() != null) {
+            for (String tag : document.getTags()) {
+                String value = normalizeTag(tag);
+                if (value != null) {
+                    byTag.computeIfAbsent(value, key -> new BitSet()).set(ordinal);
+                }
+            }
+        }
+    }
+
+    private void clearOrdinal(int ordinal) {
+        live.clear(ordinal);
+        withoutOrganization.clear(ordinal);
+        clearFrom(byOrganization, ordinal);
+        clearFrom(bySector, ordinal);
+        clearFrom(byTag, ordinal);
+    }
+
+    private static void clearFrom(Map<String, BitSet> bitsets, int ordinal) {
+        bitsets.values().removeIf(bits -> {
+            bits.clear(ordinal);
+            return bits.isEmpty();
+        });
+    }
+
+    private static BitSet copyOf(BitSet bits) {
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+}
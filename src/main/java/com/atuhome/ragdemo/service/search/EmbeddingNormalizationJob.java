@@ -0,0 +1,95 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migración que normaliza en lotes los embeddings guardados antes de que la ingesta
+ * almacenara vectores unitarios. Cada lote se confirma por separado, de modo que el
+ * trabajo puede interrumpirse y reanudarse sin repetir filas.
+ */
+@Service
+@RequiredArgsConstructor
+public class EmbeddingNormalizationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingNormalizationJob.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final DocumentChunkRepository chunkRepository;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile long processed;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    @Async("taskExecutor")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("La normalización de embeddings ya está en curso");
+            return;
+        }
+
+        processed = 0;
+        error = null;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        log.info("Iniciando normalización de embeddings ({} pendientes)", chunkRepository.countUnnormalizedEmbeddings());
+
+        try {
+            int updated;
+            do {
+                updated = chunkRepository.normalizeEmbeddingsBatch(BATCH_SIZE);
+                processed += updated;
+                log.debug("Normalizados {} embeddings (total {})", updated, processed);
+            } while (updated > 0);
+
+            log.info("Normalización de embeddings completada: {} filas actualizadas", processed);
+        } catch (Exception e) {
+            error = e.getMessage();
+            log.error("Error normalizando embeddings tras {} filas", processed, e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    public JobStatus getStatus() {
+        return new JobStatus(running.get(), processed, chunkRepository.countUnnormalizedEmbeddings(),
+                startedAt, finishedAt, error);
+    }
+
+    public static class JobStatus {
+        private final boolean running;
+        private final long processed;
+        private final long pending;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final String error;
+
+        public JobStatus(boolean running, long processed, long pending,
+                         LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+            this.running = running;
+            this.processed = processed;
+            this.pending = pending;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.error = error;
+        }
+
+        public boolean isRunning() { return running; }
+        public long getProcessed() { return processed; }
+        public long getPending() { return pending; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+}
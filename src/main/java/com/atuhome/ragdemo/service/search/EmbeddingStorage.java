@@ -0,0 +1,118 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.HalfVecBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tipo con el que está almacenada la columna {@code document_chunks.embedding}: {@code vector}
+ * (float4) o {@code halfvec} (float16). Con halfvec la tabla y los índices HNSW ocupan la mitad,
+ * a cambio de unos 3 dígitos decimales de precisión por componente, irrelevantes para el coseno.
+ *
+ * El tipo real se lee del catálogo al arrancar, porque lo decide la migración y no la configuración;
+ * {@code app.rag.embedding.storage} indica el tipo deseado y solo se avisa si no coinciden.
+ */
+@Component
+public class EmbeddingStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStorage.class);
+
+    public enum StorageType {
+        VECTOR("vector", "vector_cosine_ops", "vector_ip_ops"),
+        HALFVEC("halfvec", "halfvec_cosine_ops", "halfvec_ip_ops");
+
+        private final String sqlType;
+        private final String cosineOps;
+        private final String innerProductOps;
+
+        StorageType(String sqlType, String cosineOps, String innerProductOps) {
+            this.sqlType = sqlType;
+            this.cosineOps = cosineOps;
+            this.innerProductOps = innerProductOps;
+        }
+
+        public String getSqlType() { return sqlType; }
+        public String getCosineOps() { return cosineOps; }
+        public String getInnerProductOps() { return innerProductOps; }
+
+        public static StorageType fromName(String name) {
+            for (StorageType type : values()) {
+                if (type.sqlType.equalsIgnoreCase(name.trim())) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Tipo de almacenamiento de embeddings no soportado: " + name
+                    + " (valores: vector, halfvec)");
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageType configured;
+    private volatile StorageType current;
+
+    public EmbeddingStorage(JdbcTemplate jdbcTemplate, RagProperties ragProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.configured = StorageType.fromName(ragProperties.getEmbedding().getStorage());
+        this.current = configured;
+    }
+
+    // Antes que las cargas y trabajos de arranque que dependen del tipo de la columna
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectOnStartup() {
+        try {
+            String columnType = jdbcTemplate.queryForObject("""
+                    SELECT format_type(a.atttypid, a.atttypmod)
+                    FROM pg_attribute a
+                    WHERE a.attrelid = 'document_chunks'::regclass
+                      AND a.attname = 'embedding'
+                      AND NOT a.attisdropped
+                    """, String.class);
+            current = columnType != null && columnType.startsWith(StorageType.HALFVEC.sqlType)
+                    ? StorageType.HALFVEC : StorageType.VECTOR;
+        } catch (DataAccessException e) {
+            // Sin catálogo de PostgreSQL (p. ej. H2 en tests) se asume el tipo configurado
+            log.debug("No se pudo leer el tipo de document_chunks.embedding: {}", e.getMessage());
+            return;
+        }
+
+        if (current != configured) {
+            log.warn("La columna embedding es {} pero app.rag.embedding.storage={}; "
+                    + "migre con POST /api/index/storage/migrate", current.sqlType, configured.sqlType);
+        } else {
+            log.info("Embeddings almacenados como {}", current.sqlType);
+        }
+    }
+
+    public StorageType getCurrent() {
+        return current;
+    }
+
+    public StorageType getConfigured() {
+        return configured;
+    }
+
+    public boolean isHalfPrecision() {
+        return current == StorageType.HALFVEC;
+    }
+
+    /**
+     * Con halfvec redondea el embedding a float16 antes de guardarlo, para que los índices en la JVM
+     * tengan los mismos valores que se leerán de la base al reconstruirlos.
+     */
+    public float[] forStorage(float[] embedding) {
+        return isHalfPrecision() ? HalfVecBinaryCodec.roundInPlace(embedding) : embedding;
+    }
+
+    void markMigrated(StorageType type) {
+        current = type;
+    }
+}
@@ -0,0 +1,294 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.service.search.EmbeddingStorage.StorageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migración en segundo plano de la columna {@code embedding} entre {@code vector} y {@code halfvec}, sin
+ * bloquear {@code document_chunks} mientras se convierten las filas.
+ *
+ * <ol>
+ *   <li>Añade la columna {@code embedding_migrated} con el tipo nuevo y un trigger que la rellena en cada
+ *       INSERT o UPDATE de {@code embedding}, para que la ingesta concurrente no quede fuera.</li>
+ *   <li>Rellena las filas existentes en lotes por rango de id, cada lote en su propia transacción.</li>
+ *   <li>Crea los índices HNSW sobre la columna nueva con {@code CREATE INDEX CONCURRENTLY}; el de
+ *       producto interno solo si ya existía o {@code app.rag.search.inner-product} está activo.</li>
+ *   <li>En una transacción corta elimina la columna vieja (y con ella sus índices) y renombra la nueva.</li>
+ * </ol>
+ *
+ * Si algo falla antes del intercambio se retiran la columna, el trigger y los índices a medio hacer, y
+ * la tabla queda como estaba.
+ */
+@Service
+public class EmbeddingStorageMigrationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStorageMigrationJob.class);
+
+    static final String MIGRATED_COLUMN = "embedding_migrated";
+    static final int BACKFILL_BATCH_SIZE = 5_000;
+
+    // Mismos parámetros que los índices de schema.sql
+    private static final String HNSW_OPTIONS = "WITH (m = 16, ef_construction = 64)";
+    private static final String TRIGGER = "trg_document_chunks_embedding_migration";
+    private static final String TRIGGER_FUNCTION = "document_chunks_embedding_migration()";
+    private static final String COSINE_INDEX = "idx_chunks_embedding";
+    private static final String INNER_PRODUCT_INDEX = "idx_chunks_embedding_ip";
+    private static final String MIGRATED_SUFFIX = "_migrated";
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private final EmbeddingStorage embeddingStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RagProperties ragProperties;
+    private final TaskExecutor taskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile String phase = "idle";
+    private volatile StorageType source;
+    private volatile StorageType target;
+    private volatile long rows;
+    private volatile long backfilledRows;
+    private volatile long bytesBefore;
+    private volatile long bytesAfter;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public EmbeddingStorageMigrationJob(EmbeddingStorage embeddingStorage, JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager, RagProperties ragProperties,
+                                        @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+        this.embeddingStorage = embeddingStorage;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ragProperties = ragProperties;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Lanza la migración si no hay otra en curso.
+     *
+     * @return {@code true} si se lanzó
+     * @throws ConflictException si la columna ya tiene el tipo pedido
+     */
+    public boolean start(StorageType target) {
+        if (embeddingStorage.getCurrent() == target) {
+            throw new ConflictException("La columna embedding ya se almacena como " + target.getSqlType());
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        this.phase = "queued";
+        this.source = embeddingStorage.getCurrent();
+        this.target = target;
+        this.rows = 0;
+        this.backfilledRows = 0;
+        this.bytesBefore = 0;
+        this.bytesAfter = 0;
+        this.error = null;
+        this.startedAt = LocalDateTime.now();
+        this.finishedAt = null;
+
+        try {
+            taskExecutor.execute(() -> migrate(target));
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    private void migrate(StorageType target) {
+        int dimension = ragProperties.getEmbedding().getDimension();
+        String columnType = target.getSqlType() + "(" + dimension + ")";
+        boolean swapped = false;
+
+        try {
+            bytesBefore = relationBytes();
+            rows = countEmbeddings();
+            boolean innerProductIndex = ragProperties.getSearch().isInnerProduct() || indexExists(INNER_PRODUCT_INDEX);
+            log.info("Migrando {} embeddings de {} a {} ({} MB en tabla e índices)",
+                    rows, source.getSqlType(), columnType, bytesBefore / (1024 * 1024));
+
+            // Restos de una ejecución anterior interrumpida
+            dropShadowColumn();
+
+            phase = "adding_column";
+            jdbcTemplate.execute("ALTER TABLE document_chunks ADD COLUMN " + MIGRATED_COLUMN + " " + columnType);
+            jdbcTemplate.execute("CREATE FUNCTION " + TRIGGER_FUNCTION + " RETURNS trigger AS $$ BEGIN NEW."
+                    + MIGRATED_COLUMN + " := NEW.embedding::" + columnType + "; RETURN NEW; END; $$ LANGUAGE plpgsql");
+            jdbcTemplate.execute("CREATE TRIGGER " + TRIGGER + " BEFORE INSERT OR UPDATE OF embedding "
+                    + "ON document_chunks FOR EACH ROW EXECUTE FUNCTION " + TRIGGER_FUNCTION);
+
+            phase = "backfilling";
+            backfill(columnType);
+
+            // CONCURRENTLY no admite transacción: cada sentencia va en autocommit
+            phase = "indexing";
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + COSINE_INDEX + MIGRATED_SUFFIX
+                    + " ON document_chunks USING hnsw (" + MIGRATED_COLUMN + " " + target.getCosineOps() + ") "
+                    + HNSW_OPTIONS);
+            if (innerProductIndex) {
+                jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + INNER_PRODUCT_INDEX + MIGRATED_SUFFIX
+                        + " ON document_chunks USING hnsw (" + MIGRATED_COLUMN + " " + target.getInnerProductOps()
+                        + ") " + HNSW_OPTIONS);
+            }
+
+            phase = "swapping";
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("LOCK TABLE document_chunks IN ACCESS EXCLUSIVE MODE");
+                jdbcTemplate.execute("DROP TRIGGER " + TRIGGER + " ON document_chunks");
+                jdbcTemplate.execute("DROP FUNCTION " + TRIGGER_FUNCTION);
+                // Borrar la columna es un cambio de catálogo: sus índices caen con ella
+                jdbcTemplate.execute("ALTER TABLE document_chunks DROP COLUMN embedding");
+                jdbcTemplate.execute("ALTER TABLE document_chunks RENAME COLUMN " + MIGRATED_COLUMN + " TO embedding");
+                jdbcTemplate.execute("ALTER INDEX " + COSINE_INDEX + MIGRATED_SUFFIX + " RENAME TO " + COSINE_INDEX);
+                if (innerProductIndex) {
+                    jdbcTemplate.execute("ALTER INDEX " + INNER_PRODUCT_INDEX + MIGRATED_SUFFIX
+                            + " RENAME TO " + INNER_PRODUCT_INDEX);
+                }
+            });
+            swapped = true;
+
+            embeddingStorage.markMigrated(target);
+            bytesAfter = relationBytes();
+            phase = "completed";
+            log.info("Embeddings migrados a {}: {} MB -> {} MB (el espacio de la columna anterior se libera al "
+                            + "reescribir la tabla). Los índices en la JVM conservan los valores anteriores hasta "
+                            + "el próximo POST /api/index/rebuild",
+                    columnType, bytesBefore / (1024 * 1024), bytesAfter / (1024 * 1024));
+        } catch (Exception e) {
+            phase = "failed";
+            error = e.getMessage();
+            log.error("Error migrando los embeddings a {}", columnType, e);
+            if (!swapped) {
+                try {
+                    dropShadowColumn();
+                } catch (Exception cleanup) {
+                    log.warn("No se pudo retirar la columna {}: {}", MIGRATED_COLUMN, cleanup.getMessage());
+                }
+            }
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Convierte las filas existentes en lotes de {@link #BACKFILL_BATCH_SIZE} ids consecutivos. Las que se
+     * insertan o cambian durante el relleno ya las convierte el trigger.
+     */
+    private void backfill(String columnType) {
+        String update = "UPDATE document_chunks SET " + MIGRATED_COLUMN + " = embedding::" + columnType
+                + " WHERE id >= ? AND id <= ? AND embedding IS NOT NULL";
+        UUID after = MIN_ID;
+        while (true) {
+            List<UUID> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM document_chunks WHERE id > ? ORDER BY id LIMIT ?",
+                    UUID.class, after, BACKFILL_BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return;
+            }
+            UUID first = ids.get(0);
+            after = ids.get(ids.size() - 1);
+            backfilledRows += jdbcTemplate.update(update, first, after);
+            log.debug("Embeddings convertidos: {} de {}", backfilledRows, rows);
+        }
+    }
+
+    private void dropShadowColumn() {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + TRIGGER + " ON document_chunks");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS " + TRIGGER_FUNCTION);
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + COSINE_INDEX + MIGRATED_SUFFIX);
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INNER_PRODUCT_INDEX + MIGRATED_SUFFIX);
+        jdbcTemplate.execute("ALTER TABLE document_chunks DROP COLUMN IF EXISTS " + MIGRATED_COLUMN);
+    }
+
+    private boolean indexExists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name));
+    }
+
+    private long countEmbeddings() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document_chunks WHERE embedding IS NOT NULL", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Tabla con TOAST e índices, donde está casi todo el peso de los embeddings.
+     */
+    private long relationBytes() {
+        Long bytes = jdbcTemplate.queryForObject("SELECT pg_total_relation_size('document_chunks')", Long.class);
+        return bytes == null ? 0 : bytes;
+    }
+
+    public JobStatus getStatus() {
+        return new JobStatus(running.get(), phase, embeddingStorage.getCurrent().getSqlType(),
+                embeddingStorage.getConfigured().getSqlType(), source == null ? null : source.getSqlType(),
+                target == null ? null : target.getSqlType(), rows, backfilledRows, bytesBefore, bytesAfter,
+                startedAt, finishedAt, error);
+    }
+
+    public static class JobStatus {
+        private final boolean running;
+        private final String phase;
+        private final String storage;
+        private final String configuredStorage;
+        private final String source;
+        private final String target;
+        private final long rows;
+        private final long backfilledRows;
+        private final long bytesBefore;
+        private final long bytesAfter;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final String error;
+
+        public JobStatus(boolean running, String phase, String storage, String configuredStorage,
+                         String source, String target, long rows, long backfilledRows, long bytesBefore,
+                         long bytesAfter,
+                         LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+            this.running = running;
+            this.phase = phase;
+            this.storage = storage;
+            this.configuredStorage = configuredStorage;
+            this.source = source;
+            this.target = target;
+            this.rows = rows;
+            this.backfilledRows = backfilledRows;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.error = error;
+        }
+
+        public boolean isRunning() { return running; }
+        public String getPhase() { return phase; }
+        public String getStorage() { return storage; }
+        public String getConfiguredStorage() { return configuredStorage; }
+        public String getSource() { return source; }
+        public String getTarget() { return target; }
+        public long getRows() { return rows; }
+        public long getBackfilledRows() { return backfilledRows; }
+        public long getBytesBefore() { return bytesBefore; }
+        public long getBytesAfter() { return bytesAfter; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+}
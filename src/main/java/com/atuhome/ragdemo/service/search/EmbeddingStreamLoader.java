@@ -0,0 +1,189 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.HalfVecBinaryCodec;
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Carga en streaming de todos los embeddings para construir los índices en la JVM.
+ *
+ * Lee {@code (id, document_id, normalized, embedding)} con un cursor del servidor (consulta
+ * forward-only con fetch size dentro de una transacción de solo lectura, que es cuando el driver
+ * de PostgreSQL no trae el resultado entero) y decodifica el formato binario de pgvector en un
+ * buffer primitivo reservado una sola vez. Sin entidades ni contexto de persistencia, la memoria
+ * de la carga es la de un lote aunque el corpus tenga millones de chunks.
+ */
+@Component
+public class EmbeddingStreamLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingStreamLoader.class);
+
+    // Ordenado por documento para que cada uno ocupe filas contiguas; lo resuelve uk_chunk_index
+    private static final String SELECT_EMBEDDINGS = """
+            SELECT c.id, c.document_id, c.normalized, %s(c.embedding)
+            FROM document_chunks c
+            WHERE c.embedding IS NOT NULL
+            ORDER BY c.document_id, c.chunk_index
+            """;
+
+    /**
+     * Recibe cada lote. El lote y su buffer se reutilizan en la siguiente llamada:
+     * lo que se quiera conservar debe copiarse antes de volver.
+     */
+    @FunctionalInterface
+    public interface BatchConsumer {
+        void accept(EmbeddingBatch batch);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final EmbeddingStorage embeddingStorage;
+    private final RagProperties ragProperties;
+
+    public EmbeddingStreamLoader(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 EmbeddingStorage embeddingStorage, RagProperties ragProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.embeddingStorage = embeddingStorage;
+        this.ragProperties = ragProperties;
+    }
+
+    /**
+     * Recorre todos los embeddings de dimensión {@code dimension} en lotes de
+     * {@code app.rag.embedding.load-fetch-size} filas; los de otra dimensión se omiten.
+     */
+    public LoadReport load(int dimension, BatchConsumer consumer) {
+        int fetchSize = Math.max(1, ragProperties.getEmbedding().getLoadFetchSize());
+        boolean halfPrecision = embeddingStorage.isHalfPrecision();
+        String sql = String.format(SELECT_EMBEDDINGS, halfPrecision ? "halfvec_send" : "vector_send");
+        EmbeddingBatch batch = new EmbeddingBatch(fetchSize, dimension);
+        long[] counters = new long[3]; // filas, omitidas, bytes
+        long start = System.nanoTime();
+
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, resultSet -> {
+            byte[] encoded = resultSet.getBytes(4);
+            counters[2] += encoded.length;
+            if (!batch.add(resultSet, encoded, halfPrecision)) {
+                counters[1]++;
+                return;
+            }
+            counters[0]++;
+            if (batch.size == fetchSize) {
+                consumer.accept(batch);
+                batch.size = 0;
+            }
+        }));
+        if (batch.size > 0) {
+            consumer.accept(batch);
+        }
+
+        LoadReport report = new LoadReport(counters[0], counters[1], counters[2], (System.nanoTime() - start) / 1_000_000);
+        log.info("Embeddings cargados en streaming: {}", report);
+        return report;
+    }
+
+    /**
+     * Lote de filas decodificadas: el vector de la fila {@code i} ocupa
+     * {@code vectors()[offset(i) .. offset(i) + dimension)}.
+     */
+    public static final class EmbeddingBatch {
+        private final int dimension;
+        private final UUID[] chunkIds;
+        private final UUID[] documentIds;
+        private final boolean[] normalized;
+        private final float[] vectors;
+        private int size;
+
+        EmbeddingBatch(int capacity, int dimension) {
+            this.dimension = dimension;
+            this.chunkIds = new UUID[capacity];
+            this.documentIds = new UUID[capacity];
+            this.normalized = new boolean[capacity];
+            this.vectors = new float[capacity * dimension];
+        }
+
+        private boolean add(ResultSet resultSet, byte[] encoded, boolean halfPrecision) throws SQLException {
+            int encodedDimension = halfPrecision
+                    ? HalfVecBinaryCodec.dimensionOf(encoded)
+                    : PgVectorBinaryCodec.dimensionOf(encoded);
+            if (encodedDimension != dimension) {
+                log.warn("Chunk {} con dimensión {} ignorado (esperada {})",
+                        resultSet.getObject(1, UUID.class), encodedDimension, dimension);
+                return false;
+            }
+            if (halfPrecision) {
+                HalfVecBinaryCodec.decodeInto(encoded, vectors, size * dimension);
+            } else {
+                PgVectorBinaryCodec.decodeInto(encoded, vectors, size * dimension);
+            }
+            chunkIds[size] = resultSet.getObject(1, UUID.class);
+            documentIds[size] = resultSet.getObject(2, UUID.class);
+            normalized[size] = resultSet.getBoolean(3);
+            size++;
+            return true;
+        }
+
+        public int size() { return size; }
+        public int dimension() { return dimension; }
+        public UUID chunkId(int row) { return chunkIds[row]; }
+        public UUID documentId(int row) { return documentIds[row]; }
+        public boolean isNormalized(int row) { return normalized[row]; }
+        public float[] vectors() { return vectors; }
+        public int offset(int row) { return row * dimension; }
+
+        /**
+         * Copia del vector de la fila, para los índices que guardan un array por vector.
+         */
+        public float[] vectorCopy(int row) {
+            float[] vector = new float[dimension];
+            System.arraycopy(vectors, offset(row), vector, 0, dimension);
+            return vector;
+        }
+    }
+
+    public static class LoadReport {
+        private final long rows;
+        private final long skipped;
+        private final long bytes;
+        private final long elapsedMs;
+
+        public LoadReport(long rows, long skipped, long bytes, long elapsedMs) {
+            this.rows = rows;
+            this.skipped = skipped;
+            this.bytes = bytes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public long getRows() { return rows; }
+        public long getSkipped() { return skipped; }
+        public long getBytes() { return bytes; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        public double getRowsPerSecond() {
+            return rows * 1000.0 / Math.max(1, elapsedMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d filas (%d omitidas, %d MB) en %dms, %.0f filas/s",
+                    rows, skipped, bytes / (1024 * 1024), elapsedMs, getRowsPerSecond());
+        }
+    }
+}
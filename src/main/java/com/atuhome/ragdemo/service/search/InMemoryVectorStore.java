@@ -0,0 +1,1034 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.quantization.BinaryQuantizer;
+import com.atuhome.ragdemo.service.search.quantization.Int8ScalarQuantizer;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Almacén residente de embeddings para el motor {@code app.rag.search.engine=memory}.
+ *
+ * Todos los vectores viven en un único {@link MemorySegment} fuera del heap como matriz
+ * float fila a fila, con arrays paralelos de identificadores de chunk. Las filas se guardan
+ * normalizadas, de modo que la búsqueda es un producto escalar sobre memoria primitiva sin
+ * hidratar entidades; las filas eliminadas se marcan como borradas y se descartan en la
+ * siguiente recarga completa. Cada recarga construye una generación nueva mientras la
+ * anterior sigue atendiendo búsquedas, y la sustituye al terminar.
+ *
+ * Con cuantización int8 solo los códigos (un byte por dimensión) quedan residentes: la matriz
+ * float no se reserva y los candidatos de la primera pasada se puntúan con los embeddings
+ * originales leídos de la base, de modo que caben cuatro veces más chunks en la misma memoria.
+ */
+@Component
+public class InMemoryVectorStore implements VectorIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryVectorStore.class);
+
+    public static final String ENGINE_NAME = "memory";
+    public static final String QUANTIZATION_NONE = "none";
+    public static final String QUANTIZATION_INT8 = "int8";
+    public static final String QUANTIZATION_BINARY = "binary";
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long VECTOR_ALIGNMENT = 64;
+
+    private final EmbeddingStreamLoader embeddingLoader;
+    private final DocumentChunkRepository chunkRepository;
+    private final RagProperties ragProperties;
+    private final SimilarityKernel similarityKernel;
+    private final PartitionedScanExecutor scanExecutor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final int dimension;
+    private final String quantization;
+    private final int codeBytesPerRow;
+    private final boolean residentFloats;
+
+    // Protegidos por lock
+    private Generation current;
+    private boolean loading;
+    private final List<Object> eventsDuringLoad = new ArrayList<>();
+    private volatile boolean ready;
+
+    public InMemoryVectorStore(EmbeddingStreamLoader embeddingLoader, DocumentChunkRepository chunkRepository,
+                               RagProperties ragProperties, SimilarityKernel similarityKernel,
+                               PartitionedScanExecutor scanExecutor) {
+        this.embeddingLoader = embeddingLoader;
+        this.chunkRepository = chunkRepository;
+        this.ragProperties = ragProperties;
+        this.similarityKernel = similarityKernel;
+        this.scanExecutor = scanExecutor;
+        this.dimension = ragProperties.getEmbedding().getDimension();
+        this.quantization = resolveQuantization(ragProperties.getSearch().getQuantization());
+        this.codeBytesPerRow = switch (quantization) {
+            case QUANTIZATION_INT8 -> dimension;
+            case QUANTIZATION_BINARY -> BinaryQuantizer.bytesPerVector(dimension);
+            default -> 0;
+        };
+        this.residentFloats = !QUANTIZATION_INT8.equals(quantization);
+    }
+
+    @Override
+    public String name() {
+        return ENGINE_NAME;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (isEnabled()) {
+            reload();
+        }
+    }
+
+    @Override
+    public void rebuild() {
+        reload();
+    }
+
+    /**
+     * Reconstruye el almacén completo desde {@code document_chunks}, lote a lote desde el cursor, en una
+     * generación nueva. La anterior sigue atendiendo búsquedas y eventos mientras tanto; solo durante la
+     * carga inicial las búsquedas usan pgvector. Los eventos que llegan durante la carga se guardan y se
+     * reaplican en orden sobre la generación nueva antes de publicarla, porque el cursor puede no haberlos visto.
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        log.info("Cargando embeddings en el almacén vectorial en memoria (dimensión {})", dimension);
+
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            eventsDuringLoad.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Solo este hilo escribe en la generación nueva hasta publicarla bajo el lock de escritura
+        Generation next;
+        try {
+            next = new Generation(QUANTIZATION_INT8.equals(quantization) ? trainQuantizer() : null);
+            try {
+                embeddingLoader.load(dimension, next::appendBatch);
+            } catch (RuntimeException e) {
+                next.close();
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                eventsDuringLoad.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            replayed = eventsDuringLoad.size();
+            eventsDuringLoad.forEach(next::apply);
+            eventsDuringLoad.clear();
+            loading = false;
+            if (current != null) {
+                // Con el lock de escritura ninguna búsqueda está leyendo la generación anterior
+                current.close();
+            }
+            current = next;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Almacén vectorial en memoria cargado: {} vectores, {} MB fuera del heap ({} MB en códigos {}), "
+                        + "{} eventos reaplicados en {}ms",
+                next.size, (next.vectors.byteSize() + next.codes.byteSize()) / (1024 * 1024),
+                next.codes.byteSize() / (1024 * 1024), quantization, replayed, System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                eventsDuringLoad.add(event);
+            }
+            if (current != null) {
+                current.apply(event);
+                log.debug("Almacén vectorial actualizado con {} chunks (total {})", event.getChunks().size(), current.size);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                eventsDuringLoad.add(event);
+            }
+            if (current != null) {
+                current.apply(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Búsqueda exacta por similitud coseno (producto escalar de vectores unitarios) sobre todas las filas vigentes,
+     * repartida en particiones entre los hilos del pool de búsqueda. Con cuantización int8 o binaria el recorrido
+     * lee los códigos y solo los {@code maxResults * oversampling} mejores candidatos se puntúan con los floats.
+     *
+     * @param query Embedding de la consulta
+     * @param maxResults Número máximo de resultados
+     * @param threshold Similitud mínima
+     * @return Chunks ordenados por similitud descendente
+     */
+    @Override
+    public List<ScoredChunk> search(float[] query, int maxResults, double threshold, int efSearch, SearchFilter filter) {
+        return filter.hasDocumentFilter()
+                ? searchInDocuments(query, maxResults, threshold, filter.getDocumentIds())
+                : search(query, maxResults, threshold);
+    }
+
+    public List<ScoredChunk> search(float[] query, int maxResults, double threshold) {
+        return search(query, maxResults, threshold, null);
+    }
+
+    /**
+     * @param allowedRows Máscara de las filas que pueden entrar en el resultado, calculada sobre la
+     *                    generación que se recorre; {@code null} para todas
+     */
+    private List<ScoredChunk> search(float[] query, int maxResults, double threshold,
+                                     Function<Generation, BitSet> allowedRows) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimensión de consulta " + query.length + " distinta de " + dimension);
+        }
+        if (maxResults <= 0) {
+            return List.of();
+        }
+
+        // Filas y consulta unitarias: la similitud coseno es el producto escalar
+        float[] unitQuery = VectorNormalizer.normalizedCopy(query);
+        float minSimilarity = (float) threshold;
+
+        int oversampling = ragProperties.getSearch().getOversampling();
+        List<ScoredChunk> candidates;
+        lock.readLock().lock();
+        try {
+            Generation rows = current;
+            if (rows == null) {
+                return List.of();
+            }
+            // La máscara se calcula sobre la generación que se va a recorrer
+            BitSet mask = allowedRows == null ? null : allowedRows.apply(rows);
+            // Los hilos del pool leen bajo el lock de lectura que mantiene este hilo mientras espera el resultado
+            if (!rows.codesReady()) {
+                return rows.toScoredChunks(rows.searchExact(unitQuery, maxResults, minSimilarity, mask));
+            }
+            if (residentFloats) {
+                return rows.toScoredChunks(rows.searchQuantized(unitQuery, maxResults, minSimilarity, oversampling, mask));
+            }
+            candidates = rows.toScoredChunks(rows.firstPass(unitQuery, maxResults * Math.max(1, oversampling), mask));
+        } finally {
+            lock.readLock().unlock();
+        }
+        // int8: los floats de los candidatos se leen de la base sin retener el lock
+        return rescore(unitQuery, candidates, maxResults, minSimilarity);
+    }
+
+    /**
+     * Lote de consultas sobre vectores float: un único recorrido del corpus en el que cada fila, ya
+     * en caché, se compara con todas las consultas; con filtro, solo las filas de sus documentos.
+     * Con cuantización se resuelve consulta a consulta, porque ese camino ya recorre solo los códigos.
+     */
+    @Override
+    public List<List<ScoredChunk>> searchBatch(List<float[]> queries, int maxResults, double threshold, int efSearch,
+                                               SearchFilter filter) {
+        if (!QUANTIZATION_NONE.equals(quantization) || queries.size() <= 1 || maxResults <= 0) {
+            return VectorIndex.super.searchBatch(queries, maxResults, threshold, efSearch, filter);
+        }
+
+        float[][] unitQueries = new float[queries.size()][];
+        for (int q = 0; q < unitQueries.length; q++) {
+            if (queries.get(q).length != dimension) {
+                throw new IllegalArgumentException("Dimensión de consulta " + queries.get(q).length + " distinta de " + dimension);
+            }
+            unitQueries[q] = VectorNormalizer.normalizedCopy(queries.get(q));
+        }
+        float minSimilarity = (float) threshold;
+
+        lock.readLock().lock();
+        try {
+            Generation rows = current;
+            List<List<ScoredChunk>> results = new ArrayList<>(unitQueries.length);
+            if (rows == null) {
+                for (int q = 0; q < unitQueries.length; q++) {
+                    results.add(List.of());
+                }
+                return results;
+            }
+            BitSet mask = filter.hasDocumentFilter() ? rows.rowMask(rows.rangesOf(filter.getDocumentIds())) : null;
+            TopKCollector[] topKs = scanExecutor.scanBatch(rows.size, unitQueries.length, maxResults,
+                    (fromRow, toRow, partials) -> rows.scanRowsBatch(unitQueries, fromRow, toRow, minSimilarity, mask,
+                            partials));
+            for (TopKCollector topK : topKs) {
+                results.add(rows.toScoredChunks(topK));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Búsqueda limitada a las filas de los documentos indicados. Si suman como mucho una partición
+     * (unos pocos documentos) se recorren exactamente sus rangos contiguos en el hilo llamante; si no
+     * (una organización o etiqueta con muchos documentos), sus filas se marcan en una máscara que
+     * recorren en paralelo el camino exacto o el cuantizado, igual que una búsqueda sin filtro.
+     */
+    public List<ScoredChunk> searchInDocuments(float[] query, int maxResults, double threshold,
+                                               Collection<UUID> documentIds) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimensión de consulta " + query.length + " distinta de " + dimension);
+        }
+        if (maxResults <= 0 || documentIds.isEmpty()) {
+            return List.of();
+        }
+
+        float[] unitQuery = VectorNormalizer.normalizedCopy(query);
+        List<ScoredChunk> candidates;
+
+        lock.readLock().lock();
+        try {
+            Generation rows = current;
+            if (rows == null) {
+                return List.of();
+            }
+            List<RowRange> ranges = rows.rangesOf(documentIds);
+            if (Generation.rowCount(ranges) > scanExecutor.getPartitionSize()) {
+                candidates = null;
+            } else if (residentFloats) {
+                TopKCollector topK = new TopKCollector(maxResults);
+                for (RowRange range : ranges) {
+                    rows.scanRows(unitQuery, range.start(), range.end(), (float) threshold, null, topK);
+                }
+                return rows.toScoredChunks(topK);
+            } else {
+                Int8ScalarQuantizer.QuantizedQuery quantizedQuery = rows.quantizer.prepareQuery(unitQuery);
+                TopKCollector firstPass = new TopKCollector(
+                        maxResults * Math.max(1, ragProperties.getSearch().getOversampling()));
+                for (RowRange range : ranges) {
+                    rows.scanQuantizedRows(quantizedQuery, range.start(), range.end(), null, firstPass);
+                }
+                candidates = rows.toScoredChunks(firstPass);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (candidates == null) {
+            // Los rangos se vuelven a resolver sobre la generación vigente cuando se tome el lock
+            return search(query, maxResults, threshold, rows -> rows.rowMask(rows.rangesOf(documentIds)));
+        }
+        return rescore(unitQuery, candidates, maxResults, (float) threshold);
+    }
+
+    /**
+     * Mide el recall@k de la búsqueda cuantizada (int8 o binaria) frente a la búsqueda exacta en float.
+     * Las consultas sintéticas combinan dos chunks aleatorios del corpus para no coincidir con ninguno.
+     * El lock de lectura se toma consulta a consulta, de modo que la evaluación no frena la ingesta; con
+     * int8 la referencia exacta sale de un recorrido del cursor, porque los floats no están residentes.
+     *
+     * @param sampleQueries Número de consultas a evaluar
+     * @param k Tamaño del top-k comparado
+     */
+    public RecallReport evaluateQuantizationRecall(int sampleQueries, int k) {
+        if (sampleQueries <= 0 || k <= 0) {
+            throw new IllegalArgumentException("El número de consultas y k deben ser positivos");
+        }
+
+        Random random = new Random(42);
+        List<UUID> seeds;
+        long floatBytes;
+        long codeBytes;
+        lock.readLock().lock();
+        try {
+            Generation rows = current;
+            if (rows == null || !rows.codesReady()) {
+                throw new ConflictException("La cuantización no está activa en el almacén en memoria");
+            }
+            if (rows.size - rows.deletedCount < 2) {
+                throw new ConflictException("No hay suficientes vectores cargados para evaluar");
+            }
+            seeds = rows.randomLiveChunkIds(random, 2 * sampleQueries);
+            floatBytes = rows.vectors.byteSize();
+            codeBytes = rows.codes.byteSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<UUID, float[]> seedVectors = loadUnitVectors(seeds);
+        List<float[]> queries = new ArrayList<>(sampleQueries);
+        for (int i = 0; i + 1 < seeds.size(); i += 2) {
+            float[] first = seedVectors.get(seeds.get(i));
+            float[] second = seedVectors.get(seeds.get(i + 1));
+            if (first == null || second == null) {
+                // Borrado entre el sorteo y la lectura
+                continue;
+            }
+            float[] query = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                query[d] = first[d] + second[d];
+            }
+            queries.add(VectorNormalizer.normalizedCopy(query));
+        }
+        if (queries.isEmpty()) {
+            throw new ConflictException("No hay suficientes vectores cargados para evaluar");
+        }
+
+        int oversampling = ragProperties.getSearch().getOversampling();
+        long exactNanos = 0;
+        long quantizedNanos = 0;
+        List<Set<UUID>> exactFromDatabase = List.of();
+        if (!residentFloats) {
+            long start = System.nanoTime();
+            exactFromDatabase = exactFromDatabase(queries, k);
+            exactNanos = System.nanoTime() - start;
+        }
+
+        double firstPassRecall = 0;
+        double rescoredRecall = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            float[] query = queries.get(q);
+            Set<UUID> expected;
+            List<ScoredChunk> firstPass;
+
+            lock.readLock().lock();
+            try {
+                Generation rows = current;
+                if (rows == null) {
+                    throw new ConflictException("El almacén en memoria se cerró durante la evaluación");
+                }
+                if (residentFloats) {
+                    long start = System.nanoTime();
+                    expected = chunkIds(rows.toScoredChunks(rows.searchExact(query, k, Float.NEGATIVE_INFINITY, null)));
+                    exactNanos += System.nanoTime() - start;
+                } else {
+                    expected = exactFromDatabase.get(q);
+                }
+                firstPass = rows.toScoredChunks(rows.firstPass(query, k, null));
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            List<ScoredChunk> rescored = search(query, k, Float.NEGATIVE_INFINITY);
+            quantizedNanos += System.nanoTime() - start;
+
+            firstPassRecall += recall(expected, firstPass);
+            rescoredRecall += recall(expected, rescored);
+        }
+
+        int evaluated = queries.size();
+        return new RecallReport(quantization, evaluated, k, oversampling,
+                firstPassRecall / evaluated, rescoredRecall / evaluated,
+                exactNanos / 1_000_000.0 / evaluated, quantizedNanos / 1_000_000.0 / evaluated,
+                floatBytes, codeBytes);
+    }
+
+    /**
+     * Copias de las filas pedidas, buscadas en los rangos de su documento. Con int8 no hay floats
+     * residentes y el resultado queda vacío.
+     */
+    @Override
+    public Map<UUID, float[]> unitVectors(Map<UUID, UUID> documentByChunk) {
+        Map<UUID, float[]> vectors = new HashMap<>();
+        if (!residentFloats) {
+            return vectors;
+        }
+        lock.readLock().lock();
+        try {
+            Generation rows = current;
+            if (rows == null) {
+                return vectors;
+            }
+            for (Map.Entry<UUID, UUID> requested : documentByChunk.entrySet()) {
+                int row = rows.rowOf(requested.getValue(), requested.getKey());
+                if (row >= 0) {
+                    float[] vector = new float[dimension];
+                    MemorySegment.copy(rows.vectors, ValueLayout.JAVA_FLOAT, rows.rowOffset(row), vector, 0, dimension);
+                    vectors.put(requested.getKey(), vector);
+                }
+            }
+            return vectors;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENGINE_NAME.equalsIgnoreCase(ragProperties.getSearch().getEngine());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current == null ? 0 : current.size - current.deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String resolveQuantization(String configured) {
+        String mode = configured == null ? QUANTIZATION_NONE : configured.trim().toLowerCase();
+        return switch (mode) {
+            case QUANTIZATION_NONE, QUANTIZATION_INT8, QUANTIZATION_BINARY -> mode;
+            default -> {
+                log.warn("Cuantización '{}' desconocida, se usa '{}'", configured, QUANTIZATION_NONE);
+                yield QUANTIZATION_NONE;
+            }
+        };
+    }
+
+    /**
+     * Primera pasada del cursor con int8: solo acumula el rango por dimensión de los vectores unitarios,
+     * así la carga codifica cada fila al leerla sin retener nunca la matriz float.
+     */
+    private Int8ScalarQuantizer trainQuantizer() {
+        Int8ScalarQuantizer.Trainer trainer = new Int8ScalarQuantizer.Trainer(dimension);
+        float[] unit = new float[dimension];
+        embeddingLoader.load(dimension, batch -> {
+            for (int row = 0; row < batch.size(); row++) {
+                if (batch.isNormalized(row)) {
+                    trainer.accept(batch.vectors(), batch.offset(row));
+                } else {
+                    System.arraycopy(batch.vectors(), batch.offset(row), unit, 0, dimension);
+                    trainer.accept(VectorNormalizer.normalizeInPlace(unit), 0);
+                }
+            }
+        });
+        return trainer.build();
+    }
+
+    /**
+     * Puntúa los candidatos de la primera pasada int8 con los embeddings float de la base.
+     */
+    private List<ScoredChunk> rescore(float[] unitQuery, List<ScoredChunk> candidates, int maxResults,
+                                      float minSimilarity) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, float[]> vectors = loadUnitVectors(candidates.stream().map(ScoredChunk::getChunkId).toList());
+
+        TopKCollector topK = new TopKCollector(maxResults);
+        for (int i = 0; i < candidates.size(); i++) {
+            float[] vector = vectors.get(candidates.get(i).getChunkId());
+            if (vector == null) {
+                // Borrado después de la primera pasada
+                continue;
+            }
+            float similarity = similarityKernel.dot(unitQuery, vector);
+            if (similarity >= minSimilarity) {
+                topK.offer(i, similarity);
+            }
+        }
+
+        int count = topK.sortDescending();
+        List<ScoredChunk> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new ScoredChunk(candidates.get(topK.idAt(i)).getChunkId(), topK.scoreAt(i)));
+        }
+        return results;
+    }
+
+    private Map<UUID, float[]> loadUnitVectors(List<UUID> chunkIds) {
+        Map<UUID, float[]> vectors = new HashMap<>();
+        if (chunkIds.isEmpty()) {
+            return vectors;
+        }
+        for (Object[] row : chunkRepository.findEmbeddingsByIdIn(chunkIds)) {
+            float[] vector = PgVectorBinaryCodec.decode((byte[]) row[1]);
+            if (vector.length == dimension) {
+                vectors.put((UUID) row[0], VectorNormalizer.normalizeInPlace(vector));
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Top-k exacto de cada consulta en un único recorrido del cursor sobre los embeddings de la base.
+     */
+    private List<Set<UUID>> exactFromDatabase(List<float[]> queries, int k) {
+        TopKCollector[] topKs = new TopKCollector[queries.size()];
+        List<Map<Integer, UUID>> accepted = new ArrayList<>(queries.size());
+        for (int q = 0; q < topKs.length; q++) {
+            topKs[q] = new TopKCollector(k);
+            accepted.add(new HashMap<>());
+        }
+
+        float[] unit = new float[dimension];
+        int[] ordinal = {0};
+        embeddingLoader.load(dimension, batch -> {
+            for (int row = 0; row < batch.size(); row++) {
+                System.arraycopy(batch.vectors(), batch.offset(row), unit, 0, dimension);
+                if (!batch.isNormalized(row)) {
+                    VectorNormalizer.normalizeInPlace(unit);
+                }
+                int id = ordinal[0]++;
+                for (int q = 0; q < topKs.length; q++) {
+                    // Solo se recuerdan los chunk ids que llegaron a entrar en algún top-k
+                    if (topKs[q].offer(id, similarityKernel.dot(queries.get(q), unit))) {
+                        accepted.get(q).put(id, batch.chunkId(row));
+                    }
+                }
+            }
+        });
+
+        List<Set<UUID>> results = new ArrayList<>(topKs.length);
+        for (int q = 0; q < topKs.length; q++) {
+            Set<UUID> expected = new HashSet<>();
+            for (int i = 0; i < topKs[q].size(); i++) {
+                expected.add(accepted.get(q).get(topKs[q].idAt(i)));
+            }
+            results.add(expected);
+        }
+        return results;
+    }
+
+    private static Set<UUID> chunkIds(List<ScoredChunk> chunks) {
+        Set<UUID> ids = new HashSet<>();
+        for (ScoredChunk chunk : chunks) {
+            ids.add(chunk.getChunkId());
+        }
+        return ids;
+    }
+
+    private static double recall(Set<UUID> expected, List<ScoredChunk> actual) {
+        if (expected.isEmpty()) {
+            return 1.0;
+        }
+        int hits = 0;
+        for (ScoredChunk chunk : actual) {
+            if (expected.contains(chunk.getChunkId())) {
+                hits++;
+            }
+        }
+        return (double) hits / expected.size();
+    }
+
+    /**
+     * Una carga completa del almacén: matriz float, códigos y arrays de chunk ids en su propia arena.
+     * La generación publicada se lee con el lock de lectura y se modifica con el de escritura.
+     */
+    private final class Generation {
+        private final Int8ScalarQuantizer quantizer;
+        private Arena arena;
+        private MemorySegment vectors = MemorySegment.NULL;
+        private MemorySegment codes = MemorySegment.NULL;
+        private long[] chunkIdMostSig = new long[0];
+        private long[] chunkIdLeastSig = new long[0];
+        private final BitSet deleted = new BitSet();
+        private final Map<UUID, List<RowRange>> rowsByDocument = new HashMap<>();
+        private int capacity;
+        private int size;
+        private int deletedCount;
+
+        Generation(Int8ScalarQuantizer quantizer) {
+            this.quantizer = quantizer;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        List<RowRange> rangesOf(Collection<UUID> documentIds) {
+            List<RowRange> ranges = new ArrayList<>();
+            for (UUID documentId : documentIds) {
+                ranges.addAll(rowsByDocument.getOrDefault(documentId, List.of()));
+            }
+            return ranges;
+        }
+
+        static int rowCount(List<RowRange> ranges) {
+            int rows = 0;
+            for (RowRange range : ranges) {
+                rows += range.end() - range.start();
+            }
+            return rows;
+        }
+
+        /**
+         * Filas de los rangos indicados, para que los recorridos por particiones salten el resto.
+         */
+        BitSet rowMask(List<RowRange> ranges) {
+            BitSet mask = new BitSet(size);
+            for (RowRange range : ranges) {
+                mask.set(range.start(), range.end());
+            }
+            return mask;
+        }
+
+        /**
+         * Aplica un evento de ingesta o borrado.
+         */
+        void apply(Object event) {
+            if (event instanceof ChunksEmbeddedEvent embedded) {
+                Map<UUID, List<DocumentChunk>> byDocument = new LinkedHashMap<>();
+                for (DocumentChunk chunk : embedded.getChunks()) {
+                    if (chunk.getEmbedding() != null) {
+                        byDocument.computeIfAbsent(chunk.getDocument().getId(), id -> new ArrayList<>()).add(chunk);
+                    }
+                }
+                ensureCapacity(size + embedded.getChunks().size());
+                byDocument.forEach(this::appendDocumentRows);
+            } else if (event instanceof DocumentChunksDeletedEvent deletion) {
+                List<RowRange> ranges = rowsByDocument.remove(deletion.getDocumentId());
+                if (ranges != null) {
+                    for (RowRange range : ranges) {
+                        deleted.set(range.start(), range.end());
+                        deletedCount += range.end() - range.start();
+                    }
+                    log.debug("Marcadas como eliminadas las filas del documento {}", deletion.getDocumentId());
+                }
+            }
+        }
+
+        private void appendDocumentRows(UUID documentId, List<DocumentChunk> chunks) {
+            List<RowRange> ranges = rowsByDocument.computeIfAbsent(documentId, id -> new ArrayList<>());
+            int start = size;
+
+            for (DocumentChunk chunk : chunks) {
+                float[] embedding = chunk.getEmbedding();
+                if (embedding.length != dimension) {
+                    log.warn("Chunk {} con dimensión {} ignorado (esperada {})", chunk.getId(), embedding.length, dimension);
+                    continue;
+                }
+                if (containsChunk(ranges, chunk.getId())) {
+                    // Puede llegar un evento de un chunk ya incluido en la carga
+                    continue;
+                }
+                appendRow(chunk.getId(), chunk.isNormalized() ? embedding : VectorNormalizer.normalizedCopy(embedding));
+            }
+
+            addRange(ranges, start);
+        }
+
+        /**
+         * Añade un lote de la carga. Las filas llegan agrupadas por documento, así que cada tramo
+         * consecutivo del mismo documento es un rango (que continúa el anterior si lo corta el lote).
+         */
+        void appendBatch(EmbeddingStreamLoader.EmbeddingBatch batch) {
+            float[] unit = new float[dimension];
+
+            ensureCapacity(size + batch.size());
+            int row = 0;
+            while (row < batch.size()) {
+                UUID documentId = batch.documentId(row);
+                List<RowRange> ranges = rowsByDocument.computeIfAbsent(documentId, id -> new ArrayList<>());
+                int start = size;
+                for (; row < batch.size() && documentId.equals(batch.documentId(row)); row++) {
+                    System.arraycopy(batch.vectors(), batch.offset(row), unit, 0, dimension);
+                    if (!batch.isNormalized(row)) {
+                        VectorNormalizer.normalizeInPlace(unit);
+                    }
+                    appendRow(batch.chunkId(row), unit);
+                }
+                addRange(ranges, start);
+            }
+        }
+
+        private void appendRow(UUID chunkId, float[] unit) {
+            int row = size++;
+            if (residentFloats) {
+                MemorySegment.copy(unit, 0, vectors, ValueLayout.JAVA_FLOAT, rowOffset(row), dimension);
+            }
+            encodeRow(row, unit);
+            chunkIdMostSig[row] = chunkId.getMostSignificantBits();
+            chunkIdLeastSig[row] = chunkId.getLeastSignificantBits();
+        }
+
+        private void addRange(List<RowRange> ranges, int start) {
+            if (size == start) {
+                return;
+            }
+            int last = ranges.size() - 1;
+            if (last >= 0 && ranges.get(last).end() == start) {
+                ranges.set(last, new RowRange(ranges.get(last).start(), size));
+            } else {
+                ranges.add(new RowRange(start, size));
+            }
+        }
+
+        /**
+         * Fila vigente del chunk dentro de los rangos de su documento, o -1.
+         */
+        int rowOf(UUID documentId, UUID chunkId) {
+            long most = chunkId.getMostSignificantBits();
+            long least = chunkId.getLeastSignificantBits();
+            for (RowRange range : rowsByDocument.getOrDefault(documentId, List.of())) {
+                for (int row = range.start(); row < range.end(); row++) {
+                    if (chunkIdMostSig[row] == most && chunkIdLeastSig[row] == least && !deleted.get(row)) {
+                        return row;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private boolean containsChunk(List<RowRange> ranges, UUID chunkId) {
+            long most = chunkId.getMostSignificantBits();
+            long least = chunkId.getLeastSignificantBits();
+            for (RowRange range : ranges) {
+                for (int row = range.start(); row < range.end(); row++) {
+                    if (chunkIdMostSig[row] == most && chunkIdLeastSig[row] == least) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= capacity) {
+                return;
+            }
+
+            Arena previousArena = arena;
+            MemorySegment previousVectors = vectors;
+            MemorySegment previousCodes = codes;
+
+            allocate(Math.max(required, capacity * 2));
+            if (residentFloats) {
+                MemorySegment.copy(previousVectors, 0, vectors, 0, (long) size * dimension * Float.BYTES);
+            }
+            if (codeBytesPerRow > 0) {
+                MemorySegment.copy(previousCodes, 0, codes, 0, (long) size * codeBytesPerRow);
+            }
+            previousArena.close();
+        }
+
+        private void allocate(int newCapacity) {
+            arena = Arena.ofShared();
+            vectors = residentFloats
+                    ? arena.allocate((long) newCapacity * dimension * Float.BYTES, VECTOR_ALIGNMENT)
+                    : MemorySegment.NULL;
+            codes = codeBytesPerRow > 0
+                    ? arena.allocate((long) newCapacity * codeBytesPerRow, VECTOR_ALIGNMENT)
+                    : MemorySegment.NULL;
+            chunkIdMostSig = Arrays.copyOf(chunkIdMostSig, newCapacity);
+            chunkIdLeastSig = Arrays.copyOf(chunkIdLeastSig, newCapacity);
+            capacity = newCapacity;
+        }
+
+        void close() {
+            if (arena != null) {
+                arena.close();
+                arena = null;
+            }
+            vectors = MemorySegment.NULL;
+            codes = MemorySegment.NULL;
+        }
+
+        /**
+         * Puntúa las filas vigentes de {@code [fromRow, toRow)} y ofrece al colector las que superan el umbral.
+         *
+         * @param mask Filas admitidas por el filtro, o {@code null} para todas
+         */
+        void scanRows(float[] unitQuery, int fromRow, int toRow, float threshold, BitSet mask, TopKCollector topK) {
+            for (int row = nextRow(mask, fromRow); row >= 0 && row < toRow; row = nextRow(mask, row + 1)) {
+                if (deleted.get(row)) {
+                    continue;
+                }
+
+                float similarity = similarityKernel.dot(unitQuery, vectors, rowOffset(row));
+                if (similarity >= threshold) {
+                    topK.offer(row, similarity);
+                }
+            }
+        }
+
+        void scanRowsBatch(float[][] unitQueries, int fromRow, int toRow, float threshold, BitSet mask,
+                           TopKCollector[] topKs) {
+            for (int row = nextRow(mask, fromRow); row >= 0 && row < toRow; row = nextRow(mask, row + 1)) {
+                if (deleted.get(row)) {
+                    continue;
+                }
+
+                long offset = rowOffset(row);
+                for (int q = 0; q < unitQueries.length; q++) {
+                    float similarity = similarityKernel.dot(unitQueries[q], vectors, offset);
+                    if (similarity >= threshold) {
+                        topKs[q].offer(row, similarity);
+                    }
+                }
+            }
+        }
+
+        TopKCollector searchExact(float[] unitQuery, int maxResults, float minSimilarity, BitSet mask) {
+            return scanExecutor.scan(size, maxResults,
+                    (fromRow, toRow, partial) -> scanRows(unitQuery, fromRow, toRow, minSimilarity, mask, partial));
+        }
+
+        /**
+         * Primera pasada sobre los códigos cuantizados y rescoring exacto de los candidatos con los floats
+         * residentes. El umbral solo se aplica a la similitud exacta para no descartar por error de cuantización.
+         */
+        TopKCollector searchQuantized(float[] unitQuery, int maxResults, float minSimilarity, int oversampling,
+                                      BitSet mask) {
+            TopKCollector candidates = firstPass(unitQuery, maxResults * Math.max(1, oversampling), mask);
+
+            TopKCollector topK = new TopKCollector(maxResults);
+            for (int i = 0; i < candidates.size(); i++) {
+                int row = candidates.idAt(i);
+                float similarity = similarityKernel.dot(unitQuery, vectors, rowOffset(row));
+                if (similarity >= minSimilarity) {
+                    topK.offer(row, similarity);
+                }
+            }
+            return topK;
+        }
+
+        TopKCollector firstPass(float[] unitQuery, int candidates, BitSet mask) {
+            if (QUANTIZATION_BINARY.equals(quantization)) {
+                long[] queryBits = BinaryQuantizer.encode(unitQuery);
+                return scanExecutor.scan(size, candidates,
+                        (fromRow, toRow, partial) -> scanBinaryRows(queryBits, fromRow, toRow, mask, partial));
+            }
+            Int8ScalarQuantizer.QuantizedQuery quantizedQuery = quantizer.prepareQuery(unitQuery);
+            return scanExecutor.scan(size, candidates,
+                    (fromRow, toRow, partial) -> scanQuantizedRows(quantizedQuery, fromRow, toRow, mask, partial));
+        }
+
+        void scanQuantizedRows(Int8ScalarQuantizer.QuantizedQuery quantizedQuery, int fromRow, int toRow,
+                               BitSet mask, TopKCollector topK) {
+            float[] scaledQuery = quantizedQuery.getScaledQuery();
+            float offset = quantizedQuery.getOffset();
+            for (int row = nextRow(mask, fromRow); row >= 0 && row < toRow; row = nextRow(mask, row + 1)) {
+                if (!deleted.get(row)) {
+                    topK.offer(row, offset + similarityKernel.dotInt8(scaledQuery, codes, codeOffset(row)));
+                }
+            }
+        }
+
+        private void scanBinaryRows(long[] queryBits, int fromRow, int toRow, BitSet mask, TopKCollector topK) {
+            for (int row = nextRow(mask, fromRow); row >= 0 && row < toRow; row = nextRow(mask, row + 1)) {
+                if (!deleted.get(row)) {
+                    // Menor distancia de Hamming = mayor puntuación
+                    int hamming = BinaryQuantizer.hammingDistance(queryBits, codes, codeOffset(row));
+                    topK.offer(row, dimension - 2 * hamming);
+                }
+            }
+        }
+
+        private void encodeRow(int row, float[] unit) {
+            if (QUANTIZATION_BINARY.equals(quantization)) {
+                BinaryQuantizer.encode(unit, codes, codeOffset(row));
+            } else if (quantizer != null) {
+                quantizer.encode(unit, codes, codeOffset(row));
+            }
+        }
+
+        boolean codesReady() {
+            return QUANTIZATION_BINARY.equals(quantization) || quantizer != null;
+        }
+
+        /**
+         * Chunk ids de filas vigentes elegidas al azar (con repetición).
+         */
+        List<UUID> randomLiveChunkIds(Random random, int count) {
+            List<UUID> chunkIds = new ArrayList<>(count);
+            while (chunkIds.size() < count) {
+                int row = random.nextInt(size);
+                if (!deleted.get(row)) {
+                    chunkIds.add(chunkIdAt(row));
+                }
+            }
+            return chunkIds;
+        }
+
+        List<ScoredChunk> toScoredChunks(TopKCollector topK) {
+            int count = topK.sortDescending();
+            List<ScoredChunk> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new ScoredChunk(chunkIdAt(topK.idAt(i)), topK.scoreAt(i)));
+            }
+            return results;
+        }
+
+        /**
+         * Primera fila admitida desde {@code row}: la siguiente de la máscara, o {@code row} sin máscara.
+         */
+        private static int nextRow(BitSet mask, int row) {
+            return mask == null ? row : mask.nextSetBit(row);
+        }
+
+        private long rowOffset(int row) {
+            return (long) row * dimension * Float.BYTES;
+        }
+
+        private long codeOffset(int row) {
+            return (long) row * codeBytesPerRow;
+        }
+
+        private UUID chunkIdAt(int row) {
+            return new UUID(chunkIdMostSig[row], chunkIdLeastSig[row]);
+        }
+    }
+
+    private record RowRange(int start, int end) {}
+}
@@ -0,0 +1,77 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Crea el índice HNSW por producto interno solo cuando {@code app.rag.search.inner-product=true}.
+ *
+ * Con la opción desactivada ninguna consulta usa ese índice y cada inserción pagaría igualmente un
+ * segundo grafo HNSW, así que no se declara en schema.sql. Al arrancar con la opción activa se
+ * construye en segundo plano con {@code CREATE INDEX CONCURRENTLY}, sin bloquear la ingesta; hasta
+ * que termina, las búsquedas por producto interno recorren la tabla.
+ */
+@Service
+public class InnerProductIndexJob {
+
+    private static final Logger log = LoggerFactory.getLogger(InnerProductIndexJob.class);
+
+    static final String INDEX = "idx_chunks_embedding_ip";
+
+    // Mismos parámetros que idx_chunks_embedding en schema.sql
+    private static final String HNSW_OPTIONS = "WITH (m = 16, ef_construction = 64)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingStorage embeddingStorage;
+    private final RagProperties ragProperties;
+    private final TaskExecutor taskExecutor;
+
+    public InnerProductIndexJob(JdbcTemplate jdbcTemplate, EmbeddingStorage embeddingStorage,
+                                RagProperties ragProperties, @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingStorage = embeddingStorage;
+        this.ragProperties = ragProperties;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureOnStartup() {
+        if (ragProperties.getSearch().isInnerProduct()) {
+            taskExecutor.execute(this::ensureIndex);
+        }
+    }
+
+    /**
+     * Crea el índice si no existe. Un {@code CREATE INDEX CONCURRENTLY} interrumpido deja el índice
+     * marcado como no válido: se elimina y se vuelve a construir.
+     */
+    void ensureIndex() {
+        try {
+            Boolean valid = jdbcTemplate.query("SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)",
+                    resultSet -> resultSet.next() ? resultSet.getBoolean(1) : null, INDEX);
+            if (Boolean.TRUE.equals(valid)) {
+                return;
+            }
+            if (valid != null) {
+                log.warn("El índice {} quedó a medio construir; se vuelve a crear", INDEX);
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + INDEX);
+            }
+
+            long start = System.currentTimeMillis();
+            log.info("Creando el índice {} para app.rag.search.inner-product", INDEX);
+            // CONCURRENTLY no admite transacción: la sentencia va en autocommit
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY " + INDEX + " ON document_chunks USING hnsw (embedding "
+                    + embeddingStorage.getCurrent().getInnerProductOps() + ") " + HNSW_OPTIONS);
+            log.info("Índice {} creado en {}ms", INDEX, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("No se pudo crear el índice {}: las búsquedas por producto interno recorrerán la tabla", INDEX, e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ejecuta recorridos exhaustivos divididos en particiones contiguas de filas sobre el pool
+ * {@code vectorSearchPool}. Cada partición llena su propio {@link TopKCollector} y los
+ * resultados parciales se combinan al unir las tareas, sin estado compartido entre hilos.
+ */
+@Component
+public class PartitionedScanExecutor {
+
+    /**
+     * Recorrido de un rango {@code [fromRow, toRow)} que ofrece sus candidatos al colector recibido.
+     */
+    @FunctionalInterface
+    public interface RangeScan {
+        void scan(int fromRow, int toRow, TopKCollector topK);
+    }
+
+    /**
+     * Recorrido de un rango para varias consultas a la vez: {@code topKs[q]} recibe los candidatos de la consulta q.
+     */
+    @FunctionalInterface
+    public interface BatchRangeScan {
+        void scan(int fromRow, int toRow, TopKCollector[] topKs);
+    }
+
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+
+    public PartitionedScanExecutor(@Qualifier("vectorSearchPool") ForkJoinPool pool, RagProperties ragProperties) {
+        this.pool = pool;
+        this.partitionSize = Math.max(1, ragProperties.getSearch().getPartitionSize());
+    }
+
+    /**
+     * Recorre {@code [0, rowCount)} y devuelve los {@code k} mejores candidatos.
+     * Los rangos de una sola partición se recorren en el hilo llamante.
+     */
+    public TopKCollector scan(int rowCount, int k, RangeScan rangeScan) {
+        return scan(0, rowCount, k, rangeScan);
+    }
+
+    public TopKCollector scan(int fromRow, int toRow, int k, RangeScan rangeScan) {
+        if (toRow - fromRow <= partitionSize) {
+            TopKCollector topK = new TopKCollector(k);
+            rangeScan.scan(fromRow, toRow, topK);
+            return topK;
+        }
+        return pool.invoke(new PartitionTask(fromRow, toRow, k, rangeScan));
+    }
+
+    /**
+     * Recorre {@code [0, rowCount)} una sola vez para {@code queries} consultas y devuelve sus
+     * {@code k} mejores candidatos. Cada fila se carga de memoria una vez por lote en lugar de
+     * una vez por consulta.
+     */
+    public TopKCollector[] scanBatch(int rowCount, int queries, int k, BatchRangeScan rangeScan) {
+        if (rowCount <= partitionSize) {
+            TopKCollector[] topKs = newCollectors(queries, k);
+            rangeScan.scan(0, rowCount, topKs);
+            return topKs;
+        }
+        return pool.invoke(new BatchPartitionTask(0, rowCount, queries, k, rangeScan));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    private class PartitionTask extends RecursiveTask<TopKCollector> {
+
+        private final int fromRow;
+        private final int toRow;
+        private final int k;
+        private final RangeScan rangeScan;
+
+        PartitionTask(int fromRow, int toRow, int k, RangeScan rangeScan) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.k = k;
+            this.rangeScan = rangeScan;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (toRow - fromRow <= partitionSize) {
+                TopKCollector topK = new TopKCollector(k);
+                rangeScan.scan(fromRow, toRow, topK);
+                return topK;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            PartitionTask right = new PartitionTask(middle, toRow, k, rangeScan);
+            right.fork();
+            TopKCollector topK = new PartitionTask(fromRow, middle, k, rangeScan).compute();
+            topK.merge(right.join());
+            return topK;
+        }
+    }
+
+    private static TopKCollector[] newCollectors(int queries, int k) {
+        TopKCollector[] topKs = new TopKCollector[queries];
+        for (int q = 0; q < queries; q++) {
+            topKs[q] = new TopKCollector(k);
+        }
+        return topKs;
+    }
+
+    private class BatchPartitionTask extends RecursiveTask<TopKCollector[]> {
+
+        private final int fromRow;
+        private final int toRow;
+        private final int queries;
+        private final int k;
+        private final BatchRangeScan rangeScan;
+
+        BatchPartitionTask(int fromRow, int toRow, int queries, int k, BatchRangeScan rangeScan) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.queries = queries;
+            this.k = k;
+            this.rangeScan = rangeScan;
+        }
+
+        @Override
+        protected TopKCollector[] compute() {
+            if (toRow - fromRow <= partitionSize) {
+                TopKCollector[] topKs = newCollectors(queries, k);
+                rangeScan.scan(fromRow, toRow, topKs);
+                return topKs;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            BatchPartitionTask right = new BatchPartitionTask(middle, toRow, queries, k, rangeScan);
+            right.fork();
+            TopKCollector[] topKs = new BatchPartitionTask(fromRow, middle, queries, k, rangeScan).compute();
+            TopKCollector[] rightTopKs = right.join();
+            for (int q = 0; q < queries; q++) {
+                topKs[q].merge(rightTopKs[q]);
+            }
+            return topKs;
+        }
+    }
+}
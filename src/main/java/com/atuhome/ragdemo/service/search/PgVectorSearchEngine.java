@@ -0,0 +1,134 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.PostgreSQLVectorType;
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Motor de búsqueda vectorial que delega el top-k a pgvector.
+ * Solo viajan por la red los k chunks seleccionados, sin cargar embeddings en la JVM.
+ */
+@Component
+@RequiredArgsConstructor
+public class PgVectorSearchEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PgVectorSearchEngine.class);
+
+    private final DocumentChunkRepository chunkRepository;
+    private final RagProperties ragProperties;
+    private final EmbeddingStorage embeddingStorage;
+
+    private volatile boolean iterativeScan;
+
+    /**
+     * {@code hnsw.iterative_scan} existe desde pgvector 0.8; con versiones anteriores las búsquedas
+     * filtradas por metadatos se limitan a filtrar los vecinos sobremuestreados.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectOnStartup() {
+        try {
+            String version = chunkRepository.findVectorExtensionVersion();
+            iterativeScan = supportsIterativeScan(version);
+            log.info("pgvector {}: recorrido iterativo del índice HNSW {}", version,
+                    iterativeScan ? "disponible" : "no disponible");
+        } catch (DataAccessException e) {
+            log.warn("No se pudo leer la versión de pgvector; las búsquedas filtradas no usarán recorrido iterativo: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Busca los chunks más cercanos al embedding de la consulta usando el índice HNSW.
+     *
+     * @param queryEmbedding Embedding de la consulta
+     * @param threshold Similitud coseno mínima
+     * @param maxResults Número máximo de resultados
+     * @param efSearch Tamaño de la lista de candidatos HNSW para esta consulta
+     * @return Filas crudas en el orden de columnas de {@link DocumentChunkRepository#findNearestChunks}
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> findNearest(float[] queryEmbedding, double threshold, int maxResults, int efSearch) {
+        return findNearest(queryEmbedding, threshold, maxResults, efSearch, SearchFilter.none());
+    }
+
+    /**
+     * Variante filtrada. Con lista explícita de documentos (acotada por {@link SearchFilter#MAX_DOCUMENT_IDS})
+     * el top-k es exacto sobre sus chunks y no depende de {@code ef_search}. Con filtros por organización,
+     * sector o etiquetas se recorre el índice HNSW y el filtro se evalúa en SQL con un JOIN a
+     * {@code documents}: el coste depende de k y no del tamaño de la organización.
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> findNearest(float[] queryEmbedding, double threshold, int maxResults, int efSearch,
+                                      SearchFilter filter) {
+        String queryLiteral = PostgreSQLVectorType.toVectorLiteral(queryEmbedding);
+        String tags = DocumentChunkRepository.toTextArrayLiteral(filter.getTags());
+
+        if (filter.hasRequestedDocuments()) {
+            if (filter.getRequestedDocumentIds().isEmpty()) {
+                return List.of();
+            }
+            log.debug("Búsqueda pgvector exacta en {} documentos: k={}, threshold={}, filtro={}",
+                    filter.getRequestedDocumentIds().size(), maxResults, threshold, filter);
+            return chunkRepository.findNearestChunksInDocuments(queryLiteral, filter.getRequestedDocumentIds(),
+                    filter.getOrganizationId(), filter.getSector(), tags, 1.0 - threshold, maxResults);
+        }
+
+        if (filter.hasMetadataFilter()) {
+            // Sin recorrido iterativo, el índice entrega como mucho ef_search vecinos antes del filtro
+            int candidates = maxResults * Math.max(1, ragProperties.getSearch().getFilterOversampling());
+            chunkRepository.setHnswEfSearch(String.valueOf(Math.max(efSearch, candidates)));
+            if (iterativeScan) {
+                chunkRepository.setHnswIterativeScan("relaxed_order");
+            }
+            log.debug("Búsqueda pgvector filtrada: k={}, candidatos={}, threshold={}, iterativa={}, filtro={}",
+                    maxResults, candidates, threshold, iterativeScan, filter);
+            return embeddingStorage.isHalfPrecision()
+                    ? chunkRepository.findNearestHalfChunksMatching(queryLiteral, filter.getOrganizationId(),
+                            filter.getSector(), tags, 1.0 - threshold, candidates, maxResults)
+                    : chunkRepository.findNearestChunksMatching(queryLiteral, filter.getOrganizationId(),
+                            filter.getSector(), tags, 1.0 - threshold, candidates, maxResults);
+        }
+
+        // ef_search menor que k recortaría el resultado del índice
+        int effectiveEfSearch = Math.max(efSearch, maxResults);
+        chunkRepository.setHnswEfSearch(String.valueOf(effectiveEfSearch));
+
+        log.debug("Búsqueda pgvector: k={}, threshold={}, ef_search={}", maxResults, threshold, effectiveEfSearch);
+
+        // El índice HNSW solo se usa si la consulta tiene el mismo tipo que la columna
+        boolean halfPrecision = embeddingStorage.isHalfPrecision();
+        if (ragProperties.getSearch().isInnerProduct()) {
+            // Requiere embeddings unitarios (ver EmbeddingNormalizationJob)
+            return halfPrecision
+                    ? chunkRepository.findNearestHalfChunksByInnerProduct(queryLiteral, threshold, maxResults)
+                    : chunkRepository.findNearestChunksByInnerProduct(queryLiteral, threshold, maxResults);
+        }
+        return halfPrecision
+                ? chunkRepository.findNearestHalfChunks(queryLiteral, 1.0 - threshold, maxResults)
+                : chunkRepository.findNearestChunks(queryLiteral, 1.0 - threshold, maxResults);
+    }
+
+    static boolean supportsIterativeScan(String version) {
+        if (version == null) {
+            return false;
+        }
+        String[] parts = version.split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 0 || minor >= 8;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
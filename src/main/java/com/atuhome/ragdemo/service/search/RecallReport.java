@@ -0,0 +1,51 @@
+package com.atuhome.ragdemo.service.search;
+
+/**
+ * Resultado de comparar una búsqueda aproximada con el recorrido exacto en float.
+ */
+public class RecallReport {
+
+    private final String method;
+    private final int queries;
+    private final int k;
+    private final int oversampling;
+    private final double firstPassRecall;
+    private final double rescoredRecall;
+    private final double exactAvgMs;
+    private final double approximateAvgMs;
+    private final long floatBytes;
+    private final long encodedBytes;
+
+    public RecallReport(String method, int queries, int k, int oversampling,
+                        double firstPassRecall, double rescoredRecall,
+                        double exactAvgMs, double approximateAvgMs,
+                        long floatBytes, long encodedBytes) {
+        this.method = method;
+        this.queries = queries;
+        this.k = k;
+        this.oversampling = oversampling;
+        this.firstPassRecall = firstPassRecall;
+        this.rescoredRecall = rescoredRecall;
+        this.exactAvgMs = exactAvgMs;
+        this.approximateAvgMs = approximateAvgMs;
+        this.floatBytes = floatBytes;
+        this.encodedBytes = encodedBytes;
+    }
+
+    public String getMethod() { return method; }
+    public int getQueries() { return queries; }
+    public int getK() { return k; }
+    public int getOversampling() { return oversampling; }
+    public double getFirstPassRecall() { return firstPassRecall; }
+    public double getRescoredRecall() { return rescoredRecall; }
+    public double getExactAvgMs() { return exactAvgMs; }
+    public double getApproximateAvgMs() { return approximateAvgMs; }
+    public long getFloatBytes() { return floatBytes; }
+    public long getEncodedBytes() { return encodedBytes; }
+
+    @Override
+    public String toString() {
+        return String.format("RecallReport{method=%s, queries=%d, k=%d, oversampling=%d, firstPass=%.4f, rescored=%.4f, exact=%.3fms, approximate=%.3fms}",
+                method, queries, k, oversampling, firstPassRecall, rescoredRecall, exactAvgMs, approximateAvgMs);
+    }
+}
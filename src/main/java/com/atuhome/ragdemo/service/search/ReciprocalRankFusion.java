@@ -0,0 +1,37 @@
+package com.atuhome.ragdemo.service.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reciprocal Rank Fusion: combina rankings de escalas incomparables (coseno, BM25, ts_rank)
+ * usando solo la posición de cada chunk, {@code score = Σ 1 / (k + rank)}.
+ */
+public final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * @param rankings Rankings ordenados de mejor a peor
+     * @param k Constante de suavizado; valores altos reducen el peso de las primeras posiciones
+     * @param maxResults Número máximo de resultados
+     * @return Chunks fusionados ordenados por puntuación RRF descendente
+     */
+    public static List<ScoredChunk> fuse(List<List<ScoredChunk>> rankings, int k, int maxResults) {
+        Map<UUID, Double> fused = new LinkedHashMap<>();
+        for (List<ScoredChunk> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                fused.merge(ranking.get(rank).getChunkId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+
+        List<ScoredChunk> results = new ArrayList<>(fused.size());
+        fused.forEach((chunkId, score) -> results.add(new ScoredChunk(chunkId, score)));
+        results.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return results.size() > maxResults ? List.copyOf(results.subList(0, maxResults)) : results;
+    }
+}
@@ -0,0 +1,25 @@
+package com.atuhome.ragdemo.service.search;
+
+import java.util.UUID;
+
+/**
+ * Resultado de un motor vectorial: identificador del chunk y su similitud con la consulta.
+ */
+public class ScoredChunk {
+
+    private final UUID chunkId;
+    private final double score;
+
+    public ScoredChunk(UUID chunkId, double score) {
+        this.chunkId = chunkId;
+        this.score = score;
+    }
+
+    public UUID getChunkId() { return chunkId; }
+    public double getScore() { return score; }
+
+    @Override
+    public String toString() {
+        return String.format("ScoredChunk{chunkId=%s, score=%.4f}", chunkId, score);
+    }
+}
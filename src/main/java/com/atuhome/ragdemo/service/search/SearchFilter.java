@@ -0,0 +1,158 @@
+package com.atuhome.ragdemo.service.search;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Restricciones que los motores aplican dentro del recorrido, antes de seleccionar el top-k,
+ * para que una búsqueda acotada cueste en proporción al subconjunto y no al corpus.
+ *
+ * Las restricciones por organización, sector y etiquetas se resuelven a un conjunto de documentos
+ * en {@link DocumentTagIndex} para los motores en la JVM, que solo entienden de documentos. El
+ * filtro resuelto conserva los criterios originales: pgvector y el índice de texto completo los
+ * aplican en SQL con un JOIN a {@code documents}, sin enviar la lista de documentos a la base.
+ */
+public class SearchFilter {
+
+    /**
+     * Documentos que admite una búsqueda por lista explícita: la lista viaja como parámetros de la
+     * consulta SQL y se recorre de forma exacta.
+     */
+    public static final int MAX_DOCUMENT_IDS = 1000;
+
+    private static final SearchFilter NONE = new SearchFilter(null, null, null, null, null, false);
+
+    // null = sin restricción en esa dimensión
+    private final Set<UUID> documentIds;
+    // Lista explícita del llamante; documentIds es además la resolución de los metadatos, si la hubo
+    private final Set<UUID> requestedDocumentIds;
+    private final String organizationId;
+    private final String sector;
+    private final Set<String> tags;
+    private final boolean resolved;
+
+    private SearchFilter(Set<UUID> documentIds, Set<UUID> requestedDocumentIds, String organizationId,
+                         String sector, Set<String> tags, boolean resolved) {
+        this.documentIds = documentIds;
+        this.requestedDocumentIds = requestedDocumentIds;
+        this.organizationId = organizationId;
+        this.sector = sector;
+        this.tags = tags;
+        this.resolved = resolved;
+    }
+
+    public static SearchFilter none() {
+        return NONE;
+    }
+
+    /**
+     * @throws IllegalArgumentException con más de {@link #MAX_DOCUMENT_IDS} documentos
+     */
+    public static SearchFilter forDocuments(Collection<UUID> documentIds) {
+        if (documentIds == null) {
+            return NONE;
+        }
+        Set<UUID> requested = Set.copyOf(documentIds);
+        if (requested.size() > MAX_DOCUMENT_IDS) {
+            throw new IllegalArgumentException("Como máximo " + MAX_DOCUMENT_IDS + " documentos por búsqueda: "
+                    + requested.size() + "; use organizationId, sector o tags para acotar por metadatos");
+        }
+        return new SearchFilter(requested, requested, null, null, null, false);
+    }
+
+    /**
+     * Limita la búsqueda a los documentos de la organización (y a los que no tienen ninguna, que son comunes).
+     */
+    public SearchFilter withOrganization(String organizationId) {
+        String value = DocumentTagIndex.normalizeValue(organizationId);
+        return value == null ? this
+                : new SearchFilter(requestedDocumentIds, requestedDocumentIds, value, sector, tags, false);
+    }
+
+    public SearchFilter withSector(String sector) {
+        String value = DocumentTagIndex.normalizeValue(sector);
+        return value == null ? this
+                : new SearchFilter(requestedDocumentIds, requestedDocumentIds, organizationId, value, tags, false);
+    }
+
+    /**
+     * Limita la búsqueda a los documentos con al menos una de las etiquetas.
+     */
+    public SearchFilter withTags(Collection<String> tags) {
+        if (tags == null) {
+            return this;
+        }
+        Set<String> values = Set.copyOf(DocumentTagIndex.normalizeTags(tags));
+        return values.isEmpty() ? this
+                : new SearchFilter(requestedDocumentIds, requestedDocumentIds, organizationId, sector, values, false);
+    }
+
+    /**
+     * Mismos criterios con los documentos que los cumplen ya resueltos; lo usa {@link DocumentTagIndex}.
+     */
+    SearchFilter resolvedTo(Collection<UUID> allowedDocumentIds) {
+        return new SearchFilter(Set.copyOf(allowedDocumentIds), requestedDocumentIds, organizationId, sector, tags, true);
+    }
+
+    public boolean isEmpty() {
+        return documentIds == null && !hasMetadataFilter();
+    }
+
+    /**
+     * Hay un conjunto de documentos al que limitar el recorrido: la lista explícita o, tras
+     * {@link DocumentTagIndex#resolve}, los documentos que cumplen los metadatos.
+     */
+    public boolean hasDocumentFilter() {
+        return documentIds != null;
+    }
+
+    public boolean hasMetadataFilter() {
+        return organizationId != null || sector != null || tags != null;
+    }
+
+    /**
+     * Los metadatos ya están traducidos a documentos (o no había metadatos que traducir).
+     */
+    public boolean isResolved() {
+        return resolved || !hasMetadataFilter();
+    }
+
+    /**
+     * Hay lista explícita de documentos, acotada a {@link #MAX_DOCUMENT_IDS}.
+     */
+    public boolean hasRequestedDocuments() {
+        return requestedDocumentIds != null;
+    }
+
+    public Set<UUID> getDocumentIds() { return documentIds; }
+    public Set<UUID> getRequestedDocumentIds() { return requestedDocumentIds; }
+    public String getOrganizationId() { return organizationId; }
+    public String getSector() { return sector; }
+    public Set<String> getTags() { return tags; }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "SearchFilter{none}";
+        }
+        StringBuilder text = new StringBuilder("SearchFilter{");
+        if (requestedDocumentIds != null) {
+            text.append("documentIds=").append(requestedDocumentIds).append(' ');
+        }
+        if (organizationId != null) {
+            text.append("organizationId=").append(organizationId).append(' ');
+        }
+        if (sector != null) {
+            text.append("sector=").append(sector).append(' ');
+        }
+        if (tags != null) {
+            text.append("tags=").append(tags).append(' ');
+        }
+        if (resolved) {
+            text.append("resolvedDocuments=").append(documentIds.size()).append(' ');
+        }
+        text.setLength(text.length() - 1);
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,160 @@
+package com.atuhome.ragdemo.service.search;
+
+/**
+ * Selección acotada de los k mejores candidatos por puntuación.
+ *
+ * Mantiene un min-heap de tamaño fijo sobre arrays primitivos ({@code float} para la
+ * puntuación, {@code int} para el identificador de fila o posición), de modo que ofrecer un
+ * candidato no reserva memoria y cuesta O(log k) solo cuando entra en el top-k. La raíz es
+ * siempre el peor resultado retenido, lo que permite descartar candidatos con una comparación.
+ *
+ * No es thread-safe: cada hilo de búsqueda usa su propia instancia y se combinan con
+ * {@link #merge(TopKCollector)}.
+ */
+public final class TopKCollector {
+
+    private final int capacity;
+    private final float[] scores;
+    private final int[] ids;
+    private int size;
+    private boolean sorted;
+
+    public TopKCollector(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad del top-k debe ser positiva: " + capacity);
+        }
+        this.capacity = capacity;
+        this.scores = new float[capacity];
+        this.ids = new int[capacity];
+    }
+
+    /**
+     * Ofrece un candidato al top-k.
+     *
+     * @return {@code true} si el candidato quedó retenido
+     */
+    public boolean offer(int id, float score) {
+        if (sorted) {
+            throw new IllegalStateException("El top-k ya fue ordenado; usar reset() antes de reutilizarlo");
+        }
+        if (size < capacity) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        scores[0] = score;
+        ids[0] = id;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Puntuación mínima que debe superar un candidato para entrar; {@code -Infinity} mientras no esté lleno.
+     */
+    public float minCompetitiveScore() {
+        return size < capacity ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Incorpora los candidatos de otro colector (por ejemplo, el de otra partición).
+     */
+    public void merge(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Ordena en sitio los candidatos retenidos por puntuación descendente. Tras la llamada,
+     * {@link #idAt(int)} y {@link #scoreAt(int)} recorren el resultado de mejor a peor.
+     *
+     * @return Número de resultados
+     */
+    public int sortDescending() {
+        if (!sorted) {
+            // Heapsort sobre el min-heap: extraer el mínimo al final deja el array en orden descendente
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return size;
+    }
+
+    public int idAt(int position) {
+        checkPosition(position);
+        return ids[position];
+    }
+
+    public float scoreAt(int position) {
+        checkPosition(position);
+        return scores[position];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void reset() {
+        size = 0;
+        sorted = false;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int heapSize) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < heapSize && scores[right] < scores[left]) {
+                smallest = right;
+            }
+            if (scores[index] <= scores[smallest]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Posición " + position + " fuera del top-k de tamaño " + size);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.PostgreSQLVectorType;
+import com.atuhome.ragdemo.config.RagProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Microbenchmark del coste por fila de codificar y decodificar embeddings con el literal de texto
+ * de pgvector frente al formato binario. Se ejecuta en la JVM del servicio, con vectores sintéticos
+ * de la dimensión configurada y una pasada de calentamiento previa para que el JIT compile ambos caminos.
+ *
+ * Solo existe con el perfil {@code benchmark}: retiene en el heap todas las filas sintéticas en los
+ * dos formatos, así que no debe estar expuesto en un despliegue normal.
+ */
+@Component
+@Profile("benchmark")
+@RequiredArgsConstructor
+public class VectorCodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+    // Con 1024 dimensiones, unos 200 MB entre floats, literales y binario
+    public static final int MAX_ROWS = 20_000;
+
+    private final RagProperties ragProperties;
+
+    // Destino de los resultados medidos para que el JIT no elimine el trabajo
+    private volatile double blackhole;
+
+    public CodecBenchmarkReport run(int rows) {
+        if (rows <= 0) {
+            throw new IllegalArgumentException("El número de filas debe ser positivo");
+        }
+        rows = Math.min(rows, MAX_ROWS);
+
+        int dimension = ragProperties.getEmbedding().getDimension();
+        Random random = new Random(42);
+        float[][] vectors = new float[rows][dimension];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = (float) random.nextGaussian() / 32;
+            }
+        }
+        String[] literals = new String[rows];
+        byte[][] encoded = new byte[rows][];
+        for (int i = 0; i < rows; i++) {
+            literals[i] = PostgreSQLVectorType.toVectorLiteral(vectors[i]);
+            encoded[i] = PgVectorBinaryCodec.encode(vectors[i]);
+        }
+
+        double sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += encodeText(vectors) + decodeText(literals) + encodeBinary(vectors) + decodeBinary(encoded);
+        }
+
+        long start = System.nanoTime();
+        sink += encodeText(vectors);
+        long textEncodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += decodeText(literals);
+        long textDecodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += encodeBinary(vectors);
+        long binaryEncodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        sink += decodeBinary(encoded);
+        long binaryDecodeNanos = System.nanoTime() - start;
+        blackhole = sink;
+
+        return new CodecBenchmarkReport(rows, dimension,
+                (double) textEncodeNanos / rows, (double) textDecodeNanos / rows,
+                (double) binaryEncodeNanos / rows, (double) binaryDecodeNanos / rows,
+                literals[0].getBytes(StandardCharsets.US_ASCII).length, encoded[0].length);
+    }
+
+    private static double encodeText(float[][] vectors) {
+        long length = 0;
+        for (float[] vector : vectors) {
+            length += PostgreSQLVectorType.toVectorLiteral(vector).length();
+        }
+        return length;
+    }
+
+    private static double decodeText(String[] literals) {
+        double sum = 0;
+        for (String literal : literals) {
+            sum += PostgreSQLVectorType.fromVectorLiteral(literal)[0];
+        }
+        return sum;
+    }
+
+    private static double encodeBinary(float[][] vectors) {
+        long length = 0;
+        for (float[] vector : vectors) {
+            length += PgVectorBinaryCodec.encode(vector).length;
+        }
+        return length;
+    }
+
+    private static double decodeBinary(byte[][] encoded) {
+        double sum = 0;
+        for (byte[] bytes : encoded) {
+            sum += PgVectorBinaryCodec.decode(bytes)[0];
+        }
+        return sum;
+    }
+
+    /**
+     * Coste medio por fila de cada camino y tamaño de la fila en la red.
+     */
+    public static class CodecBenchmarkReport {
+
+        private final int rows;
+        private final int dimension;
+        private final double textEncodeNsPerRow;
+        private final double textDecodeNsPerRow;
+        private final double binaryEncodeNsPerRow;
+        private final double binaryDecodeNsPerRow;
+        private final int textBytesPerRow;
+        private final int binaryBytesPerRow;
+
+        public CodecBenchmarkReport(int rows, int dimension, double textEncodeNsPerRow, double textDecodeNsPerRow,
+                                    double binaryEncodeNsPerRow, double binaryDecodeNsPerRow,
+                                    int textBytesPerRow, int binaryBytesPerRow) {
+            this.rows = rows;
+            this.dimension = dimension;
+            this.textEncodeNsPerRow = textEncodeNsPerRow;
+            this.textDecodeNsPerRow = textDecodeNsPerRow;
+            this.binaryEncodeNsPerRow = binaryEncodeNsPerRow;
+            this.binaryDecodeNsPerRow = binaryDecodeNsPerRow;
+            this.textBytesPerRow = textBytesPerRow;
+            this.binaryBytesPerRow = binaryBytesPerRow;
+        }
+
+        public int getRows() { return rows; }
+        public int getDimension() { return dimension; }
+        public double getTextEncodeNsPerRow() { return textEncodeNsPerRow; }
+        public double getTextDecodeNsPerRow() { return textDecodeNsPerRow; }
+        public double getBinaryEncodeNsPerRow() { return binaryEncodeNsPerRow; }
+        public double getBinaryDecodeNsPerRow() { return binaryDecodeNsPerRow; }
+        public int getTextBytesPerRow() { return textBytesPerRow; }
+        public int getBinaryBytesPerRow() { return binaryBytesPerRow; }
+        public double getDecodeSpeedup() { return binaryDecodeNsPerRow > 0 ? textDecodeNsPerRow / binaryDecodeNsPerRow : 0; }
+
+        @Override
+        public String toString() {
+            return String.format("CodecBenchmarkReport{rows=%d, dimension=%d, decode text=%.0fns binary=%.0fns (x%.1f), " +
+                            "encode text=%.0fns binary=%.0fns, bytes text=%d binary=%d}",
+                    rows, dimension, textDecodeNsPerRow, binaryDecodeNsPerRow, getDecodeSpeedup(),
+                    textEncodeNsPerRow, binaryEncodeNsPerRow, textBytesPerRow, binaryBytesPerRow);
+        }
+    }
+}
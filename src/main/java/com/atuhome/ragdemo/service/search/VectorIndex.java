@@ -0,0 +1,79 @@
+package com.atuhome.ragdemo.service.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Índice vectorial residente en la JVM seleccionable con {@code app.rag.search.engine}.
+ *
+ * Las implementaciones se mantienen al día con {@code ChunksEmbeddedEvent} y
+ * {@code DocumentChunksDeletedEvent}; mientras no estén listas, {@code SemanticSearchService}
+ * resuelve la búsqueda en pgvector.
+ */
+public interface VectorIndex {
+
+    /**
+     * Nombre del motor tal como se configura en {@code app.rag.search.engine}.
+     */
+    String name();
+
+    boolean isEnabled();
+
+    boolean isReady();
+
+    /**
+     * Número de chunks vigentes en el índice.
+     */
+    int size();
+
+    /**
+     * Busca los chunks más similares a la consulta.
+     *
+     * @param query Embedding de la consulta (no necesita estar normalizado)
+     * @param maxResults Número máximo de resultados
+     * @param threshold Similitud coseno mínima
+     * @param efSearch Amplitud de búsqueda para índices aproximados; los exactos la ignoran
+     * @return Chunks ordenados por similitud descendente
+     */
+    default List<ScoredChunk> search(float[] query, int maxResults, double threshold, int efSearch) {
+        return search(query, maxResults, threshold, efSearch, SearchFilter.none());
+    }
+
+    /**
+     * Búsqueda restringida: el filtro se aplica dentro del recorrido del motor, no sobre su top-k.
+     */
+    List<ScoredChunk> search(float[] query, int maxResults, double threshold, int efSearch, SearchFilter filter);
+
+    /**
+     * Búsqueda de varias consultas con los mismos parámetros. Por defecto se resuelven una a una;
+     * los motores exhaustivos pueden recorrer el corpus una sola vez para todo el lote.
+     *
+     * @return Un resultado por consulta, en el mismo orden
+     */
+    default List<List<ScoredChunk>> searchBatch(List<float[]> queries, int maxResults, double threshold, int efSearch,
+                                                SearchFilter filter) {
+        List<List<ScoredChunk>> results = new ArrayList<>(queries.size());
+        for (float[] query : queries) {
+            results.add(search(query, maxResults, threshold, efSearch, filter));
+        }
+        return results;
+    }
+
+    /**
+     * Embeddings unitarios que el motor tiene en memoria, para comparar chunks entre sí (MMR) sin
+     * volver a la base. Los chunks que no tenga, o todos si no retiene los floats, no aparecen.
+     * Los arrays devueltos son los del índice y no deben modificarse.
+     *
+     * @param documentByChunk Documento de cada chunk pedido
+     */
+    default Map<UUID, float[]> unitVectors(Map<UUID, UUID> documentByChunk) {
+        return Map.of();
+    }
+
+    /**
+     * Reconstruye el índice completo desde {@code document_chunks}.
+     */
+    void rebuild();
+}
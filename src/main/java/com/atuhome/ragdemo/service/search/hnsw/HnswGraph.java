@@ -0,0 +1,486 @@
+package com.atuhome.ragdemo.service.search.hnsw;
+
+import com.atuhome.ragdemo.service.search.TopKCollector;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Grafo HNSW (Hierarchical Navigable Small World) sobre vectores unitarios con similitud
+ * por producto escalar.
+ *
+ * Admite inserciones concurrentes entre sí y con las búsquedas: cada nodo protege sus listas
+ * de vecinos con su propio monitor, los vectores son inmutables y solo la asignación de
+ * identificadores y el punto de entrada usan un lock global. El punto de entrada y su nivel se
+ * publican juntos en un objeto inmutable, para que una búsqueda nunca combine el nodo de entrada
+ * anterior con el nivel máximo nuevo. Las eliminaciones marcan el nodo
+ * como borrado; sigue sirviendo para navegar pero no se devuelve en los resultados.
+ */
+public final class HnswGraph {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int dimension;
+    private final int maxConnections;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SimilarityKernel kernel;
+
+    private final Object allocationLock = new Object();
+    private final Object entryLock = new Object();
+    private final ThreadLocal<SearchContext> searchContext = ThreadLocal.withInitial(SearchContext::new);
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    private volatile Node[] nodes = new Node[INITIAL_CAPACITY];
+    private volatile int nodeCount;
+    // Se escribe con entryLock y se lee sin él
+    private volatile EntryPoint entryPoint;
+
+    /**
+     * @param dimension Dimensión de los vectores
+     * @param m Vecinos por nodo en los niveles superiores (el nivel 0 admite {@code 2 * m})
+     * @param efConstruction Candidatos evaluados al insertar cada nodo
+     * @param kernel Núcleo de similitud
+     */
+    public HnswGraph(int dimension, int m, int efConstruction, SimilarityKernel kernel) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M debe ser al menos 2: " + m);
+        }
+        this.dimension = dimension;
+        this.maxConnections = m;
+        this.maxConnectionsLevel0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.kernel = kernel;
+    }
+
+    /**
+     * Inserta un vector unitario y lo enlaza con sus vecinos en cada nivel.
+     *
+     * @return Identificador interno del nodo
+     */
+    public int insert(UUID chunkId, float[] unitVector) {
+        if (unitVector.length != dimension) {
+            throw new IllegalArgumentException("Dimensión " + unitVector.length + " distinta de " + dimension);
+        }
+
+        Node node = new Node(chunkId, unitVector, randomLevel());
+        int id;
+        synchronized (allocationLock) {
+            if (nodeCount == nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            id = nodeCount;
+            nodes[id] = node;
+            nodeCount = id + 1;
+        }
+
+        EntryPoint published;
+        synchronized (entryLock) {
+            published = entryPoint;
+            if (published == null) {
+                entryPoint = new EntryPoint(id, node.level);
+                return id;
+            }
+        }
+        int entry = published.node();
+        int topLevel = published.level();
+
+        SearchContext context = searchContext.get();
+        int current = greedyDescend(unitVector, entry, topLevel, node.level);
+
+        for (int level = Math.min(node.level, topLevel); level >= 0; level--) {
+            TopKCollector candidates = searchLayer(unitVector, current, efConstruction, level, null, context);
+            candidates.sortDescending();
+            int[] selected = selectNeighbors(candidates, maxConnections);
+
+            synchronized (node) {
+                System.arraycopy(selected, 0, node.neighbors[level], 0, selected.length);
+                node.neighborCount[level] = selected.length;
+            }
+            for (int neighbor : selected) {
+                link(neighbor, id, level);
+            }
+            current = candidates.idAt(0);
+        }
+
+        if (node.level > topLevel) {
+            synchronized (entryLock) {
+                if (node.level > entryPoint.level()) {
+                    entryPoint = new EntryPoint(id, node.level);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Busca los {@code k} vecinos vigentes más similares.
+     *
+     * @param unitQuery Consulta normalizada
+     * @param k Número de resultados
+     * @param ef Tamaño de la lista dinámica de candidatos en el nivel 0 (se usa al menos {@code k})
+     * @param minScore Similitud mínima
+     */
+    public TopKCollector search(float[] unitQuery, int k, int ef, float minScore) {
+        return search(unitQuery, k, ef, minScore, null);
+    }
+
+    /**
+     * Búsqueda filtrada: todos los nodos sirven para navegar, pero solo los que acepta {@code filter}
+     * ocupan sitio en la lista dinámica. La búsqueda sigue expandiéndose hasta reunir {@code ef} nodos
+     * aceptados en lugar de devolver el top-k global ya filtrado, que con un filtro selectivo quedaría
+     * casi vacío; cuanto más selectivo es el filtro, más nodos visita.
+     *
+     * @param filter Nodos admitidos, o {@code null} para todos
+     */
+    public TopKCollector search(float[] unitQuery, int k, int ef, float minScore, IntPredicate filter) {
+        TopKCollector topK = new TopKCollector(k);
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            return topK;
+        }
+
+        IntPredicate accept = filter == null
+                ? id -> !nodes[id].deleted
+                : id -> !nodes[id].deleted && filter.test(id);
+        int current = greedyDescend(unitQuery, entry.node(), entry.level(), 0);
+        TopKCollector candidates = searchLayer(unitQuery, current, Math.max(ef, k), 0, accept, searchContext.get());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.scoreAt(i) >= minScore) {
+                topK.offer(candidates.idAt(i), candidates.scoreAt(i));
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Similitud exacta entre la consulta y un nodo, para recorridos acotados fuera del grafo.
+     */
+    public float similarity(float[] unitQuery, int id) {
+        return score(unitQuery, id);
+    }
+
+    public boolean isDeleted(int id) {
+        return nodes[id].deleted;
+    }
+
+    public void markDeleted(int id) {
+        Node node = nodes[id];
+        if (!node.deleted) {
+            node.deleted = true;
+            deletedCount.incrementAndGet();
+        }
+    }
+
+    public UUID chunkIdAt(int id) {
+        return nodes[id].chunkId;
+    }
+
+    /**
+     * Vector unitario del nodo; es el del grafo y no debe modificarse.
+     */
+    public float[] vectorAt(int id) {
+        return nodes[id].vector;
+    }
+
+    /**
+     * Nodos vigentes (insertados y no borrados).
+     */
+    public int size() {
+        return nodeCount - deletedCount.get();
+    }
+
+    public int deletedCount() {
+        return deletedCount.get();
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(uniform) * levelMultiplier);
+    }
+
+    /**
+     * Búsqueda voraz con un único candidato desde {@code fromLevel} hasta el nivel {@code toLevel} (exclusivo).
+     */
+    private int greedyDescend(float[] query, int entry, int fromLevel, int toLevel) {
+        int current = entry;
+        float currentScore = score(query, current);
+        int[] buffer = searchContext.get().neighborBuffer;
+
+        for (int level = fromLevel; level > toLevel; level--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int count = copyNeighbors(current, level, buffer);
+                for (int i = 0; i < count; i++) {
+                    float neighborScore = score(query, buffer[i]);
+                    if (neighborScore > currentScore) {
+                        current = buffer[i];
+                        currentScore = neighborScore;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Búsqueda en un nivel con lista dinámica de {@code ef} candidatos (algoritmo 2 del artículo HNSW).
+     *
+     * @param accept Nodos que pueden entrar en el resultado, o {@code null} para todos (construcción)
+     */
+    private TopKCollector searchLayer(float[] query, int entry, int ef, int level, IntPredicate accept,
+                                      SearchContext context) {
+        VisitedSet visited = context.visited;
+        CandidateQueue candidates = context.candidates;
+        int[] buffer = context.neighborBuffer;
+        visited.reset(nodes.length);
+        candidates.clear();
+
+        TopKCollector results = new TopKCollector(ef);
+        float entryScore = score(query, entry);
+        visited.visit(entry);
+        candidates.push(entry, entryScore);
+        if (accept == null || accept.test(entry)) {
+            results.offer(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            if (candidates.peekScore() < results.minCompetitiveScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+
+            int count = copyNeighbors(candidate, level, buffer);
+            for (int i = 0; i < count; i++) {
+                int neighbor = buffer[i];
+                if (!visited.visit(neighbor)) {
+                    continue;
+                }
+                float neighborScore = score(query, neighbor);
+                if (neighborScore > results.minCompetitiveScore()) {
+                    candidates.push(neighbor, neighborScore);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.offer(neighbor, neighborScore);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Heurística de selección de vecinos (algoritmo 4): un candidato se conserva si está más cerca
+     * del nodo que de cualquier vecino ya elegido; los huecos se completan con los descartados.
+     *
+     * @param candidates Candidatos ya ordenados por similitud descendente
+     */
+    private int[] selectNeighbors(TopKCollector candidates, int max) {
+        int count = candidates.size();
+        int[] selected = new int[Math.min(max, count)];
+        int[] discarded = new int[count];
+        int selectedCount = 0;
+        int discardedCount = 0;
+
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            int candidate = candidates.idAt(i);
+            float candidateScore = candidates.scoreAt(i);
+            float[] candidateVector = nodes[candidate].vector;
+
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (kernel.dot(candidateVector, nodes[selected[j]].vector) > candidateScore) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidate;
+            } else {
+                discarded[discardedCount++] = candidate;
+            }
+        }
+
+        for (int i = 0; i < discardedCount && selectedCount < selected.length; i++) {
+            selected[selectedCount++] = discarded[i];
+        }
+        return selectedCount == selected.length ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * Añade {@code newId} a los vecinos de {@code target}, podando con la heurística si la lista está llena.
+     */
+    private void link(int target, int newId, int level) {
+        Node node = nodes[target];
+        int max = level == 0 ? maxConnectionsLevel0 : maxConnections;
+
+        synchronized (node) {
+            int[] neighbors = node.neighbors[level];
+            int count = node.neighborCount[level];
+            if (count < max) {
+                neighbors[count] = newId;
+                node.neighborCount[level] = count + 1;
+                return;
+            }
+
+            TopKCollector candidates = new TopKCollector(count + 1);
+            for (int i = 0; i < count; i++) {
+                candidates.offer(neighbors[i], kernel.dot(node.vector, nodes[neighbors[i]].vector));
+            }
+            candidates.offer(newId, kernel.dot(node.vector, nodes[newId].vector));
+            candidates.sortDescending();
+
+            int[] selected = selectNeighbors(candidates, max);
+            System.arraycopy(selected, 0, neighbors, 0, selected.length);
+            node.neighborCount[level] = selected.length;
+        }
+    }
+
+    private int copyNeighbors(int id, int level, int[] buffer) {
+        Node node = nodes[id];
+        synchronized (node) {
+            int count = node.neighborCount[level];
+            System.arraycopy(node.neighbors[level], 0, buffer, 0, count);
+            return count;
+        }
+    }
+
+    private float score(float[] query, int id) {
+        return kernel.dot(query, nodes[id].vector);
+    }
+
+    /**
+     * Nodo de entrada y su nivel, que es el nivel máximo del grafo.
+     */
+    private record EntryPoint(int node, int level) {}
+
+    private final class Node {
+        final UUID chunkId;
+        final float[] vector;
+        final int level;
+        // Protegidos por el monitor del nodo
+        final int[][] neighbors;
+        final int[] neighborCount;
+        volatile boolean deleted;
+
+        Node(UUID chunkId, float[] vector, int level) {
+            this.chunkId = chunkId;
+            this.vector = vector;
+            this.level = level;
+            this.neighbors = new int[level + 1][];
+            this.neighborCount = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                neighbors[l] = new int[l == 0 ? maxConnectionsLevel0 : maxConnections];
+            }
+        }
+    }
+
+    private final class SearchContext {
+        final VisitedSet visited = new VisitedSet();
+        final CandidateQueue candidates = new CandidateQueue();
+        final int[] neighborBuffer = new int[maxConnectionsLevel0];
+    }
+
+    /**
+     * Conjunto de visitados reutilizable por hilo: marca con una época en lugar de limpiar el array.
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean visit(int id) {
+            if (id >= marks.length) {
+                // Nodos insertados por otro hilo después del reset
+                marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+            }
+            if (marks[id] == epoch) {
+                return false;
+            }
+            marks[id] = epoch;
+            return true;
+        }
+    }
+
+    /**
+     * Max-heap creciente de candidatos pendientes de expandir, sobre arrays primitivos.
+     */
+    private static final class CandidateQueue {
+        private int[] ids = new int[64];
+        private float[] scores = new float[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                ids[index] = ids[parent];
+                scores[index] = scores[parent];
+                index = parent;
+            }
+            ids[index] = id;
+            scores[index] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            int lastId = ids[--size];
+            float lastScore = scores[size];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                    child++;
+                }
+                if (scores[child] <= lastScore) {
+                    break;
+                }
+                ids[index] = ids[child];
+                scores[index] = scores[child];
+                index = child;
+            }
+            ids[index] = lastId;
+            scores[index] = lastScore;
+            return top;
+        }
+    }
+}
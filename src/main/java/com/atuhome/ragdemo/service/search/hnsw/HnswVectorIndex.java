@@ -0,0 +1,301 @@
+package com.atuhome.ragdemo.service.search.hnsw;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.TopKCollector;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Motor {@code app.rag.search.engine=hnsw}: índice ANN en la JVM construido sobre {@link HnswGraph}.
+ *
+ * La construcción inserta los embeddings en paralelo en el pool de búsqueda sobre un grafo nuevo
+ * mientras el anterior sigue sirviendo; después, los chunks recién embebidos se insertan al recibir
+ * {@link ChunksEmbeddedEvent} y los documentos eliminados se marcan como borrados con
+ * {@link DocumentChunksDeletedEvent}. Los eventos recibidos durante la construcción se aplican al
+ * grafo vigente y se reaplican en orden sobre el nuevo antes de sustituirlo.
+ */
+@Component
+public class HnswVectorIndex implements VectorIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswVectorIndex.class);
+
+    public static final String ENGINE_NAME = "hnsw";
+
+    private static final int PENDING_NODE = -1;
+
+    private final EmbeddingStreamLoader embeddingLoader;
+    private final RagProperties ragProperties;
+    private final SimilarityKernel similarityKernel;
+    private final ForkJoinPool vectorSearchPool;
+    private final int dimension;
+
+    private final Object eventLock = new Object();
+    // Protegidos por eventLock
+    private boolean building;
+    private final List<Object> eventsDuringBuild = new ArrayList<>();
+    // Se sustituye con eventLock y se lee sin él
+    private volatile Generation current;
+    private volatile boolean ready;
+
+    public HnswVectorIndex(EmbeddingStreamLoader embeddingLoader, RagProperties ragProperties,
+                           SimilarityKernel similarityKernel,
+                           @Qualifier("vectorSearchPool") ForkJoinPool vectorSearchPool) {
+        this.embeddingLoader = embeddingLoader;
+        this.ragProperties = ragProperties;
+        this.similarityKernel = similarityKernel;
+        this.vectorSearchPool = vectorSearchPool;
+        this.dimension = ragProperties.getEmbedding().getDimension();
+    }
+
+    @Override
+    public String name() {
+        return ENGINE_NAME;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (isEnabled()) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        RagProperties.Search search = ragProperties.getSearch();
+        log.info("Construyendo índice HNSW (M={}, efConstruction={}, dimensión {})",
+                search.getHnswM(), search.getHnswEfConstruction(), dimension);
+
+        synchronized (eventLock) {
+            building = true;
+            eventsDuringBuild.clear();
+        }
+        try {
+            Generation next = new Generation(
+                    new HnswGraph(dimension, search.getHnswM(), search.getHnswEfConstruction(), similarityKernel));
+
+            // Cada lote del cursor se inserta en paralelo antes de leer el siguiente
+            embeddingLoader.load(dimension, batch -> vectorSearchPool.submit(() -> IntStream.range(0, batch.size())
+                    .parallel()
+                    .forEach(row -> {
+                        float[] vector = batch.vectorCopy(row);
+                        next.index(batch.chunkId(row), batch.documentId(row),
+                                batch.isNormalized(row) ? vector : VectorNormalizer.normalizeInPlace(vector));
+                    })).join());
+
+            // Un documento borrado o reprocesado durante la construcción no deja en el grafo nuevo
+            // los chunks que el cursor ya había leído
+            int replayed;
+            synchronized (eventLock) {
+                replayed = eventsDuringBuild.size();
+                eventsDuringBuild.forEach(next::apply);
+                current = next;
+                ready = true;
+            }
+            log.info("Índice HNSW construido: {} nodos ({} eventos reaplicados) en {}ms",
+                    next.graph.size(), replayed, System.currentTimeMillis() - start);
+        } finally {
+            synchronized (eventLock) {
+                building = false;
+                eventsDuringBuild.clear();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        apply(event);
+        log.debug("Índice HNSW actualizado con {} chunks (total {})", event.getChunks().size(), size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        apply(event);
+    }
+
+    @Override
+    public List<ScoredChunk> search(float[] query, int maxResults, double threshold, int efSearch, SearchFilter filter) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimensión de consulta " + query.length + " distinta de " + dimension);
+        }
+        Generation generation = current;
+        if (maxResults <= 0 || generation == null) {
+            return List.of();
+        }
+
+        float[] unitQuery = VectorNormalizer.normalizedCopy(query);
+        TopKCollector topK = filter.hasDocumentFilter()
+                ? searchInDocuments(generation, unitQuery, maxResults, efSearch, (float) threshold,
+                        filter.getDocumentIds())
+                : generation.graph.search(unitQuery, maxResults, efSearch, (float) threshold);
+        int count = topK.sortDescending();
+        List<ScoredChunk> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new ScoredChunk(generation.graph.chunkIdAt(topK.idAt(i)), topK.scoreAt(i)));
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENGINE_NAME.equalsIgnoreCase(ragProperties.getSearch().getEngine());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int size() {
+        Generation generation = current;
+        return generation == null ? 0 : generation.graph.size();
+    }
+
+    /**
+     * Búsqueda limitada a los nodos de los documentos indicados. Si suman como mucho una partición
+     * del recorrido exhaustivo (unos pocos documentos) se puntúan todos; navegar el grafo global para
+     * encontrarlos visitaría más nodos de los que tienen. Si no (una organización o etiqueta con muchos
+     * documentos), el grafo se recorre aceptando en la lista dinámica solo los nodos de la máscara.
+     */
+    private TopKCollector searchInDocuments(Generation generation, float[] unitQuery, int maxResults, int efSearch,
+                                            float threshold, Set<UUID> documentIds) {
+        BitSet allowed = new BitSet();
+        for (UUID documentId : documentIds) {
+            Set<Integer> nodes = generation.nodesByDocument.get(documentId);
+            if (nodes != null) {
+                nodes.forEach(allowed::set);
+            }
+        }
+
+        if (allowed.cardinality() > ragProperties.getSearch().getPartitionSize()) {
+            return generation.graph.search(unitQuery, maxResults, efSearch, threshold, allowed::get);
+        }
+        TopKCollector topK = new TopKCollector(maxResults);
+        for (int node = allowed.nextSetBit(0); node >= 0; node = allowed.nextSetBit(node + 1)) {
+            if (generation.graph.isDeleted(node)) {
+                continue;
+            }
+            float similarity = generation.graph.similarity(unitQuery, node);
+            if (similarity >= threshold) {
+                topK.offer(node, similarity);
+            }
+        }
+        return topK;
+    }
+
+    @Override
+    public Map<UUID, float[]> unitVectors(Map<UUID, UUID> documentByChunk) {
+        Generation generation = current;
+        Map<UUID, float[]> vectors = new HashMap<>();
+        if (generation == null) {
+            return vectors;
+        }
+        for (UUID chunkId : documentByChunk.keySet()) {
+            Integer node = generation.nodeByChunk.get(chunkId);
+            if (node != null && node != PENDING_NODE && !generation.graph.isDeleted(node)
+                    && chunkId.equals(generation.graph.chunkIdAt(node))) {
+                vectors.put(chunkId, generation.graph.vectorAt(node));
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Aplica un evento al grafo vigente y, si hay una construcción en curso, lo guarda para el nuevo.
+     */
+    private void apply(Object event) {
+        synchronized (eventLock) {
+            if (building) {
+                eventsDuringBuild.add(event);
+            }
+            Generation generation = current;
+            if (generation != null) {
+                generation.apply(event);
+            }
+        }
+    }
+
+    /**
+     * Grafo y mapas de un mismo índice: se construyen juntos y se sustituyen juntos.
+     */
+    private final class Generation {
+        final HnswGraph graph;
+        final Map<UUID, Integer> nodeByChunk = new ConcurrentHashMap<>();
+        final Map<UUID, Set<Integer>> nodesByDocument = new ConcurrentHashMap<>();
+
+        Generation(HnswGraph graph) {
+            this.graph = graph;
+        }
+
+        void apply(Object event) {
+            if (event instanceof DocumentChunksDeletedEvent deleted) {
+                removeDocument(deleted.getDocumentId());
+            } else if (event instanceof ChunksEmbeddedEvent embedded) {
+                embedded.getChunks().forEach(this::index);
+            }
+        }
+
+        void removeDocument(UUID documentId) {
+            Set<Integer> nodes = nodesByDocument.remove(documentId);
+            if (nodes == null) {
+                return;
+            }
+            for (int node : nodes) {
+                graph.markDeleted(node);
+                nodeByChunk.remove(graph.chunkIdAt(node));
+            }
+            log.debug("Marcados como eliminados {} nodos HNSW del documento {} ({} borrados en total)",
+                    nodes.size(), documentId, graph.deletedCount());
+        }
+
+        void index(DocumentChunk chunk) {
+            float[] embedding = chunk.getEmbedding();
+            if (embedding == null) {
+                return;
+            }
+            if (embedding.length != dimension) {
+                log.warn("Chunk {} con dimensión {} ignorado (esperada {})", chunk.getId(), embedding.length, dimension);
+                return;
+            }
+            float[] unit = chunk.isNormalized() ? embedding : VectorNormalizer.normalizedCopy(embedding);
+            index(chunk.getId(), chunk.getDocument().getId(), unit);
+        }
+
+        void index(UUID chunkId, UUID documentId, float[] unit) {
+            // Un chunk puede llegar por evento además de por el cursor
+            if (nodeByChunk.putIfAbsent(chunkId, PENDING_NODE) != null) {
+                return;
+            }
+
+            int node = graph.insert(chunkId, unit);
+            nodeByChunk.put(chunkId, node);
+            nodesByDocument.computeIfAbsent(documentId, id -> ConcurrentHashMap.newKeySet()).add(node);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.atuhome.ragdemo.service.search.ivf;
+
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Entrenamiento en segundo plano del índice IVF con seguimiento de progreso.
+ *
+ * Se lanza al arrancar cuando el motor es {@code ivf}, bajo demanda desde {@code /api/index/ivf/train}
+ * y automáticamente cuando el corpus crece más de {@code app.rag.search.ivf-retrain-growth}
+ * desde el último entrenamiento. Se envía al {@code taskExecutor} directamente porque también
+ * se dispara desde los listeners de este mismo bean, donde {@code @Async} no aplicaría.
+ */
+@Service
+public class IvfTrainingJob {
+
+    private static final Logger log = LoggerFactory.getLogger(IvfTrainingJob.class);
+
+    private final IvfVectorIndex ivfIndex;
+    private final TaskExecutor taskExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile String phase = "idle";
+    private volatile int iteration;
+    private volatile int iterations;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public IvfTrainingJob(IvfVectorIndex ivfIndex, @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+        this.ivfIndex = ivfIndex;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainOnStartup() {
+        if (ivfIndex.isEnabled()) {
+            start();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        if (ivfIndex.isEnabled() && ivfIndex.needsRetraining() && start()) {
+            log.info("El corpus creció desde el último entrenamiento IVF ({} -> {} vectores); reentrenando",
+                    ivfIndex.getTrainedSize(), ivfIndex.size());
+        }
+    }
+
+    /**
+     * Lanza el entrenamiento si no hay otro en curso.
+     *
+     * @return {@code true} si se lanzó
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        phase = "queued";
+        iteration = 0;
+        iterations = 0;
+        error = null;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+
+        try {
+            taskExecutor.execute(this::train);
+        } catch (RuntimeException e) {
+            running.set(false);
+            phase = "failed";
+            error = e.getMessage();
+            throw e;
+        }
+        return true;
+    }
+
+    public JobStatus getStatus() {
+        return new JobStatus(running.get(), phase, iteration, iterations, ivfIndex.getListCount(),
+                ivfIndex.size(), ivfIndex.getTrainedSize(), startedAt, finishedAt, error);
+    }
+
+    private void train() {
+        try {
+            ivfIndex.train(new IvfVectorIndex.TrainingListener() {
+                @Override
+                public void onPhase(String newPhase) {
+                    phase = newPhase;
+                }
+
+                @Override
+                public void onIteration(int completed, int total) {
+                    iteration = completed;
+                    iterations = total;
+                    log.debug("Entrenamiento IVF: iteración {}/{}", completed, total);
+                }
+            });
+            phase = "completed";
+        } catch (Exception e) {
+            phase = "failed";
+            error = e.getMessage();
+            log.error("Error entrenando el índice IVF", e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    public static class JobStatus {
+        private final boolean running;
+        private final String phase;
+        private final int iteration;
+        private final int iterations;
+        private final int lists;
+        private final int indexedChunks;
+        private final int trainedChunks;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final String error;
+
+        public JobStatus(boolean running, String phase, int iteration, int iterations, int lists,
+                         int indexedChunks, int trainedChunks,
+                         LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+            this.running = running;
+            this.phase = phase;
+            this.iteration = iteration;
+            this.iterations = iterations;
+            this.lists = lists;
+            this.indexedChunks = indexedChunks;
+            this.trainedChunks = trainedChunks;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.error = error;
+        }
+
+        public boolean isRunning() { return running; }
+        public String getPhase() { return phase; }
+        public int getIteration() { return iteration; }
+        public int getIterations() { return iterations; }
+        public int getLists() { return lists; }
+        public int getIndexedChunks() { return indexedChunks; }
+        public int getTrainedChunks() { return trainedChunks; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,591 @@
+package com.atuhome.ragdemo.service.search.ivf;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.TopKCollector;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Motor {@code app.rag.search.engine=ivf}: índice de ficheros invertidos sobre centroides k-means.
+ *
+ * Cada chunk se asigna a la lista de su centroide más cercano y la consulta solo recorre las
+ * {@code nprobe} listas cuyos centroides son más similares, sin estructura de grafo adicional.
+ * El entrenamiento lo lanza {@link IvfTrainingJob}; mientras se reentrena, las búsquedas siguen
+ * usando las listas anteriores y los cambios recibidos se reaplican sobre las nuevas.
+ */
+@Component
+public class IvfVectorIndex implements VectorIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(IvfVectorIndex.class);
+
+    public static final String ENGINE_NAME = "ivf";
+
+    private static final int TRAINING_SAMPLES_PER_LIST = 256;
+    private static final int MAX_TRAINING_SAMPLES = 65_536;
+    private static final long TRAINING_SEED = 42L;
+
+    /**
+     * Recibe el avance del entrenamiento.
+     */
+    public interface TrainingListener {
+        TrainingListener NONE = new TrainingListener() {};
+
+        default void onPhase(String phase) {}
+
+        default void onIteration(int iteration, int iterations) {}
+    }
+
+    private final EmbeddingStreamLoader embeddingLoader;
+    private final RagProperties ragProperties;
+    private final SimilarityKernel similarityKernel;
+    private final ForkJoinPool vectorSearchPool;
+    private final int dimension;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protegidos por lock
+    private float[][] centroids;
+    private InvertedList[] lists = new InvertedList[0];
+    private Map<UUID, List<Long>> entriesByDocument = new HashMap<>();
+    private Set<UUID> indexedChunks = new HashSet<>();
+    private int size;
+    private int deletedCount;
+    private int trainedSize;
+    private boolean training;
+    private final List<Object> eventsDuringTraining = new ArrayList<>();
+    private volatile boolean ready;
+
+    public IvfVectorIndex(EmbeddingStreamLoader embeddingLoader, RagProperties ragProperties,
+                          SimilarityKernel similarityKernel,
+                          @Qualifier("vectorSearchPool") ForkJoinPool vectorSearchPool) {
+        this.embeddingLoader = embeddingLoader;
+        this.ragProperties = ragProperties;
+        this.similarityKernel = similarityKernel;
+        this.vectorSearchPool = vectorSearchPool;
+        this.dimension = ragProperties.getEmbedding().getDimension();
+    }
+
+    @Override
+    public String name() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public void rebuild() {
+        train(TrainingListener.NONE);
+    }
+
+    /**
+     * Entrena los centroides sobre el corpus actual y reconstruye las listas invertidas.
+     * Recorre el cursor dos veces, una para muestrear y otra para asignar, de modo que además
+     * de las listas solo se retiene la muestra de entrenamiento.
+     */
+    public synchronized void train(TrainingListener listener) {
+        long start = System.currentTimeMillis();
+        RagProperties.Search search = ragProperties.getSearch();
+
+        lock.writeLock().lock();
+        try {
+            training = true;
+            eventsDuringTraining.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            // Primera pasada: muestra uniforme acotada para los centroides, sin retener el corpus
+            listener.onPhase("loading");
+            Reservoir reservoir = new Reservoir(resolveMaxSamples());
+            embeddingLoader.load(dimension, batch -> {
+                for (int row = 0; row < batch.size(); row++) {
+                    reservoir.offer(batch, row);
+                }
+            });
+            if (reservoir.seen == 0) {
+                log.info("Sin embeddings para entrenar el índice IVF");
+                return;
+            }
+
+            int listCount = resolveListCount(reservoir.seen);
+            int iterations = Math.max(1, search.getIvfTrainingIterations());
+            float[][] samples = sample(reservoir.samples(), listCount * TRAINING_SAMPLES_PER_LIST);
+            log.info("Entrenando índice IVF: {} listas sobre {} muestras de {} vectores ({} iteraciones)",
+                    listCount, samples.length, reservoir.seen, iterations);
+
+            listener.onPhase("training");
+            float[][] trained = SphericalKMeans.train(samples, listCount, iterations, TRAINING_SEED, similarityKernel,
+                    vectorSearchPool, iteration -> listener.onIteration(iteration, iterations));
+
+            // Segunda pasada: cada lote se asigna en paralelo y se vuelca directamente en las listas nuevas
+            listener.onPhase("assigning");
+            InvertedList[] built = new InvertedList[trained.length];
+            for (int c = 0; c < built.length; c++) {
+                built[c] = new InvertedList();
+            }
+            Map<UUID, List<Long>> builtEntries = new HashMap<>();
+            Set<UUID> builtChunks = new HashSet<>();
+            embeddingLoader.load(dimension, batch -> {
+                float[][] units = new float[batch.size()][];
+                for (int row = 0; row < units.length; row++) {
+                    float[] vector = batch.vectorCopy(row);
+                    units[row] = batch.isNormalized(row) ? vector : VectorNormalizer.normalizeInPlace(vector);
+                }
+                int[] assignment = new int[units.length];
+                vectorSearchPool.submit(() -> IntStream.range(0, units.length).parallel()
+                        .forEach(i -> assignment[i] = SphericalKMeans.nearest(units[i], trained, similarityKernel))).join();
+                for (int row = 0; row < units.length; row++) {
+                    append(built, builtEntries, builtChunks, batch.chunkId(row), batch.documentId(row), units[row],
+                            assignment[row]);
+                }
+            });
+
+            install(trained, built, builtEntries, builtChunks);
+            log.info("Índice IVF entrenado: {} listas, {} vectores en {}ms",
+                    trained.length, size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                training = false;
+                eventsDuringTraining.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Indica si el corpus creció lo suficiente desde el último entrenamiento para reentrenar.
+     */
+    public boolean needsRetraining() {
+        lock.readLock().lock();
+        try {
+            double growth = ragProperties.getSearch().getIvfRetrainGrowth();
+            return centroids != null && !training && growth > 0
+                    && (size - deletedCount) >= trainedSize * (1.0 + growth);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (training) {
+                eventsDuringTraining.add(event);
+            }
+            if (centroids != null) {
+                event.getChunks().forEach(this::assignAndAdd);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (training) {
+                eventsDuringTraining.add(event);
+            }
+            removeDocument(event.getDocumentId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredChunk> search(float[] query, int maxResults, double threshold, int efSearch, SearchFilter filter) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimensión de consulta " + query.length + " distinta de " + dimension);
+        }
+        if (maxResults <= 0) {
+            return List.of();
+        }
+
+        float[] unitQuery = VectorNormalizer.normalizedCopy(query);
+        float minSimilarity = (float) threshold;
+
+        lock.readLock().lock();
+        try {
+            if (centroids == null) {
+                return List.of();
+            }
+            // Con filtro, posiciones admitidas de cada lista; null = lista sin entradas del filtro
+            BitSet[] allowed = null;
+            if (filter.hasDocumentFilter()) {
+                if (entryCount(filter.getDocumentIds()) <= ragProperties.getSearch().getPartitionSize()) {
+                    return searchInDocuments(unitQuery, maxResults, minSimilarity, filter.getDocumentIds());
+                }
+                allowed = positionMasks(filter.getDocumentIds());
+            }
+
+            // Listas a sondear: las de los nprobe centroides más similares que tengan entradas admitidas
+            int nprobe = Math.min(Math.max(1, ragProperties.getSearch().getIvfNprobe()), centroids.length);
+            TopKCollector probes = new TopKCollector(nprobe);
+            for (int c = 0; c < centroids.length; c++) {
+                if (allowed == null || allowed[c] != null) {
+                    probes.offer(c, similarityKernel.dot(unitQuery, centroids[c]));
+                }
+            }
+
+            // Cada lista llena un top-k local; los ganadores se combinan por su posición en candidates
+            UUID[] candidates = new UUID[nprobe * maxResults];
+            int candidateCount = 0;
+            TopKCollector topK = new TopKCollector(maxResults);
+            TopKCollector listTopK = new TopKCollector(maxResults);
+            for (int p = 0; p < probes.size(); p++) {
+                InvertedList list = lists[probes.idAt(p)];
+                listTopK.reset();
+                list.scan(unitQuery, minSimilarity, similarityKernel, allowed == null ? null : allowed[probes.idAt(p)],
+                        listTopK);
+                for (int i = 0; i < listTopK.size(); i++) {
+                    candidates[candidateCount] = list.chunkIds[listTopK.idAt(i)];
+                    topK.offer(candidateCount++, listTopK.scoreAt(i));
+                }
+            }
+
+            int count = topK.sortDescending();
+            List<ScoredChunk> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new ScoredChunk(candidates[topK.idAt(i)], topK.scoreAt(i)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENGINE_NAME.equalsIgnoreCase(ragProperties.getSearch().getEngine());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getListCount() {
+        lock.readLock().lock();
+        try {
+            return lists.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTrainedSize() {
+        lock.readLock().lock();
+        try {
+            return trainedSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entradas de los documentos indicados. Debe llamarse con el lock de lectura adquirido.
+     */
+    private int entryCount(Set<UUID> documentIds) {
+        int count = 0;
+        for (UUID documentId : documentIds) {
+            List<Long> entries = entriesByDocument.get(documentId);
+            if (entries != null) {
+                count += entries.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Posiciones de las entradas de los documentos indicados en cada lista, para sondear solo esas;
+     * {@code null} en las listas sin ninguna. Debe llamarse con el lock de lectura adquirido.
+     */
+    private BitSet[] positionMasks(Set<UUID> documentIds) {
+        BitSet[] masks = new BitSet[lists.length];
+        for (UUID documentId : documentIds) {
+            for (long entry : entriesByDocument.getOrDefault(documentId, List.of())) {
+                int list = listOf(entry);
+                if (masks[list] == null) {
+                    masks[list] = new BitSet(lists[list].size);
+                }
+                masks[list].set(positionOf(entry));
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Recorrido exacto de las entradas de los documentos indicados, sin pasar por los centroides;
+     * para filtros de pocos documentos, cuyas entradas cuesta menos puntuar todas que sondear listas.
+     * Debe llamarse con el lock de lectura adquirido.
+     */
+    private List<ScoredChunk> searchInDocuments(float[] unitQuery, int maxResults, float minSimilarity,
+                                                Set<UUID> documentIds) {
+        List<UUID> candidates = new ArrayList<>();
+        TopKCollector topK = new TopKCollector(maxResults);
+        for (UUID documentId : documentIds) {
+            List<Long> entries = entriesByDocument.get(documentId);
+            if (entries == null) {
+                continue;
+            }
+            for (long entry : entries) {
+                InvertedList list = lists[listOf(entry)];
+                int position = positionOf(entry);
+                float similarity = similarityKernel.dot(unitQuery, list.vectors[position]);
+                if (similarity >= minSimilarity && topK.offer(candidates.size(), similarity)) {
+                    candidates.add(list.chunkIds[position]);
+                }
+            }
+        }
+
+        int count = topK.sortDescending();
+        List<ScoredChunk> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new ScoredChunk(candidates.get(topK.idAt(i)), topK.scoreAt(i)));
+        }
+        return results;
+    }
+
+    @Override
+    public Map<UUID, float[]> unitVectors(Map<UUID, UUID> documentByChunk) {
+        Map<UUID, float[]> vectors = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<UUID, UUID> requested : documentByChunk.entrySet()) {
+                for (long entry : entriesByDocument.getOrDefault(requested.getValue(), List.of())) {
+                    InvertedList list = lists[listOf(entry)];
+                    int position = positionOf(entry);
+                    if (requested.getKey().equals(list.chunkIds[position]) && !list.deleted.get(position)) {
+                        vectors.put(requested.getKey(), list.vectors[position]);
+                        break;
+                    }
+                }
+            }
+            return vectors;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void install(float[][] trained, InvertedList[] built, Map<UUID, List<Long>> builtEntries,
+                         Set<UUID> builtChunks) {
+        lock.writeLock().lock();
+        try {
+            centroids = trained;
+            lists = built;
+            entriesByDocument = builtEntries;
+            indexedChunks = builtChunks;
+            size = builtChunks.size();
+            deletedCount = 0;
+
+            // Los eventos recibidos mientras se entrenaba se reaplican en su orden: un documento
+            // reprocesado pierde sus chunks anteriores y conserva los nuevos aunque el cursor no los viera
+            for (Object event : eventsDuringTraining) {
+                if (event instanceof DocumentChunksDeletedEvent deleted) {
+                    removeDocument(deleted.getDocumentId());
+                } else if (event instanceof ChunksEmbeddedEvent embedded) {
+                    embedded.getChunks().forEach(this::assignAndAdd);
+                }
+            }
+
+            trainedSize = size - deletedCount;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marca como borradas las entradas de un documento. Debe llamarse con el lock de escritura adquirido.
+     */
+    private void removeDocument(UUID documentId) {
+        List<Long> entries = entriesByDocument.remove(documentId);
+        if (entries == null) {
+            return;
+        }
+        for (long entry : entries) {
+            InvertedList list = lists[listOf(entry)];
+            int position = positionOf(entry);
+            list.deleted.set(position);
+            indexedChunks.remove(list.chunkIds[position]);
+        }
+        deletedCount += entries.size();
+    }
+
+    private void assignAndAdd(DocumentChunk chunk) {
+        float[] embedding = chunk.getEmbedding();
+        if (embedding == null || embedding.length != dimension || indexedChunks.contains(chunk.getId())) {
+            return;
+        }
+        float[] unit = unitEmbedding(chunk);
+        add(chunk.getId(), chunk.getDocument().getId(), unit,
+                SphericalKMeans.nearest(unit, centroids, similarityKernel));
+    }
+
+    private void add(UUID chunkId, UUID documentId, float[] unit, int listIndex) {
+        if (append(lists, entriesByDocument, indexedChunks, chunkId, documentId, unit, listIndex)) {
+            size++;
+        }
+    }
+
+    private static boolean append(InvertedList[] lists, Map<UUID, List<Long>> entriesByDocument,
+                                  Set<UUID> indexedChunks, UUID chunkId, UUID documentId, float[] unit, int listIndex) {
+        if (!indexedChunks.add(chunkId)) {
+            return false;
+        }
+        int position = lists[listIndex].append(chunkId, unit);
+        entriesByDocument.computeIfAbsent(documentId, id -> new ArrayList<>())
+                .add(((long) listIndex << 32) | position);
+        return true;
+    }
+
+    private int resolveListCount(long vectorCount) {
+        int configured = ragProperties.getSearch().getIvfLists();
+        long lists = configured > 0 ? configured : Math.round(Math.sqrt(vectorCount));
+        return (int) Math.max(1, Math.min(lists, vectorCount));
+    }
+
+    /**
+     * Tamaño de la muestra que se retiene en la primera pasada: la necesaria para las listas configuradas
+     * o, con listas automáticas (que dependen del tamaño del corpus, aún desconocido), un máximo fijo.
+     */
+    private int resolveMaxSamples() {
+        int configured = ragProperties.getSearch().getIvfLists();
+        return configured > 0
+                ? (int) Math.min((long) configured * TRAINING_SAMPLES_PER_LIST, Integer.MAX_VALUE - 8)
+                : MAX_TRAINING_SAMPLES;
+    }
+
+    private static float[][] sample(float[][] vectors, int maxSamples) {
+        if (vectors.length <= maxSamples) {
+            return vectors;
+        }
+        Random random = new Random(TRAINING_SEED);
+        float[][] sample = new float[maxSamples][];
+        for (int i = 0; i < maxSamples; i++) {
+            sample[i] = vectors[random.nextInt(vectors.length)];
+        }
+        return sample;
+    }
+
+    private static float[] unitEmbedding(DocumentChunk chunk) {
+        return chunk.isNormalized() ? chunk.getEmbedding() : VectorNormalizer.normalizedCopy(chunk.getEmbedding());
+    }
+
+    private static int listOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int positionOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Muestreo por reservorio de los vectores unitarios del cursor: tras recorrerlo, cada vector visto
+     * tiene la misma probabilidad de estar en la muestra y solo se retienen {@code capacity} copias.
+     */
+    private static final class Reservoir {
+        private final float[][] samples;
+        private final Random random = new Random(TRAINING_SEED);
+        private int size;
+        private long seen;
+
+        Reservoir(int capacity) {
+            this.samples = new float[capacity][];
+        }
+
+        void offer(EmbeddingStreamLoader.EmbeddingBatch batch, int row) {
+            seen++;
+            int slot;
+            if (size < samples.length) {
+                slot = size++;
+            } else {
+                long candidate = random.nextLong(seen);
+                if (candidate >= samples.length) {
+                    return;
+                }
+                slot = (int) candidate;
+            }
+            float[] vector = batch.vectorCopy(row);
+            samples[slot] = batch.isNormalized(row) ? vector : VectorNormalizer.normalizeInPlace(vector);
+        }
+
+        float[][] samples() {
+            return size == samples.length ? samples : Arrays.copyOf(samples, size);
+        }
+    }
+
+    /**
+     * Lista invertida de un centroide: vectores unitarios y chunk ids en arrays crecientes.
+     */
+    private static final class InvertedList {
+        private float[][] vectors = new float[16][];
+        private UUID[] chunkIds = new UUID[16];
+        private final BitSet deleted = new BitSet();
+        private int size;
+
+        int append(UUID chunkId, float[] unit) {
+            if (size == vectors.length) {
+                vectors = Arrays.copyOf(vectors, size * 2);
+                chunkIds = Arrays.copyOf(chunkIds, size * 2);
+            }
+            vectors[size] = unit;
+            chunkIds[size] = chunkId;
+            return size++;
+        }
+
+        /**
+         * @param mask Posiciones admitidas por el filtro, o {@code null} para todas
+         */
+        void scan(float[] unitQuery, float minSimilarity, SimilarityKernel kernel, BitSet mask, TopKCollector topK) {
+            for (int position = mask == null ? 0 : mask.nextSetBit(0); position >= 0 && position < size;
+                 position = mask == null ? position + 1 : mask.nextSetBit(position + 1)) {
+                if (deleted.get(position)) {
+                    continue;
+                }
+                float similarity = kernel.dot(unitQuery, vectors[position]);
+                if (similarity >= minSimilarity) {
+                    topK.offer(position, similarity);
+                }
+            }
+        }
+    }
+}
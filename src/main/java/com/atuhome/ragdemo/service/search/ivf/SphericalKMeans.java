@@ -0,0 +1,101 @@
+package com.atuhome.ragdemo.service.search.ivf;
+
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * K-means esférico sobre vectores unitarios: la asignación maximiza el producto escalar y cada
+ * centroide es la media renormalizada de su grupo, coherente con la similitud coseno del resto
+ * del motor. La asignación de cada iteración se reparte entre los hilos del pool recibido.
+ */
+public final class SphericalKMeans {
+
+    private SphericalKMeans() {
+    }
+
+    /**
+     * Entrena {@code k} centroides.
+     *
+     * @param samples Vectores unitarios de entrenamiento
+     * @param k Número de centroides (se recorta al número de muestras)
+     * @param iterations Iteraciones de Lloyd
+     * @param seed Semilla de la inicialización
+     * @param onIteration Recibe el número de iteración completada, para informar del progreso
+     */
+    public static float[][] train(float[][] samples, int k, int iterations, long seed,
+                                  SimilarityKernel kernel, ForkJoinPool pool, IntConsumer onIteration) {
+        if (samples.length == 0) {
+            throw new IllegalArgumentException("No hay vectores para entrenar los centroides");
+        }
+        int clusters = Math.min(k, samples.length);
+        int dimension = samples[0].length;
+
+        float[][] centroids = initialCentroids(samples, clusters, seed);
+        int[] assignment = new int[samples.length];
+
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            float[][] current = centroids;
+            pool.submit(() -> IntStream.range(0, samples.length).parallel()
+                    .forEach(i -> assignment[i] = nearest(samples[i], current, kernel))).join();
+
+            float[][] sums = new float[clusters][dimension];
+            int[] counts = new int[clusters];
+            for (int i = 0; i < samples.length; i++) {
+                float[] sum = sums[assignment[i]];
+                float[] sample = samples[i];
+                for (int d = 0; d < dimension; d++) {
+                    sum[d] += sample[d];
+                }
+                counts[assignment[i]]++;
+            }
+
+            Random random = new Random(seed + iteration);
+            for (int c = 0; c < clusters; c++) {
+                if (counts[c] == 0) {
+                    // Centroide vacío: se reinicia en una muestra aleatoria
+                    sums[c] = samples[random.nextInt(samples.length)].clone();
+                }
+                VectorNormalizer.normalizeInPlace(sums[c]);
+            }
+            centroids = sums;
+            onIteration.accept(iteration);
+        }
+        return centroids;
+    }
+
+    /**
+     * Índice del centroide con mayor producto escalar.
+     */
+    public static int nearest(float[] vector, float[][] centroids, SimilarityKernel kernel) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < centroids.length; c++) {
+            float score = kernel.dot(vector, centroids[c]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static float[][] initialCentroids(float[][] samples, int clusters, long seed) {
+        // Muestreo sin reemplazo (Fisher-Yates parcial sobre los índices)
+        Random random = new Random(seed);
+        int[] indexes = IntStream.range(0, samples.length).toArray();
+        float[][] centroids = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            int pick = c + random.nextInt(samples.length - c);
+            int chosen = indexes[pick];
+            indexes[pick] = indexes[c];
+            indexes[c] = chosen;
+            centroids[c] = samples[chosen].clone();
+        }
+        return centroids;
+    }
+}
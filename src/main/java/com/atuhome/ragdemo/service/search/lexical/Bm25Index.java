@@ -0,0 +1,461 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.TopKCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido BM25 residente en la JVM para {@code app.rag.search.lexical-engine=bm25}.
+ *
+ * Cada chunk recibe un ordinal; las listas de postings guardan ordinales y frecuencias en arrays
+ * primitivos. Se mantiene incrementalmente con los eventos de ingesta y borrado: al borrar un
+ * documento se retiran sus ordinales de las listas de sus términos, de modo que la frecuencia
+ * documental y la longitud media siguen siendo exactas sin recargar el índice. Cuando los ordinales
+ * borrados superan una fracción del total se renumeran los vivos, así que la memoria sigue al corpus
+ * vivo y no al histórico de reprocesamientos.
+ *
+ * La búsqueda recorre a la vez las listas de postings de los términos de la consulta, que están
+ * ordenadas por ordinal, y puntúa cada chunk al pasar por él: no reserva nada proporcional al corpus.
+ */
+@Component
+public class Bm25Index implements LexicalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(Bm25Index.class);
+
+    public static final String ENGINE_NAME = "bm25";
+
+    // Parámetros estándar de Okapi BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Compactación de ordinales borrados
+    private static final int COMPACTION_MIN_DELETED = 1024;
+    private static final double COMPACTION_DELETED_FRACTION = 0.25;
+
+    private final DocumentChunkRepository chunkRepository;
+    private final RagProperties ragProperties;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protegidos por lock
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final List<UUID> chunkIds = new ArrayList<>();
+    private final List<UUID> documentIds = new ArrayList<>();
+    private final List<String[]> termsByOrdinal = new ArrayList<>();
+    private int[] lengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+    private final Map<UUID, Integer> ordinalByChunk = new HashMap<>();
+    private final Map<UUID, List<Integer>> ordinalsByDocument = new HashMap<>();
+    private long totalLength;
+    private int liveCount;
+    private boolean loading;
+    private final List<Object> eventsDuringLoad = new ArrayList<>();
+    private volatile boolean ready;
+
+    public Bm25Index(DocumentChunkRepository chunkRepository, RagProperties ragProperties) {
+        this.chunkRepository = chunkRepository;
+        this.ragProperties = ragProperties;
+    }
+
+    @Override
+    public String name() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENGINE_NAME.equalsIgnoreCase(ragProperties.getSearch().getLexicalEngine());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Ordinales asignados, vivos o pendientes de compactar.
+     */
+    int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return chunkIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postingsByTerm.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (isEnabled()) {
+            reload();
+        }
+    }
+
+    /**
+     * Reconstruye el índice desde {@code document_chunks} (solo chunks con embedding, igual que los índices vectoriales).
+     * Los eventos que llegan mientras se lee la tabla se guardan y se reaplican en orden sobre el índice nuevo,
+     * porque la consulta puede no haberlos visto.
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            eventsDuringLoad.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Object[]> rows;
+        try {
+            rows = chunkRepository.findAllChunkTextsWithEmbeddings();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                loading = false;
+                eventsDuringLoad.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Object[] row : rows) {
+                addLocked((UUID) row[0], (UUID) row[1], (String) row[2]);
+            }
+            eventsDuringLoad.forEach(this::applyLocked);
+            eventsDuringLoad.clear();
+            loading = false;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Índice BM25 cargado: {} chunks, {} términos en {}ms",
+                liveCount, postingsByTerm.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChunksEmbedded(ChunksEmbeddedEvent event) {
+        onIndexEvent(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChunksDeleted(DocumentChunksDeletedEvent event) {
+        onIndexEvent(event);
+    }
+
+    /**
+     * Indexa (o reindexa) un chunk.
+     */
+    public void add(UUID chunkId, UUID documentId, String content) {
+        lock.writeLock().lock();
+        try {
+            addLocked(chunkId, documentId, content);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDocument(UUID documentId) {
+        lock.writeLock().lock();
+        try {
+            removeDocumentLocked(documentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredChunk> search(String query, int maxResults, SearchFilter filter) {
+        Set<String> queryTerms = new LinkedHashSet<>(SpanishTextAnalyzer.analyze(query));
+        if (queryTerms.isEmpty() || maxResults <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return List.of();
+            }
+            float averageLength = (float) totalLength / liveCount;
+            List<Postings> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Postings postings = postingsByTerm.get(term);
+                if (postings != null) {
+                    lists.add(postings);
+                }
+            }
+            float[] idfs = new float[lists.size()];
+            for (int t = 0; t < idfs.length; t++) {
+                int documentFrequency = lists.get(t).size;
+                idfs[t] = (float) Math.log(1.0 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            }
+
+            // Recorrido simultáneo de las listas: en cada paso se puntúa el menor ordinal pendiente
+            int[] cursors = new int[lists.size()];
+            TopKCollector topK = new TopKCollector(maxResults);
+            while (true) {
+                int ordinal = Integer.MAX_VALUE;
+                for (int t = 0; t < cursors.length; t++) {
+                    Postings postings = lists.get(t);
+                    if (cursors[t] < postings.size) {
+                        ordinal = Math.min(ordinal, postings.ordinals[cursors[t]]);
+                    }
+                }
+                if (ordinal == Integer.MAX_VALUE) {
+                    break;
+                }
+
+                float norm = K1 * (1.0f - B + B * lengths[ordinal] / averageLength);
+                float score = 0.0f;
+                for (int t = 0; t < cursors.length; t++) {
+                    Postings postings = lists.get(t);
+                    if (cursors[t] < postings.size && postings.ordinals[cursors[t]] == ordinal) {
+                        int frequency = postings.frequencies[cursors[t]++];
+                        score += idfs[t] * frequency * (K1 + 1.0f) / (frequency + norm);
+                    }
+                }
+                if (filter.hasDocumentFilter() && !filter.getDocumentIds().contains(documentIds.get(ordinal))) {
+                    continue;
+                }
+                topK.offer(ordinal, score);
+            }
+
+            int count = topK.sortDescending();
+            List<ScoredChunk> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(new ScoredChunk(chunkIds.get(topK.idAt(i)), topK.scoreAt(i)));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Durante una recarga el evento se aplica al índice que sigue sirviendo y se guarda para el nuevo.
+     */
+    private void onIndexEvent(Object event) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                eventsDuringLoad.add(event);
+            }
+            if (ready) {
+                applyLocked(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyLocked(Object event) {
+        if (event instanceof ChunksEmbeddedEvent embedded) {
+            for (DocumentChunk chunk : embedded.getChunks()) {
+                if (chunk.getEmbedding() != null) {
+                    addLocked(chunk.getId(), chunk.getDocument().getId(), chunk.getContent());
+                }
+            }
+        } else if (event instanceof DocumentChunksDeletedEvent deletion) {
+            removeDocumentLocked(deletion.getDocumentId());
+        }
+    }
+
+    private void removeDocumentLocked(UUID documentId) {
+        List<Integer> ordinals = ordinalsByDocument.remove(documentId);
+        if (ordinals != null) {
+            ordinals.forEach(this::removeOrdinal);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Renumera los ordinales vivos de forma consecutiva cuando los borrados pesan demasiado. El orden
+     * relativo se conserva, así que las listas de postings siguen ordenadas.
+     */
+    private void compactIfNeeded() {
+        int total = chunkIds.size();
+        int deletedCount = total - liveCount;
+        if (deletedCount < COMPACTION_MIN_DELETED || deletedCount < total * COMPACTION_DELETED_FRACTION) {
+            return;
+        }
+
+        int[] remap = new int[total];
+        List<UUID> liveChunkIds = new ArrayList<>(liveCount);
+        List<UUID> liveDocumentIds = new ArrayList<>(liveCount);
+        List<String[]> liveTerms = new ArrayList<>(liveCount);
+        int[] liveLengths = new int[Math.max(1024, liveCount)];
+        for (int ordinal = 0; ordinal < total; ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+                continue;
+            }
+            int next = liveChunkIds.size();
+            remap[ordinal] = next;
+            liveChunkIds.add(chunkIds.get(ordinal));
+            liveDocumentIds.add(documentIds.get(ordinal));
+            liveTerms.add(termsByOrdinal.get(ordinal));
+            liveLengths[next] = lengths[ordinal];
+        }
+
+        for (Postings postings : postingsByTerm.values()) {
+            for (int i = 0; i < postings.size; i++) {
+                postings.ordinals[i] = remap[postings.ordinals[i]];
+            }
+        }
+        ordinalByChunk.replaceAll((chunkId, ordinal) -> remap[ordinal]);
+        for (List<Integer> ordinals : ordinalsByDocument.values()) {
+            ordinals.replaceAll(ordinal -> remap[ordinal]);
+        }
+
+        chunkIds.clear();
+        chunkIds.addAll(liveChunkIds);
+        documentIds.clear();
+        documentIds.addAll(liveDocumentIds);
+        termsByOrdinal.clear();
+        termsByOrdinal.addAll(liveTerms);
+        lengths = liveLengths;
+        deleted.clear();
+        log.debug("Índice BM25 compactado: {} ordinales borrados liberados", deletedCount);
+    }
+
+    private void addLocked(UUID chunkId, UUID documentId, String content) {
+        Integer existing = ordinalByChunk.get(chunkId);
+        if (existing != null) {
+            removeOrdinal(existing);
+            List<Integer> documentOrdinals = ordinalsByDocument.get(documentId);
+            if (documentOrdinals != null) {
+                documentOrdinals.remove(existing);
+            }
+        }
+
+        List<String> terms = SpanishTextAnalyzer.analyze(content);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        int ordinal = chunkIds.size();
+        chunkIds.add(chunkId);
+        documentIds.add(documentId);
+        if (ordinal == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[ordinal] = terms.size();
+
+        String[] uniqueTerms = new String[frequencies.size()];
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings postings = postingsByTerm.computeIfAbsent(entry.getKey(), term -> new Postings());
+            postings.add(ordinal, entry.getValue());
+            uniqueTerms[index++] = entry.getKey();
+        }
+        termsByOrdinal.add(uniqueTerms);
+
+        ordinalByChunk.put(chunkId, ordinal);
+        ordinalsByDocument.computeIfAbsent(documentId, id -> new ArrayList<>()).add(ordinal);
+        totalLength += terms.size();
+        liveCount++;
+    }
+
+    private void removeOrdinal(int ordinal) {
+        if (deleted.get(ordinal)) {
+            return;
+        }
+        for (String term : termsByOrdinal.get(ordinal)) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null && postings.remove(ordinal) && postings.size == 0) {
+                postingsByTerm.remove(term);
+            }
+        }
+        termsByOrdinal.set(ordinal, new String[0]);
+        deleted.set(ordinal);
+        ordinalByChunk.remove(chunkIds.get(ordinal));
+        totalLength -= lengths[ordinal];
+        liveCount--;
+    }
+
+    private void clear() {
+        postingsByTerm.clear();
+        chunkIds.clear();
+        documentIds.clear();
+        termsByOrdinal.clear();
+        deleted.clear();
+        ordinalByChunk.clear();
+        ordinalsByDocument.clear();
+        lengths = new int[1024];
+        totalLength = 0;
+        liveCount = 0;
+    }
+
+    /**
+     * Lista de postings de un término: ordinales crecientes y su frecuencia en el chunk.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void add(int ordinal, int frequency) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ordinals[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        boolean remove(int ordinal) {
+            // Los ordinales se asignan en orden creciente, así que la lista está ordenada
+            int index = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ordinals, index + 1, ordinals, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Búsqueda léxica seleccionable con {@code app.rag.search.lexical-engine}. Su ranking se fusiona
+ * con el vectorial en {@code SemanticSearchService} para recuperar referencias literales
+ * ("artículo 23", siglas, números de expediente) que los embeddings no distinguen bien.
+ */
+public interface LexicalIndex {
+
+    /**
+     * Nombre del motor tal como se configura en {@code app.rag.search.lexical-engine}.
+     */
+    String name();
+
+    boolean isEnabled();
+
+    boolean isReady();
+
+    /**
+     * Busca los chunks con mayor relevancia léxica para la consulta.
+     *
+     * @return Chunks ordenados por puntuación descendente; la escala depende del motor
+     */
+    List<ScoredChunk> search(String query, int maxResults, SearchFilter filter);
+
+    /**
+     * Lanza la búsqueda para solaparla con la vectorial. Los índices en la JVM responden en
+     * microsegundos y la resuelven en el hilo llamante; los que consultan la base de datos la
+     * envían a su propio executor.
+     */
+    default CompletableFuture<List<ScoredChunk>> searchAsync(String query, int maxResults, SearchFilter filter) {
+        return CompletableFuture.completedFuture(search(query, maxResults, filter));
+    }
+}
@@ -0,0 +1,163 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Búsqueda léxica en PostgreSQL para {@code app.rag.search.lexical-engine=postgres}: columna
+ * generada {@code content_tsv} con la configuración {@code spanish} (stemming y palabras vacías)
+ * e índice GIN. No ocupa heap y escala con la base de datos; a diferencia de {@link Bm25Index}
+ * no pliega acentos, porque {@code unaccent} no es inmutable y no puede usarse en una columna generada.
+ *
+ * Las consultas se envían a {@code lexicalSearchExecutor} para ejecutarse a la vez que la vectorial.
+ */
+@Component
+public class PostgresFullTextIndex implements LexicalIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresFullTextIndex.class);
+
+    public static final String ENGINE_NAME = "postgres";
+
+    static final String INDEX = "idx_chunks_content_tsv";
+    static final String ADD_COLUMN = "ALTER TABLE document_chunks ADD COLUMN content_tsv tsvector "
+            + "GENERATED ALWAYS AS (to_tsvector('spanish', content)) STORED";
+    // CONCURRENTLY no admite transacción: la sentencia va en autocommit
+    static final String CREATE_INDEX = "CREATE INDEX CONCURRENTLY " + INDEX + " ON document_chunks USING gin (content_tsv)";
+
+    private final DocumentChunkRepository chunkRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RagProperties ragProperties;
+    private final TaskExecutor lexicalSearchExecutor;
+    private final TaskExecutor taskExecutor;
+
+    private volatile boolean ready;
+
+    public PostgresFullTextIndex(DocumentChunkRepository chunkRepository, JdbcTemplate jdbcTemplate,
+                                 RagProperties ragProperties,
+                                 @Qualifier("lexicalSearchExecutor") TaskExecutor lexicalSearchExecutor,
+                                 @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+        this.chunkRepository = chunkRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ragProperties = ragProperties;
+        this.lexicalSearchExecutor = lexicalSearchExecutor;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public String name() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENGINE_NAME.equalsIgnoreCase(ragProperties.getSearch().getLexicalEngine());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Comprueba el esquema sin bloquear la tabla. La columna generada está en schema.sql e init.sql; en
+     * una base creada por Hibernate ({@code ddl-auto=update}) falta, y añadirla reescribe
+     * {@code document_chunks} entera bajo un bloqueo exclusivo, así que no se hace al arrancar: se
+     * avisa y la búsqueda sigue solo vectorial. El índice GIN, si falta, se construye en segundo plano
+     * con {@code CREATE INDEX CONCURRENTLY}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureSchemaOnStartup() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            if (!columnExists()) {
+                log.warn("document_chunks no tiene la columna content_tsv; la búsqueda continúa solo vectorial. "
+                        + "Crearla en una ventana de mantenimiento: {}", ADD_COLUMN);
+                return;
+            }
+            Boolean valid = indexValidity();
+            if (Boolean.TRUE.equals(valid)) {
+                ready = true;
+                return;
+            }
+            taskExecutor.execute(() -> buildIndex(valid != null));
+        } catch (Exception e) {
+            log.warn("No se pudo comprobar content_tsv; la búsqueda continúa solo vectorial: {}", e.getMessage());
+        }
+    }
+
+    private void buildIndex(boolean dropInvalid) {
+        try {
+            long start = System.currentTimeMillis();
+            if (dropInvalid) {
+                // Un CREATE INDEX CONCURRENTLY interrumpido deja el índice marcado como no válido
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + INDEX);
+            }
+            jdbcTemplate.execute(CREATE_INDEX);
+            ready = true;
+            log.info("Índice {} creado en {}ms", INDEX, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("No se pudo crear {}; la búsqueda continúa solo vectorial: {}", INDEX, e.getMessage());
+        }
+    }
+
+    private boolean columnExists() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM information_schema.columns
+                               WHERE table_name = 'document_chunks' AND column_name = 'content_tsv')
+                """, Boolean.class));
+    }
+
+    /**
+     * {@code null} si el índice no existe.
+     */
+    private Boolean indexValidity() {
+        return jdbcTemplate.query("SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)",
+                resultSet -> resultSet.next() ? resultSet.getBoolean(1) : null, INDEX);
+    }
+
+    /**
+     * Los filtros se aplican en SQL: la lista explícita de documentos como parámetros y la
+     * organización, el sector y las etiquetas con un JOIN a {@code documents}.
+     */
+    @Override
+    public List<ScoredChunk> search(String query, int maxResults, SearchFilter filter) {
+        String tags = DocumentChunkRepository.toTextArrayLiteral(filter.getTags());
+        List<Object[]> rows;
+        if (filter.hasRequestedDocuments()) {
+            if (filter.getRequestedDocumentIds().isEmpty()) {
+                return List.of();
+            }
+            rows = chunkRepository.findTopChunksByFullTextInDocuments(query, filter.getRequestedDocumentIds(),
+                    filter.getOrganizationId(), filter.getSector(), tags, maxResults);
+        } else if (filter.hasMetadataFilter()) {
+            rows = chunkRepository.findTopChunksByFullTextMatching(query, filter.getOrganizationId(),
+                    filter.getSector(), tags, maxResults);
+        } else {
+            rows = chunkRepository.findTopChunksByFullText(query, maxResults);
+        }
+        return rows.stream()
+                .map(row -> new ScoredChunk((UUID) row[0], ((Number) row[1]).doubleValue()))
+                .toList();
+    }
+
+    @Override
+    public CompletableFuture<List<ScoredChunk>> searchAsync(String query, int maxResults, SearchFilter filter) {
+        return CompletableFuture.supplyAsync(() -> search(query, maxResults, filter), lexicalSearchExecutor);
+    }
+}
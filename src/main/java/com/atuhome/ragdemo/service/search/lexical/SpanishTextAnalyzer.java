@@ -0,0 +1,78 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenización para el índice léxico: minúsculas, plegado de acentos ("artículo" y "articulo"
+ * son el mismo término), eliminación de palabras vacías del español y reducción ligera de
+ * plurales. Los números se conservan como términos porque son las referencias que más interesa
+ * recuperar literalmente.
+ */
+public final class SpanishTextAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "al", "algo", "ante", "aquel", "aquella", "asi", "aun", "bajo", "cada", "como", "con",
+            "contra", "cual", "cuales", "cuando", "de", "del", "desde", "donde", "dos", "el", "ella",
+            "ellas", "ellos", "en", "entre", "era", "es", "esa", "ese", "eso", "esta", "estan", "este",
+            "esto", "fue", "ha", "han", "hasta", "hay", "la", "las", "le", "les", "lo", "los", "mas",
+            "me", "mi", "muy", "ni", "no", "nos", "o", "otra", "otro", "para", "pero", "por", "que",
+            "quien", "se", "segun", "ser", "si", "sin", "sobre", "son", "su", "sus", "tambien", "te",
+            "tiene", "todo", "tu", "u", "un", "una", "uno", "unos", "unas", "y", "ya", "yo");
+
+    private SpanishTextAnalyzer() {
+    }
+
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (token.isEmpty() || STOPWORDS.contains(token)) {
+                continue;
+            }
+            if (token.length() == 1 && !Character.isDigit(token.charAt(0))) {
+                continue;
+            }
+            terms.add(stem(token));
+        }
+        return terms;
+    }
+
+    /**
+     * Minúsculas y sin diacríticos; la ñ se conserva porque distingue palabras ("año", "ano").
+     */
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT).replace('ñ', '\u0001');
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").replace('\u0001', 'ñ');
+    }
+
+    /**
+     * Singular aproximado: "leyes" → "ley", "funciones" → "funcion", "luces" → "luz", "artículos" → "articulo".
+     */
+    static String stem(String term) {
+        int length = term.length();
+        if (length <= 3 || Character.isDigit(term.charAt(length - 1))) {
+            return term;
+        }
+        if (term.endsWith("ces")) {
+            return term.substring(0, length - 3) + "z";
+        }
+        if (term.endsWith("es") && length > 4 && "lrndzyj".indexOf(term.charAt(length - 3)) >= 0) {
+            return term.substring(0, length - 2);
+        }
+        if (term.endsWith("s") && "aeiou".indexOf(term.charAt(length - 2)) >= 0) {
+            return term.substring(0, length - 1);
+        }
+        return term;
+    }
+}
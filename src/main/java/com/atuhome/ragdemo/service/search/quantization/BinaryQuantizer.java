@@ -0,0 +1,49 @@
+package com.atuhome.ragdemo.service.search.quantization;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Cuantización binaria de un bit por dimensión: el bit {@code d} vale 1 si la componente es positiva.
+ *
+ * Un vector de 1024 dimensiones ocupa 16 palabras de 64 bits (128 bytes) y la distancia de
+ * Hamming entre dos códigos se calcula con XOR y {@link Long#bitCount}, que el JIT traduce a
+ * {@code popcnt}. Para vectores unitarios {@code dimension - 2 * hamming} es proporcional a una
+ * estimación del coseno, suficiente para preseleccionar candidatos que luego se puntúan en float.
+ */
+public final class BinaryQuantizer {
+
+    private BinaryQuantizer() {
+    }
+
+    public static int wordsPerVector(int dimension) {
+        return (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    public static int bytesPerVector(int dimension) {
+        return wordsPerVector(dimension) * Long.BYTES;
+    }
+
+    public static long[] encode(float[] vector) {
+        long[] words = new long[wordsPerVector(vector.length)];
+        for (int d = 0; d < vector.length; d++) {
+            if (vector[d] > 0.0f) {
+                words[d >>> 6] |= 1L << (d & 63);
+            }
+        }
+        return words;
+    }
+
+    public static void encode(float[] vector, MemorySegment codes, long offset) {
+        long[] words = encode(vector);
+        MemorySegment.copy(words, 0, codes, ValueLayout.JAVA_LONG, offset, words.length);
+    }
+
+    public static int hammingDistance(long[] query, MemorySegment codes, long offset) {
+        int distance = 0;
+        for (int w = 0; w < query.length; w++) {
+            distance += Long.bitCount(query[w] ^ codes.get(ValueLayout.JAVA_LONG, offset + (long) w * Long.BYTES));
+        }
+        return distance;
+    }
+}
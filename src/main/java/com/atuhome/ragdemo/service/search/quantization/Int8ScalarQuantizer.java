@@ -0,0 +1,124 @@
+package com.atuhome.ragdemo.service.search.quantization;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+/**
+ * Cuantización escalar int8 con rango mínimo/máximo por dimensión.
+ *
+ * Cada componente se codifica como {@code code = round((x - min) / scale) - 128}, con
+ * {@code scale = (max - min) / 255}. El producto escalar aproximado se descompone en una
+ * constante por consulta más un producto float × int8, de modo que el recorrido lee un byte
+ * por dimensión en lugar de cuatro:
+ *
+ * <pre>
+ *   q · x ≈ Σ q[d]·(min[d] + 128·scale[d]) + Σ (q[d]·scale[d])·code[d]
+ * </pre>
+ *
+ * Los parámetros se entrenan con {@link Trainer} sobre el corpus cargado; los vectores añadidos
+ * después se recortan al rango entrenado hasta la siguiente recarga.
+ */
+public final class Int8ScalarQuantizer {
+
+    private static final int LEVELS = 255;
+    private static final int CODE_OFFSET = 128;
+
+    private final float[] min;
+    private final float[] scale;
+
+    private Int8ScalarQuantizer(float[] min, float[] scale) {
+        this.min = min;
+        this.scale = scale;
+    }
+
+    public int dimension() {
+        return min.length;
+    }
+
+    /**
+     * Codifica un vector float en {@code dimension()} bytes a partir de {@code offset}.
+     */
+    public void encode(float[] vector, MemorySegment codes, long offset) {
+        for (int d = 0; d < min.length; d++) {
+            codes.set(ValueLayout.JAVA_BYTE, offset + d, encodeComponent(vector[d], d));
+        }
+    }
+
+    /**
+     * Prepara una consulta para puntuar códigos: {@code score = offset + kernel.dotInt8(scaledQuery, codes)}.
+     */
+    public QuantizedQuery prepareQuery(float[] query) {
+        float[] scaledQuery = new float[min.length];
+        float offset = 0.0f;
+        for (int d = 0; d < min.length; d++) {
+            scaledQuery[d] = query[d] * scale[d];
+            offset += query[d] * (min[d] + CODE_OFFSET * scale[d]);
+        }
+        return new QuantizedQuery(scaledQuery, offset);
+    }
+
+    private byte encodeComponent(float value, int d) {
+        if (scale[d] == 0.0f) {
+            return (byte) -CODE_OFFSET;
+        }
+        int level = Math.round((value - min[d]) / scale[d]);
+        level = Math.max(0, Math.min(LEVELS, level));
+        return (byte) (level - CODE_OFFSET);
+    }
+
+    /**
+     * Acumula el rango por dimensión vector a vector, de modo que el entrenamiento recorre el
+     * corpus en streaming sin retener la matriz float.
+     */
+    public static final class Trainer {
+        private final float[] min;
+        private final float[] max;
+
+        public Trainer(int dimension) {
+            this.min = new float[dimension];
+            this.max = new float[dimension];
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * Incorpora el vector que ocupa {@code vectors[offset .. offset + dimension)}.
+         */
+        public void accept(float[] vectors, int offset) {
+            for (int d = 0; d < min.length; d++) {
+                float value = vectors[offset + d];
+                min[d] = Math.min(min[d], value);
+                max[d] = Math.max(max[d], value);
+            }
+        }
+
+        public Int8ScalarQuantizer build() {
+            float[] low = min.clone();
+            float[] scale = new float[min.length];
+            for (int d = 0; d < min.length; d++) {
+                float high = max[d];
+                if (low[d] > high) {
+                    // Sin filas: rango neutro para vectores unitarios
+                    low[d] = -1.0f;
+                    high = 1.0f;
+                }
+                scale[d] = (high - low[d]) / LEVELS;
+            }
+            return new Int8ScalarQuantizer(low, scale);
+        }
+    }
+
+    public static class QuantizedQuery {
+        private final float[] scaledQuery;
+        private final float offset;
+
+        QuantizedQuery(float[] scaledQuery, float offset) {
+            this.scaledQuery = scaledQuery;
+            this.offset = offset;
+        }
+
+        public float[] getScaledQuery() { return scaledQuery; }
+        public float getOffset() { return offset; }
+    }
+}
@@ -0,0 +1,95 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Implementación escalar, usada cuando el Vector API no está disponible.
+ * Acumula en float y calcula el coseno en una única pasada.
+ */
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+    public static final String NAME = "scalar";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        float sum = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment vectors, long offset) {
+        float sum = 0.0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        float dot = 0.0f;
+        float normA = 0.0f;
+        float normB = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return SimilarityKernel.cosineFrom(dot, normA, normB);
+    }
+
+    @Override
+    public float cosine(float[] query, MemorySegment vectors, long offset) {
+        float dot = 0.0f;
+        float normA = 0.0f;
+        float normB = 0.0f;
+        for (int i = 0; i < query.length; i++) {
+            float value = vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+            dot += query[i] * value;
+            normA += query[i] * query[i];
+            normB += value * value;
+        }
+        return SimilarityKernel.cosineFrom(dot, normA, normB);
+    }
+
+    @Override
+    public float l2Squared(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        float sum = 0.0f;
+        for (int i = 0; i < a.length; i++) {
+            float diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public float l2Squared(float[] query, MemorySegment vectors, long offset) {
+        float sum = 0.0f;
+        for (int i = 0; i < query.length; i++) {
+            float diff = query[i] - vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotInt8(float[] query, MemorySegment codes, long offset) {
+        float sum = 0.0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * codes.get(ValueLayout.JAVA_BYTE, offset + i);
+        }
+        return sum;
+    }
+}
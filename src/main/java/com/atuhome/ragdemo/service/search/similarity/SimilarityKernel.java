@@ -0,0 +1,51 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Núcleo de cálculo de similitud entre embeddings.
+ * Las variantes con {@link MemorySegment} leen la fila directamente de la matriz fuera del heap;
+ * {@code offset} se expresa en bytes.
+ */
+public interface SimilarityKernel {
+
+    /**
+     * Nombre del núcleo (scalar, simd) para diagnóstico.
+     */
+    String name();
+
+    float dot(float[] a, float[] b);
+
+    float dot(float[] query, MemorySegment vectors, long offset);
+
+    /**
+     * Similitud coseno calculada en una sola pasada (producto y normas a la vez).
+     */
+    float cosine(float[] a, float[] b);
+
+    float cosine(float[] query, MemorySegment vectors, long offset);
+
+    /**
+     * Distancia euclídea al cuadrado; suficiente para ordenar sin pagar la raíz.
+     */
+    float l2Squared(float[] a, float[] b);
+
+    float l2Squared(float[] query, MemorySegment vectors, long offset);
+
+    /**
+     * Producto escalar entre una consulta float y una fila de códigos int8 con signo
+     * ({@code query.length} bytes a partir de {@code offset}).
+     */
+    float dotInt8(float[] query, MemorySegment codes, long offset);
+
+    static void checkLength(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vectors must have the same length");
+        }
+    }
+
+    static float cosineFrom(float dot, float normA, float normB) {
+        float denominator = (float) Math.sqrt(normA) * (float) Math.sqrt(normB);
+        return denominator == 0.0f ? 0.0f : dot / denominator;
+    }
+}
@@ -0,0 +1,51 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selección del núcleo de similitud según {@code app.rag.search.kernel} (auto, simd, scalar).
+ */
+public final class SimilarityKernels {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarityKernels.class);
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS =
+            "com.atuhome.ragdemo.service.search.similarity.VectorApiSimilarityKernel";
+
+    private SimilarityKernels() {
+    }
+
+    public static SimilarityKernel create(String mode) {
+        String normalizedMode = mode == null ? "auto" : mode.trim().toLowerCase();
+
+        if (ScalarSimilarityKernel.NAME.equals(normalizedMode)) {
+            return new ScalarSimilarityKernel();
+        }
+
+        SimilarityKernel simd = tryCreateVectorKernel();
+        if (simd != null) {
+            return simd;
+        }
+
+        if (VectorApiSimilarityKernel.NAME.equals(normalizedMode)) {
+            log.warn("Se solicitó el núcleo SIMD pero {} no está disponible; usando núcleo escalar. " +
+                    "Arranca la JVM con --add-modules {}", VECTOR_MODULE, VECTOR_MODULE);
+        }
+        return new ScalarSimilarityKernel();
+    }
+
+    private static SimilarityKernel tryCreateVectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            // Reflexión para no enlazar jdk.incubator.vector cuando el módulo no está cargado
+            return (SimilarityKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("No se pudo inicializar el núcleo SIMD: {}", e.getMessage());
+            return null;
+        }
+    }
+}
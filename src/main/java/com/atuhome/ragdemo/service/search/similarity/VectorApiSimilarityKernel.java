@@ -0,0 +1,189 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * Implementación SIMD con {@code jdk.incubator.vector}. Usa el ancho preferido de la CPU
+ * y dos acumuladores FMA independientes para no encadenar la latencia de cada suma.
+ *
+ * Requiere {@code --add-modules jdk.incubator.vector}; {@link SimilarityKernels} la instancia
+ * por reflexión para poder caer en la versión escalar si el módulo no está presente.
+ */
+public class VectorApiSimilarityKernel implements SimilarityKernel {
+
+    public static final String NAME = "simd";
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+    // Especie de bytes con el mismo número de carriles que la de floats; null si la forma no existe (p. ej. 32 bits)
+    private static final VectorSpecies<Byte> BYTE_SPECIES = byteSpeciesWithLanes(LANES);
+
+    @Override
+    public String name() {
+        return NAME + "-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+        int i = 0;
+        int unrolledBound = a.length - 2 * LANES;
+        for (; i <= unrolledBound; i += 2 * LANES) {
+            acc1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc1);
+            acc2 = FloatVector.fromArray(SPECIES, a, i + LANES).fma(FloatVector.fromArray(SPECIES, b, i + LANES), acc2);
+        }
+        for (; i <= a.length - LANES; i += LANES) {
+            acc1 = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc1);
+        }
+        float sum = acc1.add(acc2).reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, MemorySegment vectors, long offset) {
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        FloatVector acc2 = FloatVector.zero(SPECIES);
+        int i = 0;
+        int unrolledBound = query.length - 2 * LANES;
+        for (; i <= unrolledBound; i += 2 * LANES) {
+            acc1 = FloatVector.fromArray(SPECIES, query, i).fma(load(vectors, offset, i), acc1);
+            acc2 = FloatVector.fromArray(SPECIES, query, i + LANES).fma(load(vectors, offset, i + LANES), acc2);
+        }
+        for (; i <= query.length - LANES; i += LANES) {
+            acc1 = FloatVector.fromArray(SPECIES, query, i).fma(load(vectors, offset, i), acc1);
+        }
+        float sum = acc1.add(acc2).reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            sum += query[i] * vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i <= a.length - LANES; i += LANES) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dot = va.fma(vb, dot);
+            normA = va.fma(va, normA);
+            normB = vb.fma(vb, normB);
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dotSum += a[i] * b[i];
+            normASum += a[i] * a[i];
+            normBSum += b[i] * b[i];
+        }
+        return SimilarityKernel.cosineFrom(dotSum, normASum, normBSum);
+    }
+
+    @Override
+    public float cosine(float[] query, MemorySegment vectors, long offset) {
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i <= query.length - LANES; i += LANES) {
+            FloatVector va = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector vb = load(vectors, offset, i);
+            dot = va.fma(vb, dot);
+            normA = va.fma(va, normA);
+            normB = vb.fma(vb, normB);
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            float value = vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+            dotSum += query[i] * value;
+            normASum += query[i] * query[i];
+            normBSum += value * value;
+        }
+        return SimilarityKernel.cosineFrom(dotSum, normASum, normBSum);
+    }
+
+    @Override
+    public float l2Squared(float[] a, float[] b) {
+        SimilarityKernel.checkLength(a, b);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i <= a.length - LANES; i += LANES) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public float l2Squared(float[] query, MemorySegment vectors, long offset) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i <= query.length - LANES; i += LANES) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, query, i).sub(load(vectors, offset, i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            float diff = query[i] - vectors.get(ValueLayout.JAVA_FLOAT, offset + (long) i * Float.BYTES);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotInt8(float[] query, MemorySegment codes, long offset) {
+        int i = 0;
+        float sum = 0.0f;
+        if (BYTE_SPECIES != null) {
+            FloatVector acc = FloatVector.zero(SPECIES);
+            for (; i <= query.length - LANES; i += LANES) {
+                FloatVector values = (FloatVector) ByteVector.fromMemorySegment(BYTE_SPECIES, codes, offset + i, ORDER)
+                        .convertShape(VectorOperators.B2F, SPECIES, 0);
+                acc = FloatVector.fromArray(SPECIES, query, i).fma(values, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < query.length; i++) {
+            sum += query[i] * codes.get(ValueLayout.JAVA_BYTE, offset + i);
+        }
+        return sum;
+    }
+
+    private static VectorSpecies<Byte> byteSpeciesWithLanes(int lanes) {
+        try {
+            return VectorSpecies.of(byte.class, VectorShape.forBitSize(lanes * Byte.SIZE));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static FloatVector load(MemorySegment vectors, long offset, int index) {
+        return FloatVector.fromMemorySegment(SPECIES, vectors, offset + (long) index * Float.BYTES, ORDER);
+    }
+}
@@ -0,0 +1,35 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+/**
+ * Normalización L2 de embeddings. Con vectores unitarios la similitud coseno
+ * se reduce a un producto escalar.
+ */
+public final class VectorNormalizer {
+
+    private VectorNormalizer() {
+    }
+
+    /**
+     * Normaliza el vector en el mismo array. Un vector nulo se deja tal cual.
+     *
+     * @return el mismo array, ya normalizado
+     */
+    public static float[] normalizeInPlace(float[] vector) {
+        float sum = 0.0f;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        if (sum == 0.0f) {
+            return vector;
+        }
+        float inverseNorm = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inverseNorm;
+        }
+        return vector;
+    }
+
+    public static float[] normalizedCopy(float[] vector) {
+        return normalizeInPlace(vector.clone());
+    }
+}
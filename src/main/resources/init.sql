@@ -18,6 +18,9 @@ CREATE TABLE IF NOT EXISTS documents (
     processing_completed_at TIMESTAMP,
     error_message TEXT,
     metadata JSONB,
+    organization_id VARCHAR(100),
+    sector VARCHAR(50),
+    tags JSONB,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
@@ -29,6 +32,8 @@ CREATE TABLE IF NOT EXISTS document_chunks (
     chunk_index INTEGER NOT NULL,
     content TEXT NOT NULL,
     embedding vector(1024), -- Dimensión para bge-m3
+    content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('spanish', content)) STORED,
+    normalized BOOLEAN NOT NULL DEFAULT FALSE,
     char_start INTEGER,
     char_end INTEGER,
     page_number INTEGER,
@@ -56,14 +61,29 @@ CREATE INDEX IF NOT EXISTS idx_documents_status ON documents(status);
 CREATE INDEX IF NOT EXISTS idx_documents_filename ON documents(filename);
 CREATE INDEX IF NOT EXISTS idx_documents_upload_date ON documents(upload_date DESC);
 CREATE INDEX IF NOT EXISTS idx_documents_content_hash ON documents(content_hash);
+CREATE INDEX IF NOT EXISTS idx_documents_organization_id ON documents(organization_id);
+-- Los duplicados se detectan por organización: el mismo archivo puede pertenecer a varias.
+-- COALESCE para que los documentos comunes (sin organización) tampoco se repitan
+ALTER TABLE documents DROP CONSTRAINT IF EXISTS documents_content_hash_key;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_documents_organization_content_hash
+    ON documents ((COALESCE(organization_id, '')), content_hash);
 
 CREATE INDEX IF NOT EXISTS idx_chunks_document_id ON document_chunks(document_id);
 CREATE INDEX IF NOT EXISTS idx_chunks_chunk_index ON document_chunks(chunk_index);
 CREATE INDEX IF NOT EXISTS idx_chunks_created_at ON document_chunks(created_at);
 
 -- Índice vectorial para búsqueda semántica
+-- Con app.rag.embedding.storage=halfvec, POST /api/index/storage/migrate rellena en lotes una columna
+-- halfvec(1024), crea sus índices con halfvec_cosine_ops / halfvec_ip_ops (la mitad de tamaño) mediante
+-- CREATE INDEX CONCURRENTLY y la intercambia por la actual sin bloquear la tabla durante la conversión
 CREATE INDEX IF NOT EXISTS idx_chunks_embedding ON document_chunks 
-USING ivfflat (embedding vector_cosine_ops) WITH (lists = 100);
+USING hnsw (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64);
+
+-- El índice por producto interno (idx_chunks_embedding_ip) no se declara aquí: lo crea
+-- InnerProductIndexJob con CREATE INDEX CONCURRENTLY solo si app.rag.search.inner-product=true
+
+-- Índice de texto completo para la búsqueda léxica (app.rag.search.lexical-engine=postgres)
+CREATE INDEX IF NOT EXISTS idx_chunks_content_tsv ON document_chunks USING gin (content_tsv);
 
 CREATE INDEX IF NOT EXISTS idx_qa_history_created ON qa_history(created_at DESC);
 CREATE INDEX IF NOT EXISTS idx_qa_history_rating ON qa_history(feedback_rating);
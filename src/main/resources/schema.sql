@@ -7,13 +7,16 @@ CREATE TABLE IF NOT EXISTS documents (
     filename VARCHAR(255) NOT NULL,
     file_path VARCHAR(500),
     file_size BIGINT,
-    content_hash VARCHAR(64) UNIQUE,
+    content_hash VARCHAR(64),
     upload_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     processing_started_at TIMESTAMP,
     processing_completed_at TIMESTAMP,
     status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
     error_message TEXT,
     metadata JSONB,
+    organization_id VARCHAR(100),
+    sector VARCHAR(50),
+    tags JSONB,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -28,6 +31,8 @@ CREATE TABLE IF NOT EXISTS document_chunks (
     char_end INTEGER,
     page_number INTEGER,
     embedding vector(1024), -- Embeddings de 1024 dimensiones para bge-m3
+    content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('spanish', content)) STORED,
+    normalized BOOLEAN NOT NULL DEFAULT FALSE,
     metadata JSONB,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     
@@ -56,16 +61,31 @@ CREATE TABLE IF NOT EXISTS qa_history (
 CREATE INDEX IF NOT EXISTS idx_documents_status ON documents(status);
 CREATE INDEX IF NOT EXISTS idx_documents_upload_date ON documents(upload_date);
 CREATE INDEX IF NOT EXISTS idx_documents_content_hash ON documents(content_hash);
+CREATE INDEX IF NOT EXISTS idx_documents_organization_id ON documents(organization_id);
+-- Los duplicados se detectan por organización: el mismo archivo puede pertenecer a varias.
+-- COALESCE para que los documentos comunes (sin organización) tampoco se repitan
+ALTER TABLE documents DROP CONSTRAINT IF EXISTS documents_content_hash_key;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_documents_organization_content_hash
+    ON documents ((COALESCE(organization_id, '')), content_hash);
 
 CREATE INDEX IF NOT EXISTS idx_chunks_document_id ON document_chunks(document_id);
 CREATE INDEX IF NOT EXISTS idx_chunks_chunk_index ON document_chunks(chunk_index);
 CREATE INDEX IF NOT EXISTS idx_chunks_page_number ON document_chunks(page_number);
 
 -- Índice vectorial para búsqueda semántica (cosine similarity)
+-- Con app.rag.embedding.storage=halfvec, POST /api/index/storage/migrate rellena en lotes una columna
+-- halfvec(1024), crea sus índices con halfvec_cosine_ops / halfvec_ip_ops (la mitad de tamaño) mediante
+-- CREATE INDEX CONCURRENTLY y la intercambia por la actual sin bloquear la tabla durante la conversión
 CREATE INDEX IF NOT EXISTS idx_chunks_embedding 
     ON document_chunks USING hnsw (embedding vector_cosine_ops)
     WITH (m = 16, ef_construction = 64);
 
+-- El índice por producto interno (idx_chunks_embedding_ip) no se declara aquí: lo crea
+-- InnerProductIndexJob con CREATE INDEX CONCURRENTLY solo si app.rag.search.inner-product=true
+
+-- Índice de texto completo para la búsqueda léxica (app.rag.search.lexical-engine=postgres)
+CREATE INDEX IF NOT EXISTS idx_chunks_content_tsv ON document_chunks USING gin (content_tsv);
+
 CREATE INDEX IF NOT EXISTS idx_qa_created_at ON qa_history(created_at);
 CREATE INDEX IF NOT EXISTS idx_qa_model_used ON qa_history(model_used);
 
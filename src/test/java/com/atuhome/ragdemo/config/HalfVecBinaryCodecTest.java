@@ -0,0 +1,35 @@
+package com.atuhome.ragdemo.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HalfVecBinaryCodecTest {
+
+	@Test
+	void roundTripsTheHalfvecSendFormat() {
+		float[] vector = {1.0f, -0.5f, 0.25f, 65504f};
+
+		byte[] encoded = HalfVecBinaryCodec.encode(vector);
+
+		// int16 dimensión, int16 reservado, float16 big-endian
+		assertThat(encoded).hasSize(4 + 4 * Short.BYTES);
+		assertThat(encoded).startsWith(0, 4, 0, 0, 0x3C, 0x00, 0xB8, 0x00);
+		assertThat(HalfVecBinaryCodec.decode(encoded)).containsExactly(vector);
+
+		assertThat(HalfVecBinaryCodec.isHalfVec(encoded)).isTrue();
+		assertThat(HalfVecBinaryCodec.isHalfVec(PgVectorBinaryCodec.encode(vector))).isFalse();
+	}
+
+	@Test
+	void roundingMatchesWhatHalfvecStores() {
+		float[] vector = {0.1f, -0.333333f, 1e-8f};
+
+		float[] rounded = HalfVecBinaryCodec.roundInPlace(vector.clone());
+
+		assertThat(HalfVecBinaryCodec.decode(HalfVecBinaryCodec.encode(vector))).containsExactly(rounded);
+		assertThat(rounded[0]).isCloseTo(0.1f, within(1e-4f));
+		assertThat(rounded[2]).isZero();
+	}
+}
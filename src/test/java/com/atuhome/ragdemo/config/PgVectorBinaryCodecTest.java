@@ -0,0 +1,28 @@
+package com.atuhome.ragdemo.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PgVectorBinaryCodecTest {
+
+	@Test
+	void roundTripsThePgvectorSendFormat() {
+		float[] vector = {1.0f, -0.5f, 0.25f, Float.MIN_VALUE};
+
+		byte[] encoded = PgVectorBinaryCodec.encode(vector);
+
+		// int16 dimensión, int16 reservado, float4 big-endian
+		assertThat(encoded).hasSize(4 + 4 * Float.BYTES);
+		assertThat(encoded).startsWith(0, 4, 0, 0, 0x3F, 0x80, 0, 0);
+		assertThat(PgVectorBinaryCodec.decode(encoded)).containsExactly(vector);
+
+		float[] rows = new float[2 * vector.length];
+		assertThat(PgVectorBinaryCodec.decodeInto(encoded, rows, vector.length)).isEqualTo(vector.length);
+		assertThat(rows).containsExactly(0f, 0f, 0f, 0f, 1.0f, -0.5f, 0.25f, Float.MIN_VALUE);
+
+		assertThatThrownBy(() -> PgVectorBinaryCodec.decode(new byte[] {0, 4, 0, 0, 1}))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
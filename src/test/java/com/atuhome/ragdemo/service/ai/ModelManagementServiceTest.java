@@ -0,0 +1,75 @@
+package com.atuhome.ragdemo.service.ai;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.service.document.DocumentService;
+import com.atuhome.ragdemo.service.document.IngestionPipeline;
+import com.atuhome.ragdemo.service.search.CorpusStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ModelManagementServiceTest {
+
+	private final RestTemplate restTemplate = mock(RestTemplate.class);
+	private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+	private final CorpusStatistics corpusStatistics = mock(CorpusStatistics.class);
+	private final DocumentService documentService = mock(DocumentService.class);
+	private final IngestionPipeline ingestionPipeline = mock(IngestionPipeline.class);
+	private final ModelManagementService service = new ModelManagementService();
+
+	@BeforeEach
+	void setUp() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(3);
+		ReflectionTestUtils.setField(service, "restTemplate", restTemplate);
+		ReflectionTestUtils.setField(service, "embeddingModel", embeddingModel);
+		ReflectionTestUtils.setField(service, "ragProperties", properties);
+		ReflectionTestUtils.setField(service, "corpusStatistics", corpusStatistics);
+		ReflectionTestUtils.setField(service, "documentService", documentService);
+		ReflectionTestUtils.setField(service, "ingestionPipeline", ingestionPipeline);
+		ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+		ReflectionTestUtils.setField(service, "ollamaBaseUrl", "http://ollama");
+		ReflectionTestUtils.setField(service, "currentEmbeddingModel", "bge-m3:latest");
+
+		when(restTemplate.getForObject(anyString(), eq(Map.class))).thenReturn(Map.of("models", List.of(
+				Map.of("name", "mxbai-embed-large:latest", "digest", "abc", "size", 1L, "modified_at", "hoy"))));
+		when(embeddingModel.call(any(EmbeddingRequest.class)))
+				.thenReturn(new EmbeddingResponse(List.of(new Embedding(new float[3], 0))));
+		when(corpusStatistics.isInitialized()).thenReturn(true);
+		when(corpusStatistics.getEmbeddedChunks()).thenReturn(10L);
+		when(ingestionPipeline.getStatus()).thenReturn(new IngestionPipeline.IngestionStatus(0, 8, 0, List.of()));
+	}
+
+	@Test
+	void refusesAModelOfTheSameDimensionWhileChunksAreEmbeddedUnlessReindexing() {
+		assertThatThrownBy(() -> service.changeEmbeddingModel("mxbai-embed-large:latest", false))
+				.isInstanceOf(ConflictException.class);
+		assertThat(service.getCurrentEmbeddingModel()).isEqualTo("bge-m3:latest");
+		verify(documentService, never()).reindexAll();
+
+		service.changeEmbeddingModel("mxbai-embed-large:latest", true);
+
+		assertThat(service.getCurrentEmbeddingModel()).isEqualTo("mxbai-embed-large:latest");
+		verify(documentService).reindexAll();
+	}
+}
@@ -0,0 +1,55 @@
+package com.atuhome.ragdemo.service.ai;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryEmbeddingCacheTest {
+
+	private final RagProperties properties = new RagProperties();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final QueryEmbeddingCache cache = new QueryEmbeddingCache(properties, registry);
+
+	@Test
+	void sharesEntriesBetweenTrivialVariationsOfTheSameQuestionPerModel() {
+		AtomicInteger calls = new AtomicInteger();
+
+		cache.get("nomic", "¿Qué  es el\tCONTRATO? ", text -> new float[] {calls.incrementAndGet()});
+		float[] cached = cache.get("nomic", "¿qué es el contrato?", text -> new float[] {calls.incrementAndGet()});
+		cache.get("bge", "¿qué es el contrato?", text -> new float[] {calls.incrementAndGet()});
+
+		assertThat(cached).containsExactly(1f);
+		assertThat(calls).hasValue(2);
+		// La copia devuelta no altera la entrada
+		cached[0] = 42f;
+		assertThat(cache.getIfPresent("nomic", "¿qué es el contrato?")).containsExactly(1f);
+		assertThat(registry.counter("rag.embedding.query.cache.hits").count()).isEqualTo(2);
+	}
+
+	@Test
+	void expiresEntriesAfterTheTtlAndEvictsTheLeastRecentlyUsedOverTheByteBudget() throws InterruptedException {
+		// Tres entradas de 8 floats y clave de 3 caracteres: 128 + 6 + 32 bytes cada una
+		properties.getEmbedding().setQueryCacheMaxBytes(2 * 166);
+		cache.put("m", "a", new float[8]);
+		cache.put("m", "b", new float[8]);
+		cache.getIfPresent("m", "a");
+		cache.put("m", "c", new float[8]);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.usedBytes()).isEqualTo(2 * 166);
+		assertThat(cache.getIfPresent("m", "b")).isNull();
+		assertThat(registry.counter("rag.embedding.query.cache.evictions").count()).isEqualTo(1);
+
+		properties.getEmbedding().setQueryCacheTtl(Duration.ZERO);
+		Thread.sleep(1);
+
+		assertThat(cache.getIfPresent("m", "a")).isNull();
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.usedBytes()).isEqualTo(166);
+	}
+}
@@ -0,0 +1,162 @@
+package com.atuhome.ragdemo.service.document;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.exception.IngestionBacklogFullException;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.model.enums.DocumentStatus;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.repository.DocumentRepository;
+import com.atuhome.ragdemo.service.ai.OllamaEmbeddingService;
+import com.atuhome.ragdemo.service.processing.DocumentChunker;
+import com.atuhome.ragdemo.service.processing.DocumentTextExtractor;
+import com.atuhome.ragdemo.service.processing.SimplePdfTextExtractor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IngestionPipelineTest {
+
+	private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+	private final DocumentChunkRepository chunkRepository = mock(DocumentChunkRepository.class);
+	private final DocumentTextExtractor textExtractor = mock(DocumentTextExtractor.class);
+	private final DocumentChunker chunker = mock(DocumentChunker.class);
+	private final OllamaEmbeddingService embeddingService = mock(OllamaEmbeddingService.class);
+	private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+	private final Document document = Document.builder()
+			.id(UUID.randomUUID()).filename("contrato.txt").filePath("stored.txt").fileSize(10L)
+			.status(DocumentStatus.PENDING).sector("legal").build();
+	private IngestionPipeline pipeline;
+
+	@BeforeEach
+	void setUp() {
+		RagProperties properties = new RagProperties();
+		properties.getIngestion().setMaxBacklog(1);
+		FileStorageService fileStorage = mock(FileStorageService.class);
+		when(fileStorage.getFilePath("stored.txt")).thenReturn(Path.of("stored.txt"));
+		when(documentRepository.findById(document.getId())).thenReturn(Optional.of(document));
+		when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		when(textExtractor.extractText(anyString(), anyLong(), any())).thenReturn(SimplePdfTextExtractor.ExtractedText.builder()
+				.content("uno dos").pageCount(1).characterCount(7).metadata(Map.of("format", "txt")).build());
+		when(chunker.chunkDocument("uno dos")).thenReturn(List.of(
+				DocumentChunker.Chunk.builder().index(0).content("uno").charStart(0).charEnd(3).build(),
+				DocumentChunker.Chunk.builder().index(1).content("dos").charStart(4).charEnd(7).build()));
+
+		pipeline = new IngestionPipeline(documentRepository, chunkRepository, fileStorage, textExtractor, chunker,
+				embeddingService, mock(ApplicationEventPublisher.class), mock(PlatformTransactionManager.class),
+				properties, executor(), executor(), executor(), executor(), new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void tearDown() {
+		executors.forEach(ThreadPoolTaskExecutor::shutdown);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void runsTheStagesAndFreesTheBacklogSlot() throws Exception {
+		when(embeddingService.embedForStorage(List.of("uno", "dos")))
+				.thenReturn(List.of(new float[] {1f, 0f}, new float[] {0f, 1f}));
+
+		pipeline.admit();
+		assertThatThrownBy(pipeline::admit).isInstanceOf(IngestionBacklogFullException.class);
+
+		pipeline.submit(document.getId()).get(5, TimeUnit.SECONDS);
+
+		ArgumentCaptor<List<DocumentChunk>> saved = ArgumentCaptor.forClass(List.class);
+		verify(chunkRepository).saveAll(saved.capture());
+		assertThat(saved.getValue()).extracting(DocumentChunk::getContent).containsExactly("uno", "dos");
+		assertThat(saved.getValue().get(1).getEmbedding()).containsExactly(0f, 1f);
+		assertThat(saved.getValue().get(0).getMetadata()).containsEntry("sector", "legal");
+		assertThat(document.getStatus()).isEqualTo(DocumentStatus.COMPLETED);
+		assertThat(document.getMetadata()).containsEntry("format", "txt");
+		assertThat(pipeline.getStatus().getBacklog()).isZero();
+		assertThat(pipeline.getStatus().getRejected()).isEqualTo(1);
+		pipeline.admit();
+	}
+
+	@Test
+	void marksTheDocumentAsFailedWithoutPersistingChunks() {
+		when(embeddingService.embedForStorage(anyList())).thenThrow(new RuntimeException("Ollama no responde"));
+
+		pipeline.admit();
+		assertThatThrownBy(() -> pipeline.submit(document.getId()).get(5, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class);
+
+		verify(chunkRepository, never()).saveAll(anyList());
+		assertThat(document.getStatus()).isEqualTo(DocumentStatus.FAILED);
+		assertThat(document.getErrorMessage()).isEqualTo("Ollama no responde");
+		assertThat(pipeline.isProcessing(document.getId())).isFalse();
+		assertThat(pipeline.getStatus().getBacklog()).isZero();
+	}
+
+	@Test
+	void claimsAtomicallyAndResumesInterruptedDocumentsAsSlotsFree() {
+		Document pending = Document.builder()
+				.id(UUID.randomUUID()).filename("poder.txt").filePath("stored.txt").fileSize(10L)
+				.status(DocumentStatus.PENDING).build();
+		document.setStatus(DocumentStatus.PROCESSING);
+		when(documentRepository.findById(pending.getId())).thenReturn(Optional.of(pending));
+		when(documentRepository.findByStatusOrderByUploadDateDesc(DocumentStatus.PROCESSING)).thenReturn(List.of(document));
+		when(documentRepository.findByStatusOrderByUploadDateDesc(DocumentStatus.PENDING)).thenReturn(List.of(pending));
+		when(embeddingService.embedForStorage(List.of("uno", "dos")))
+				.thenReturn(List.of(new float[] {1f, 0f}, new float[] {0f, 1f}));
+
+		pipeline.claim(document.getId());
+		assertThatThrownBy(() -> pipeline.claim(document.getId())).isInstanceOf(ConflictException.class);
+		pipeline.release(document.getId());
+
+		// Con un solo hueco, el segundo documento espera a que termine el primero
+		pipeline.resumeInterrupted();
+
+		verify(chunkRepository, timeout(5000).times(2)).saveAll(anyList());
+		await(() -> pending.getStatus() == DocumentStatus.COMPLETED);
+		assertThat(document.getStatus()).isEqualTo(DocumentStatus.COMPLETED);
+		assertThat(pipeline.getStatus().getRejected()).isZero();
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+	}
+
+	private ThreadPoolTaskExecutor executor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(1);
+		executor.setMaxPoolSize(1);
+		executor.setQueueCapacity(1);
+		executor.initialize();
+		executors.add(executor);
+		return executor;
+	}
+}
@@ -0,0 +1,65 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.BatchQueueFullException;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchQuestionServiceTest {
+
+	private final SemanticSearchService searchService = mock(SemanticSearchService.class);
+	private final RagService ragService = mock(RagService.class);
+	private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void rejectsABatchThatOverflowsTheQueueAndCancelsItsQueuedGenerations() throws InterruptedException {
+		executor.setCorePoolSize(1);
+		executor.setMaxPoolSize(1);
+		executor.setQueueCapacity(1);
+		executor.initialize();
+		BatchQuestionService service = new BatchQuestionService(searchService, ragService, new RagProperties(), executor);
+		when(searchService.findSimilarChunksBatch(anyList(), anyDouble(), anyInt(), anyInt(), any()))
+				.thenReturn(List.of(List.of(), List.of()));
+		CountDownLatch release = new CountDownLatch(1);
+		// Otro lote ocupa el único hilo: la primera pregunta queda en cola y la segunda no cabe
+		executor.execute(() -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		assertThatThrownBy(() -> service.processQuestions(List.of("primera pregunta", "segunda pregunta"),
+				0.5, 3, null, SearchFilter.none())).isInstanceOf(BatchQueueFullException.class);
+		release.countDown();
+
+		executor.getThreadPoolExecutor().shutdown();
+		assertThat(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+		verify(ragService, never()).answerFromResults(anyString(), anyList(), anyLong());
+	}
+}
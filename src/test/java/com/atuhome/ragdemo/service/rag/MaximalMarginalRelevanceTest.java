@@ -0,0 +1,55 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.VectorIndex;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MaximalMarginalRelevanceTest {
+
+	@Test
+	void demotesNearDuplicatesUsingTheResidentVectors() {
+		RagProperties properties = new RagProperties();
+		properties.getSearch().setMmrEnabled(true);
+		properties.getSearch().setMmrLambda(0.5);
+		DocumentChunkRepository chunkRepository = mock(DocumentChunkRepository.class);
+		VectorIndex vectorIndex = mock(VectorIndex.class);
+		MaximalMarginalRelevance mmr = new MaximalMarginalRelevance(chunkRepository, List.of(vectorIndex),
+				new ScalarSimilarityKernel(), properties);
+		UUID document = UUID.randomUUID();
+		SearchResult original = result(document, 0.90);
+		SearchResult overlapping = result(document, 0.89);
+		SearchResult different = result(UUID.randomUUID(), 0.80);
+
+		when(vectorIndex.isEnabled()).thenReturn(true);
+		when(vectorIndex.isReady()).thenReturn(true);
+		// El índice retiene los dos primeros; el tercero se lee de la base
+		when(vectorIndex.unitVectors(any())).thenReturn(Map.of(
+				original.getChunkId(), new float[] {1f, 0f},
+				overlapping.getChunkId(), new float[] {0.995f, 0.0998f}));
+		when(chunkRepository.findEmbeddingsByIdIn(List.of(different.getChunkId()))).thenReturn(List.<Object[]>of(
+				new Object[] {different.getChunkId(), PgVectorBinaryCodec.encode(new float[] {0f, 1f})}));
+
+		List<SearchResult> selected = mmr.select(List.of(original, overlapping, different), 2);
+
+		assertThat(selected).containsExactly(original, different);
+		verify(chunkRepository).findEmbeddingsByIdIn(List.of(different.getChunkId()));
+	}
+
+	private static SearchResult result(UUID documentId, double similarity) {
+		return SearchResult.builder().chunkId(UUID.randomUUID()).documentId(documentId).similarity(similarity).build();
+	}
+}
@@ -0,0 +1,64 @@
+package com.atuhome.ragdemo.service.rag;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.dto.response.AnswerResponse;
+import com.atuhome.ragdemo.service.search.CorpusVersion;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTest {
+
+	private final RagProperties properties = new RagProperties();
+	private final CorpusVersion corpusVersion = new CorpusVersion();
+	private final SemanticAnswerCache cache = new SemanticAnswerCache(properties, corpusVersion,
+			new ScalarSimilarityKernel(), new SimpleMeterRegistry());
+	private final AnswerResponse answer = AnswerResponse.builder().question("¿Plazo del artículo 12?").answer("30 días").build();
+
+	@Test
+	void isDisabledByDefaultAndServesOnlyCloseQuestionsOfTheSameScope() {
+		assertThat(cache.isEnabled()).isFalse();
+		float[] question = unit(1f, 0f, 0f);
+		cache.put(question, "legal", "llama", "bge", corpusVersion.current(), answer);
+
+		// cos ≈ 0.995 frente a cos ≈ 0.89 con el umbral de 0.95
+		assertThat(cache.find(unit(1f, 0.1f, 0f), "legal", "llama", "bge")).contains(answer);
+		assertThat(cache.find(unit(1f, 0.5f, 0f), "legal", "llama", "bge")).isEmpty();
+		assertThat(cache.find(question, "medical", "llama", "bge")).isEmpty();
+		assertThat(cache.find(question, "legal", "mistral", "bge")).isEmpty();
+		assertThat(cache.find(question, "legal", "llama", "mxbai")).isEmpty();
+	}
+
+	@Test
+	void dropsEntriesWhenTheCorpusChangesOrTheTtlExpires() throws InterruptedException {
+		float[] question = unit(0f, 1f, 0f);
+		long versionAtSearch = corpusVersion.current();
+		corpusVersion.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(UUID.randomUUID()));
+
+		// Generada contra un corpus que cambió mientras tanto: no se guarda
+		cache.put(question, "legal", "llama", "bge", versionAtSearch, answer);
+		assertThat(cache.size()).isZero();
+
+		cache.put(question, "legal", "llama", "bge", corpusVersion.current(), answer);
+		corpusVersion.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(UUID.randomUUID()));
+		assertThat(cache.find(question, "legal", "llama", "bge")).isEmpty();
+		assertThat(cache.size()).isZero();
+
+		cache.put(question, "legal", "llama", "bge", corpusVersion.current(), answer);
+		properties.getAnswerCache().setTtl(Duration.ZERO);
+		Thread.sleep(1);
+		assertThat(cache.find(question, "legal", "llama", "bge")).isEmpty();
+		assertThat(cache.size()).isZero();
+	}
+
+	private static float[] unit(float... vector) {
+		return VectorNormalizer.normalizeInPlace(vector);
+	}
+}
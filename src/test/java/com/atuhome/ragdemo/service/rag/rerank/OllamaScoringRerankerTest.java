@@ -0,0 +1,69 @@
+package com.atuhome.ragdemo.service.rag.rerank;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.model.dto.response.SearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OllamaScoringRerankerTest {
+
+	@Test
+	void reordersByModelScoresAndKeepsSearchOrderWhenBudgetIsExceeded() {
+		RagProperties properties = new RagProperties();
+		properties.getRerank().setEngine(OllamaScoringReranker.NAME);
+		properties.getRerank().setModel("stub");
+		SearchResult budget = result("El presupuesto anual del área de sistemas.", 0.82);
+		SearchResult article23 = result("Artículo 23. Funciones del consejo directivo.", 0.80);
+		SearchResult article24 = result("Artículo 24. El consejo se reúne una vez por mes.", 0.78);
+		List<SearchResult> candidates = List.of(budget, article23, article24);
+
+		ChatModel stub = prompt -> reply("[1]: 2\n[2]: 9\n[3]: 6");
+		RerankingStage stage = stage(new OllamaScoringReranker(stub, null, properties), properties);
+
+		assertThat(stage.rerank("¿Qué funciones tiene el consejo?", candidates, 2))
+				.containsExactly(article23, article24);
+
+		ChatModel slowStub = prompt -> {
+			try {
+				Thread.sleep(2_000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return reply("[1]: 0\n[2]: 10\n[3]: 10");
+		};
+		properties.getRerank().setTimeout(Duration.ofMillis(100));
+		RerankingStage slowStage = stage(new OllamaScoringReranker(slowStub, null, properties), properties);
+
+		assertThat(slowStage.rerank("¿Qué funciones tiene el consejo?", candidates, 2))
+				.containsExactly(budget, article23);
+	}
+
+	@Test
+	void unscoredPassagesFollowScoredOnes() {
+		assertThat(OllamaScoringReranker.parseScores("2: 7.5\nEl pasaje 1 no es relevante\n3 - 4", 4))
+				.containsExactly(-1.0, 7.5, 4.0, -1.0);
+	}
+
+	private static RerankingStage stage(Reranker reranker, RagProperties properties) {
+		return new RerankingStage(List.of(reranker), properties, new SimpleAsyncTaskExecutor(), new SimpleMeterRegistry());
+	}
+
+	private static ChatResponse reply(String text) {
+		return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+	}
+
+	private static SearchResult result(String content, double similarity) {
+		return SearchResult.builder().chunkId(UUID.randomUUID()).content(content).similarity(similarity).build();
+	}
+}
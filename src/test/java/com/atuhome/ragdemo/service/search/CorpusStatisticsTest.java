@@ -0,0 +1,83 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.event.ChunksCreatedEvent;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CorpusStatisticsTest {
+
+	@Test
+	void keepsCountersFromEventsAndReconcilesWithTheTable() {
+		UUID existing = UUID.randomUUID();
+		DocumentChunkRepository repository = mock(DocumentChunkRepository.class);
+		List<Object[]> initialRows = new ArrayList<>();
+		initialRows.add(new Object[] {existing, 4L, 3L});
+		when(repository.countChunksByDocument()).thenReturn(initialRows);
+		CorpusStatistics statistics = new CorpusStatistics(repository);
+		statistics.reconcile();
+
+		assertThat(statistics.getTotalChunks()).isEqualTo(4);
+		assertThat(statistics.getPendingEmbeddings()).isEqualTo(1);
+
+		Document uploaded = Document.builder().id(UUID.randomUUID()).build();
+		statistics.onChunksCreated(new ChunksCreatedEvent(uploaded.getId(), 2));
+		assertThat(statistics.getPendingEmbeddings()).isEqualTo(3);
+		statistics.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(chunk(uploaded), chunk(uploaded))));
+		assertThat(statistics.getTotalChunks()).isEqualTo(6);
+		assertThat(statistics.getEmbeddedChunks()).isEqualTo(5);
+
+		statistics.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(existing));
+		assertThat(statistics.getTotalChunks()).isEqualTo(2);
+		assertThat(statistics.getPendingEmbeddings()).isZero();
+		assertThat(statistics.hasIndexedChunks()).isTrue();
+
+		// La tabla manda en la reconciliación: p. ej. chunks borrados por SQL manual
+		when(repository.countChunksByDocument()).thenReturn(List.of());
+		statistics.reconcile();
+		assertThat(statistics.hasIndexedChunks()).isFalse();
+		verify(repository, times(2)).countChunksByDocument();
+	}
+
+	@Test
+	void servesEventCountsAndRetriesInTheBackgroundWhenStartupFails() {
+		DocumentChunkRepository repository = mock(DocumentChunkRepository.class);
+		when(repository.countChunksByDocument())
+				.thenThrow(new DataAccessResourceFailureException("base no disponible"))
+				.thenReturn(List.<Object[]>of(new Object[] {UUID.randomUUID(), 3L, 3L}));
+		CorpusStatistics statistics = new CorpusStatistics(repository);
+
+		statistics.loadOnStartup();
+		statistics.onChunksCreated(new ChunksCreatedEvent(UUID.randomUUID(), 2));
+
+		// Las lecturas no vuelven a consultar la tabla
+		assertThat(statistics.isInitialized()).isFalse();
+		assertThat(statistics.hasIndexedChunks()).isTrue();
+		assertThat(statistics.getTotalChunks()).isEqualTo(2);
+		verify(repository, times(1)).countChunksByDocument();
+
+		statistics.retryUntilInitialized();
+		statistics.retryUntilInitialized();
+
+		assertThat(statistics.isInitialized()).isTrue();
+		verify(repository, times(2)).countChunksByDocument();
+	}
+
+	private static DocumentChunk chunk(Document document) {
+		return DocumentChunk.builder().id(UUID.randomUUID()).document(document).embedding(new float[] {1f}).build();
+	}
+}
@@ -0,0 +1,79 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentTagIndexTest {
+
+	@Test
+	void resolvesTenantSectorAndTagFiltersToDocuments() {
+		Document acmeContract = document("acme", "legal", List.of("Contratos"));
+		Document acmeManual = document("acme", "education", List.of("manuales"));
+		Document globexContract = document("globex", "legal", List.of("contratos"));
+		Document shared = document(null, "legal", List.of());
+		DocumentRepository repository = mock(DocumentRepository.class);
+		when(repository.findAll()).thenReturn(List.of(acmeContract, acmeManual, globexContract, shared));
+		DocumentTagIndex index = new DocumentTagIndex(repository);
+		index.reload();
+
+		assertThat(index.resolve(SearchFilter.none().withOrganization("acme")).getDocumentIds())
+				.containsExactlyInAnyOrder(acmeContract.getId(), acmeManual.getId(), shared.getId());
+		assertThat(index.resolve(SearchFilter.none().withOrganization("acme").withSector("legal")).getDocumentIds())
+				.containsExactlyInAnyOrder(acmeContract.getId(), shared.getId());
+		assertThat(index.resolve(SearchFilter.none().withTags(List.of("CONTRATOS", "informes"))).getDocumentIds())
+				.containsExactlyInAnyOrder(acmeContract.getId(), globexContract.getId());
+		assertThat(index.resolve(SearchFilter.forDocuments(List.of(globexContract.getId())).withOrganization("acme"))
+				.getDocumentIds()).isEmpty();
+		assertThat(index.resolve(SearchFilter.none().withOrganization("initech")).getDocumentIds())
+				.containsExactly(shared.getId());
+
+		index.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(acmeContract.getId()));
+		assertThat(index.resolve(SearchFilter.none().withTags(List.of("contratos"))).getDocumentIds())
+				.containsExactly(globexContract.getId());
+		assertThat(index.size()).isEqualTo(3);
+	}
+
+	@Test
+	void replaysDocumentsEmbeddedOrDeletedWhileReloading() {
+		Document kept = document("acme", "legal", List.of());
+		Document deleted = document("acme", "legal", List.of());
+		Document embedded = document("acme", "legal", List.of());
+		DocumentRepository repository = mock(DocumentRepository.class);
+		DocumentTagIndex index = new DocumentTagIndex(repository);
+		when(repository.findById(embedded.getId())).thenReturn(Optional.of(embedded));
+		when(repository.findAll()).thenAnswer(invocation -> {
+			// La lectura ya ocurrió: ni el documento nuevo ni el borrado están reflejados en ella
+			index.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(
+					DocumentChunk.builder().id(UUID.randomUUID()).document(embedded).build())));
+			index.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(deleted.getId()));
+			return List.of(kept, deleted);
+		});
+
+		index.reload();
+
+		assertThat(index.resolve(SearchFilter.none().withOrganization("acme")).getDocumentIds())
+				.containsExactlyInAnyOrder(kept.getId(), embedded.getId());
+		assertThat(index.size()).isEqualTo(2);
+	}
+
+	private static Document document(String organizationId, String sector, List<String> tags) {
+		return Document.builder()
+				.id(UUID.randomUUID())
+				.organizationId(organizationId)
+				.sector(sector)
+				.tags(tags)
+				.build();
+	}
+}
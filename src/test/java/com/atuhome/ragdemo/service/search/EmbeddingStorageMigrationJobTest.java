@@ -0,0 +1,86 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.exception.ConflictException;
+import com.atuhome.ragdemo.service.search.EmbeddingStorage.StorageType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingStorageMigrationJobTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final EmbeddingStorage storage = new EmbeddingStorage(jdbcTemplate, new RagProperties());
+	private final EmbeddingStorageMigrationJob job = new EmbeddingStorageMigrationJob(storage, jdbcTemplate,
+			mock(PlatformTransactionManager.class), new RagProperties(), Runnable::run);
+
+	@Test
+	void backfillsInBatchesAndSwapsTheColumnAfterIndexingConcurrently() {
+		UUID first = UUID.randomUUID();
+		UUID last = UUID.randomUUID();
+		when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(2L);
+		when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("idx_chunks_embedding_ip")))
+				.thenReturn(false);
+		when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any(),
+				eq(EmbeddingStorageMigrationJob.BACKFILL_BATCH_SIZE))).thenReturn(List.of(first, last), List.of());
+		when(jdbcTemplate.update(startsWith("UPDATE document_chunks"), eq(first), eq(last))).thenReturn(2);
+
+		assertThat(job.start(StorageType.HALFVEC)).isTrue();
+
+		ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate, atLeastOnce()).execute(statements.capture());
+		List<String> ddl = statements.getAllValues();
+		assertThat(ddl).containsSubsequence(
+				"ALTER TABLE document_chunks ADD COLUMN embedding_migrated halfvec(384)",
+				"CREATE INDEX CONCURRENTLY idx_chunks_embedding_migrated ON document_chunks "
+						+ "USING hnsw (embedding_migrated halfvec_cosine_ops) WITH (m = 16, ef_construction = 64)",
+				"LOCK TABLE document_chunks IN ACCESS EXCLUSIVE MODE",
+				"ALTER TABLE document_chunks DROP COLUMN embedding",
+				"ALTER TABLE document_chunks RENAME COLUMN embedding_migrated TO embedding",
+				"ALTER INDEX idx_chunks_embedding_migrated RENAME TO idx_chunks_embedding");
+		// Nada reescribe la columna en una sola sentencia bloqueante
+		assertThat(ddl).noneMatch(sql -> sql.contains("ALTER COLUMN embedding TYPE"));
+		assertThat(ddl).noneMatch(sql -> sql.contains("idx_chunks_embedding_ip_migrated ON"));
+
+		assertThat(storage.getCurrent()).isEqualTo(StorageType.HALFVEC);
+		assertThat(job.getStatus().getPhase()).isEqualTo("completed");
+		assertThat(job.getStatus().getBackfilledRows()).isEqualTo(2);
+		assertThatThrownBy(() -> job.start(StorageType.HALFVEC)).isInstanceOf(ConflictException.class);
+	}
+
+	@Test
+	void removesTheShadowColumnWhenTheMigrationFails() {
+		when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+		when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any(), any())).thenReturn(List.of());
+		doThrow(new DataAccessResourceFailureException("sin espacio"))
+				.when(jdbcTemplate).execute(startsWith("CREATE INDEX CONCURRENTLY"));
+
+		job.start(StorageType.HALFVEC);
+
+		verify(jdbcTemplate, never()).execute("ALTER TABLE document_chunks DROP COLUMN embedding");
+		verify(jdbcTemplate, times(2))
+				.execute("ALTER TABLE document_chunks DROP COLUMN IF EXISTS embedding_migrated");
+		assertThat(storage.getCurrent()).isEqualTo(StorageType.VECTOR);
+		assertThat(job.getStatus().getPhase()).isEqualTo("failed");
+		assertThat(job.getStatus().isRunning()).isFalse();
+	}
+}
@@ -0,0 +1,47 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.service.search.EmbeddingStorage.StorageType;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddingStorageTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+	@Test
+	void takesTheStorageTypeFromTheCatalogRatherThanTheConfiguration() {
+		when(jdbcTemplate.queryForObject(anyString(), eq(String.class))).thenReturn("halfvec(1024)");
+		EmbeddingStorage storage = new EmbeddingStorage(jdbcTemplate, new RagProperties());
+
+		storage.detectOnStartup();
+
+		assertThat(storage.getConfigured()).isEqualTo(StorageType.VECTOR);
+		assertThat(storage.getCurrent()).isEqualTo(StorageType.HALFVEC);
+		assertThat(storage.isHalfPrecision()).isTrue();
+		// 0.1 no es representable en float16: se guarda ya redondeado
+		assertThat(storage.forStorage(new float[] {0.1f})[0]).isNotEqualTo(0.1f);
+	}
+
+	@Test
+	void keepsTheConfiguredTypeWithoutACatalog() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setStorage("HALFVEC");
+		when(jdbcTemplate.queryForObject(anyString(), eq(String.class)))
+				.thenThrow(new DataAccessResourceFailureException("sin pg_attribute"));
+		EmbeddingStorage storage = new EmbeddingStorage(jdbcTemplate, properties);
+
+		storage.detectOnStartup();
+
+		assertThat(storage.getCurrent()).isEqualTo(StorageType.HALFVEC);
+		assertThatThrownBy(() -> StorageType.fromName("float8")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
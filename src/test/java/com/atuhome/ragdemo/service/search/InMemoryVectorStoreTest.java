@@ -0,0 +1,149 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.PgVectorBinaryCodec;
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InMemoryVectorStoreTest {
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void replaysEventsReceivedWhileLoadingInOrder() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(3);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		InMemoryVectorStore store = new InMemoryVectorStore(loader, mock(DocumentChunkRepository.class), properties,
+				new ScalarSimilarityKernel(), new PartitionedScanExecutor(pool, properties));
+		Document document = Document.builder().id(UUID.randomUUID()).build();
+		DocumentChunk previous = chunk(document, 1f, 0f, 0f);
+		DocumentChunk reprocessed = chunk(document, 0f, 1f, 0f);
+
+		// Un reprocesamiento completo mientras el cursor recorre la tabla
+		when(loader.load(anyInt(), any())).thenAnswer(invocation -> {
+			store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(previous)));
+			store.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(document.getId()));
+			store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(reprocessed)));
+			assertThat(store.isReady()).isFalse();
+			return new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0);
+		});
+
+		store.reload();
+
+		assertThat(store.isReady()).isTrue();
+		assertThat(store.size()).isEqualTo(1);
+		assertThat(store.search(new float[] {1f, 1f, 0f}, 5, 0.0))
+				.extracting(ScoredChunk::getChunkId).containsExactly(reprocessed.getId());
+		store.close();
+	}
+
+	@Test
+	void keepsServingThePreviousGenerationWhileReloading() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(3);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		InMemoryVectorStore store = new InMemoryVectorStore(loader, mock(DocumentChunkRepository.class), properties,
+				new ScalarSimilarityKernel(), new PartitionedScanExecutor(pool, properties));
+		DocumentChunk indexed = chunk(Document.builder().id(UUID.randomUUID()).build(), 1f, 0f, 0f);
+
+		when(loader.load(anyInt(), any())).thenAnswer(invocation -> {
+			store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(indexed)));
+			return new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0);
+		}).thenAnswer(invocation -> {
+			assertThat(store.isReady()).isTrue();
+			assertThat(store.search(new float[] {1f, 0f, 0f}, 5, 0.0))
+					.extracting(ScoredChunk::getChunkId).containsExactly(indexed.getId());
+			store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(indexed)));
+			return new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0);
+		});
+
+		store.reload();
+		store.reload();
+
+		assertThat(store.size()).isEqualTo(1);
+		store.close();
+	}
+
+	@Test
+	void rescoresInt8CandidatesWithTheStoredFloats() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(3);
+		properties.getSearch().setQuantization("int8");
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		DocumentChunkRepository chunkRepository = mock(DocumentChunkRepository.class);
+		InMemoryVectorStore store = new InMemoryVectorStore(loader, chunkRepository, properties,
+				new ScalarSimilarityKernel(), new PartitionedScanExecutor(pool, properties));
+		Document document = Document.builder().id(UUID.randomUUID()).build();
+		DocumentChunk close = chunk(document, 1f, 0.1f, 0f);
+		DocumentChunk far = chunk(document, 0f, 1f, 0f);
+		when(loader.load(anyInt(), any())).thenReturn(new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0));
+		when(chunkRepository.findEmbeddingsByIdIn(any())).thenReturn(List.of(
+				new Object[] {close.getId(), PgVectorBinaryCodec.encode(close.getEmbedding())},
+				new Object[] {far.getId(), PgVectorBinaryCodec.encode(far.getEmbedding())}));
+
+		store.reload();
+		store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(close, far)));
+
+		List<ScoredChunk> results = store.search(new float[] {1f, 0f, 0f}, 2, 0.5);
+		assertThat(results).extracting(ScoredChunk::getChunkId).containsExactly(close.getId());
+		// Puntuación exacta con los floats de la base, no la aproximada de los códigos
+		assertThat(results.get(0).getScore()).isCloseTo(1 / Math.sqrt(1.01), within(1e-6));
+		// Solo los códigos quedan residentes
+		assertThat(store.evaluateQuantizationRecall(1, 1).getFloatBytes()).isZero();
+		store.close();
+	}
+
+	@Test
+	void scansFiltersLargerThanAPartitionOverARowMask() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(3);
+		properties.getSearch().setPartitionSize(1);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		InMemoryVectorStore store = new InMemoryVectorStore(loader, mock(DocumentChunkRepository.class), properties,
+				new ScalarSimilarityKernel(), new PartitionedScanExecutor(pool, properties));
+		Document tenant = Document.builder().id(UUID.randomUUID()).build();
+		Document other = Document.builder().id(UUID.randomUUID()).build();
+		DocumentChunk nearest = chunk(other, 1f, 0f, 0f);
+		DocumentChunk allowedClose = chunk(tenant, 1f, 0.5f, 0f);
+		DocumentChunk allowedFar = chunk(tenant, 0f, 1f, 0f);
+		when(loader.load(anyInt(), any())).thenReturn(new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0));
+
+		store.reload();
+		store.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(nearest, allowedClose, allowedFar)));
+
+		SearchFilter filter = SearchFilter.forDocuments(List.of(tenant.getId()));
+		assertThat(store.search(new float[] {1f, 0f, 0f}, 5, -1.0, 0, filter))
+				.extracting(ScoredChunk::getChunkId).containsExactly(allowedClose.getId(), allowedFar.getId());
+		assertThat(store.searchBatch(List.of(new float[] {1f, 0f, 0f}, new float[] {0f, 1f, 0f}), 1, -1.0, 0, filter))
+				.extracting(results -> results.get(0).getChunkId())
+				.containsExactly(allowedClose.getId(), allowedFar.getId());
+		store.close();
+	}
+
+	private static DocumentChunk chunk(Document document, float... embedding) {
+		return DocumentChunk.builder().id(UUID.randomUUID()).document(document).embedding(embedding).build();
+	}
+}
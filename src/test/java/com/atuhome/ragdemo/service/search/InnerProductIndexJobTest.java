@@ -0,0 +1,42 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InnerProductIndexJobTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final RagProperties properties = new RagProperties();
+	private final InnerProductIndexJob job = new InnerProductIndexJob(jdbcTemplate,
+			new EmbeddingStorage(jdbcTemplate, properties), properties, Runnable::run);
+
+	@Test
+	void createsTheIndexOnlyWhenInnerProductIsEnabled() {
+		job.ensureOnStartup();
+		verify(jdbcTemplate, never()).execute(anyString());
+
+		properties.getSearch().setInnerProduct(true);
+		// Un CREATE INDEX CONCURRENTLY interrumpido lo dejó no válido
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq(InnerProductIndexJob.INDEX)))
+				.thenReturn(false);
+
+		job.ensureOnStartup();
+
+		InOrder order = inOrder(jdbcTemplate);
+		order.verify(jdbcTemplate).execute("DROP INDEX CONCURRENTLY idx_chunks_embedding_ip");
+		order.verify(jdbcTemplate).execute("CREATE INDEX CONCURRENTLY idx_chunks_embedding_ip ON document_chunks "
+				+ "USING hnsw (embedding vector_ip_ops) WITH (m = 16, ef_construction = 64)");
+	}
+}
@@ -0,0 +1,64 @@
+package com.atuhome.ragdemo.service.search;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PgVectorSearchEngineTest {
+
+	private final DocumentChunkRepository repository = mock(DocumentChunkRepository.class);
+	private final RagProperties properties = new RagProperties();
+	private final PgVectorSearchEngine engine = new PgVectorSearchEngine(repository, properties, mock(EmbeddingStorage.class));
+
+	@Test
+	void filtersTenantsInSqlOverTheHnswIndexWithoutListingTheirDocuments() {
+		when(repository.findVectorExtensionVersion()).thenReturn("0.8.0");
+		engine.detectOnStartup();
+
+		engine.findNearest(new float[] {1f, 0f}, 0.5, 5, 40,
+				SearchFilter.none().withOrganization("acme").withTags(List.of("Contratos", "a\"b")));
+
+		verify(repository).setHnswEfSearch("40");
+		verify(repository).setHnswIterativeScan("relaxed_order");
+		verify(repository).findNearestChunksMatching(anyString(), eq("acme"), isNull(),
+				eq("{\"a\\\"b\",\"contratos\"}"), eq(0.5), eq(20), eq(5));
+		verify(repository, never()).findNearestChunksInDocuments(anyString(), any(), any(), any(), any(),
+				anyDouble(), anyInt());
+	}
+
+	@Test
+	void keepsTheExactScanForShortExplicitDocumentLists() {
+		UUID documentId = UUID.randomUUID();
+
+		engine.findNearest(new float[] {1f, 0f}, 0.5, 5, 40,
+				SearchFilter.forDocuments(List.of(documentId)).withSector("legal"));
+
+		verify(repository).findNearestChunksInDocuments(anyString(), eq(Set.of(documentId)), isNull(),
+				eq("legal"), isNull(), eq(0.5), eq(5));
+		assertThatThrownBy(() -> SearchFilter.forDocuments(Stream.generate(UUID::randomUUID)
+				.limit(SearchFilter.MAX_DOCUMENT_IDS + 1).toList()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(engine.findNearest(new float[] {1f, 0f}, 0.5, 5, 40,
+				SearchFilter.forDocuments(Collections.emptyList()))).isEmpty();
+		assertThat(PgVectorSearchEngine.supportsIterativeScan("0.7.4")).isFalse();
+	}
+}
@@ -0,0 +1,46 @@
+package com.atuhome.ragdemo.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKCollectorTest {
+
+	@Test
+	void keepsBestScoresInDescendingOrder() {
+		Random random = new Random(7);
+		float[] scores = new float[1000];
+		TopKCollector topK = new TopKCollector(5);
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = random.nextFloat();
+			topK.offer(i, scores[i]);
+		}
+
+		float[] expected = scores.clone();
+		Arrays.sort(expected);
+
+		assertThat(topK.sortDescending()).isEqualTo(5);
+		for (int i = 0; i < 5; i++) {
+			assertThat(topK.scoreAt(i)).isEqualTo(expected[expected.length - 1 - i]);
+			assertThat(scores[topK.idAt(i)]).isEqualTo(topK.scoreAt(i));
+		}
+	}
+
+	@Test
+	void mergeCombinesPartitions() {
+		TopKCollector left = new TopKCollector(3);
+		TopKCollector right = new TopKCollector(3);
+		left.offer(1, 0.9f);
+		left.offer(2, 0.1f);
+		right.offer(3, 0.5f);
+		right.offer(4, 0.7f);
+
+		left.merge(right);
+
+		assertThat(left.sortDescending()).isEqualTo(3);
+		assertThat(new int[] {left.idAt(0), left.idAt(1), left.idAt(2)}).containsExactly(1, 4, 3);
+	}
+}
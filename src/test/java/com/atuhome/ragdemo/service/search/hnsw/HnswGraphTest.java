@@ -0,0 +1,134 @@
+package com.atuhome.ragdemo.service.search.hnsw;
+
+import com.atuhome.ragdemo.service.search.TopKCollector;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswGraphTest {
+
+	private static final int DIMENSION = 32;
+
+	private final SimilarityKernel kernel = new ScalarSimilarityKernel();
+	private final Random random = new Random(3);
+
+	@Test
+	void concurrentInsertsReachHighRecall() {
+		float[][] vectors = randomUnitVectors(3000);
+		HnswGraph graph = new HnswGraph(DIMENSION, 16, 100, kernel);
+		int[] nodeIds = new int[vectors.length];
+		IntStream.range(0, vectors.length).parallel()
+				.forEach(i -> nodeIds[i] = graph.insert(UUID.randomUUID(), vectors[i]));
+
+		double recall = 0;
+		int queries = 50;
+		for (int q = 0; q < queries; q++) {
+			float[] query = randomUnitVectors(1)[0];
+			TopKCollector exact = new TopKCollector(10);
+			for (int i = 0; i < vectors.length; i++) {
+				exact.offer(nodeIds[i], kernel.dot(query, vectors[i]));
+			}
+			recall += overlap(exact, graph.search(query, 10, 100, Float.NEGATIVE_INFINITY)) / 10.0;
+		}
+
+		assertThat(graph.size()).isEqualTo(vectors.length);
+		assertThat(recall / queries).isGreaterThan(0.9);
+	}
+
+	@Test
+	void deletedNodesAreNotReturned() {
+		float[][] vectors = randomUnitVectors(200);
+		HnswGraph graph = new HnswGraph(DIMENSION, 8, 50, kernel);
+		for (float[] vector : vectors) {
+			graph.insert(UUID.randomUUID(), vector);
+		}
+
+		TopKCollector before = graph.search(vectors[0], 1, 50, Float.NEGATIVE_INFINITY);
+		assertThat(before.idAt(0)).isZero();
+
+		graph.markDeleted(0);
+		TopKCollector after = graph.search(vectors[0], 5, 50, Float.NEGATIVE_INFINITY);
+		for (int i = 0; i < after.size(); i++) {
+			assertThat(after.idAt(i)).isNotZero();
+		}
+		assertThat(graph.size()).isEqualTo(199);
+	}
+
+	@Test
+	void searchesRunSafelyWhileInsertsRaiseTheEntryPoint() throws Exception {
+		// El punto de entrada cambia sobre todo en las primeras inserciones: muchos grafos pequeños
+		// con M = 2 (niveles altos frecuentes) y varios hilos buscando mientras se llenan
+		float[][] vectors = randomUnitVectors(300);
+		float[][] queries = randomUnitVectors(20);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 200; round++) {
+				HnswGraph graph = new HnswGraph(DIMENSION, 2, 10, kernel);
+				AtomicBoolean inserting = new AtomicBoolean(true);
+				List<Future<?>> searchers = new ArrayList<>();
+				for (int t = 0; t < 3; t++) {
+					int offset = t;
+					searchers.add(executor.submit(() -> {
+						for (int q = offset; inserting.get(); q++) {
+							graph.search(queries[q % queries.length], 3, 10, Float.NEGATIVE_INFINITY);
+						}
+					}));
+				}
+				try {
+					for (float[] vector : vectors) {
+						graph.insert(UUID.randomUUID(), vector);
+					}
+				} finally {
+					inserting.set(false);
+				}
+				for (Future<?> searcher : searchers) {
+					searcher.get(30, TimeUnit.SECONDS);
+				}
+				assertThat(graph.size()).isEqualTo(vectors.length);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int overlap(TopKCollector expected, TopKCollector actual) {
+		Set<Integer> ids = new HashSet<>();
+		for (int i = 0; i < expected.size(); i++) {
+			ids.add(expected.idAt(i));
+		}
+		int hits = 0;
+		for (int i = 0; i < actual.size(); i++) {
+			if (ids.contains(actual.idAt(i))) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	private float[][] randomUnitVectors(int count) {
+		float[][] vectors = new float[count][DIMENSION];
+		for (float[] vector : vectors) {
+			for (int d = 0; d < DIMENSION; d++) {
+				vector[d] = (float) random.nextGaussian();
+			}
+			VectorNormalizer.normalizeInPlace(vector);
+		}
+		return vectors;
+	}
+}
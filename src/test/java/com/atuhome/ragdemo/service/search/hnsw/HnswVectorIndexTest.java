@@ -0,0 +1,109 @@
+package com.atuhome.ragdemo.service.search.hnsw;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader.BatchConsumer;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader.EmbeddingBatch;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HnswVectorIndexTest {
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void keepsServingAndDropsTheChunksOfADocumentDeletedWhileRebuilding() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(2);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		HnswVectorIndex index = new HnswVectorIndex(loader, properties, new ScalarSimilarityKernel(), pool);
+		Document document = Document.builder().id(UUID.randomUUID()).build();
+		UUID previousId = UUID.randomUUID();
+		EmbeddingBatch previous = batch(previousId, document.getId(), 1f, 0f);
+		DocumentChunk reprocessed = DocumentChunk.builder()
+				.id(UUID.randomUUID()).document(document).embedding(new float[] {0f, 1f}).build();
+
+		when(loader.load(anyInt(), any())).thenAnswer(invocation -> {
+			invocation.<BatchConsumer>getArgument(1).accept(previous);
+			return new EmbeddingStreamLoader.LoadReport(1, 0, 0, 0);
+		}).thenAnswer(invocation -> {
+			invocation.<BatchConsumer>getArgument(1).accept(previous);
+			// El grafo anterior sigue sirviendo mientras el cursor recorre la tabla
+			assertThat(index.isReady()).isTrue();
+			assertThat(index.search(new float[] {1f, 0f}, 5, -1.0, 16))
+					.extracting(ScoredChunk::getChunkId).containsExactly(previousId);
+			index.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(document.getId()));
+			index.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(reprocessed)));
+			return new EmbeddingStreamLoader.LoadReport(1, 0, 0, 0);
+		});
+
+		index.rebuild();
+		index.rebuild();
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search(new float[] {1f, 0f}, 5, -1.0, 16))
+				.extracting(ScoredChunk::getChunkId).containsExactly(reprocessed.getId());
+	}
+
+	@Test
+	void acceptsOnlyFilteredNodesWhileTraversingTheGraph() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(2);
+		properties.getSearch().setPartitionSize(1);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		HnswVectorIndex index = new HnswVectorIndex(loader, properties, new ScalarSimilarityKernel(), pool);
+		Document tenant = Document.builder().id(UUID.randomUUID()).build();
+		Document other = Document.builder().id(UUID.randomUUID()).build();
+		List<DocumentChunk> otherChunks = IntStream.range(0, 20)
+				.mapToObj(i -> chunk(other, 1f, i / 100f))
+				.toList();
+		DocumentChunk allowedClose = chunk(tenant, 1f, 0.5f);
+		DocumentChunk allowedFar = chunk(tenant, 0f, 1f);
+		when(loader.load(anyInt(), any())).thenReturn(new EmbeddingStreamLoader.LoadReport(0, 0, 0, 0));
+
+		index.rebuild();
+		index.onChunksEmbedded(new ChunksEmbeddedEvent(otherChunks));
+		index.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(allowedClose, allowedFar)));
+
+		// ef = 2: sin filtro en la lista dinámica solo cabrían chunks del otro documento
+		assertThat(index.search(new float[] {1f, 0f}, 2, -1.0, 2, SearchFilter.forDocuments(List.of(tenant.getId()))))
+				.extracting(ScoredChunk::getChunkId).containsExactly(allowedClose.getId(), allowedFar.getId());
+	}
+
+	private static DocumentChunk chunk(Document document, float... embedding) {
+		return DocumentChunk.builder().id(UUID.randomUUID()).document(document).embedding(embedding).build();
+	}
+
+	private static EmbeddingBatch batch(UUID chunkId, UUID documentId, float... vector) {
+		EmbeddingBatch batch = mock(EmbeddingBatch.class);
+		when(batch.size()).thenReturn(1);
+		when(batch.chunkId(0)).thenReturn(chunkId);
+		when(batch.documentId(0)).thenReturn(documentId);
+		when(batch.isNormalized(0)).thenReturn(true);
+		when(batch.vectorCopy(0)).thenAnswer(invocation -> vector.clone());
+		return batch;
+	}
+}
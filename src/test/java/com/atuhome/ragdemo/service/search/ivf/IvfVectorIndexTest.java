@@ -0,0 +1,106 @@
+package com.atuhome.ragdemo.service.search.ivf;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader.BatchConsumer;
+import com.atuhome.ragdemo.service.search.EmbeddingStreamLoader.EmbeddingBatch;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IvfVectorIndexTest {
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void keepsTheNewChunksOfADocumentReprocessedWhileTraining() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(2);
+		properties.getSearch().setIvfLists(1);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		IvfVectorIndex index = new IvfVectorIndex(loader, properties, new ScalarSimilarityKernel(), pool);
+		Document document = Document.builder().id(UUID.randomUUID()).build();
+		UUID previousId = UUID.randomUUID();
+		EmbeddingBatch previous = batch(previousId, document.getId(), 1f, 0f);
+		DocumentChunk reprocessed = DocumentChunk.builder()
+				.id(UUID.randomUUID()).document(document).embedding(new float[] {0f, 1f}).build();
+
+		when(loader.load(anyInt(), any())).thenAnswer(invocation -> {
+			invocation.<BatchConsumer>getArgument(1).accept(previous);
+			return new EmbeddingStreamLoader.LoadReport(1, 0, 0, 0);
+		}).thenAnswer(invocation -> {
+			invocation.<BatchConsumer>getArgument(1).accept(previous);
+			// El documento se reprocesa mientras el cursor asigna
+			index.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(document.getId()));
+			index.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(reprocessed)));
+			return new EmbeddingStreamLoader.LoadReport(1, 0, 0, 0);
+		});
+
+		index.train(IvfVectorIndex.TrainingListener.NONE);
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search(new float[] {0f, 1f}, 5, -1.0, 0))
+				.extracting(ScoredChunk::getChunkId).containsExactly(reprocessed.getId());
+	}
+
+	@Test
+	void probesOnlyListsWithFilteredEntries() {
+		RagProperties properties = new RagProperties();
+		properties.getEmbedding().setDimension(2);
+		properties.getSearch().setIvfLists(2);
+		properties.getSearch().setIvfNprobe(1);
+		properties.getSearch().setPartitionSize(1);
+		EmbeddingStreamLoader loader = mock(EmbeddingStreamLoader.class);
+		IvfVectorIndex index = new IvfVectorIndex(loader, properties, new ScalarSimilarityKernel(), pool);
+		UUID other = UUID.randomUUID();
+		UUID tenant = UUID.randomUUID();
+		UUID allowedClose = UUID.randomUUID();
+		UUID allowedFar = UUID.randomUUID();
+		List<EmbeddingBatch> batches = List.of(
+				batch(UUID.randomUUID(), other, 1f, 0f),
+				batch(UUID.randomUUID(), other, 1f, 0.05f),
+				batch(allowedClose, tenant, 0.1f, 1f),
+				batch(allowedFar, tenant, 0f, 1f));
+		when(loader.load(anyInt(), any())).thenAnswer(invocation -> {
+			batches.forEach(invocation.<BatchConsumer>getArgument(1)::accept);
+			return new EmbeddingStreamLoader.LoadReport(4, 0, 0, 0);
+		});
+
+		index.train(IvfVectorIndex.TrainingListener.NONE);
+
+		// La lista más cercana a la consulta no tiene entradas del filtro: se sondea la siguiente
+		assertThat(index.search(new float[] {1f, 0f}, 5, -1.0, 0, SearchFilter.forDocuments(List.of(tenant))))
+				.extracting(ScoredChunk::getChunkId).containsExactly(allowedClose, allowedFar);
+	}
+
+	private static EmbeddingBatch batch(UUID chunkId, UUID documentId, float... vector) {
+		EmbeddingBatch batch = mock(EmbeddingBatch.class);
+		when(batch.size()).thenReturn(1);
+		when(batch.chunkId(0)).thenReturn(chunkId);
+		when(batch.documentId(0)).thenReturn(documentId);
+		when(batch.isNormalized(0)).thenReturn(true);
+		when(batch.vectorCopy(0)).thenAnswer(invocation -> vector.clone());
+		return batch;
+	}
+}
@@ -0,0 +1,95 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.event.ChunksEmbeddedEvent;
+import com.atuhome.ragdemo.event.DocumentChunksDeletedEvent;
+import com.atuhome.ragdemo.model.entity.Document;
+import com.atuhome.ragdemo.model.entity.DocumentChunk;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import com.atuhome.ragdemo.service.search.ScoredChunk;
+import com.atuhome.ragdemo.service.search.SearchFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class Bm25IndexTest {
+
+	@Test
+	void matchesAccentFoldedReferencesAndForgetsDeletedDocuments() {
+		Bm25Index index = new Bm25Index(null, new RagProperties());
+		UUID lawDocument = UUID.randomUUID();
+		UUID otherDocument = UUID.randomUUID();
+		UUID article23 = UUID.randomUUID();
+		UUID article24 = UUID.randomUUID();
+		UUID unrelated = UUID.randomUUID();
+		index.add(article23, lawDocument, "Artículo 23. Las funciones del consejo directivo serán las siguientes.");
+		index.add(article24, lawDocument, "Artículo 24. El consejo se reúne una vez por mes.");
+		index.add(unrelated, otherDocument, "Presupuesto anual del área de sistemas y licencias.");
+
+		List<ScoredChunk> results = index.search("¿Qué dice el articulo 23 sobre la función del consejo?", 3, SearchFilter.none());
+
+		assertThat(results).extracting(ScoredChunk::getChunkId).containsExactly(article23, article24);
+
+		assertThat(index.search("articulo 23", 3, SearchFilter.forDocuments(List.of(otherDocument)))).isEmpty();
+
+		index.removeDocument(lawDocument);
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.search("artículo 23", 3, SearchFilter.none())).isEmpty();
+	}
+
+	@Test
+	void replaysEventsReceivedWhileReloading() {
+		DocumentChunkRepository repository = mock(DocumentChunkRepository.class);
+		Bm25Index index = new Bm25Index(repository, new RagProperties());
+		UUID removedDocument = UUID.randomUUID();
+		UUID keptDocument = UUID.randomUUID();
+		UUID removedChunk = UUID.randomUUID();
+		UUID keptChunk = UUID.randomUUID();
+		DocumentChunk lateChunk = DocumentChunk.builder()
+				.id(UUID.randomUUID()).document(Document.builder().id(UUID.randomUUID()).build())
+				.content("Resolución sobre licencias de conducir.").embedding(new float[] {1f}).build();
+
+		// Los eventos llegan mientras se lee la tabla, con la foto anterior a ellos
+		when(repository.findAllChunkTextsWithEmbeddings()).thenAnswer(invocation -> {
+			index.onChunksEmbedded(new ChunksEmbeddedEvent(List.of(lateChunk)));
+			index.onDocumentChunksDeleted(new DocumentChunksDeletedEvent(removedDocument));
+			return List.<Object[]>of(
+					new Object[] {removedChunk, removedDocument, "Licencias de conducir vencidas."},
+					new Object[] {keptChunk, keptDocument, "Licencias del personal docente."});
+		});
+
+		index.reload();
+
+		assertThat(index.isReady()).isTrue();
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.search("licencias de conducir", 3, SearchFilter.none()))
+				.extracting(ScoredChunk::getChunkId).containsExactly(lateChunk.getId(), keptChunk);
+	}
+
+	@Test
+	void reclaimsOrdinalsOfRepeatedlyReprocessedDocuments() {
+		Bm25Index index = new Bm25Index(null, new RagProperties());
+		UUID stableDocument = UUID.randomUUID();
+		UUID stableChunk = UUID.randomUUID();
+		UUID reprocessedDocument = UUID.randomUUID();
+		index.add(stableChunk, stableDocument, "Contrato de locación de inmuebles urbanos.");
+
+		for (int round = 0; round < 3; round++) {
+			index.removeDocument(reprocessedDocument);
+			for (int i = 0; i < 1000; i++) {
+				index.add(UUID.randomUUID(), reprocessedDocument, "Acta de asamblea número " + i + " de locación.");
+			}
+		}
+
+		assertThat(index.size()).isEqualTo(1001);
+		assertThat(index.ordinalCount()).isLessThan(2100);
+		assertThat(index.search("contrato de locación", 1, SearchFilter.none()))
+				.extracting(ScoredChunk::getChunkId).containsExactly(stableChunk);
+		assertThat(index.search("acta 999", 5, SearchFilter.forDocuments(List.of(reprocessedDocument)))).isNotEmpty();
+	}
+}
@@ -0,0 +1,75 @@
+package com.atuhome.ragdemo.service.search.lexical;
+
+import com.atuhome.ragdemo.config.RagProperties;
+import com.atuhome.ragdemo.repository.DocumentChunkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PostgresFullTextIndexTest {
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final PostgresFullTextIndex index;
+
+	PostgresFullTextIndexTest() {
+		RagProperties properties = new RagProperties();
+		properties.getSearch().setLexicalEngine(PostgresFullTextIndex.ENGINE_NAME);
+		index = new PostgresFullTextIndex(mock(DocumentChunkRepository.class), jdbcTemplate, properties,
+				Runnable::run, Runnable::run);
+	}
+
+	@Test
+	void neverRewritesTheTableOnStartup() {
+		when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(false);
+
+		index.ensureSchemaOnStartup();
+
+		verify(jdbcTemplate, never()).execute(anyString());
+		assertThat(index.isReady()).isFalse();
+	}
+
+	@Test
+	void buildsAMissingIndexConcurrently() {
+		when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(true);
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), eq(PostgresFullTextIndex.INDEX)))
+				.thenReturn(null);
+
+		index.ensureSchemaOnStartup();
+
+		verify(jdbcTemplate).execute("CREATE INDEX CONCURRENTLY idx_chunks_content_tsv ON document_chunks "
+				+ "USING gin (content_tsv)");
+		assertThat(index.isReady()).isTrue();
+	}
+
+	@Test
+	void queriesFilterOnTheIndexedColumnAndAreBounded() {
+		List<String> queries = Arrays.stream(DocumentChunkRepository.class.getMethods())
+				.filter(method -> method.getName().startsWith("findTopChunksByFullText"))
+				.map(PostgresFullTextIndexTest::sql)
+				.toList();
+
+		assertThat(queries).hasSize(3).allSatisfy(sql -> assertThat(sql)
+				// El GIN solo sirve si el predicado usa la columna almacenada, no to_tsvector al vuelo
+				.contains("WHERE c.content_tsv @@ q.query")
+				.doesNotContain("to_tsvector(")
+				.contains("LIMIT :maxResults"));
+	}
+
+	private static String sql(Method method) {
+		return method.getAnnotation(Query.class).value();
+	}
+}
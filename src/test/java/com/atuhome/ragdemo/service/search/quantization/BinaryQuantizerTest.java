@@ -0,0 +1,43 @@
+package com.atuhome.ragdemo.service.search.quantization;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryQuantizerTest {
+
+	@Test
+	void encodesSignBitsAndOrdersByHammingDistance() {
+		// 70 dimensiones: la segunda palabra solo usa 6 bits
+		float[] query = new float[70];
+		query[0] = 0.5f;
+		query[64] = 0.1f;
+		query[69] = -0.3f;
+
+		long[] words = BinaryQuantizer.encode(query);
+		assertThat(words).containsExactly(1L, 1L);
+		assertThat(BinaryQuantizer.bytesPerVector(70)).isEqualTo(16);
+
+		float[] near = query.clone();
+		near[1] = 0.2f;
+		float[] far = new float[70];
+		far[5] = 1f;
+		far[65] = 1f;
+		far[69] = 1f;
+
+		try (Arena arena = Arena.ofConfined()) {
+			int bytes = BinaryQuantizer.bytesPerVector(70);
+			MemorySegment codes = arena.allocate(2L * bytes, Long.BYTES);
+			BinaryQuantizer.encode(near, codes, 0);
+			BinaryQuantizer.encode(far, codes, bytes);
+
+			int nearDistance = BinaryQuantizer.hammingDistance(words, codes, 0);
+			int farDistance = BinaryQuantizer.hammingDistance(words, codes, bytes);
+			assertThat(nearDistance).isEqualTo(1);
+			assertThat(farDistance).isEqualTo(5);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.atuhome.ragdemo.service.search.quantization;
+
+import com.atuhome.ragdemo.service.search.similarity.ScalarSimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.SimilarityKernel;
+import com.atuhome.ragdemo.service.search.similarity.VectorNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Int8ScalarQuantizerTest {
+
+	private final SimilarityKernel kernel = new ScalarSimilarityKernel();
+	private final Random random = new Random(11);
+
+	@Test
+	void quantizedDotApproximatesFloatDot() {
+		int dimension = 1024;
+		int rows = 200;
+
+		float[][] vectors = new float[rows][];
+		Int8ScalarQuantizer.Trainer trainer = new Int8ScalarQuantizer.Trainer(dimension);
+		for (int row = 0; row < rows; row++) {
+			vectors[row] = randomUnitVector(dimension);
+			trainer.accept(vectors[row], 0);
+		}
+
+		try (Arena arena = Arena.ofConfined()) {
+			Int8ScalarQuantizer quantizer = trainer.build();
+			MemorySegment codes = arena.allocate((long) rows * dimension);
+			for (int row = 0; row < rows; row++) {
+				quantizer.encode(vectors[row], codes, (long) row * dimension);
+			}
+
+			float[] query = randomUnitVector(dimension);
+			Int8ScalarQuantizer.QuantizedQuery quantizedQuery = quantizer.prepareQuery(query);
+			for (int row = 0; row < rows; row++) {
+				float exact = kernel.dot(query, vectors[row]);
+				float approximate = quantizedQuery.getOffset()
+						+ kernel.dotInt8(quantizedQuery.getScaledQuery(), codes, (long) row * dimension);
+				assertThat(approximate).isCloseTo(exact, within(1e-2f));
+			}
+		}
+	}
+
+	private float[] randomUnitVector(int dimension) {
+		float[] vector = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			vector[i] = (float) random.nextGaussian();
+		}
+		return VectorNormalizer.normalizedCopy(vector);
+	}
+}
@@ -0,0 +1,78 @@
+package com.atuhome.ragdemo.service.search.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SimilarityKernelTest {
+
+	private final SimilarityKernel scalar = new ScalarSimilarityKernel();
+	private final SimilarityKernel simd = SimilarityKernels.create("simd");
+	private final Random random = new Random(42);
+
+	@Test
+	void simdKernelIsSelectedWhenVectorModuleIsPresent() {
+		assertThat(simd.name()).startsWith(VectorApiSimilarityKernel.NAME);
+		assertThat(SimilarityKernels.create("scalar").name()).isEqualTo(ScalarSimilarityKernel.NAME);
+	}
+
+	@Test
+	void simdMatchesScalarOnArrays() {
+		// 1024 (bge-m3) y una longitud con cola no múltiplo del ancho SIMD
+		for (int dimension : new int[] {1024, 1027}) {
+			float[] a = randomVector(dimension);
+			float[] b = randomVector(dimension);
+
+			assertThat(simd.dot(a, b)).isCloseTo(scalar.dot(a, b), within(1e-3f));
+			assertThat(simd.cosine(a, b)).isCloseTo(scalar.cosine(a, b), within(1e-5f));
+			assertThat(simd.l2Squared(a, b)).isCloseTo(scalar.l2Squared(a, b), within(1e-2f));
+		}
+	}
+
+	@Test
+	void simdMatchesScalarOnMemorySegments() {
+		int dimension = 1024;
+		float[] query = randomVector(dimension);
+		float[] row = randomVector(dimension);
+
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment vectors = arena.allocate(2L * dimension * Float.BYTES, 64);
+			long offset = (long) dimension * Float.BYTES;
+			MemorySegment.copy(row, 0, vectors, ValueLayout.JAVA_FLOAT, offset, dimension);
+
+			assertThat(simd.dot(query, vectors, offset)).isCloseTo(scalar.dot(query, row), within(1e-3f));
+			assertThat(simd.cosine(query, vectors, offset)).isCloseTo(scalar.cosine(query, row), within(1e-5f));
+			assertThat(simd.l2Squared(query, vectors, offset)).isCloseTo(scalar.l2Squared(query, row), within(1e-2f));
+			assertThat(scalar.dot(query, vectors, offset)).isCloseTo(scalar.dot(query, row), within(1e-3f));
+		}
+	}
+
+	@Test
+	void simdMatchesScalarOnInt8Codes() {
+		int dimension = 1027;
+		float[] query = randomVector(dimension);
+		byte[] codes = new byte[dimension];
+		random.nextBytes(codes);
+
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment segment = arena.allocate(dimension + 3L);
+			MemorySegment.copy(codes, 0, segment, ValueLayout.JAVA_BYTE, 3, dimension);
+
+			assertThat(simd.dotInt8(query, segment, 3)).isCloseTo(scalar.dotInt8(query, segment, 3), within(1e-1f));
+		}
+	}
+
+	private float[] randomVector(int dimension) {
+		float[] vector = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			vector[i] = random.nextFloat() * 2 - 1;
+		}
+		return vector;
+	}
+}
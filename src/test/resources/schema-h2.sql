@@ -6,13 +6,18 @@ CREATE TABLE IF NOT EXISTS documents (
     filename VARCHAR(255) NOT NULL,
     file_path VARCHAR(500),
     file_size BIGINT,
-    content_hash VARCHAR(64) UNIQUE,
+    content_hash VARCHAR(64),
     upload_date TIMESTAMP NOT NULL,
     processing_started_at TIMESTAMP,
     processing_completed_at TIMESTAMP,
     status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
     error_message CLOB,
-    metadata CLOB
+    metadata CLOB,
+    organization_id VARCHAR(100),
+    sector VARCHAR(50),
+    tags CLOB,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 -- Document chunks table (without vector type)
@@ -25,6 +30,7 @@ CREATE TABLE IF NOT EXISTS document_chunks (
     char_end INTEGER,
     page_number INTEGER,
     embedding CLOB, -- Store as serialized string
+    normalized BOOLEAN NOT NULL DEFAULT FALSE,
     metadata CLOB,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT fk_chunks_document FOREIGN KEY (document_id) REFERENCES documents(id) ON DELETE CASCADE,
@@ -47,6 +53,7 @@ CREATE TABLE IF NOT EXISTS qa_history (
 -- Indexes for performance
 CREATE INDEX IF NOT EXISTS idx_documents_status ON documents(status);
 CREATE INDEX IF NOT EXISTS idx_documents_upload_date ON documents(upload_date);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_documents_organization_content_hash ON documents(organization_id, content_hash);
 CREATE INDEX IF NOT EXISTS idx_chunks_document_id ON document_chunks(document_id);
 CREATE INDEX IF NOT EXISTS idx_chunks_chunk_index ON document_chunks(chunk_index);
 CREATE INDEX IF NOT EXISTS idx_qa_created_at ON qa_history(created_at);
\ No newline at end of file